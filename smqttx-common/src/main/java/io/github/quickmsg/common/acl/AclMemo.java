@@ -0,0 +1,48 @@
+package io.github.quickmsg.common.acl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 连接上缓存的 ACL 结果, 按动作与 topic 保存, 版本与 {@link CompiledAcl} 不一致时整体丢弃
+ *
+ * @author luxurong
+ */
+public class AclMemo {
+
+    private static final int MAX_TOPICS = 256;
+
+    private final int version;
+
+    private final long ip;
+
+    @SuppressWarnings("unchecked")
+    private final Map<String, Boolean>[] decisions = new Map[]{new ConcurrentHashMap<>(), new ConcurrentHashMap<>()};
+
+    public AclMemo(int version, long ip) {
+        this.version = version;
+        this.ip = ip;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public long getIp() {
+        return ip;
+    }
+
+    Boolean get(int action, String topic) {
+        return decisions[action].get(topic);
+    }
+
+    void put(int action, String topic, boolean allowed) {
+        Map<String, Boolean> map = decisions[action];
+        if (map.size() >= MAX_TOPICS) {
+            /* topic 很多的连接不再逐个缓存, 避免内存增长 */
+            map.clear();
+        }
+        map.put(topic, allowed);
+    }
+
+}
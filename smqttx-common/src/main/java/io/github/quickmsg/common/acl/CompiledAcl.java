@@ -0,0 +1,322 @@
+package io.github.quickmsg.common.acl;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的 ACL 策略, 等价于 jcasbin 模型
+ * {@code r.act == p.act && keyMatch(r.obj, p.obj) && filter(r.sub, p.sub)}, 有 allow 且没有 deny 时通过
+ * <p>
+ * 每个动作一张精确 topic 表和一棵前缀树(keyMatch 只比较第一个 * 之前的前缀), 主体预先解析成 all / ip{} / clientId 匹配器.
+ * 策略不可变, 变更时整体重建并增加版本号, 连接上缓存的结果随版本失效
+ *
+ * @author luxurong
+ */
+public class CompiledAcl {
+
+    /**
+     * 不检查, 全部允许
+     */
+    public static final CompiledAcl ALLOW_ALL = new CompiledAcl(0, true);
+
+    private static final int ACTION_SIZE = 2;
+
+    private final int version;
+
+    private final boolean allowAll;
+
+    private final ActionRules[] actions = new ActionRules[ACTION_SIZE];
+
+    private CompiledAcl(int version, boolean allowAll) {
+        this.version = version;
+        this.allowAll = allowAll;
+        for (int i = 0; i < ACTION_SIZE; i++) {
+            actions[i] = new ActionRules();
+        }
+    }
+
+    /**
+     * 编译策略
+     *
+     * @param version  版本号
+     * @param policies 策略列表, 每条为 [sub, obj, act, eft]
+     * @return {@link CompiledAcl}
+     */
+    public static CompiledAcl compile(int version, List<List<String>> policies) {
+        CompiledAcl compiledAcl = new CompiledAcl(version, false);
+        for (List<String> policy : policies) {
+            if (policy.size() < 4) {
+                continue;
+            }
+            int action = actionIndex(policy.get(2).trim());
+            AclType type = AclType.fromDesc(policy.get(3).trim());
+            if (action < 0 || (type != AclType.ALLOW && type != AclType.DENY)) {
+                continue;
+            }
+            Rule rule = new Rule(SubjectMatcher.of(policy.get(0).trim()), type == AclType.ALLOW);
+            compiledAcl.actions[action].add(policy.get(1).trim(), rule);
+        }
+        return compiledAcl;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 检查连接的权限, 结果按 topic 缓存在连接上
+     *
+     * @param mqttChannel {@link MqttChannel}
+     * @param topic       topic
+     * @param action      {@link AclAction}
+     * @return 是否允许
+     */
+    public boolean check(MqttChannel mqttChannel, String topic, AclAction action) {
+        int index = actionIndex(action);
+        if (allowAll || index < 0) {
+            return true;
+        }
+        AclMemo memo = mqttChannel.getAclMemo();
+        if (memo == null || memo.getVersion() != version) {
+            memo = new AclMemo(version, parseIp(host(mqttChannel.getAddress())));
+            mqttChannel.setAclMemo(memo);
+        }
+        Boolean cached = memo.get(index, topic);
+        if (cached != null) {
+            return cached;
+        }
+        boolean allowed = check(mqttChannel.getClientId(), memo.getIp(), topic, index);
+        memo.put(index, topic, allowed);
+        return allowed;
+    }
+
+    /**
+     * 不经过缓存直接计算
+     *
+     * @param clientId 客户端id
+     * @param ip       ipv4 地址, 无效时为 -1
+     * @param topic    topic
+     * @param action   {@link AclAction}
+     * @return 是否允许
+     */
+    public boolean check(String clientId, long ip, String topic, AclAction action) {
+        int index = actionIndex(action);
+        return allowAll || index < 0 || check(clientId, ip, topic, index);
+    }
+
+    private boolean check(String clientId, long ip, String topic, int index) {
+        ActionRules rules = actions[index];
+        Decision decision = new Decision();
+        Rule[] exact = rules.exact.get(topic);
+        if (exact != null && decision.apply(exact, clientId, ip)) {
+            return false;
+        }
+        PrefixNode node = rules.prefixes;
+        for (int i = 0; node != null; i++) {
+            if (node.rules != null && decision.apply(node.rules, clientId, ip)) {
+                return false;
+            }
+            if (i == topic.length()) {
+                break;
+            }
+            node = node.children.get(topic.charAt(i));
+        }
+        return decision.allow;
+    }
+
+    private static int actionIndex(AclAction action) {
+        switch (action) {
+            case PUBLISH:
+                return 0;
+            case SUBSCRIBE:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    private static int actionIndex(String action) {
+        if (AclAction.PUBLISH.name().equals(action)) {
+            return 0;
+        } else if (AclAction.SUBSCRIBE.name().equals(action)) {
+            return 1;
+        }
+        return -1;
+    }
+
+    private static String host(String address) {
+        if (address == null) {
+            return null;
+        }
+        int index = address.lastIndexOf(':');
+        return index < 0 ? address : address.substring(0, index);
+    }
+
+    /**
+     * 解析 ipv4 地址
+     *
+     * @param ip ip 字符串
+     * @return 无符号整数, 无效时返回 -1
+     */
+    static long parseIp(String ip) {
+        if (ip == null) {
+            return -1;
+        }
+        long value = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                value = (value << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || dots != 3) {
+            return -1;
+        }
+        return (value << 8) | octet;
+    }
+
+
+    private static class ActionRules {
+
+        private final Map<String, Rule[]> exact = new HashMap<>();
+
+        private PrefixNode prefixes;
+
+        private void add(String pattern, Rule rule) {
+            int star = pattern.indexOf('*');
+            if (star < 0) {
+                exact.put(pattern, append(exact.get(pattern), rule));
+                return;
+            }
+            if (prefixes == null) {
+                prefixes = new PrefixNode();
+            }
+            PrefixNode node = prefixes;
+            for (int i = 0; i < star; i++) {
+                node = node.children.computeIfAbsent(pattern.charAt(i), c -> new PrefixNode());
+            }
+            node.rules = append(node.rules, rule);
+        }
+
+        private static Rule[] append(Rule[] rules, Rule rule) {
+            if (rules == null) {
+                return new Rule[]{rule};
+            }
+            Rule[] appended = Arrays.copyOf(rules, rules.length + 1);
+            appended[rules.length] = rule;
+            return appended;
+        }
+    }
+
+    private static class PrefixNode {
+
+        private final Map<Character, PrefixNode> children = new HashMap<>(4);
+
+        private Rule[] rules;
+    }
+
+    private static class Rule {
+
+        private final SubjectMatcher subject;
+
+        private final boolean allow;
+
+        private Rule(SubjectMatcher subject, boolean allow) {
+            this.subject = subject;
+            this.allow = allow;
+        }
+    }
+
+    private static class Decision {
+
+        private boolean allow;
+
+        /**
+         * @return 是否命中 deny
+         */
+        private boolean apply(Rule[] rules, String clientId, long ip) {
+            for (Rule rule : rules) {
+                if (rule.subject.matches(clientId, ip)) {
+                    if (!rule.allow) {
+                        return true;
+                    }
+                    allow = true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 主体匹配: all 匹配全部, ip{a.b.c.d} 或 ip{a.b.c.d/n} 匹配来源地址, 其他按 clientId 匹配
+     */
+    private static class SubjectMatcher {
+
+        private static final SubjectMatcher ALL = new SubjectMatcher(null, 0, 0);
+
+        private final String clientId;
+
+        private final long network;
+
+        private final long mask;
+
+        private SubjectMatcher(String clientId, long network, long mask) {
+            this.clientId = clientId;
+            this.network = network;
+            this.mask = mask;
+        }
+
+        private static SubjectMatcher of(String subject) {
+            if ("all".equals(subject)) {
+                return ALL;
+            }
+            if (subject.startsWith("ip{") && subject.endsWith("}")) {
+                String cidr = subject.substring(3, subject.length() - 1);
+                int slash = cidr.indexOf('/');
+                int prefix = 32;
+                if (slash >= 0) {
+                    try {
+                        prefix = Integer.parseInt(cidr.substring(slash + 1));
+                    } catch (NumberFormatException e) {
+                        prefix = -1;
+                    }
+                    cidr = cidr.substring(0, slash);
+                }
+                long ip = parseIp(cidr);
+                if (ip < 0 || prefix < 0 || prefix > 32) {
+                    /* 无效地址不匹配任何连接 */
+                    return new SubjectMatcher(null, -1, 0);
+                }
+                long mask = prefix == 0 ? 0 : (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+                return new SubjectMatcher(null, ip & mask, mask);
+            }
+            return new SubjectMatcher(subject, 0, 0);
+        }
+
+        private boolean matches(String clientId, long ip) {
+            if (this == ALL) {
+                return true;
+            }
+            if (this.clientId != null) {
+                return this.clientId.equals(clientId);
+            }
+            return ip >= 0 && (ip & mask) == network;
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+package io.github.quickmsg.common.auth;
+
+import io.github.quickmsg.common.metric.MetricBean;
+import io.github.quickmsg.common.metric.MetricManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 缓存认证结果的 {@link AuthManager}
+ * <p>
+ * 以 (clientId, username, 密码摘要) 为 key 保存在有界 LRU 中, 通过与拒绝分别设置有效期.
+ * 同一 key 并发的认证合并为一次后端请求, 后端异常按拒绝返回但不缓存
+ *
+ * @author luxurong
+ */
+@Slf4j
+public class CachingAuthManager implements AuthManager {
+
+    private static final String HIT_COUNT = "smqtt.auth.cache.hit";
+
+    private static final String MISS_COUNT = "smqtt.auth.cache.miss";
+
+    private static final String CACHE_SIZE = "smqtt.auth.cache.size";
+
+    private static final String LOAD_LATENCY = "smqtt.auth.load.latency";
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final AuthManager delegate;
+
+    private final long allowTtl;
+
+    private final long denyTtl;
+
+    private final LongSupplier clock;
+
+    private final Map<String, Decision> decisions;
+
+    private final Map<String, Mono<Boolean>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder allowHits = new LongAdder();
+
+    private final LongAdder denyHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private volatile Timer loadLatency;
+
+    /**
+     * @param delegate 实际认证的 {@link AuthManager}
+     * @param size     缓存条数上限
+     * @param allowTtl 认证通过的缓存时间(秒)
+     * @param denyTtl  认证拒绝的缓存时间(秒), 0 表示不缓存
+     */
+    public CachingAuthManager(AuthManager delegate, int size, int allowTtl, int denyTtl) {
+        this(delegate, size, allowTtl, denyTtl, System::nanoTime);
+    }
+
+    CachingAuthManager(AuthManager delegate, int size, int allowTtl, int denyTtl, LongSupplier clock) {
+        this.delegate = delegate;
+        this.allowTtl = TimeUnit.SECONDS.toNanos(allowTtl);
+        this.denyTtl = TimeUnit.SECONDS.toNanos(denyTtl);
+        this.clock = clock;
+        this.decisions = new LinkedHashMap<String, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * 注册命中, 未命中, 缓存大小与后端认证耗时指标
+     *
+     * @param metricManager {@link MetricManager}
+     */
+    public void bindMetric(MetricManager metricManager) {
+        MetricBean metricBean = metricManager.getMetricBean();
+        MeterRegistry meterRegistry = metricBean.getMeterRegistry();
+        if (meterRegistry == null) {
+            return;
+        }
+        FunctionCounter.builder(HIT_COUNT, allowHits, LongAdder::sum)
+                .tags(metricBean.getTags().and("result", "allow")).register(meterRegistry);
+        FunctionCounter.builder(HIT_COUNT, denyHits, LongAdder::sum)
+                .tags(metricBean.getTags().and("result", "deny")).register(meterRegistry);
+        FunctionCounter.builder(MISS_COUNT, misses, LongAdder::sum)
+                .tags(metricBean.getTags()).register(meterRegistry);
+        Gauge.builder(CACHE_SIZE, this, CachingAuthManager::size)
+                .tags(metricBean.getTags()).register(meterRegistry);
+        this.loadLatency = Timer.builder(LOAD_LATENCY).tags(metricBean.getTags()).register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Boolean> auth(String userName, byte[] passwordInBytes, String clientIdentifier) {
+        String key = key(userName, passwordInBytes, clientIdentifier);
+        Decision decision;
+        synchronized (decisions) {
+            decision = decisions.get(key);
+        }
+        if (decision != null && decision.expireTime - clock.getAsLong() > 0) {
+            (decision.allowed ? allowHits : denyHits).increment();
+            return decision.allowed ? Mono.just(true) : Mono.just(false);
+        }
+        misses.increment();
+        return loading.computeIfAbsent(key, k -> this.load(k, userName, passwordInBytes, clientIdentifier));
+    }
+
+    /**
+     * 清空缓存, 用户或密码变更后调用, 见 /smqtt/auth/cache/invalidate
+     */
+    public void invalidateAll() {
+        synchronized (decisions) {
+            decisions.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (decisions) {
+            return decisions.size();
+        }
+    }
+
+    private Mono<Boolean> load(String key, String userName, byte[] passwordInBytes, String clientIdentifier) {
+        AtomicReference<Mono<Boolean>> self = new AtomicReference<>();
+        Mono<Boolean> mono = Mono.defer(() -> {
+                    long start = clock.getAsLong();
+                    return delegate.auth(userName, passwordInBytes, clientIdentifier)
+                            .defaultIfEmpty(false)
+                            .doOnNext(allowed -> {
+                                long now = clock.getAsLong();
+                                Timer timer = loadLatency;
+                                if (timer != null) {
+                                    timer.record(now - start, TimeUnit.NANOSECONDS);
+                                }
+                                this.save(key, allowed, now);
+                            });
+                })
+                .onErrorResume(throwable -> {
+                    log.error("auth error clientIdentifier={}", clientIdentifier, throwable);
+                    return Mono.just(false);
+                })
+                .doFinally(signalType -> loading.remove(key, self.get()))
+                .cache();
+        self.set(mono);
+        return mono;
+    }
+
+    private void save(String key, boolean allowed, long now) {
+        long ttl = allowed ? allowTtl : denyTtl;
+        if (ttl <= 0) {
+            return;
+        }
+        synchronized (decisions) {
+            decisions.put(key, new Decision(allowed, now + ttl));
+        }
+    }
+
+    private static String key(String userName, byte[] passwordInBytes, String clientIdentifier) {
+        MessageDigest digest = DIGEST.get();
+        byte[] hash = digest.digest(passwordInBytes == null ? new byte[0] : passwordInBytes);
+        return clientIdentifier + '\u0000' + userName + '\u0000' + Base64.getEncoder().encodeToString(hash);
+    }
+
+
+    private static class Decision {
+
+        private final boolean allowed;
+
+        private final long expireTime;
+
+        private Decision(boolean allowed, long expireTime) {
+            this.allowed = allowed;
+            this.expireTime = expireTime;
+        }
+    }
+
+}
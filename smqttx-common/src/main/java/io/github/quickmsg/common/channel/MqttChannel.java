@@ -1,19 +1,24 @@
 package io.github.quickmsg.common.channel;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.github.quickmsg.common.acl.AclMemo;
 import io.github.quickmsg.common.context.ContextHolder;
 import io.github.quickmsg.common.integrate.SubscribeTopic;
 import io.github.quickmsg.common.integrate.cache.ConnectCache;
 import io.github.quickmsg.common.message.mqtt.ConnectMessage;
+import io.github.quickmsg.common.message.mqtt.PublishFrame;
 import io.github.quickmsg.common.message.mqtt.PublishMessage;
-import io.github.quickmsg.common.message.mqtt.RetryMessage;
+import io.github.quickmsg.common.retry.InflightWindow;
 import io.github.quickmsg.common.retry.RetryManager;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.util.ReferenceCountUtil;
 import lombok.Builder;
 import lombok.Data;
 import lombok.Getter;
@@ -22,9 +27,7 @@ import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,9 +41,6 @@ import java.util.function.Consumer;
 @Slf4j
 public class MqttChannel {
 
-    private Map<Integer,PublishMessage> qosCache = new HashMap<>();
-
-
     private Integer id;
 
     private String clientId;
@@ -48,6 +48,11 @@ public class MqttChannel {
     @JsonIgnore
     private static final int MAX_MESSAGE_ID = 65535;
 
+    /**
+     * 建立连接后等待 CONNECT 的读空闲超时(毫秒)
+     */
+    public static final int CONNECT_IDLE_TIMEOUT = 2000;
+
 
     @JsonIgnore
     private Connection connection;
@@ -64,25 +69,46 @@ public class MqttChannel {
     private Set<SubscribeTopic> topics;
 
     @JsonIgnore
-    private transient AtomicInteger atomicInteger;
+    private transient AtomicInteger atomicInteger = new AtomicInteger(0);
 
-    public void saveQos2Cache(Integer messageId,PublishMessage publishMessage){
-        qosCache.put(messageId,publishMessage);    }
+    /**
+     * 待确认消息, 首次下发 qos1/qos2 时创建
+     */
+    @JsonIgnore
+    private volatile InflightWindow inflightWindow;
 
+    /**
+     * ACL 检查结果, 由 {@link io.github.quickmsg.common.acl.CompiledAcl} 维护
+     */
+    @JsonIgnore
+    private volatile AclMemo aclMemo;
 
-    public PublishMessage sendQos2Cache(Integer messageId){
-        return qosCache.remove(messageId);
-    }
+    /**
+     * 接收的 qos2 消息中等待 PUBREL 的 messageId, 首次收到 qos2 消息时创建
+     */
+    @JsonIgnore
+    private volatile InflightWindow awaitingRel;
+
+    /**
+     * 离线或正在补发离线消息时为 true, qos1/qos2 消息写入离线会话保证顺序
+     */
+    @JsonIgnore
+    private volatile boolean queued;
+
+    /**
+     * 离线消息补发任务计数, 由 {@link io.github.quickmsg.common.session.SessionManager} 维护
+     */
+    @JsonIgnore
+    private final AtomicInteger drainWip = new AtomicInteger();
 
     public static MqttChannel init(Connection connection) {
         MqttChannel mqttChannel = new MqttChannel();
         mqttChannel.setTopics(new CopyOnWriteArraySet<>());
-        mqttChannel.setAtomicInteger(new AtomicInteger(0));
         mqttChannel.setActiveTime(System.currentTimeMillis());
         mqttChannel.setConnection(connection);
         mqttChannel.setAddress(connection.address().toString().substring(1));
         mqttChannel.setId((int) ContextHolder.getReceiveContext().getIntegrate().getGlobalCounter("channel-id").incrementAndGet());
-        connection.onReadIdle(2000, connection::dispose);
+        connection.onReadIdle(CONNECT_IDLE_TIMEOUT, connection::dispose);
         return mqttChannel;
     }
 
@@ -94,6 +120,14 @@ public class MqttChannel {
         }
     }
 
+    public boolean isActive() {
+        return this.connection != null && this.connection.channel().isActive();
+    }
+
+    public boolean isWritable() {
+        return this.isActive() && this.connection.channel().isWritable();
+    }
+
     public void registryClose(Consumer<MqttChannel> consumer) {
         this.connection.onDispose(() -> consumer.accept(this));
     }
@@ -148,6 +182,20 @@ public class MqttChannel {
     }
 
     public void sendPublish(MqttQoS mqttQoS, PublishMessage message) {
+        if (mqttQoS != MqttQoS.AT_MOST_ONCE && this.queued) {
+            ContextHolder.getReceiveContext().getSessionManager().enqueue(this, mqttQoS, message);
+            return;
+        }
+        this.deliver(mqttQoS, message);
+    }
+
+    /**
+     * 直接下发, 不经过离线会话, 用于补发离线消息
+     *
+     * @param mqttQoS 下发 qos
+     * @param message {@link PublishMessage}
+     */
+    public void deliver(MqttQoS mqttQoS, PublishMessage message) {
         switch (mqttQoS) {
             case AT_MOST_ONCE:
                 this.write(message.buildMqttMessage(mqttQoS, 0));
@@ -155,20 +203,55 @@ public class MqttChannel {
             case EXACTLY_ONCE:
             case AT_LEAST_ONCE:
             default:
-                int messageId = this.generateMessageId();
-                RetryManager retryManager = ContextHolder.getReceiveContext().getRetryManager();
-                RetryMessage retryMessage = new RetryMessage(messageId, System.currentTimeMillis(), message.isRetain(),
-                        message.getTopic(), MqttQoS.valueOf(message.getQos()), JacksonUtil.dynamicJson(message.getBody()).getBytes(StandardCharsets.UTF_8),this);
-                retryManager.doRetry(this, retryMessage);
-                this.write(message.buildMqttMessage(mqttQoS, messageId));
+                ByteBuf payload = message.getPayload() != null ? message.getPayload().retain()
+                        : message.getBody() != null ? Unpooled.wrappedBuffer(message.getBody()) : Unpooled.EMPTY_BUFFER;
+                try {
+                    int messageId = this.doRetry(mqttQoS, message, payload);
+                    if (messageId > 0) {
+                        this.write(message.buildMqttMessage(mqttQoS, messageId));
+                    }
+                } finally {
+                    payload.release();
+                }
                 break;
         }
     }
 
+    /**
+     * 下发预编码报文, 多个订阅者共享同一个 {@link PublishFrame}
+     *
+     * @param mqttQoS      下发 qos
+     * @param publishFrame {@link PublishFrame}
+     */
+    public void sendPublish(MqttQoS mqttQoS, PublishFrame publishFrame) {
+        if (mqttQoS != MqttQoS.AT_MOST_ONCE && this.queued) {
+            ContextHolder.getReceiveContext().getSessionManager().enqueue(this, mqttQoS, publishFrame.getMessage());
+            return;
+        }
+        MqttVersion version = Optional.ofNullable(connectCache).map(ConnectCache::getVersion).orElse(MqttVersion.MQTT_3_1_1);
+        switch (mqttQoS) {
+            case AT_MOST_ONCE:
+                this.write(publishFrame.encode(mqttQoS, 0, version));
+                break;
+            case EXACTLY_ONCE:
+            case AT_LEAST_ONCE:
+            default:
+                int messageId = this.doRetry(mqttQoS, publishFrame.getMessage(), publishFrame.getPayload());
+                if (messageId > 0) {
+                    this.write(publishFrame.encode(mqttQoS, messageId, version));
+                }
+                break;
+        }
+    }
 
-
-    public void sendRetry(RetryMessage retryMessage) {
-        this.write(retryMessage.buildMqttMessage());
+    /**
+     * 登记重试, 重试时复用同一个 payload
+     *
+     * @return messageId, 待确认窗口已满时排队并返回 0, 由 {@link RetryManager} 在收到确认后下发
+     */
+    private int doRetry(MqttQoS mqttQoS, PublishMessage message, ByteBuf payload) {
+        return ContextHolder.getReceiveContext().getRetryManager()
+                .doRetry(this, mqttQoS, message.isRetain(), message.getTopic(), payload);
     }
 
 
@@ -180,6 +263,21 @@ public class MqttChannel {
     public void write(MqttMessage mqttMessage) {
         if (this.connection.channel().isActive() && this.connection.channel().isWritable()) {
             connection.outbound().sendObject(Mono.just(mqttMessage)).then().subscribe();
+        } else {
+            ReferenceCountUtil.safeRelease(mqttMessage);
+        }
+    }
+
+    /**
+     * write 已编码的报文
+     *
+     * @param frame #{@link ByteBuf}
+     */
+    public void write(ByteBuf frame) {
+        if (this.connection.channel().isActive() && this.connection.channel().isWritable()) {
+            connection.outbound().send(Mono.just(frame)).then().subscribe();
+        } else {
+            ReferenceCountUtil.safeRelease(frame);
         }
     }
 
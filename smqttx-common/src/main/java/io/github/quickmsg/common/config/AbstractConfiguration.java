@@ -1,5 +1,6 @@
 package io.github.quickmsg.common.config;
 
+import io.github.quickmsg.common.log.LogEvent;
 import io.github.quickmsg.common.rule.RuleChainDefinition;
 import io.github.quickmsg.common.rule.RuleDefinition;
 import io.github.quickmsg.common.rule.source.SourceDefinition;
@@ -53,6 +54,126 @@ public interface AbstractConfiguration extends Configuration {
     AuthConfig getAuthConfig();
 
 
+    /**
+     * 非阻塞协议是否直接在 IO 线程处理
+     *
+     * @return boolean
+     */
+    Boolean getInlineProtocol();
+
+
+    /**
+     * 每个连接最多待确认的消息数
+     *
+     * @return 消息数
+     */
+    Integer getMaxInflight();
+
+
+    /**
+     * 待确认窗口已满时每个连接排队的消息数
+     *
+     * @return 消息数
+     */
+    Integer getMaxInflightQueue();
+
+
+    /**
+     * 每个连接最多等待 PUBREL 的消息数
+     *
+     * @return 消息数
+     */
+    Integer getMaxAwaitingRel();
+
+
+    /**
+     * 离线会话最多保存的消息数
+     *
+     * @return 消息数
+     */
+    Integer getSessionQueueSize();
+
+
+    /**
+     * 离线消息保存时间
+     *
+     * @return 秒
+     */
+    Integer getSessionMessageTtl();
+
+
+    /**
+     * 离线会话保留时间
+     *
+     * @return 秒
+     */
+    Integer getSessionExpiry();
+
+
+    /**
+     * 每批补发的离线消息数
+     *
+     * @return 消息数
+     */
+    Integer getSessionDrainBatch();
+
+
+    /**
+     * 全局每秒放行的 CONNECT 数
+     *
+     * @return 0 表示不限制
+     */
+    Integer getConnectRate();
+
+
+    /**
+     * 全局 CONNECT 允许的突发数
+     *
+     * @return 突发数
+     */
+    Integer getConnectBurst();
+
+
+    /**
+     * 单个 ip 每秒放行的 CONNECT 数
+     *
+     * @return 0 表示不限制
+     */
+    Integer getConnectIpRate();
+
+
+    /**
+     * 单个 ip CONNECT 允许的突发数
+     *
+     * @return 突发数
+     */
+    Integer getConnectIpBurst();
+
+
+    /**
+     * 超出全局速率时等待的 CONNECT 数
+     *
+     * @return 队列大小
+     */
+    Integer getConnectPendingSize();
+
+
+    /**
+     * 事件日志队列大小
+     *
+     * @return 队列大小
+     */
+    Integer getLogQueueSize();
+
+
+    /**
+     * 事件日志按类型采样
+     *
+     * @return 每 n 条输出 1 条
+     */
+    Map<LogEvent, Integer> getLogSample();
+
+
 
 
 
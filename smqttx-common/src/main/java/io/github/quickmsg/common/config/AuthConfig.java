@@ -18,6 +18,36 @@ public class AuthConfig {
 
     private String file;
 
+    /**
+     * 认证结果缓存
+     */
+    private AuthCacheConfig cache;
+
+    @Data
+    public static class AuthCacheConfig {
+
+        /**
+         * 是否缓存 http, sql 认证结果
+         */
+        private boolean enable = true;
+
+        /**
+         * 缓存条数上限
+         */
+        private int size = 100000;
+
+        /**
+         * 认证通过的缓存时间(秒), 期间修改的用户或密码需调用 /smqtt/auth/cache/invalidate 才生效
+         */
+        private int allowTtl = 300;
+
+        /**
+         * 认证拒绝的缓存时间(秒), 0 表示不缓存
+         */
+        private int denyTtl = 10;
+
+    }
+
     @Data
     public static class FixedAuthConfig {
 
@@ -2,6 +2,7 @@ package io.github.quickmsg.common.config;
 
 import ch.qos.logback.classic.Level;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.github.quickmsg.common.log.LogEvent;
 import io.github.quickmsg.common.metric.MeterType;
 import io.github.quickmsg.common.rule.RuleChainDefinition;
 import io.github.quickmsg.common.rule.source.SourceDefinition;
@@ -138,6 +139,86 @@ public class BootstrapConfig {
          */
         private Integer messageMaxSize;
 
+        /**
+         * 共享入站payload下发, 不拷贝消息体
+         */
+        private Boolean zeroCopy;
+
+        /**
+         * PINGREQ/PUBACK/PUBREC/PUBCOMP 等非阻塞协议直接在 IO 线程处理
+         */
+        private Boolean inlineProtocol;
+
+        /**
+         * 每个连接最多待确认的 qos1/qos2 消息数, 客户端设置的 Receive Maximum 更小时以客户端为准
+         */
+        private Integer maxInflight;
+
+        /**
+         * 待确认窗口已满时每个连接排队等待下发的 qos1/qos2 消息数, 超出时丢弃最早的消息
+         */
+        private Integer maxInflightQueue;
+
+        /**
+         * 每个连接最多等待 PUBREL 的 qos2 消息数
+         */
+        private Integer maxAwaitingRel;
+
+        /**
+         * cleanSession=false 的离线会话最多保存的消息数, 超出时丢弃最早的消息
+         */
+        private Integer sessionQueueSize;
+
+        /**
+         * 离线消息保存时间(秒), 0 表示不过期
+         */
+        private Integer sessionMessageTtl;
+
+        /**
+         * 断开后离线会话保留时间(秒)
+         */
+        private Integer sessionExpiry;
+
+        /**
+         * 重连后每批补发的离线消息数
+         */
+        private Integer sessionDrainBatch;
+
+        /**
+         * 全局每秒放行的 CONNECT 数, 0 表示不限制
+         */
+        private Integer connectRate;
+
+        /**
+         * 全局 CONNECT 允许的突发数
+         */
+        private Integer connectBurst;
+
+        /**
+         * 单个 ip 每秒放行的 CONNECT 数, 0 表示不限制
+         */
+        private Integer connectIpRate;
+
+        /**
+         * 单个 ip CONNECT 允许的突发数
+         */
+        private Integer connectIpBurst;
+
+        /**
+         * 超出全局速率时等待的 CONNECT 数, 队列满时拒绝
+         */
+        private Integer connectPendingSize;
+
+        /**
+         * 事件日志队列大小, 队列满时丢弃
+         */
+        private Integer logQueueSize;
+
+        /**
+         * 事件日志按类型采样, 每 n 条输出 1 条
+         */
+        private Map<LogEvent, Integer> logSample;
+
         /**
          * 低水位
          */
@@ -259,6 +340,21 @@ public class BootstrapConfig {
          * 集群持久化文件
          */
         private String workDirectory;
+
+        /**
+         * 集群转发批次最大等待时间(微秒), 0 表示不等待
+         */
+        private Integer batchDelay;
+
+        /**
+         * 集群转发批次最大字节数
+         */
+        private Integer batchBytes;
+
+        /**
+         * 离线会话是否持久化到 workDirectory, false 时只保存在集群内存中
+         */
+        private Boolean sessionPersistence;
     }
 
 
@@ -306,6 +402,11 @@ public class BootstrapConfig {
 
         private Influxdb influxdb;
 
+        /**
+         * 统计发布流程各阶段延迟
+         */
+        private Boolean latency;
+
     }
 
     /**
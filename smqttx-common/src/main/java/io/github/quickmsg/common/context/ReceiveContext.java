@@ -2,6 +2,7 @@ package io.github.quickmsg.common.context;
 
 import io.github.quickmsg.common.log.LogManager;
 import io.github.quickmsg.common.retry.RetryManager;
+import io.github.quickmsg.common.session.SessionManager;
 import io.github.quickmsg.common.acl.AclManager;
 import io.github.quickmsg.common.config.Configuration;
 import io.github.quickmsg.common.handler.TrafficHandlerLoader;
@@ -79,6 +80,13 @@ public interface ReceiveContext<T extends Configuration> extends Consumer<Messag
     LogManager getLogManager();
 
 
+    /**
+     * get Session Manager
+     * @return {@link  SessionManager}
+     */
+    SessionManager getSessionManager();
+
+
 
     /**
      * check cluster
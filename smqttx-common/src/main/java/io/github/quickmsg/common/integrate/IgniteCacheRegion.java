@@ -56,6 +56,44 @@ public enum IgniteCacheRegion {
             return false;
         }
 
+        @Override
+        public Factory<? extends ExpiryPolicy> getExpiryPolicyFactory() {
+            return null;
+        }
+    },
+    /**
+     * 离线会话的队列位置与订阅
+     */
+    SESSION("session_queue", "session_data_region", CacheMode.PARTITIONED, null) {
+        @Override
+        public boolean persistence() {
+            return true;
+        }
+
+        @Override
+        public boolean local() {
+            return false;
+        }
+
+        @Override
+        public Factory<? extends ExpiryPolicy> getExpiryPolicyFactory() {
+            return null;
+        }
+    },
+    /**
+     * 离线会话的消息, 过期时间按消息设置
+     */
+    SESSION_MESSAGE("session_message", "session_data_region", CacheMode.PARTITIONED, null) {
+        @Override
+        public boolean persistence() {
+            return true;
+        }
+
+        @Override
+        public boolean local() {
+            return false;
+        }
+
         @Override
         public Factory<? extends ExpiryPolicy> getExpiryPolicyFactory() {
             return null;
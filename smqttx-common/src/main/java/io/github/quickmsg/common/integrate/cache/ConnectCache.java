@@ -30,6 +30,9 @@ public class ConnectCache {
     @QuerySqlField
     private boolean cleanSession;
 
+    @QuerySqlField
+    private int receiveMaximum;
+
     @QuerySqlField( descending = true)
     private String connectTime;
 
@@ -2,8 +2,11 @@ package io.github.quickmsg.common.integrate.job;
 
 import io.github.quickmsg.common.channel.MqttChannel;
 import io.github.quickmsg.common.context.ContextHolder;
+import io.github.quickmsg.common.context.ReceiveContext;
 import io.github.quickmsg.common.integrate.channel.IntegrateChannels;
 
+import java.util.UUID;
+
 /**
  * @author luxurong
  */
@@ -12,8 +15,14 @@ public class CloseJob implements Job {
 
     private final String clientId;
 
-    public CloseJob(String clientId) {
+    /**
+     * 新连接所在的节点
+     */
+    private final UUID nodeId;
+
+    public CloseJob(String clientId, UUID nodeId) {
         this.clientId = clientId;
+        this.nodeId = nodeId;
     }
 
     @Override
@@ -28,8 +37,12 @@ public class CloseJob implements Job {
 
     @Override
     public void run() {
-        IntegrateChannels channels = ContextHolder.getReceiveContext()
-                .getIntegrate().getChannels();
+        ReceiveContext<?> receiveContext = ContextHolder.getReceiveContext();
+        /* 会话由新连接所在节点接管 */
+        if (!nodeId.equals(receiveContext.getIntegrate().getIgnite().cluster().localNode().id())) {
+            receiveContext.getSessionManager().discard(clientId);
+        }
+        IntegrateChannels channels = receiveContext.getIntegrate().getChannels();
         MqttChannel mqttChannel = channels.get(clientId);
         if (mqttChannel != null) {
             channels.remove(mqttChannel);
@@ -3,19 +3,37 @@ package io.github.quickmsg.common.integrate.msg;
 import io.github.quickmsg.common.integrate.IntegrateGetter;
 import io.github.quickmsg.common.message.RetainMessage;
 import io.github.quickmsg.common.message.SessionMessage;
+import io.github.quickmsg.common.session.SessionStore;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * @author luxurong
  */
 public interface IntegrateMessages extends IntegrateGetter {
 
+    /**
+     * 保存保留消息, 消息体为空时删除该 topic 的保留消息
+     *
+     * @param of {@link RetainMessage}
+     */
     void saveRetainMessage(RetainMessage of);
 
-    void deleteRetainMessage(String clientIdentifier);
+    void deleteRetainMessage(String topic);
 
-    Set<RetainMessage> getRetainMessage(String topicName);
+    /**
+     * 与 topicFilter 匹配的保留消息
+     *
+     * @param topicFilter 订阅的 topicFilter, 可以包含通配符
+     * @return 不可修改的列表
+     */
+    List<RetainMessage> getRetainMessage(String topicFilter);
+
+    /**
+     * 离线会话存储
+     *
+     * @return {@link SessionStore}
+     */
+    SessionStore getSessionStore();
 
 }
@@ -7,7 +7,10 @@ import io.github.quickmsg.common.message.mqtt.ClusterMessage;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * @author luxurong
@@ -67,6 +70,33 @@ public interface IntegrateTopics<T> extends IntegrateGetter {
 
     Set<String> getWildcardTopics(String topic);
 
+    /**
+     * 遍历匹配 topic 的通配符订阅, 不创建结果集合; consumer 中不能再次匹配
+     *
+     * @param topic    topic
+     * @param consumer 通配符订阅
+     */
+    default void forEachWildcardTopic(String topic, Consumer<String> consumer) {
+        Optional.ofNullable(getWildcardTopics(topic)).ifPresent(wildcardTopics -> wildcardTopics.forEach(consumer));
+    }
+
+
+    /**
+     * 订阅了 topic 或 topicFilter 的集群节点
+     *
+     * @param topic topic 或 topicFilter
+     * @return 节点id集合
+     */
+    Set<UUID> getRouteNodes(String topic);
+
+
+    /**
+     * 集群路由表 topicFilter -> 节点id集合
+     *
+     * @return Map
+     */
+    Map<String, Set<UUID>> getRouteTable();
+
 
     /**
      *  get all subscribers
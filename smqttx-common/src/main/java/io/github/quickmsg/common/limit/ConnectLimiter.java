@@ -0,0 +1,262 @@
+package io.github.quickmsg.common.limit;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.metric.MetricBean;
+import io.github.quickmsg.common.metric.MetricManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * CONNECT 准入控制
+ * <p>
+ * 先按来源 ip 限速, 超出直接拒绝; 再按全局令牌桶限速, 没有令牌时进入有界等待队列,
+ * 按令牌补充的速度依次放行, 队列满时拒绝. 已有排队时新的 CONNECT 排在后面.
+ * <p>
+ * 连接在 CONNECT 之前的读空闲超时 {@link MqttChannel#CONNECT_IDLE_TIMEOUT} 后会被关闭, 等待时间不能超过它:
+ * 队列长度按全局速率限制在 {@link #PENDING_TIMEOUT} 内能放行的数量, 等待超过该时间的直接拒绝,
+ * 等待期间已经断开的连接直接移除, 不占用令牌
+ *
+ * @author luxurong
+ */
+@Slf4j
+public class ConnectLimiter {
+
+    private static final String ADMIT_COUNT = "smqtt.connect.admit.count";
+
+    private static final String REJECT_COUNT = "smqtt.connect.reject.count";
+
+    private static final String PENDING_SIZE = "smqtt.connect.pending.size";
+
+    private static final long IP_PURGE_PERIOD = 60;
+
+    private static final long MIN_DELAY = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 最长等待时间(毫秒), 小于 CONNECT 之前的读空闲超时
+     */
+    static final long PENDING_TIMEOUT = MqttChannel.CONNECT_IDLE_TIMEOUT * 3 / 4;
+
+    private final TokenBucket global;
+
+    private final int ipRate;
+
+    private final int ipBurst;
+
+    private final int pendingSize;
+
+    private final LongSupplier clock;
+
+    private final Scheduler timer;
+
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder ipRejected = new LongAdder();
+
+    private final LongAdder globalRejected = new LongAdder();
+
+    private final LongAdder timeoutRejected = new LongAdder();
+
+    private final LongAdder abandoned = new LongAdder();
+
+    /**
+     * @param rate        全局每秒放行的 CONNECT 数, 0 表示不限制
+     * @param burst       全局允许的突发数
+     * @param ipRate      单个 ip 每秒放行的 CONNECT 数, 0 表示不限制
+     * @param ipBurst     单个 ip 允许的突发数
+     * @param pendingSize 超出全局速率时等待的 CONNECT 数, 不超过 {@link #PENDING_TIMEOUT} 内能放行的数量
+     */
+    public ConnectLimiter(int rate, int burst, int ipRate, int ipBurst, int pendingSize) {
+        this(rate, burst, ipRate, ipBurst, pendingSize, System::nanoTime, Schedulers.parallel());
+    }
+
+    ConnectLimiter(int rate, int burst, int ipRate, int ipBurst, int pendingSize, LongSupplier clock, Scheduler timer) {
+        this.global = rate > 0 ? new TokenBucket(rate, burst, clock.getAsLong()) : null;
+        this.ipRate = ipRate;
+        this.ipBurst = ipBurst;
+        this.pendingSize = rate > 0 ? (int) Math.min(pendingSize, Math.max(rate * PENDING_TIMEOUT / 1000, 1)) : pendingSize;
+        this.clock = clock;
+        this.timer = timer;
+        if (ipRate > 0) {
+            timer.schedulePeriodically(this::purge, IP_PURGE_PERIOD, IP_PURGE_PERIOD, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return global != null || ipRate > 0;
+    }
+
+    /**
+     * 注册放行, 拒绝数量与等待队列长度指标
+     *
+     * @param metricManager {@link MetricManager}
+     */
+    public void bindMetric(MetricManager metricManager) {
+        MetricBean metricBean = metricManager.getMetricBean();
+        MeterRegistry meterRegistry = metricBean.getMeterRegistry();
+        if (meterRegistry == null) {
+            return;
+        }
+        FunctionCounter.builder(ADMIT_COUNT, admitted, LongAdder::sum)
+                .tags(metricBean.getTags()).register(meterRegistry);
+        FunctionCounter.builder(REJECT_COUNT, ipRejected, LongAdder::sum)
+                .tags(metricBean.getTags().and("reason", "ip")).register(meterRegistry);
+        FunctionCounter.builder(REJECT_COUNT, globalRejected, LongAdder::sum)
+                .tags(metricBean.getTags().and("reason", "global")).register(meterRegistry);
+        FunctionCounter.builder(REJECT_COUNT, timeoutRejected, LongAdder::sum)
+                .tags(metricBean.getTags().and("reason", "timeout")).register(meterRegistry);
+        FunctionCounter.builder(REJECT_COUNT, abandoned, LongAdder::sum)
+                .tags(metricBean.getTags().and("reason", "closed")).register(meterRegistry);
+        Gauge.builder(PENDING_SIZE, pendingCount, AtomicInteger::get)
+                .tags(metricBean.getTags()).register(meterRegistry);
+    }
+
+    /**
+     * 申请放行, admit 可能在调用线程或定时线程上执行
+     *
+     * @param ip     来源 ip
+     * @param admit  放行
+     * @param reject 拒绝
+     */
+    public void acquire(String ip, Runnable admit, Runnable reject) {
+        this.acquire(ip, () -> true, admit, reject);
+    }
+
+    /**
+     * 申请放行, admit 与 reject 可能在调用线程或定时线程上执行
+     *
+     * @param ip     来源 ip
+     * @param active 连接是否仍然有效, 排队期间断开的直接移除
+     * @param admit  放行
+     * @param reject 拒绝
+     */
+    public void acquire(String ip, BooleanSupplier active, Runnable admit, Runnable reject) {
+        long now = clock.getAsLong();
+        if (ipRate > 0 && !ipBuckets.computeIfAbsent(ip, key -> new TokenBucket(ipRate, ipBurst, now)).tryAcquire(now)) {
+            ipRejected.increment();
+            reject.run();
+            return;
+        }
+        if (global == null || (pendingCount.get() == 0 && global.tryAcquire(now))) {
+            admitted.increment();
+            admit.run();
+            return;
+        }
+        if (pendingCount.incrementAndGet() > pendingSize) {
+            pendingCount.decrementAndGet();
+            globalRejected.increment();
+            reject.run();
+            return;
+        }
+        pending.offer(new Pending(active, admit, reject, now));
+        this.scheduleDrain(now);
+    }
+
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    public long getRejected() {
+        return ipRejected.sum() + globalRejected.sum() + timeoutRejected.sum();
+    }
+
+    public int getPending() {
+        return pendingCount.get();
+    }
+
+    /**
+     * 按当前令牌放行等待队列
+     */
+    synchronized void drain() {
+        long now = clock.getAsLong();
+        Pending next;
+        while ((next = pending.peek()) != null) {
+            Runnable action;
+            if (!next.active.getAsBoolean()) {
+                abandoned.increment();
+                action = null;
+            } else if (now - next.enqueueTime >= TimeUnit.MILLISECONDS.toNanos(PENDING_TIMEOUT)) {
+                timeoutRejected.increment();
+                action = next.reject;
+            } else if (global.tryAcquire(now)) {
+                admitted.increment();
+                action = next.admit;
+            } else {
+                return;
+            }
+            pending.poll();
+            pendingCount.decrementAndGet();
+            if (action != null) {
+                try {
+                    action.run();
+                } catch (Throwable throwable) {
+                    log.error("admit connect error", throwable);
+                }
+            }
+        }
+    }
+
+    private void drainLoop() {
+        scheduled.set(false);
+        this.drain();
+        if (pending.peek() != null) {
+            this.scheduleDrain(clock.getAsLong());
+        }
+    }
+
+    private void scheduleDrain(long now) {
+        if (scheduled.compareAndSet(false, true)) {
+            timer.schedule(this::drainLoop, Math.max(global.nanosToNext(now), MIN_DELAY), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 清理已经补满的 ip 令牌桶
+     */
+    private void purge() {
+        long now = clock.getAsLong();
+        ipBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+
+    private static class Pending {
+
+        private final BooleanSupplier active;
+
+        private final Runnable admit;
+
+        private final Runnable reject;
+
+        private final long enqueueTime;
+
+        private Pending(BooleanSupplier active, Runnable admit, Runnable reject, long enqueueTime) {
+            this.active = active;
+            this.admit = admit;
+            this.reject = reject;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
+}
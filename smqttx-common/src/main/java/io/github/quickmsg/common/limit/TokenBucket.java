@@ -0,0 +1,74 @@
+package io.github.quickmsg.common.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶, 按纳秒时间补充令牌, 调用方传入当前时间
+ *
+ * @author luxurong
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long lastTime;
+
+    /**
+     * @param rate  每秒补充的令牌数
+     * @param burst 桶容量, 允许的突发数
+     * @param now   当前时间(纳秒)
+     */
+    public TokenBucket(int rate, int burst, long now) {
+        this.tokensPerNano = (double) rate / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(burst, 1);
+        this.tokens = capacity;
+        this.lastTime = now;
+    }
+
+    public synchronized boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 桶已满, 即一段时间没有使用
+     *
+     * @param now 当前时间(纳秒)
+     * @return 是否已满
+     */
+    public synchronized boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    /**
+     * 距离下一个令牌的时间
+     *
+     * @param now 当前时间(纳秒)
+     * @return 纳秒, 已有令牌时返回 0
+     */
+    public synchronized long nanosToNext(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastTime;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastTime = now;
+        }
+    }
+
+}
@@ -2,17 +2,44 @@ package io.github.quickmsg.common.log;
 
 import cn.hutool.core.collection.ConcurrentHashSet;
 import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.metric.MetricBean;
+import io.github.quickmsg.common.metric.MetricManager;
+import io.github.quickmsg.common.utils.JacksonUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.internal.PlatformDependent;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.Optional;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
+ * 事件日志, 写入有界队列后由单独线程输出
+ * <p>
+ * message 可以传字符串、{@link Supplier} 或任意对象, 原样入队, 由输出线程序列化成 json,
+ * 队列满丢弃的记录不会被序列化. {@link Loggable} 对象在调用线程取快照, 避免输出时消息已经被释放或修改,
+ * debug 客户端的快照才包含消息体.
+ * debug 客户端不受 {@link #logAll} 与采样限制, 队列满时丢弃并计数
+ *
  * @author luxurong
  */
 @Slf4j
 public class LogManager {
+
     public volatile static boolean logAll = true;
 
+    private static final String DROP_COUNT = "smqtt.log.drop.count";
+
+    private static final int DEFAULT_QUEUE_SIZE = 65536;
+
     private final ConcurrentHashSet<String> debugClientIds = new ConcurrentHashSet<>();
 
     /**
@@ -20,8 +47,56 @@ public class LogManager {
      */
     private final String nodeIp;
 
+    /**
+     * 按事件类型采样, 每 n 条输出 1 条
+     */
+    private final int[] samples = new int[LogEvent.values().length];
+
+    private final AtomicLongArray sequences = new AtomicLongArray(LogEvent.values().length);
+
+    private final Queue<LogRecord> queue;
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final Scheduler.Worker worker;
+
+    private final LongAdder drops = new LongAdder();
+
+    private volatile Map<LogEvent, Counter> dropCounters = Collections.emptyMap();
+
     public LogManager(String nodeIp) {
+        this(nodeIp, DEFAULT_QUEUE_SIZE, null);
+    }
+
+    public LogManager(String nodeIp, int queueSize, Map<LogEvent, Integer> sample) {
         this.nodeIp = nodeIp;
+        this.queue = PlatformDependent.newFixedMpscQueue(queueSize);
+        for (LogEvent logEvent : LogEvent.values()) {
+            Integer rate = sample == null ? null : sample.get(logEvent);
+            samples[logEvent.ordinal()] = rate == null || rate < 1 ? 1 : rate;
+        }
+        Scheduler scheduler = Schedulers.newSingle("event-log", true);
+        this.worker = scheduler.createWorker();
+    }
+
+    /**
+     * 注册丢弃数量指标
+     *
+     * @param metricManager {@link MetricManager}
+     */
+    public void bindMetric(MetricManager metricManager) {
+        MetricBean metricBean = metricManager.getMetricBean();
+        MeterRegistry meterRegistry = metricBean.getMeterRegistry();
+        if (meterRegistry == null) {
+            return;
+        }
+        Map<LogEvent, Counter> counters = new EnumMap<>(LogEvent.class);
+        for (LogEvent logEvent : LogEvent.values()) {
+            counters.put(logEvent, Counter.builder(DROP_COUNT)
+                    .tags(metricBean.getTags().and("event", logEvent.getName()))
+                    .register(meterRegistry));
+        }
+        this.dropCounters = counters;
     }
 
     public void addDebugClient(String client) {
@@ -32,49 +107,146 @@ public class LogManager {
         debugClientIds.remove(client);
     }
 
-    public void printInfo(MqttChannel mqttChannel, LogEvent type, LogStatus eventStatus, String message) {
-        if (logAll) {
-            log.info("{}|{}|{}|{}|{}|{}",
-                    nodeIp,
-                    Optional.ofNullable(mqttChannel).map(MqttChannel::getAddress).orElse(null),
-                    Optional.ofNullable(mqttChannel).map(MqttChannel::getClientId).orElse(null),
-                    type.getName(),
-                    eventStatus.getName(),
-                    message);
-        }
+    /**
+     * 队列满丢弃的日志总数
+     *
+     * @return 丢弃数量
+     */
+    public long getDropCount() {
+        return drops.sum();
     }
 
     /**
-     * error日志打印
+     * 对象延迟序列化成 json, 多次输出时只序列化一次, {@link Loggable} 对象立即取不含消息体的快照
+     *
+     * @param bean 对象
+     * @return {@link Supplier}
      */
-    public void printError(MqttChannel mqttChannel, LogEvent type, String message) {
-        if (logAll) {
-            log.info("{}|{}|{}|{}|{}|{}",
-                    nodeIp,
-                    Optional.ofNullable(mqttChannel).map(MqttChannel::getAddress).orElse("system"),
-                    Optional.ofNullable(mqttChannel).map(MqttChannel::getClientId).orElse("system"),
-                    type.getName(),
-                    LogStatus.FAILED.getName(),
-                    message);
-        }
+    public static Supplier<String> json(Object bean) {
+        Object view = bean instanceof Loggable ? ((Loggable) bean).toLog(false) : bean;
+        return new Supplier<String>() {
+            private String json;
+
+            @Override
+            public String get() {
+                if (json == null) {
+                    json = JacksonUtil.bean2Json(view);
+                }
+                return json;
+            }
+        };
+    }
+
+    public void printInfo(MqttChannel mqttChannel, LogEvent type, LogStatus eventStatus, Object message) {
+        print(mqttChannel, type, eventStatus, message, null);
     }
 
+    /**
+     * error日志打印
+     */
+    public void printError(MqttChannel mqttChannel, LogEvent type, Object message) {
+        print(mqttChannel, type, LogStatus.FAILED, message, "system");
+    }
 
 
     /**
      * warn日志打印
      */
-    public void printWarn(MqttChannel mqttChannel, LogEvent type, LogStatus logStatus,String message) {
-        if (logAll){
-            log.info("{}|{}|{}|{}|{}|{}",
-                    nodeIp,
-                    Optional.ofNullable(mqttChannel).map(MqttChannel::getAddress).orElse(null),
-                    Optional.ofNullable(mqttChannel).map(MqttChannel::getClientId).orElse(null),
-                    type.getName(),
-                    logStatus.getName(),
-                    message);
+    public void printWarn(MqttChannel mqttChannel, LogEvent type, LogStatus logStatus, Object message) {
+        print(mqttChannel, type, logStatus, message, null);
+    }
+
+    private void print(MqttChannel mqttChannel, LogEvent type, LogStatus logStatus, Object message, String absent) {
+        String clientId = mqttChannel == null ? null : mqttChannel.getClientId();
+        boolean debug = isDebugClient(clientId);
+        if (!debug && (!logAll || !sample(type))) {
+            return;
+        }
+        if (message instanceof Loggable) {
+            message = ((Loggable) message).toLog(debug);
+        }
+        LogRecord logRecord = new LogRecord(
+                mqttChannel == null ? absent : mqttChannel.getAddress(),
+                clientId == null ? absent : clientId,
+                type,
+                logStatus,
+                message);
+        if (!queue.offer(logRecord)) {
+            drops.increment();
+            Counter counter = dropCounters.get(type);
+            if (counter != null) {
+                counter.increment();
+            }
+            return;
         }
+        if (wip.getAndIncrement() == 0) {
+            worker.schedule(this::drain);
+        }
+    }
+
+    private boolean isDebugClient(String clientId) {
+        return clientId != null && !debugClientIds.isEmpty() && debugClientIds.contains(clientId);
     }
 
+    private boolean sample(LogEvent type) {
+        int rate = samples[type.ordinal()];
+        return rate == 1 || sequences.getAndIncrement(type.ordinal()) % rate == 0;
+    }
+
+    private static String toString(Object message) {
+        if (message == null || message instanceof String) {
+            return (String) message;
+        }
+        if (message instanceof Supplier) {
+            return String.valueOf(((Supplier<?>) message).get());
+        }
+        return JacksonUtil.bean2Json(message);
+    }
+
+    private void drain() {
+        int missed = 1;
+        for (; ; ) {
+            LogRecord logRecord;
+            while ((logRecord = queue.poll()) != null) {
+                try {
+                    log.info("{}|{}|{}|{}|{}|{}",
+                            nodeIp,
+                            logRecord.address,
+                            logRecord.clientId,
+                            logRecord.type.getName(),
+                            logRecord.status.getName(),
+                            toString(logRecord.message));
+                } catch (Exception e) {
+                    log.error("print event log error", e);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+
+    private static class LogRecord {
+
+        private final String address;
+
+        private final String clientId;
+
+        private final LogEvent type;
+
+        private final LogStatus status;
+
+        private final Object message;
+
+        private LogRecord(String address, String clientId, LogEvent type, LogStatus status, Object message) {
+            this.address = address;
+            this.clientId = clientId;
+            this.type = type;
+            this.status = status;
+            this.message = message;
+        }
+    }
 
 }
@@ -0,0 +1,18 @@
+package io.github.quickmsg.common.log;
+
+/**
+ * 事件日志中输出快照而不是对象本身, 避免序列化时拷贝 payload 或读到被修改的字段
+ *
+ * @author luxurong
+ */
+public interface Loggable {
+
+    /**
+     * 日志快照
+     *
+     * @param detail 是否包含消息体, debug 客户端时为 true
+     * @return 可序列化成 json 的不可变对象
+     */
+    Object toLog(boolean detail);
+
+}
@@ -0,0 +1,59 @@
+package io.github.quickmsg.common.log;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * publish 消息的日志快照, 默认只记录消息体长度
+ *
+ * @author luxurong
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MessageLog {
+
+    private final String clientId;
+
+    private final String topic;
+
+    private final int qos;
+
+    private final boolean retain;
+
+    private final int messageId;
+
+    private final int bodySize;
+
+    private final byte[] body;
+
+    @JsonIgnore
+    private final long timestamp;
+
+    private final String time;
+
+    public MessageLog(String clientId, String topic, int qos, boolean retain, int messageId,
+                      int bodySize, byte[] body, long timestamp, String time) {
+        this.clientId = clientId;
+        this.topic = topic;
+        this.qos = qos;
+        this.retain = retain;
+        this.messageId = messageId;
+        this.bodySize = bodySize;
+        this.body = body;
+        this.timestamp = timestamp;
+        this.time = time;
+    }
+
+    public String getTime() {
+        if (time == null && timestamp > 0) {
+            return DateUtil.format(new Date(timestamp), DatePattern.NORM_DATETIME_FORMAT);
+        }
+        return time;
+    }
+
+}
@@ -1,18 +1,13 @@
 package io.github.quickmsg.common.message;
 
-import io.github.quickmsg.common.channel.MqttChannel;
 import io.github.quickmsg.common.message.mqtt.PublishMessage;
-import io.github.quickmsg.common.utils.JacksonUtil;
-import io.github.quickmsg.common.utils.MqttMessageUtils;
-import io.netty.buffer.PooledByteBufAllocator;
-import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import lombok.Builder;
 import lombok.Data;
 
-import java.nio.charset.StandardCharsets;
-
 /**
+ * 离线会话中保存的消息
+ *
  * @author luxurong
  */
 
@@ -20,6 +15,9 @@ import java.nio.charset.StandardCharsets;
 @Builder
 public class SessionMessage {
 
+    /**
+     * 下发 qos, 已经按订阅 qos 降级
+     */
     private int qos;
 
     private String topic;
@@ -30,19 +28,28 @@ public class SessionMessage {
 
     private boolean retain;
 
-    public static SessionMessage of(String clientIdentifier, PublishMessage message) {
+    /**
+     * 过期时间戳(毫秒), 0 表示不过期
+     */
+    private long expireTime;
+
+    public static SessionMessage of(String clientIdentifier, MqttQoS mqttQoS, PublishMessage message, long expireTime) {
         return SessionMessage.builder()
                 .clientId(clientIdentifier)
                 .topic(message.getTopic())
-                .qos(message.getQos())
+                .qos(mqttQoS.value())
                 .retain(message.isRetain())
-                .body(JacksonUtil.dynamicJson(message.getBody()).getBytes(StandardCharsets.UTF_8))
+                .body(message.getBody() == null ? new byte[0] : message.getBody())
+                .expireTime(expireTime)
                 .build();
     }
 
+    public boolean isExpired(long now) {
+        return expireTime > 0 && expireTime <= now;
+    }
 
-    public  PublishMessage toPublishMessage() {
-        PublishMessage publishMessage =new PublishMessage();
+    public PublishMessage toPublishMessage() {
+        PublishMessage publishMessage = new PublishMessage();
         publishMessage.setBody(this.body);
         publishMessage.setTopic(this.topic);
         publishMessage.setRetain(this.retain);
@@ -1,15 +1,25 @@
 package io.github.quickmsg.common.message.mqtt;
 
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.log.Loggable;
+import io.github.quickmsg.common.log.MessageLog;
+import io.github.quickmsg.common.utils.MessageUtils;
+import io.netty.buffer.ByteBuf;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+import java.util.Date;
 import java.util.Optional;
 
 /**
  * @author luxurong
  */
 @Data
-public class ClusterMessage{
+@NoArgsConstructor
+public class ClusterMessage implements Loggable {
 
     private int qos;
 
@@ -19,6 +29,18 @@ public class ClusterMessage{
 
     private String connectTime;
 
+    /**
+     * 消息接收时间戳, {@link #getConnectTime()} 使用时才格式化
+     */
+    @JsonIgnore
+    private long timestamp;
+
+    /**
+     * 上一阶段结束的单调时间戳, 只在本节点使用
+     */
+    @JsonIgnore
+    private transient long stageNanos;
+
     private String clientId;
 
     private String topic;
@@ -28,6 +50,11 @@ public class ClusterMessage{
 
     private int channelId;
 
+    /**
+     * 借用 {@link PublishMessage} 的共享 payload, 只在本节点投递时使用, 不参与序列化
+     */
+    @JsonIgnore
+    private transient ByteBuf payload;
 
 
     public ClusterMessage(PublishMessage message) {
@@ -35,8 +62,15 @@ public class ClusterMessage{
         this.originTopic = message.getTopic();
         this.qos = message.getQos();
         this.retain = message.isRetain();
-        this.body = message.getBody();
-        this.connectTime = message.getTime();
+        this.payload = message.getPayload();
+        if (this.payload == null) {
+            this.body = message.getBody();
+        }
+        this.timestamp = message.getTimestamp();
+        this.stageNanos = message.getStageNanos();
+        if (this.timestamp == 0) {
+            this.connectTime = message.getTime();
+        }
         this.channelId= Optional.ofNullable(message.getMqttChannel()).map(MqttChannel::getId).orElse(0);
         this.clientId= message.getClientId();
     }
@@ -47,6 +81,37 @@ public class ClusterMessage{
         publishMessage.setQos(this.qos);
         publishMessage.setRetain(this.retain);
         publishMessage.setBody(this.body);
+        publishMessage.setPayload(this.payload);
         return  publishMessage;
     }
+
+    public String getConnectTime() {
+        if (this.connectTime == null && this.timestamp > 0) {
+            this.connectTime = DateUtil.format(new Date(this.timestamp), DatePattern.NORM_DATETIME_FORMAT);
+        }
+        return this.connectTime;
+    }
+
+    /**
+     * 日志只记录消息体长度, 不拷贝共享 payload
+     */
+    @Override
+    public Object toLog(boolean detail) {
+        ByteBuf buf = this.payload;
+        int bodySize = buf != null ? buf.readableBytes() : this.body == null ? 0 : this.body.length;
+        return new MessageLog(clientId, topic, qos, retain, 0, bodySize,
+                detail ? getBody() : null, timestamp, connectTime);
+    }
+
+    /**
+     * 获取消息体, 发往其他节点前从共享 payload 拷贝
+     *
+     * @return 字节数组
+     */
+    public byte[] getBody() {
+        if (this.body == null && this.payload != null) {
+            this.body = MessageUtils.readByteBuf(this.payload);
+        }
+        return this.body;
+    }
 }
@@ -35,6 +35,11 @@ public class ConnectMessage implements Message {
 
     private int keepalive;
 
+    /**
+     * MQTT5 Receive Maximum, 0 表示未设置
+     */
+    private int receiveMaximum;
+
     private boolean cleanSession;
 
     private String time;
@@ -77,6 +82,11 @@ public class ConnectMessage implements Message {
         }
         this.version = MqttVersion.fromProtocolNameAndLevel(variableHeader.name(), (byte) variableHeader.version());
         this.cleanSession = variableHeader.isCleanSession();
+        MqttProperties.MqttProperty<?> receiveMaximum = variableHeader.properties()
+                .getProperty(MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM.value());
+        if (receiveMaximum instanceof MqttProperties.IntegerProperty) {
+            this.receiveMaximum = ((MqttProperties.IntegerProperty) receiveMaximum).value();
+        }
         this.keepalive = variableHeader.keepAliveTimeSeconds();
         this.time = DateUtil.format(new Date(), DatePattern.NORM_DATETIME_FORMAT);
         this.mqttChannel = mqttChannel;
@@ -89,6 +99,7 @@ public class ConnectMessage implements Message {
         ConnectCache cache = new ConnectCache();
         cache.setAuth(this.auth);
         cache.setKeepalive(this.keepalive);
+        cache.setReceiveMaximum(this.receiveMaximum);
         cache.setVersion(this.version);
         cache.setWill(this.will);
         cache.setCleanSession(this.cleanSession);
@@ -0,0 +1,147 @@
+package io.github.quickmsg.common.message.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 预编码的 PUBLISH 报文, 一条消息下发给多个订阅者时共享
+ * <p>
+ * 固定头与 topic 按 qos 和协议版本各编码一次, qos0 订阅者直接共享同一个 buffer,
+ * qos1/qos2 订阅者只单独写入 2 字节的 packet id, 与共享的头部和 payload 组合成 composite buffer.
+ * 返回的 buffer 绕过 MqttEncoder 直接写出, 非线程安全, 只在一次下发流程中使用
+ *
+ * @author luxurong
+ */
+public class PublishFrame {
+
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    private final PublishMessage message;
+
+    private final byte[] topic;
+
+    private final ByteBuf payload;
+
+    /**
+     * 下标为 qos * 2 + (mqtt5 ? 1 : 0)
+     */
+    private final ByteBuf[] headers = new ByteBuf[6];
+
+    /**
+     * qos0 完整报文, 下标为 mqtt5 ? 1 : 0
+     */
+    private final ByteBuf[] frames = new ByteBuf[2];
+
+    public PublishFrame(PublishMessage message) {
+        this.message = message;
+        this.topic = message.getTopic().getBytes(StandardCharsets.UTF_8);
+        ByteBuf shared = message.getPayload();
+        if (shared != null) {
+            this.payload = shared.retainedDuplicate();
+        } else if (message.getBody() != null) {
+            this.payload = Unpooled.wrappedBuffer(message.getBody());
+        } else {
+            this.payload = Unpooled.EMPTY_BUFFER;
+        }
+    }
+
+    public PublishMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * 共享的 payload, 需要保存时自行 retain
+     *
+     * @return {@link ByteBuf}
+     */
+    public ByteBuf getPayload() {
+        return payload;
+    }
+
+    /**
+     * 获取下发报文, 由写出流程释放
+     *
+     * @param qoS       下发 qos
+     * @param messageId packet id, qos0 时忽略
+     * @param version   订阅者的协议版本
+     * @return {@link ByteBuf}
+     */
+    public ByteBuf encode(MqttQoS qoS, int messageId, MqttVersion version) {
+        boolean mqtt5 = version == MqttVersion.MQTT_5;
+        if (qoS == MqttQoS.AT_MOST_ONCE) {
+            int index = mqtt5 ? 1 : 0;
+            ByteBuf frame = frames[index];
+            if (frame == null) {
+                frame = ALLOCATOR.compositeBuffer(2)
+                        .addComponents(true, header(qoS, mqtt5).retainedDuplicate(), payload.retainedDuplicate());
+                frames[index] = frame;
+            }
+            return frame.retainedDuplicate();
+        }
+        ByteBuf packetId = ALLOCATOR.buffer(mqtt5 ? 3 : 2).writeShort(messageId);
+        if (mqtt5) {
+            /* 空 properties */
+            packetId.writeByte(0);
+        }
+        return ALLOCATOR.compositeBuffer(3)
+                .addComponents(true, header(qoS, mqtt5).retainedDuplicate(), packetId, payload.retainedDuplicate());
+    }
+
+    private ByteBuf header(MqttQoS qoS, boolean mqtt5) {
+        int index = qoS.value() << 1 | (mqtt5 ? 1 : 0);
+        ByteBuf header = headers[index];
+        if (header == null) {
+            boolean qos0 = qoS == MqttQoS.AT_MOST_ONCE;
+            int variableHeaderLength = 2 + topic.length + (qos0 ? 0 : 2) + (mqtt5 ? 1 : 0);
+            int remainingLength = variableHeaderLength + payload.readableBytes();
+            header = ALLOCATOR.buffer(7 + topic.length);
+            header.writeByte(MqttMessageType.PUBLISH.value() << 4 | qoS.value() << 1 | (message.isRetain() ? 1 : 0));
+            writeVariableLength(header, remainingLength);
+            header.writeShort(topic.length);
+            header.writeBytes(topic);
+            if (qos0 && mqtt5) {
+                header.writeByte(0);
+            }
+            headers[index] = header;
+        }
+        return header;
+    }
+
+    private static void writeVariableLength(ByteBuf buf, int length) {
+        do {
+            int digit = length & 0x7F;
+            length >>>= 7;
+            if (length > 0) {
+                digit |= 0x80;
+            }
+            buf.writeByte(digit);
+        } while (length > 0);
+    }
+
+    /**
+     * 释放共享的头部与 payload, 已经交给写出流程的报文不受影响
+     */
+    public void release() {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i] != null) {
+                headers[i].release();
+                headers[i] = null;
+            }
+        }
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i] != null) {
+                frames[i].release();
+                frames[i] = null;
+            }
+        }
+        payload.release();
+    }
+
+}
@@ -4,10 +4,13 @@ import cn.hutool.core.date.DatePattern;
 import cn.hutool.core.date.DateUtil;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.log.Loggable;
+import io.github.quickmsg.common.log.MessageLog;
 import io.github.quickmsg.common.message.Message;
 import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.common.utils.MessageUtils;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
@@ -16,17 +19,16 @@ import lombok.Data;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
-import java.util.Optional;
 
 /**
  * @author luxurong
  */
 @Data
-public class PublishMessage implements Message {
+public class PublishMessage implements Message, Loggable {
 
-    private int messageId;
+    private static final String EVENT = "publish";
 
-    private String event = "publish";
+    private int messageId;
 
     private String topic;
 
@@ -36,38 +38,141 @@ public class PublishMessage implements Message {
 
     private byte[] body;
 
+    /**
+     * 接收时间戳, {@link #getTime()} 使用时才格式化
+     */
+    @JsonIgnore
+    private long timestamp;
+
     private String time;
 
+    /**
+     * 上一阶段结束的单调时间戳, 开启延迟统计时使用, 见 {@link io.github.quickmsg.common.metric.LatencyRecorder}
+     */
+    @JsonIgnore
+    private long stageNanos;
+
+    /**
+     * 为空时取 {@link #mqttChannel} 的 clientId
+     */
     private String clientId;
 
     @JsonIgnore
     private MqttChannel mqttChannel;
 
+    /**
+     * zero copy 模式下共享的入站 payload, 由接收流程持有一个引用计数
+     */
+    @JsonIgnore
+    private transient ByteBuf payload;
+
 
     public MqttPublishMessage buildMqttMessage(MqttQoS qoS, int messageId) {
         return MqttMessageUtils.buildPub(false, qoS, this.retain, messageId,
-                this.getTopic(), PooledByteBufAllocator.DEFAULT.buffer().writeBytes(this.body));
+                this.getTopic(), this.payloadBuffer());
     }
 
     public MqttPublishMessage buildMqttMessage(MqttQoS qoS, int messageId,boolean isDup) {
         return MqttMessageUtils.buildPub(isDup, qoS, this.retain, messageId, this.getTopic(),
-                PooledByteBufAllocator.DEFAULT.buffer().writeBytes(this.body));
+                this.payloadBuffer());
     }
 
     public PublishMessage() {
     }
 
     public PublishMessage(Object message, MqttChannel mqttChannel) {
+        this(message, mqttChannel, false);
+    }
+
+    public PublishMessage(Object message, MqttChannel mqttChannel, boolean zeroCopy) {
         MqttPublishMessage mqttPublishMessage = (MqttPublishMessage) message;
         this.mqttChannel = mqttChannel;
         this.messageId = mqttPublishMessage.variableHeader().packetId();
         this.topic = mqttPublishMessage.variableHeader().topicName();
         this.qos = mqttPublishMessage.fixedHeader().qosLevel().value();
         this.retain = mqttPublishMessage.fixedHeader().isRetain();
-        this.body = MessageUtils.readByteBuf(mqttPublishMessage.payload());
-        this.time = DateUtil.format(new Date(), DatePattern.NORM_DATETIME_FORMAT);
-        this.clientId = Optional.ofNullable(mqttChannel)
-                    .map(MqttChannel::getClientId).orElse(null);
+        if (zeroCopy) {
+            this.payload = mqttPublishMessage.payload().retain();
+        } else {
+            this.body = MessageUtils.readByteBuf(mqttPublishMessage.payload());
+        }
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    @Override
+    public String getEvent() {
+        return EVENT;
+    }
+
+    public String getTime() {
+        if (this.time == null && this.timestamp > 0) {
+            this.time = DateUtil.format(new Date(this.timestamp), DatePattern.NORM_DATETIME_FORMAT);
+        }
+        return this.time;
+    }
+
+    public String getClientId() {
+        if (this.clientId == null && this.mqttChannel != null) {
+            return this.mqttChannel.getClientId();
+        }
+        return this.clientId;
+    }
+
+    /**
+     * 获取消息体, zero copy 模式下首次调用时才从 payload 拷贝
+     *
+     * @return 字节数组
+     */
+    public byte[] getBody() {
+        if (this.body == null && this.payload != null) {
+            this.body = MessageUtils.readByteBuf(this.payload);
+        }
+        return this.body;
+    }
+
+    /**
+     * 日志只记录消息体长度, 不拷贝共享 payload
+     */
+    @Override
+    public Object toLog(boolean detail) {
+        ByteBuf buf = this.payload;
+        int bodySize = buf != null ? buf.readableBytes() : this.body == null ? 0 : this.body.length;
+        return new MessageLog(getClientId(), topic, qos, retain, messageId, bodySize,
+                detail ? getBody() : null, timestamp, time);
+    }
+
+    /**
+     * 下发用的 payload, 共享 payload 时返回 retainedDuplicate, 由写出流程释放
+     *
+     * @return {@link ByteBuf}
+     */
+    private ByteBuf payloadBuffer() {
+        if (this.payload != null) {
+            return this.payload.retainedDuplicate();
+        }
+        return PooledByteBufAllocator.DEFAULT.buffer().writeBytes(this.body);
+    }
+
+    /**
+     * 拷贝出消息体并释放共享 payload, 用于需要跨越接收流程保存的消息
+     *
+     * @return {@link PublishMessage}
+     */
+    public PublishMessage detach() {
+        this.getBody();
+        this.release();
+        return this;
+    }
+
+    /**
+     * 释放共享 payload, 可重复调用
+     */
+    public void release() {
+        ByteBuf buf = this.payload;
+        if (buf != null) {
+            this.payload = null;
+            buf.release();
+        }
     }
 
 }
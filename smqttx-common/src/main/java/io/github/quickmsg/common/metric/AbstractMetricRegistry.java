@@ -1,23 +1,30 @@
 package io.github.quickmsg.common.metric;
 
-import java.util.HashMap;
+import io.github.quickmsg.common.metric.local.EmptyMetricCounter;
+
 import java.util.List;
-import java.util.Map;
 
 /**
+ * 按 {@link CounterType} 序号索引的计数器表, 查找只是一次数组访问
+ *
  * @author luxurong
  */
 public abstract class AbstractMetricRegistry implements MetricRegistry {
 
 
-    private final Map<CounterType, MetricCounter> metricCounterMap = new HashMap<>();
+    private final MetricCounter[] metricCounters = new MetricCounter[CounterType.values().length];
 
     protected AbstractMetricRegistry(List<MetricCounter> metricCounters) {
-        metricCounters.forEach(metricCounter -> metricCounterMap.put(metricCounter.getCounterType(), metricCounter));
+        metricCounters.forEach(metricCounter -> this.metricCounters[metricCounter.getCounterType().ordinal()] = metricCounter);
+        for (int i = 0; i < this.metricCounters.length; i++) {
+            if (this.metricCounters[i] == null) {
+                this.metricCounters[i] = EmptyMetricCounter.instance();
+            }
+        }
     }
 
     @Override
     public MetricCounter getMetricCounter(CounterType counterType) {
-        return metricCounterMap.get(counterType);
+        return metricCounters[counterType.ordinal()];
     }
 }
@@ -1,18 +1,16 @@
 package io.github.quickmsg.common.metric;
 
-import io.github.quickmsg.common.metric.CounterType;
-import io.github.quickmsg.common.metric.MetricBean;
-import io.github.quickmsg.common.metric.WholeCounter;
-import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
+ * 只增不减的事件计数
+ *
  * @author luxurong
  */
-public class EventCounter  extends WholeCounter {
+public class EventCounter extends WholeCounter {
 
-    private  CounterType counterType;
-
-    private Counter counter;
+    private final CounterType counterType;
 
     public EventCounter(MetricBean metricBean, CounterType counterType) {
         super(metricBean);
@@ -21,15 +19,10 @@ public class EventCounter  extends WholeCounter {
     }
 
     @Override
-    public void initCount() {
-        this.counter =
-                getMetricBean()
-                        .getMeterRegistry().counter(getCounterType().getDesc(), getMetricBean().getTags());
-    }
-
-    @Override
-    public void callMeter(long count) {
-        counter.increment();
+    protected void bindMeter(MeterRegistry meterRegistry) {
+        FunctionCounter.builder(counterType.getDesc(), this, MetricCounter::getCounter)
+                .tags(getMetricBean().getTags())
+                .register(meterRegistry);
     }
 
     @Override
@@ -0,0 +1,170 @@
+package io.github.quickmsg.common.metric;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 发布流程各阶段的延迟统计
+ * <p>
+ * 消息上带着上一阶段结束的单调时间戳({@link System#nanoTime()}), 每个阶段结束时记录差值并更新时间戳.
+ * 未开启时 {@link #record(LatencyStage, long)} 不读时钟, 返回 0
+ *
+ * @author luxurong
+ */
+public class LatencyRecorder {
+
+    public static final LatencyRecorder DISABLED = new LatencyRecorder(false);
+
+    private static final String LATENCY = "smqtt.latency";
+
+    private static final String LATENCY_MAX = "smqtt.latency.max";
+
+    private static final String LATENCY_COUNT = "smqtt.latency.count";
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * 一次抓取内的多个指标共用快照
+     */
+    private static final long SNAPSHOT_TTL = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+
+    private final LongSupplier clock;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[LatencyStage.values().length];
+
+    private final LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[LatencyStage.values().length];
+
+    private long snapshotTime;
+
+    public LatencyRecorder(boolean enabled) {
+        this(enabled, WINDOW, System::nanoTime);
+    }
+
+    LatencyRecorder(boolean enabled, long window, LongSupplier clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram(window, now);
+        }
+        this.snapshotTime = now - SNAPSHOT_TTL;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 当前单调时间戳, 未开启时返回 0
+     */
+    public long now() {
+        return enabled ? clock.getAsLong() : 0;
+    }
+
+    /**
+     * 记录阶段延迟
+     *
+     * @param stage      {@link LatencyStage}
+     * @param startNanos 阶段开始的时间戳, 为 0 时只返回当前时间
+     * @return 当前时间戳, 作为下一阶段的开始, 未开启时返回 0
+     */
+    public long record(LatencyStage stage, long startNanos) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        if (startNanos != 0) {
+            histograms[stage.ordinal()].record(now - startNanos);
+        }
+        return now;
+    }
+
+    /**
+     * 最近窗口内的快照
+     *
+     * @param stage {@link LatencyStage}
+     * @return {@link LatencyHistogram.Snapshot}
+     */
+    public synchronized LatencyHistogram.Snapshot snapshot(LatencyStage stage) {
+        long now = clock.getAsLong();
+        if (now - snapshotTime >= SNAPSHOT_TTL) {
+            for (int i = 0; i < histograms.length; i++) {
+                snapshots[i] = histograms[i].snapshot(now);
+            }
+            snapshotTime = now;
+        }
+        return snapshots[stage.ordinal()];
+    }
+
+    /**
+     * 各阶段的次数与百分位, 单位微秒
+     *
+     * @return stage -> 统计
+     */
+    public Map<String, Object> getLatencyMetric() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        if (!enabled) {
+            return metrics;
+        }
+        for (LatencyStage stage : LatencyStage.values()) {
+            LatencyHistogram.Snapshot snapshot = snapshot(stage);
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", snapshot.getCount());
+            values.put("mean", TimeUnit.NANOSECONDS.toMicros(snapshot.getMean()));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                values.put(PERCENTILE_NAMES[i], TimeUnit.NANOSECONDS.toMicros(snapshot.getValueAtPercentile(PERCENTILES[i])));
+            }
+            values.put("max", TimeUnit.NANOSECONDS.toMicros(snapshot.getMax()));
+            metrics.put(stage.getDesc(), values);
+        }
+        return metrics;
+    }
+
+    /**
+     * 注册各阶段的百分位, 最大值与累计次数指标
+     *
+     * @param metricManager {@link MetricManager}
+     */
+    public void bindMetric(MetricManager metricManager) {
+        MetricBean metricBean = metricManager.getMetricBean();
+        MeterRegistry meterRegistry = metricBean.getMeterRegistry();
+        if (!enabled || meterRegistry == null) {
+            return;
+        }
+        for (LatencyStage stage : LatencyStage.values()) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                double percentile = PERCENTILES[i];
+                Gauge.builder(LATENCY, this, recorder -> seconds(recorder.snapshot(stage).getValueAtPercentile(percentile)))
+                        .tags(metricBean.getTags().and("stage", stage.getDesc(), "quantile", QUANTILES[i]))
+                        .baseUnit("seconds")
+                        .register(meterRegistry);
+            }
+            Gauge.builder(LATENCY_MAX, this, recorder -> seconds(recorder.snapshot(stage).getMax()))
+                    .tags(metricBean.getTags().and("stage", stage.getDesc()))
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            FunctionCounter.builder(LATENCY_COUNT, histograms[stage.ordinal()], LatencyHistogram::getTotalCount)
+                    .tags(metricBean.getTags().and("stage", stage.getDesc()))
+                    .register(meterRegistry);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+}
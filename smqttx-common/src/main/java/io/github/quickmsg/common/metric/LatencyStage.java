@@ -0,0 +1,43 @@
+package io.github.quickmsg.common.metric;
+
+import lombok.Getter;
+
+/**
+ * 发布流程的延迟统计阶段
+ *
+ * @author luxurong
+ */
+@Getter
+public enum LatencyStage {
+
+    /**
+     * 读到数据到解码出报文
+     */
+    DECODE("decode"),
+    /**
+     * 解码后到协议开始处理
+     */
+    DISPATCH("dispatch"),
+    /**
+     * 发布权限校验
+     */
+    ACL("acl"),
+    /**
+     * 校验通过到批次发往其他节点
+     */
+    CLUSTER_SEND("cluster_send"),
+    /**
+     * 收到其他节点的批次到开始投递
+     */
+    REMOTE_RECEIVE("remote_receive"),
+    /**
+     * 写给本节点的全部订阅者
+     */
+    SUBSCRIBER_WRITE("subscriber_write");
+
+    private final String desc;
+
+    LatencyStage(String desc) {
+        this.desc = desc;
+    }
+}
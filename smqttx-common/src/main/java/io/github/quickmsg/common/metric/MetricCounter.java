@@ -1,6 +1,8 @@
 package io.github.quickmsg.common.metric;
 
 /**
+ * 计数器, 自增只写本地分段计数, 汇总与上报在读取时进行
+ *
  * @author luxurong
  */
 public interface MetricCounter {
@@ -13,14 +15,8 @@ public interface MetricCounter {
 
     void reset();
 
-    void callMeter(long counter);
-
     MetricBean getMetricBean();
 
     CounterType getCounterType();
 
-
-
-
-
 }
@@ -32,6 +32,15 @@ public interface MetricManager {
 
     BootstrapConfig.MeterConfig getMeterConfig();
 
+    /**
+     * 发布流程延迟统计, 默认关闭
+     *
+     * @return {@link LatencyRecorder}
+     */
+    default LatencyRecorder getLatencyRecorder() {
+        return LatencyRecorder.DISABLED;
+    }
+
     default Map<String, Object> getJvmMetric() {
         Map<String, Object> metrics = new HashMap<>();
         Properties props = System.getProperties();
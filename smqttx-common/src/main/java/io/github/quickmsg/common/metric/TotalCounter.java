@@ -1,10 +1,11 @@
 package io.github.quickmsg.common.metric;
 
-import io.github.quickmsg.common.metric.CounterType;
-import io.github.quickmsg.common.metric.MetricBean;
-import io.github.quickmsg.common.metric.WholeCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
+ * 可增可减的当前总数, 如连接数与订阅数
+ *
  * @author luxurong
  */
 public class TotalCounter extends WholeCounter {
@@ -17,10 +18,11 @@ public class TotalCounter extends WholeCounter {
         initCount();
     }
 
-
     @Override
-    public void callMeter(long counter) {
-        getMetricBean().getMeterRegistry().gauge(getCounterType().getDesc(), counter);
+    protected void bindMeter(MeterRegistry meterRegistry) {
+        Gauge.builder(counterType.getDesc(), this, MetricCounter::getCounter)
+                .tags(getMetricBean().getTags())
+                .register(meterRegistry);
     }
 
     @Override
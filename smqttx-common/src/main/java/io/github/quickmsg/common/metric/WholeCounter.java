@@ -1,6 +1,9 @@
 package io.github.quickmsg.common.metric;
 
-import java.util.concurrent.atomic.AtomicLong;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author luxurong
@@ -8,7 +11,7 @@ import java.util.concurrent.atomic.AtomicLong;
 public abstract class WholeCounter implements MetricCounter {
 
 
-    private final AtomicLong count = new AtomicLong();
+    private final LongAdder count = new LongAdder();
 
     private final MetricBean metricBean;
 
@@ -16,10 +19,22 @@ public abstract class WholeCounter implements MetricCounter {
         this.metricBean = metricBean;
     }
 
+    /**
+     * 注册到 {@link MeterRegistry}, 没有 registry 时只在本地计数
+     */
     public void initCount() {
-        getMetricBean().getMeterRegistry().gauge(getCounterType().getDesc(), count);
+        Optional.ofNullable(metricBean)
+                .map(MetricBean::getMeterRegistry)
+                .ifPresent(this::bindMeter);
     }
 
+    /**
+     * 注册读取 {@link #getCounter()} 的指标, 抓取时才汇总
+     *
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    protected abstract void bindMeter(MeterRegistry meterRegistry);
+
     @Override
     public MetricBean getMetricBean() {
         return this.metricBean;
@@ -27,23 +42,23 @@ public abstract class WholeCounter implements MetricCounter {
 
     @Override
     public void increment() {
-        callMeter(count.incrementAndGet());
+        count.increment();
     }
 
     @Override
     public void decrement() {
-        callMeter(count.decrementAndGet());
+        count.decrement();
     }
 
     @Override
     public void reset() {
-        count.set(0);
+        count.reset();
     }
 
 
     @Override
     public long getCounter() {
-        return count.get();
+        return count.sum();
     }
 
 
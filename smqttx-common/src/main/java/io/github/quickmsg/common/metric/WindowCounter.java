@@ -53,7 +53,7 @@ public abstract class WindowCounter implements MetricCounter, Runnable {
     @Override
     public void increment() {
         sumCountAdder.increment();
-        callMeter(sumCountAdder.sum());
+        windowCountAdder.increment();
     }
 
     @Override
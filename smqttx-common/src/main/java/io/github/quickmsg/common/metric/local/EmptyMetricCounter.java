@@ -3,6 +3,7 @@ package io.github.quickmsg.common.metric.local;
 import io.github.quickmsg.common.metric.CounterType;
 import io.github.quickmsg.common.metric.MetricBean;
 import io.github.quickmsg.common.metric.WholeCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * @author luxurong
@@ -24,7 +25,7 @@ public class EmptyMetricCounter extends WholeCounter {
     }
 
     @Override
-    public void callMeter(long counter) {
+    protected void bindMeter(MeterRegistry meterRegistry) {
 
     }
 
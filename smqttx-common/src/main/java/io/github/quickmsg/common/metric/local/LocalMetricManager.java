@@ -3,33 +3,31 @@ package io.github.quickmsg.common.metric.local;
 import io.github.quickmsg.common.config.BootstrapConfig;
 import io.github.quickmsg.common.metric.*;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 /**
+ * 未开启 meter 时只在本地计数, 不注册任何指标
+ *
  * @author luxurong
  */
 public class LocalMetricManager implements MetricManager {
 
+    private final MetricBean metricBean = new LocalMetricBean();
+
+    private final MetricRegistry metricRegistry = new AbstractMetricRegistry(createMetricRegistry(metricBean)) {
+    };
+
     public LocalMetricManager() {
     }
 
 
     @Override
     public MetricRegistry getMetricRegistry() {
-        return new AbstractMetricRegistry(createMetricRegistry(getMetricBean())) {
-            @Override
-            public MetricCounter getMetricCounter(CounterType counterType) {
-                return EmptyMetricCounter.instance();
-            }
-        };
+        return metricRegistry;
     }
 
 
     @Override
     public MetricBean getMetricBean() {
-        return new LocalMetricBean();
+        return metricBean;
     }
 
     @Override
@@ -37,8 +35,4 @@ public class LocalMetricManager implements MetricManager {
         return null;
     }
 
-    @Override
-    public List<MetricCounter> createMetricRegistry(MetricBean metricBean) {
-        return Collections.emptyList();
-    }
 }
@@ -46,4 +46,14 @@ public interface Protocol<T extends Message> {
     Class<T> getClassType();
 
 
+    /**
+     * 是否包含阻塞操作, 非阻塞协议可以直接在 IO 线程处理
+     *
+     * @return boolean
+     */
+    default boolean isBlocking() {
+        return true;
+    }
+
+
 }
@@ -0,0 +1,486 @@
+package io.github.quickmsg.common.retry;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个连接的待确认消息, 以 messageId 为 key 的开放寻址表
+ * <p>
+ * 每条消息只占用几个数组槽位: id、到期 tick、状态、topic 与 payload 引用,
+ * topic 与 payload 和其他订阅者共享. 窗口大小对应 MQTT5 的 Receive Maximum, 窗口已满时消息按顺序排队,
+ * 收到确认空出位置后再分配 messageId 下发, 排队超出上限时丢弃最早的消息
+ * <p>
+ * 下发的 qos2 消息收到 PUBREC 后释放 payload, 转为重发 PUBREL 直到收到 PUBCOMP.
+ * 接收方向使用单独的窗口, 只记录等待 PUBREL 的 messageId, 到期后直接移除
+ *
+ * @author luxurong
+ */
+public class InflightWindow {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final int RETAIN = 1;
+
+    private static final int QOS_SHIFT = 1;
+
+    private static final int QOS_MASK = 0x03;
+
+    /**
+     * 已收到 PUBREC, 等待 PUBCOMP
+     */
+    private static final int REL = 1 << 3;
+
+    /**
+     * 接收方向, 等待 PUBREL
+     */
+    private static final int RECEIVED = 1 << 4;
+
+    private static final int COUNT_SHIFT = 5;
+
+    private final MqttChannel mqttChannel;
+
+    private final int limit;
+
+    private final int maxParked;
+
+    /**
+     * 窗口已满时排队等待下发的消息
+     */
+    private final ArrayDeque<Parked> parked = new ArrayDeque<>();
+
+    private int size;
+
+    /**
+     * 登记顺序, 用于按下发顺序取出未确认消息
+     */
+    private int sequence;
+
+    /**
+     * messageId, 0 表示空槽
+     */
+    private int[] ids;
+
+    private int[] deadlines;
+
+    private int[] sequences;
+
+    /**
+     * bit0 retain, bit1-2 qos, bit3 REL, bit4 RECEIVED, 其余为已重试次数
+     */
+    private int[] states;
+
+    private String[] topics;
+
+    private ByteBuf[] payloads;
+
+    /**
+     * 是否已在时间轮中, 由 {@link TimeAckManager} 维护
+     */
+    boolean scheduled;
+
+    /**
+     * 时间轮中的到期 tick
+     */
+    int nextTick;
+
+    public InflightWindow(MqttChannel mqttChannel, int limit) {
+        this(mqttChannel, limit, 0);
+    }
+
+    /**
+     * @param mqttChannel {@link MqttChannel}
+     * @param limit       最大待确认消息数
+     * @param maxParked   窗口已满时最多排队的消息数
+     */
+    public InflightWindow(MqttChannel mqttChannel, int limit, int maxParked) {
+        this.mqttChannel = mqttChannel;
+        this.limit = limit;
+        this.maxParked = maxParked;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public MqttChannel getMqttChannel() {
+        return mqttChannel;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 剩余可登记的消息数, 扣除排队中的消息
+     *
+     * @return 剩余数量
+     */
+    public synchronized int remaining() {
+        return limit - size - parked.size();
+    }
+
+    public synchronized int parkedSize() {
+        return parked.size();
+    }
+
+    /**
+     * 窗口已满或已有排队的消息, 新消息需要排队以保证顺序
+     *
+     * @return boolean
+     */
+    synchronized boolean isBlocked() {
+        return size >= limit || !parked.isEmpty();
+    }
+
+    /**
+     * 排队等待下发, 超出上限时丢弃最早的消息
+     *
+     * @param mqttQoS qos
+     * @param retain  retain
+     * @param topic   topic
+     * @param payload payload, retain 一次
+     * @return 丢弃的消息数
+     */
+    synchronized int park(MqttQoS mqttQoS, boolean retain, String topic, ByteBuf payload) {
+        parked.offer(new Parked(mqttQoS, retain, topic, payload.retain()));
+        int dropped = 0;
+        while (parked.size() > maxParked) {
+            parked.poll().payload.release();
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * 窗口有空位时按顺序下发排队的消息, 跳过仍在等待确认的 messageId
+     *
+     * @param deadline 到期 tick
+     * @param messages 需要下发的报文
+     * @return 是否有消息下发
+     */
+    synchronized boolean release(int deadline, List<MqttMessage> messages) {
+        boolean released = false;
+        Parked next;
+        while (size < limit && (next = parked.poll()) != null) {
+            int messageId = mqttChannel.generateMessageId();
+            while (indexOf(messageId) >= 0) {
+                messageId = mqttChannel.generateMessageId();
+            }
+            put(messageId, next.mqttQoS, next.retain, next.topic, next.payload, deadline);
+            messages.add(MqttMessageUtils.buildPub(false, next.mqttQoS, next.retain, messageId, next.topic,
+                    next.payload.retainedDuplicate()));
+            next.payload.release();
+            released = true;
+        }
+        return released;
+    }
+
+    /**
+     * 登记待确认消息, messageId 仍在等待确认时拒绝登记
+     *
+     * @param messageId messageId
+     * @param mqttQoS   qos
+     * @param retain    retain
+     * @param topic     topic
+     * @param payload   payload, 登记成功时 retain 一次
+     * @param deadline  到期 tick
+     * @return 窗口已满或 messageId 已存在时返回 false
+     */
+    synchronized boolean put(int messageId, MqttQoS mqttQoS, boolean retain, String topic, ByteBuf payload, int deadline) {
+        if (size >= limit || indexOf(messageId) >= 0) {
+            return false;
+        }
+        if ((size + 1) << 1 > ids.length) {
+            resize(ids.length << 1);
+        }
+        int index = ~indexOf(messageId);
+        size++;
+        ids[index] = messageId;
+        deadlines[index] = deadline;
+        sequences[index] = sequence++;
+        states[index] = mqttQoS.value() << QOS_SHIFT | (retain ? RETAIN : 0);
+        topics[index] = topic;
+        payloads[index] = payload.retain();
+        return true;
+    }
+
+    /**
+     * 收到 PUBREC, 释放 payload 并改为等待 PUBCOMP
+     *
+     * @param messageId messageId
+     * @param deadline  PUBREL 重发的到期 tick
+     * @return 是否存在
+     */
+    synchronized boolean rel(int messageId, int deadline) {
+        int index = indexOf(messageId);
+        if (index < 0) {
+            return false;
+        }
+        releasePayload(index);
+        topics[index] = null;
+        deadlines[index] = deadline;
+        states[index] = MqttQoS.EXACTLY_ONCE.value() << QOS_SHIFT | REL;
+        return true;
+    }
+
+    /**
+     * 接收方向登记等待 PUBREL 的 messageId
+     *
+     * @param messageId messageId
+     * @param deadline  到期 tick
+     * @return 窗口已满时返回 false
+     */
+    synchronized boolean await(int messageId, int deadline) {
+        if (indexOf(messageId) >= 0) {
+            return true;
+        }
+        if (size >= limit) {
+            return false;
+        }
+        if ((size + 1) << 1 > ids.length) {
+            resize(ids.length << 1);
+        }
+        int index = ~indexOf(messageId);
+        size++;
+        ids[index] = messageId;
+        deadlines[index] = deadline;
+        sequences[index] = sequence++;
+        states[index] = RECEIVED;
+        return true;
+    }
+
+    /**
+     * 是否存在
+     *
+     * @param messageId messageId
+     * @return boolean
+     */
+    synchronized boolean contains(int messageId) {
+        return indexOf(messageId) >= 0;
+    }
+
+    /**
+     * 确认后移除
+     *
+     * @param messageId messageId
+     * @return 是否存在
+     */
+    synchronized boolean remove(int messageId) {
+        int index = indexOf(messageId);
+        if (index < 0) {
+            return false;
+        }
+        releasePayload(index);
+        delete(index);
+        return true;
+    }
+
+    /**
+     * 释放所有待确认和排队的消息
+     */
+    synchronized void clear() {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0) {
+                releasePayload(i);
+            }
+        }
+        size = 0;
+        allocate(INITIAL_CAPACITY);
+        Parked next;
+        while ((next = parked.poll()) != null) {
+            next.payload.release();
+        }
+    }
+
+    /**
+     * 未收到 PUBACK/PUBREC 的下发消息按登记顺序排列, 之后是排队中的消息, 用于断开时保存到离线会话
+     *
+     * @return 拷贝出消息体的 {@link PublishMessage}
+     */
+    synchronized List<PublishMessage> unacknowledged() {
+        List<Integer> indexes = new ArrayList<>(size);
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0 && payloads[i] != null) {
+                indexes.add(i);
+            }
+        }
+        indexes.sort((a, b) -> sequences[a] - sequences[b]);
+        List<PublishMessage> messages = new ArrayList<>(indexes.size() + parked.size());
+        for (int index : indexes) {
+            messages.add(publishMessage(topics[index], states[index] >>> QOS_SHIFT & QOS_MASK,
+                    (states[index] & RETAIN) != 0, payloads[index]));
+        }
+        for (Parked next : parked) {
+            messages.add(publishMessage(next.topic, next.mqttQoS.value(), next.retain, next.payload));
+        }
+        return messages;
+    }
+
+    private static PublishMessage publishMessage(String topic, int qos, boolean retain, ByteBuf payload) {
+        PublishMessage message = new PublishMessage();
+        message.setTopic(topic);
+        message.setQos(qos);
+        message.setRetain(retain);
+        message.setBody(ByteBufUtil.getBytes(payload));
+        return message;
+    }
+
+    /**
+     * 处理到期消息: 未达到重试次数的加入 resends 并设置新的到期 tick, 否则移除. 接收方向的记录到期直接移除
+     *
+     * @param tick        当前 tick
+     * @param periodTicks 重试间隔
+     * @param retrySize   最大重试次数
+     * @param resends     需要重发的报文
+     * @return 剩余消息中最早的到期 tick, 窗口为空时清除调度标记并返回当前 tick
+     */
+    synchronized int sweep(int tick, int periodTicks, int retrySize, List<MqttMessage> resends) {
+        /* 先取出到期的 messageId, 后移删除会移动槽位, 边遍历边删除可能重复处理同一条消息 */
+        int[] due = new int[size];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0 && deadlines[i] - tick <= 0) {
+                due[count++] = ids[i];
+            }
+        }
+        for (int n = 0; n < count; n++) {
+            int i = indexOf(due[n]);
+            int state = states[i];
+            if ((state & RECEIVED) != 0 || state >>> COUNT_SHIFT >= retrySize) {
+                releasePayload(i);
+                delete(i);
+                continue;
+            }
+            states[i] = state + (1 << COUNT_SHIFT);
+            deadlines[i] = tick + periodTicks;
+            if ((state & REL) != 0) {
+                resends.add(MqttMessageUtils.buildPublishRel(ids[i]));
+            } else {
+                resends.add(MqttMessageUtils.buildPub(true, MqttQoS.valueOf(state >>> QOS_SHIFT & QOS_MASK),
+                        (state & RETAIN) != 0, ids[i], topics[i], payloads[i].retainedDuplicate()));
+            }
+        }
+        if (size == 0) {
+            scheduled = false;
+            return tick;
+        }
+        int next = tick;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0 && (next == tick || deadlines[i] - next < 0)) {
+                next = deadlines[i];
+            }
+        }
+        return next;
+    }
+
+    private void releasePayload(int index) {
+        ByteBuf payload = payloads[index];
+        if (payload != null) {
+            payloads[index] = null;
+            payload.release();
+        }
+    }
+
+    private int slot(int messageId) {
+        return (messageId * 0x9E3779B9) & (ids.length - 1);
+    }
+
+    /**
+     * @return 存在时返回下标, 否则返回 ~空槽下标
+     */
+    private int indexOf(int messageId) {
+        int mask = ids.length - 1;
+        for (int i = slot(messageId); ; i = (i + 1) & mask) {
+            if (ids[i] == messageId) {
+                return i;
+            }
+            if (ids[i] == 0) {
+                return ~i;
+            }
+        }
+    }
+
+    /**
+     * 线性探测的后移删除, 不留墓碑
+     */
+    private void delete(int index) {
+        int mask = ids.length - 1;
+        int hole = index;
+        for (int i = (index + 1) & mask; ids[i] != 0; i = (i + 1) & mask) {
+            int home = slot(ids[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+        ids[hole] = 0;
+        topics[hole] = null;
+        payloads[hole] = null;
+        size--;
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        deadlines[to] = deadlines[from];
+        sequences[to] = sequences[from];
+        states[to] = states[from];
+        topics[to] = topics[from];
+        payloads[to] = payloads[from];
+    }
+
+    private void resize(int capacity) {
+        int[] oldIds = ids;
+        int[] oldDeadlines = deadlines;
+        int[] oldSequences = sequences;
+        int[] oldStates = states;
+        String[] oldTopics = topics;
+        ByteBuf[] oldPayloads = payloads;
+        allocate(capacity);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != 0) {
+                int index = ~indexOf(oldIds[i]);
+                ids[index] = oldIds[i];
+                deadlines[index] = oldDeadlines[i];
+                sequences[index] = oldSequences[i];
+                states[index] = oldStates[i];
+                topics[index] = oldTopics[i];
+                payloads[index] = oldPayloads[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        deadlines = new int[capacity];
+        sequences = new int[capacity];
+        states = new int[capacity];
+        topics = new String[capacity];
+        payloads = new ByteBuf[capacity];
+    }
+
+
+    private static class Parked {
+
+        private final MqttQoS mqttQoS;
+
+        private final boolean retain;
+
+        private final String topic;
+
+        private final ByteBuf payload;
+
+        private Parked(MqttQoS mqttQoS, boolean retain, String topic, ByteBuf payload) {
+            this.mqttQoS = mqttQoS;
+            this.retain = retain;
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+
+}
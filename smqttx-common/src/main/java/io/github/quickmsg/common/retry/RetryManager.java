@@ -1,7 +1,11 @@
 package io.github.quickmsg.common.retry;
 
 import io.github.quickmsg.common.channel.MqttChannel;
-import io.github.quickmsg.common.message.mqtt.RetryMessage;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+import java.util.List;
 
 /**
  * @author luxurong
@@ -9,10 +13,65 @@ import io.github.quickmsg.common.message.mqtt.RetryMessage;
 public interface RetryManager {
 
 
-   void doRetry(MqttChannel mqttChannel, RetryMessage retrymessage);
+   /**
+    * 分配 messageId 并登记待确认消息, 持有一次 payload 引用, 确认、重试结束或连接关闭时释放.
+    * 待确认窗口已满时消息排队, 空出位置后由重试管理器按顺序下发
+    *
+    * @param mqttChannel {@link MqttChannel}
+    * @param mqttQoS     下发 qos
+    * @param retain      retain
+    * @param topic       topic
+    * @param payload     payload
+    * @return messageId, 排队时返回 0, 调用方不需要下发
+    */
+   int doRetry(MqttChannel mqttChannel, MqttQoS mqttQoS, boolean retain, String topic, ByteBuf payload);
 
    void cancelRetry(MqttChannel mqttChannel, int messageId);
 
+   /**
+    * 下发的 qos2 消息收到 PUBREC, 释放 payload 并改为重发 PUBREL 直到收到 PUBCOMP
+    *
+    * @param mqttChannel {@link MqttChannel}
+    * @param messageId   messageId
+    * @return 是否存在待确认消息
+    */
+   boolean relRetry(MqttChannel mqttChannel, int messageId);
+
+   /**
+    * 接收的 qos2 消息登记等待 PUBREL, 已存在时直接返回 true
+    *
+    * @param mqttChannel {@link MqttChannel}
+    * @param messageId   messageId
+    * @return 等待窗口已满时返回 false
+    */
+   boolean awaitRel(MqttChannel mqttChannel, int messageId);
+
+   /**
+    * 接收的 qos2 消息是否在等待 PUBREL, 用于识别重发的 PUBLISH
+    *
+    * @param mqttChannel {@link MqttChannel}
+    * @param messageId   messageId
+    * @return boolean
+    */
+   boolean isAwaitingRel(MqttChannel mqttChannel, int messageId);
+
+   /**
+    * 收到 PUBREL, 移除等待记录
+    *
+    * @param mqttChannel {@link MqttChannel}
+    * @param messageId   messageId
+    * @return 是否存在等待记录
+    */
+   boolean completeRel(MqttChannel mqttChannel, int messageId);
+
+   /**
+    * 未收到 PUBACK/PUBREC 的下发消息和排队中的消息, 按下发顺序排列, 不会从窗口中移除
+    *
+    * @param mqttChannel {@link MqttChannel}
+    * @return {@link PublishMessage}
+    */
+   List<PublishMessage> unacknowledged(MqttChannel mqttChannel);
+
    void clearRetry(MqttChannel mqttChannel);
 
 
@@ -1,50 +1,319 @@
 package io.github.quickmsg.common.retry;
 
 import io.github.quickmsg.common.channel.MqttChannel;
-import io.github.quickmsg.common.message.mqtt.RetryMessage;
-import io.netty.util.HashedWheelTimer;
+import io.github.quickmsg.common.integrate.cache.ConnectCache;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
+ * 单层时间轮重试
+ * <p>
+ * 到期 tick 超过一圈的窗口仍放在取模后的槽位中, 转到对应的那一圈才处理, 重试间隔只有几秒, 不需要多层时间轮.
+ * 时间轮中调度的是连接的 {@link InflightWindow} 而不是单条消息, 每个窗口只挂在最早到期的 tick 上,
+ * 到期时一次处理窗口内所有到期消息, 不再为每条消息创建定时任务.
+ * 窗口已满时消息在窗口内排队, 收到 PUBACK/PUBCOMP 或重试结束空出位置后按顺序下发.
+ * 接收的 qos2 消息在 PUBLISH 时下发, 只记录 messageId 到收到 PUBREL, 用于过滤重发的 PUBLISH
+ *
  * @author luxurong
  */
-public class TimeAckManager extends HashedWheelTimer implements RetryManager {
+@Slf4j
+public class TimeAckManager implements RetryManager, Runnable {
 
-    private final  int retrySize;
+    /**
+     * MQTT5 Receive Maximum 的默认值
+     */
+    private static final int RECEIVE_MAXIMUM = 65535;
 
-    private final  int retryPeriod;
+    private final long tickNanos;
 
-    private final Map<MqttChannel,Map<Integer, RetryTask>> retryMap = new ConcurrentHashMap<>();
+    private final int mask;
 
-    public TimeAckManager(long tickDuration, TimeUnit unit, int ticksPerWheel, int retrySize, int retryPeriod) {
-        super( tickDuration, unit, ticksPerWheel);
+    private final int retrySize;
+
+    private final int periodTicks;
+
+    private final int maxInflight;
+
+    private final int maxInflightQueue;
+
+    private final int awaitTicks;
+
+    private final int maxAwaitingRel;
+
+    private final List<InflightWindow>[] wheel;
+
+    private final Queue<InflightWindow> pending = new ConcurrentLinkedQueue<>();
+
+    private final List<MqttMessage> resends = new ArrayList<>();
+
+    private volatile int tick;
+
+    /**
+     * @param tickDuration  tick 时长
+     * @param unit          tick 时长单位
+     * @param ticksPerWheel 时间轮槽位数, 取 2 的幂
+     * @param retrySize     最大重试次数
+     * @param retryPeriod   重试间隔(秒)
+     * @param maxInflight     每个连接的最大待确认消息数
+     * @param maxInflightQueue 待确认窗口已满时每个连接最多排队的消息数
+     * @param awaitRelTimeout 接收的 qos2 消息等待 PUBREL 的超时时间(秒)
+     * @param maxAwaitingRel  每个连接最多等待 PUBREL 的消息数
+     */
+    public TimeAckManager(long tickDuration, TimeUnit unit, int ticksPerWheel, int retrySize, int retryPeriod, int maxInflight,
+                          int maxInflightQueue, int awaitRelTimeout, int maxAwaitingRel) {
+        this(tickDuration, unit, ticksPerWheel, retrySize, retryPeriod, maxInflight, maxInflightQueue, awaitRelTimeout, maxAwaitingRel, true);
+    }
+
+    /**
+     * @param start 是否启动时间轮线程, 不启动时由 {@link #advance()} 推进
+     */
+    @SuppressWarnings("unchecked")
+    TimeAckManager(long tickDuration, TimeUnit unit, int ticksPerWheel, int retrySize, int retryPeriod, int maxInflight,
+                   int maxInflightQueue, int awaitRelTimeout, int maxAwaitingRel, boolean start) {
+        this.tickNanos = unit.toNanos(tickDuration);
         this.retrySize = retrySize;
-        this.retryPeriod = retryPeriod;
+        this.periodTicks = (int) Math.max(TimeUnit.SECONDS.toNanos(retryPeriod) / tickNanos, 1);
+        this.maxInflight = maxInflight;
+        this.maxInflightQueue = maxInflightQueue;
+        this.awaitTicks = (int) Math.max(TimeUnit.SECONDS.toNanos(awaitRelTimeout) / tickNanos, 1);
+        this.maxAwaitingRel = maxAwaitingRel;
+        int size = Integer.highestOneBit(Math.max(ticksPerWheel, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        if (start) {
+            new DefaultThreadFactory("retry-wheel", true).newThread(this).start();
+        }
     }
 
 
     @Override
-    public void doRetry(MqttChannel mqttChannel, RetryMessage retrymessage) {
-        RetryTask retryTask = new RetryTask(retrymessage,retrySize,retryPeriod);
-        retryTask.setTimeout(this.newTimeout(retryTask,retryPeriod,TimeUnit.SECONDS));
-        Map<Integer, RetryTask> retryTaskMap =retryMap.computeIfAbsent(mqttChannel,channel->new ConcurrentHashMap<>());
-        retryTaskMap.put(retrymessage.getMessageId(),retryTask);
+    public int doRetry(MqttChannel mqttChannel, MqttQoS mqttQoS, boolean retain, String topic, ByteBuf payload) {
+        InflightWindow window = window(mqttChannel);
+        synchronized (window) {
+            if (window.isBlocked()) {
+                int dropped = window.park(mqttQoS, retain, topic, payload);
+                if (dropped > 0) {
+                    log.warn("inflight queue full, drop {} messages of {}", dropped, mqttChannel.getClientId());
+                }
+                return 0;
+            }
+            int messageId = mqttChannel.generateMessageId();
+            int deadline = tick + periodTicks;
+            /* 回绕后跳过仍在等待确认的 messageId */
+            while (!window.put(messageId, mqttQoS, retain, topic, payload, deadline)) {
+                messageId = mqttChannel.generateMessageId();
+            }
+            schedule(window, deadline);
+            return messageId;
+        }
     }
 
     @Override
     public void cancelRetry(MqttChannel mqttChannel, int messageId) {
-        Optional.ofNullable(retryMap.get(mqttChannel))
-                .flatMap(retryMap -> Optional.ofNullable(retryMap.remove(messageId)))
-                .ifPresent(RetryTask::cancel);
+        InflightWindow window = mqttChannel.getInflightWindow();
+        if (window == null) {
+            return;
+        }
+        synchronized (window) {
+            if (!window.remove(messageId) || window.parkedSize() == 0) {
+                return;
+            }
+            List<MqttMessage> messages = new ArrayList<>();
+            int deadline = tick + periodTicks;
+            window.release(deadline, messages);
+            schedule(window, deadline);
+            /* 持有窗口的锁写出, 之后登记的消息不会先于排队的消息写出 */
+            for (MqttMessage mqttMessage : messages) {
+                mqttChannel.write(mqttMessage);
+            }
+        }
+    }
+
+    @Override
+    public boolean relRetry(MqttChannel mqttChannel, int messageId) {
+        InflightWindow window = mqttChannel.getInflightWindow();
+        return window != null && window.rel(messageId, tick + periodTicks);
+    }
+
+    @Override
+    public boolean awaitRel(MqttChannel mqttChannel, int messageId) {
+        InflightWindow window = awaitingRel(mqttChannel);
+        synchronized (window) {
+            int deadline = tick + awaitTicks;
+            if (!window.await(messageId, deadline)) {
+                return false;
+            }
+            schedule(window, deadline);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isAwaitingRel(MqttChannel mqttChannel, int messageId) {
+        InflightWindow window = mqttChannel.getAwaitingRel();
+        return window != null && window.contains(messageId);
+    }
+
+    @Override
+    public boolean completeRel(MqttChannel mqttChannel, int messageId) {
+        InflightWindow window = mqttChannel.getAwaitingRel();
+        return window != null && window.remove(messageId);
+    }
+
+    @Override
+    public List<PublishMessage> unacknowledged(MqttChannel mqttChannel) {
+        InflightWindow window = mqttChannel.getInflightWindow();
+        return window == null ? Collections.emptyList() : window.unacknowledged();
     }
 
     @Override
     public void clearRetry(MqttChannel mqttChannel) {
-        Optional.ofNullable(retryMap.remove(mqttChannel))
-                .ifPresent(retryMap-> retryMap.values().forEach(RetryTask::cancel));
+        InflightWindow window = mqttChannel.getInflightWindow();
+        if (window != null) {
+            mqttChannel.setInflightWindow(null);
+            window.clear();
+        }
+        window = mqttChannel.getAwaitingRel();
+        if (window != null) {
+            mqttChannel.setAwaitingRel(null);
+            window.clear();
+        }
+    }
+
+    /**
+     * 窗口不在时间轮中时加入, 需要持有窗口的锁
+     */
+    private void schedule(InflightWindow window, int deadline) {
+        if (!window.scheduled) {
+            window.scheduled = true;
+            window.nextTick = deadline;
+            pending.offer(window);
+        }
+    }
+
+    private InflightWindow window(MqttChannel mqttChannel) {
+        InflightWindow window = mqttChannel.getInflightWindow();
+        if (window == null) {
+            synchronized (mqttChannel) {
+                window = mqttChannel.getInflightWindow();
+                if (window == null) {
+                    int receiveMaximum = Optional.ofNullable(mqttChannel.getConnectCache())
+                            .map(ConnectCache::getReceiveMaximum)
+                            .filter(max -> max > 0)
+                            .orElse(RECEIVE_MAXIMUM);
+                    window = new InflightWindow(mqttChannel, Math.min(maxInflight, receiveMaximum), maxInflightQueue);
+                    mqttChannel.setInflightWindow(window);
+                }
+            }
+        }
+        return window;
+    }
+
+    private InflightWindow awaitingRel(MqttChannel mqttChannel) {
+        InflightWindow window = mqttChannel.getAwaitingRel();
+        if (window == null) {
+            synchronized (mqttChannel) {
+                window = mqttChannel.getAwaitingRel();
+                if (window == null) {
+                    window = new InflightWindow(mqttChannel, maxAwaitingRel);
+                    mqttChannel.setAwaitingRel(window);
+                }
+            }
+        }
+        return window;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        for (; ; ) {
+            long sleep = tickNanos * (tick + 1L) - (System.nanoTime() - start);
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+                continue;
+            }
+            advance();
+        }
+    }
+
+    /**
+     * 推进一个 tick
+     */
+    void advance() {
+        int current = tick + 1;
+        tick = current;
+        try {
+            transferPending(current);
+            expire(current);
+        } catch (Throwable throwable) {
+            log.error("retry wheel tick error", throwable);
+        }
+    }
+
+    private void transferPending(int current) {
+        InflightWindow window;
+        while ((window = pending.poll()) != null) {
+            int nextTick;
+            synchronized (window) {
+                nextTick = window.nextTick;
+            }
+            wheel[(nextTick - current > 0 ? nextTick : current) & mask].add(window);
+        }
     }
+
+    private void expire(int current) {
+        List<InflightWindow> bucket = wheel[current & mask];
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            InflightWindow window = bucket.get(i);
+            int nextTick;
+            synchronized (window) {
+                if (window.nextTick - current > 0) {
+                    continue;
+                }
+                nextTick = window.sweep(current, periodTicks, retrySize, resends);
+                /* 重试结束移除的消息空出位置 */
+                if (window.release(current + periodTicks, resends) && nextTick == current) {
+                    nextTick = current + periodTicks;
+                    window.scheduled = true;
+                }
+                window.nextTick = nextTick;
+            }
+            InflightWindow last = bucket.remove(bucket.size() - 1);
+            if (i < bucket.size()) {
+                bucket.set(i, last);
+            }
+            if (nextTick != current) {
+                wheel[nextTick & mask].add(window);
+            }
+            flush(window);
+        }
+    }
+
+    private void flush(InflightWindow window) {
+        if (resends.isEmpty()) {
+            return;
+        }
+        MqttChannel mqttChannel = window.getMqttChannel();
+        for (MqttMessage mqttMessage : resends) {
+            mqttChannel.write(mqttMessage);
+        }
+        resends.clear();
+    }
+
 }
@@ -21,4 +21,14 @@ public interface DslExecutor {
      */
     Boolean isExecute();
 
+
+    /**
+     * 是否有规则订阅该消息的事件
+     * @param message {@link  Message}
+     * @return  boolean 是否需要执行
+     */
+    default Boolean isExecute(Message message) {
+        return isExecute();
+    }
+
 }
@@ -18,4 +18,14 @@ public class RuleChainDefinition {
 
     private List<RuleDefinition> chain;
 
+    /**
+     * 订阅的事件, 如 publish, connect; 为空时订阅全部事件
+     */
+    private List<String> events;
+
+    /**
+     * 匹配的 topicFilter, 支持 + 和 #; 为空时不按 topic 过滤, 不为空时只处理带 topic 的 publish 消息
+     */
+    private List<String> topics;
+
 }
@@ -0,0 +1,20 @@
+package io.github.quickmsg.common.rule.source;
+
+/**
+ * 批量转发部分失败, 只有 failed 条没有转发成功
+ *
+ * @author luxurong
+ */
+public class SourceBatchException extends RuntimeException {
+
+    private final int failed;
+
+    public SourceBatchException(int failed, Throwable cause) {
+        super("transmit batch failed " + failed, cause);
+        this.failed = failed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+}
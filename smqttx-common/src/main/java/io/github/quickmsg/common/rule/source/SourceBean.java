@@ -41,6 +41,16 @@ public interface SourceBean {
      */
     void transmit(Object object);
 
+    /**
+     * 批量转发数据, 由转发线程调用, 调用结束后列表会被复用, 实现不能持有.
+     * 整批失败时抛出异常, 只有部分失败时抛出 {@link SourceBatchException}
+     *
+     * @param objects 数据列表
+     */
+    default void transmitBatch(List<Object> objects) {
+        objects.forEach(this::transmit);
+    }
+
     /**
      * 关闭资源
      */
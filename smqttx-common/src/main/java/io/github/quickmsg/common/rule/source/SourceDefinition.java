@@ -17,4 +17,39 @@ public class SourceDefinition {
     private String replace;
 
     private Map<String, Object> sourceAttributes;
+
+    /**
+     * 转发队列长度, 队列满时丢弃; 0 表示在规则线程直接转发, 默认10000
+     */
+    private Integer queueSize;
+
+    /**
+     * 每批最大条数, 默认100
+     */
+    private Integer batchSize;
+
+    /**
+     * 每批最长等待时间(毫秒), 默认100
+     */
+    private Integer batchDelay;
+
+    /**
+     * 转发线程数, 大于1时 source 需要线程安全, 默认1
+     */
+    private Integer threads;
+
+    /**
+     * 连续失败多少批后熔断, 0 表示不熔断, 默认5
+     */
+    private Integer breakerFailures;
+
+    /**
+     * 单批耗时超过该值(毫秒)按失败计算, 0 表示不检查, 默认5000
+     */
+    private Integer breakerSlowTime;
+
+    /**
+     * 熔断持续时间(毫秒), 之后放行一批试探, 默认10000
+     */
+    private Integer breakerOpenTime;
 }
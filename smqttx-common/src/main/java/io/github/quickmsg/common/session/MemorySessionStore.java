@@ -0,0 +1,110 @@
+package io.github.quickmsg.common.session;
+
+import io.github.quickmsg.common.message.SessionMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地内存的离线会话存储, 不跨节点共享, 重启后丢失
+ *
+ * @author luxurong
+ */
+public class MemorySessionStore implements SessionStore {
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public int offer(String clientId, SessionMessage message, int limit) {
+        Session session = sessions.computeIfAbsent(clientId, id -> new Session());
+        synchronized (session) {
+            session.messages.addLast(message);
+            return session.trim(limit);
+        }
+    }
+
+    @Override
+    public int offerFirst(String clientId, List<SessionMessage> messages, int limit) {
+        Session session = sessions.computeIfAbsent(clientId, id -> new Session());
+        synchronized (session) {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                session.messages.addFirst(messages.get(i));
+            }
+            return session.trim(limit);
+        }
+    }
+
+    @Override
+    public List<SessionMessage> poll(String clientId, int max) {
+        Session session = sessions.get(clientId);
+        if (session == null) {
+            return Collections.emptyList();
+        }
+        synchronized (session) {
+            List<SessionMessage> messages = new ArrayList<>(Math.min(max, session.messages.size()));
+            SessionMessage message;
+            while (messages.size() < max && (message = session.messages.pollFirst()) != null) {
+                messages.add(message);
+            }
+            return messages;
+        }
+    }
+
+    @Override
+    public int size(String clientId) {
+        Session session = sessions.get(clientId);
+        if (session == null) {
+            return 0;
+        }
+        synchronized (session) {
+            return session.messages.size();
+        }
+    }
+
+    @Override
+    public void saveTopics(String clientId, Map<String, Integer> topics) {
+        Session session = sessions.computeIfAbsent(clientId, id -> new Session());
+        synchronized (session) {
+            session.topics = new HashMap<>(topics);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getTopics(String clientId) {
+        Session session = sessions.get(clientId);
+        if (session == null) {
+            return null;
+        }
+        synchronized (session) {
+            return session.topics;
+        }
+    }
+
+    @Override
+    public void remove(String clientId) {
+        sessions.remove(clientId);
+    }
+
+
+    private static class Session {
+
+        private final ArrayDeque<SessionMessage> messages = new ArrayDeque<>();
+
+        private Map<String, Integer> topics;
+
+        private int trim(int limit) {
+            int dropped = 0;
+            while (messages.size() > limit) {
+                messages.pollFirst();
+                dropped++;
+            }
+            return dropped;
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+package io.github.quickmsg.common.session;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.integrate.SubscribeTopic;
+import io.github.quickmsg.common.integrate.topic.IntegrateTopics;
+import io.github.quickmsg.common.message.SessionMessage;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.retry.RetryManager;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cleanSession=false 的会话管理
+ * <p>
+ * 连接断开后订阅保留在本节点, 匹配的 qos1/qos2 消息写入 {@link SessionStore}, 未确认的消息放回队头.
+ * 重连并发送 CONNACK 后接管订阅, 本节点没有会话时从 {@link SessionStore} 恢复订阅, 然后分批补发.
+ * 补发期间新消息同样写入队列以保证顺序, 连接不可写时暂停, 可写后继续;
+ * 待确认窗口满时稍后重试
+ *
+ * @author luxurong
+ */
+@Slf4j
+public class SessionManager {
+
+    private static final long WINDOW_FULL_DELAY = 100;
+
+    private final SessionStore sessionStore;
+
+    private final IntegrateTopics<SubscribeTopic> topics;
+
+    private final RetryManager retryManager;
+
+    private final int queueSize;
+
+    private final long messageTtl;
+
+    private final long sessionExpiry;
+
+    private final int drainBatch;
+
+    private final Scheduler scheduler;
+
+    private final Scheduler timer = Schedulers.parallel();
+
+    /**
+     * 本节点 clientId 当前的连接, 用于识别被新连接接管的旧连接
+     */
+    private final Map<String, MqttChannel> owners = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点保留的离线会话
+     */
+    private final Map<String, Offline> offlines = new ConcurrentHashMap<>();
+
+    /**
+     * @param sessionStore  {@link SessionStore}
+     * @param topics        {@link IntegrateTopics}
+     * @param retryManager  {@link RetryManager}
+     * @param queueSize     每个会话最多保存的消息数
+     * @param messageTtl    离线消息保存时间(秒), 0 表示不过期
+     * @param sessionExpiry 离线会话保留时间(秒)
+     * @param drainBatch    每批补发的消息数
+     */
+    public SessionManager(SessionStore sessionStore, IntegrateTopics<SubscribeTopic> topics, RetryManager retryManager,
+                          int queueSize, int messageTtl, int sessionExpiry, int drainBatch) {
+        this(sessionStore, topics, retryManager, queueSize, messageTtl, sessionExpiry, drainBatch, Schedulers.boundedElastic());
+    }
+
+    SessionManager(SessionStore sessionStore, IntegrateTopics<SubscribeTopic> topics, RetryManager retryManager,
+                   int queueSize, int messageTtl, int sessionExpiry, int drainBatch, Scheduler scheduler) {
+        this.sessionStore = sessionStore;
+        this.topics = topics;
+        this.retryManager = retryManager;
+        this.queueSize = queueSize;
+        this.messageTtl = TimeUnit.SECONDS.toMillis(messageTtl);
+        this.sessionExpiry = sessionExpiry;
+        this.drainBatch = drainBatch;
+        this.scheduler = scheduler;
+    }
+
+    public SessionStore getSessionStore() {
+        return sessionStore;
+    }
+
+    /**
+     * 连接认证通过后、CONNACK 之前调用, cleanSession=false 时新的 qos1/qos2 消息先写入离线会话
+     *
+     * @param mqttChannel {@link MqttChannel}
+     * @return CONNACK 的 sessionPresent
+     */
+    public boolean online(MqttChannel mqttChannel) {
+        if (isCleanSession(mqttChannel)) {
+            return false;
+        }
+        mqttChannel.setQueued(true);
+        String clientId = mqttChannel.getClientId();
+        MqttChannel owner = owners.get(clientId);
+        return offlines.containsKey(clientId) || (owner != null && !isCleanSession(owner))
+                || sessionStore.getTopics(clientId) != null;
+    }
+
+    /**
+     * CONNACK 之后调用, 接管或恢复会话的订阅并开始补发
+     *
+     * @param mqttChannel {@link MqttChannel}
+     */
+    public void resume(MqttChannel mqttChannel) {
+        String clientId = mqttChannel.getClientId();
+        MqttChannel previous = owners.put(clientId, mqttChannel);
+        Offline offline = offlines.remove(clientId);
+        if (offline != null) {
+            offline.expiry.dispose();
+        }
+        if (isCleanSession(mqttChannel)) {
+            if (offline != null) {
+                removeTopics(offline.mqttChannel);
+            }
+            sessionStore.remove(clientId);
+            return;
+        }
+        if (offline != null) {
+            transfer(offline.mqttChannel, mqttChannel);
+        } else if (previous == null) {
+            Optional.ofNullable(sessionStore.getTopics(clientId))
+                    .ifPresent(saved -> saved.forEach((topicFilter, qos) ->
+                            topics.registryTopic(mqttChannel, new SubscribeTopic(topicFilter, MqttQoS.valueOf(qos), mqttChannel))));
+        }
+        /* previous 未关闭时, 关闭时移交订阅 */
+        this.drain(mqttChannel);
+    }
+
+    /**
+     * 连接关闭, 在清理重试窗口之前调用
+     *
+     * @param mqttChannel {@link MqttChannel}
+     */
+    public void close(MqttChannel mqttChannel) {
+        String clientId = mqttChannel.getClientId();
+        if (!owners.remove(clientId, mqttChannel)) {
+            /* 已被新连接接管 */
+            MqttChannel owner = owners.get(clientId);
+            if (owner == null) {
+                /* 其他节点接管, 订阅在其他节点恢复 */
+                if (!isCleanSession(mqttChannel)) {
+                    saveUnacknowledged(mqttChannel);
+                }
+                removeTopics(mqttChannel);
+            } else if (!isCleanSession(owner)) {
+                saveUnacknowledged(mqttChannel);
+                transfer(mqttChannel, owner);
+                this.drain(owner);
+            } else {
+                removeTopics(mqttChannel);
+            }
+            return;
+        }
+        if (isCleanSession(mqttChannel)) {
+            removeTopics(mqttChannel);
+            return;
+        }
+        mqttChannel.setQueued(true);
+        saveUnacknowledged(mqttChannel);
+        Map<String, Integer> saved = new HashMap<>();
+        mqttChannel.getTopics().forEach(subscribeTopic -> saved.put(subscribeTopic.getTopicFilter(), subscribeTopic.getQoS().value()));
+        sessionStore.saveTopics(clientId, saved);
+        Offline offline = new Offline(mqttChannel);
+        offline.expiry = timer.schedule(() -> this.expire(offline), sessionExpiry, TimeUnit.SECONDS);
+        offlines.put(clientId, offline);
+    }
+
+    /**
+     * 其他节点接管了会话, 清除本节点保留的订阅, 本节点的旧连接关闭时不再保留会话, 队列由接管的节点补发
+     *
+     * @param clientId 客户端id
+     */
+    public void discard(String clientId) {
+        owners.remove(clientId);
+        Offline offline = offlines.remove(clientId);
+        if (offline != null) {
+            offline.expiry.dispose();
+            removeTopics(offline.mqttChannel);
+        }
+    }
+
+    /**
+     * 写入离线会话, 连接在线且补发已结束时重新触发补发
+     *
+     * @param mqttChannel {@link MqttChannel}
+     * @param mqttQoS     下发 qos
+     * @param message     {@link PublishMessage}
+     */
+    public void enqueue(MqttChannel mqttChannel, MqttQoS mqttQoS, PublishMessage message) {
+        long expireTime = messageTtl > 0 ? System.currentTimeMillis() + messageTtl : 0;
+        int dropped = sessionStore.offer(mqttChannel.getClientId(), SessionMessage.of(mqttChannel.getClientId(), mqttQoS, message, expireTime), queueSize);
+        if (dropped > 0) {
+            log.warn("session queue full, drop {} messages of {}", dropped, mqttChannel.getClientId());
+        }
+        if (!mqttChannel.isQueued() && mqttChannel.isActive()) {
+            this.drain(mqttChannel);
+        }
+    }
+
+    /**
+     * 触发补发, 同一连接同时只有一个补发任务
+     *
+     * @param mqttChannel {@link MqttChannel}
+     */
+    public void drain(MqttChannel mqttChannel) {
+        if (mqttChannel.getDrainWip().getAndIncrement() == 0) {
+            scheduler.schedule(() -> this.drainLoop(mqttChannel));
+        }
+    }
+
+    private void drainLoop(MqttChannel mqttChannel) {
+        int missed = 1;
+        for (; ; ) {
+            try {
+                this.drainBatches(mqttChannel);
+            } catch (Throwable throwable) {
+                log.error("drain session {} error", mqttChannel.getClientId(), throwable);
+            }
+            missed = mqttChannel.getDrainWip().addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void drainBatches(MqttChannel mqttChannel) {
+        String clientId = mqttChannel.getClientId();
+        while (mqttChannel.isActive() && owners.get(clientId) == mqttChannel) {
+            if (!mqttChannel.isWritable()) {
+                /* 可写后由 channelWritabilityChanged 继续 */
+                return;
+            }
+            int batch = drainBatch;
+            if (mqttChannel.getInflightWindow() != null) {
+                batch = Math.min(batch, mqttChannel.getInflightWindow().remaining());
+            }
+            if (batch <= 0) {
+                timer.schedule(() -> this.drain(mqttChannel), WINDOW_FULL_DELAY, TimeUnit.MILLISECONDS);
+                return;
+            }
+            List<SessionMessage> messages = sessionStore.poll(clientId, batch);
+            if (messages.isEmpty()) {
+                mqttChannel.setQueued(false);
+                /* 关闭 queued 之前可能刚写入队列 */
+                if (sessionStore.size(clientId) == 0) {
+                    return;
+                }
+                mqttChannel.setQueued(true);
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            for (SessionMessage message : messages) {
+                if (!message.isExpired(now)) {
+                    mqttChannel.deliver(MqttQoS.valueOf(message.getQos()), message.toPublishMessage());
+                }
+            }
+        }
+    }
+
+    private void saveUnacknowledged(MqttChannel mqttChannel) {
+        List<PublishMessage> unacknowledged = retryManager.unacknowledged(mqttChannel);
+        if (unacknowledged.isEmpty()) {
+            return;
+        }
+        long expireTime = messageTtl > 0 ? System.currentTimeMillis() + messageTtl : 0;
+        List<SessionMessage> messages = new ArrayList<>(unacknowledged.size());
+        for (PublishMessage message : unacknowledged) {
+            messages.add(SessionMessage.of(mqttChannel.getClientId(), MqttQoS.valueOf(message.getQos()), message, expireTime));
+        }
+        sessionStore.offerFirst(mqttChannel.getClientId(), messages, queueSize);
+    }
+
+    private void transfer(MqttChannel from, MqttChannel to) {
+        for (SubscribeTopic subscribeTopic : from.getTopics()) {
+            subscribeTopic.setMqttChannel(to);
+            to.getTopics().add(subscribeTopic);
+        }
+        from.getTopics().clear();
+    }
+
+    private void removeTopics(MqttChannel mqttChannel) {
+        topics.removeTopic(mqttChannel, new ArrayList<>(mqttChannel.getTopics()));
+    }
+
+    private void expire(Offline offline) {
+        String clientId = offline.mqttChannel.getClientId();
+        if (offlines.remove(clientId, offline)) {
+            removeTopics(offline.mqttChannel);
+            sessionStore.remove(clientId);
+        }
+    }
+
+    private boolean isCleanSession(MqttChannel mqttChannel) {
+        return mqttChannel.getConnectCache() == null || mqttChannel.getConnectCache().isCleanSession();
+    }
+
+
+    private static class Offline {
+
+        private final MqttChannel mqttChannel;
+
+        private volatile Disposable expiry;
+
+        private Offline(MqttChannel mqttChannel) {
+            this.mqttChannel = mqttChannel;
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package io.github.quickmsg.common.session;
+
+import io.github.quickmsg.common.message.SessionMessage;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离线会话存储, 每个 clientId 一个有界队列以及会话的订阅
+ *
+ * @author luxurong
+ */
+public interface SessionStore {
+
+    /**
+     * 追加到队尾, 超出上限时丢弃最早的消息. 可以异步写入, 但之后的其他操作要能看到这条消息
+     *
+     * @param clientId 客户端id
+     * @param message  {@link SessionMessage}
+     * @param limit    队列上限
+     * @return 丢弃的消息数
+     */
+    int offer(String clientId, SessionMessage message, int limit);
+
+    /**
+     * 插入到队头, 用于保存断开时未确认的消息, 超出上限时丢弃最早的消息
+     *
+     * @param clientId 客户端id
+     * @param messages 按下发顺序排列的消息
+     * @param limit    队列上限
+     * @return 丢弃的消息数
+     */
+    int offerFirst(String clientId, List<SessionMessage> messages, int limit);
+
+    /**
+     * 从队头取出最多 max 条消息, 包含已过期的消息, 由调用方过滤
+     *
+     * @param clientId 客户端id
+     * @param max      最大条数
+     * @return 消息列表
+     */
+    List<SessionMessage> poll(String clientId, int max);
+
+    /**
+     * 队列长度
+     *
+     * @param clientId 客户端id
+     * @return 消息数
+     */
+    int size(String clientId);
+
+    /**
+     * 保存会话的订阅
+     *
+     * @param clientId 客户端id
+     * @param topics   topicFilter -&gt; qos
+     */
+    void saveTopics(String clientId, Map<String, Integer> topics);
+
+    /**
+     * 会话的订阅
+     *
+     * @param clientId 客户端id
+     * @return topicFilter -&gt; qos, 会话不存在时返回 null
+     */
+    Map<String, Integer> getTopics(String clientId);
+
+    /**
+     * 删除会话以及所有消息
+     *
+     * @param clientId 客户端id
+     */
+    void remove(String clientId);
+
+}
@@ -0,0 +1,389 @@
+package io.github.quickmsg.common.topic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 基于 level 字典的 topic 树
+ * <p>
+ * topic level 注册时转换为 int id, 匹配时直接在 topic 字符上遍历, 不做 split,
+ * 结果写入线程复用的 {@link TopicCollector}, 稳定状态下匹配不分配内存.
+ * 取消订阅后没有对象和子节点的节点会被删除, 同时释放 level 的字典引用
+ *
+ * @author luxurong
+ */
+public class InternTopicFilter<T> implements TopicFilter<T> {
+
+    private static final String ONE_SYMBOL = "+";
+
+    private static final String MORE_SYMBOL = "#";
+
+    private static final char SYSTEM_SYMBOL = '$';
+
+    private static final char SEPARATOR = '/';
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final TopicLevelDictionary dictionary = new TopicLevelDictionary();
+
+    private final Node<T> root = new Node<>(TopicLevelDictionary.ABSENT);
+
+    private final ThreadLocal<TopicCollector<T>> collectors = ThreadLocal.withInitial(TopicCollector::new);
+
+
+    /**
+     * 匹配 topic, 返回当前线程的收集器, 在本线程下一次匹配前有效
+     *
+     * @param topic topic
+     * @return {@link TopicCollector}
+     */
+    public TopicCollector<T> collectObjectByTopic(String topic) {
+        TopicCollector<T> collector = collectors.get();
+        collector.clear();
+        match(root, topic, 0, true, collector);
+        return collector;
+    }
+
+    @Override
+    public Set<T> getObjectByTopic(String topic) {
+        TopicCollector<T> collector = collectObjectByTopic(topic);
+        Set<T> objects = new HashSet<>(collector.size());
+        collector.forEach(objects::add);
+        collector.clear();
+        return objects;
+    }
+
+    @Override
+    public boolean addObjectTopic(String topicFilter, T t) {
+        for (; ; ) {
+            Boolean added = tryAdd(topicFilter, t);
+            if (added != null) {
+                return added;
+            }
+        }
+    }
+
+    /**
+     * @return 路径上的节点被并发删除时返回 null, 需要从根节点重试
+     */
+    private Boolean tryAdd(String topicFilter, T t) {
+        Node<T> node = root;
+        int start = 0;
+        for (; ; ) {
+            int end = levelEnd(topicFilter, start);
+            node = node.getOrCreate(topicFilter.substring(start, end), dictionary);
+            if (node == null) {
+                return null;
+            }
+            if (end == topicFilter.length()) {
+                return node.add(t);
+            }
+            start = end + 1;
+        }
+    }
+
+    @Override
+    public boolean removeObjectTopic(String topicFilter, T t) {
+        List<Node<T>> path = new ArrayList<>();
+        Node<T> node = root;
+        path.add(node);
+        int start = 0;
+        for (; ; ) {
+            int end = levelEnd(topicFilter, start);
+            node = node.get(topicFilter.substring(start, end), dictionary);
+            if (node == null) {
+                return false;
+            }
+            path.add(node);
+            if (end == topicFilter.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (!node.remove(t)) {
+            return false;
+        }
+        for (int i = path.size() - 1; i > 0 && path.get(i - 1).prune(path.get(i)); i--) {
+            if (path.get(i).level != null) {
+                dictionary.release(path.get(i).level);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 字典中的 level 数量
+     *
+     * @return size
+     */
+    int levelSize() {
+        return dictionary.size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<T> getAllObjectsTopic() {
+        Set<T> objects = new HashSet<>();
+        root.visit(node -> {
+            for (Object object : node.objects) {
+                objects.add((T) object);
+            }
+        });
+        return objects;
+    }
+
+    private void match(Node<T> node, String topic, int start, boolean first, TopicCollector<T> collector) {
+        int end = levelEnd(topic, start);
+        boolean wildcard = !first || start == topic.length() || topic.charAt(start) != SYSTEM_SYMBOL;
+        if (wildcard && node.more != null) {
+            collector.addAll(node.more.objects);
+        }
+        int id = dictionary.lookup(topic, start, end);
+        Node<T> exact = id == TopicLevelDictionary.ABSENT ? null : node.child(id);
+        Node<T> one = wildcard ? node.one : null;
+        if (end == topic.length()) {
+            collectLast(exact, collector);
+            collectLast(one, collector);
+        } else {
+            if (one != null) {
+                match(one, topic, end + 1, false, collector);
+            }
+            if (exact != null) {
+                match(exact, topic, end + 1, false, collector);
+            }
+        }
+    }
+
+    private void collectLast(Node<T> node, TopicCollector<T> collector) {
+        if (node != null) {
+            collector.addAll(node.objects);
+            /* a/# also matches a */
+            if (node.more != null) {
+                collector.addAll(node.more.objects);
+            }
+        }
+    }
+
+    private static int levelEnd(String topic, int start) {
+        int end = topic.indexOf(SEPARATOR, start);
+        return end < 0 ? topic.length() : end;
+    }
+
+
+    private static class Node<T> {
+
+        @SuppressWarnings("rawtypes")
+        private static final Node TOMBSTONE = new Node<>(TopicLevelDictionary.ABSENT, null);
+
+        private final int levelId;
+
+        private final String level;
+
+        private volatile Object[] objects = EMPTY;
+
+        private volatile AtomicReferenceArray<Node<T>> children = new AtomicReferenceArray<>(2);
+
+        private int childSize;
+
+        private int tombstones;
+
+        private volatile Node<T> one;
+
+        private volatile Node<T> more;
+
+        /**
+         * 已从父节点删除, 由节点锁保护
+         */
+        private boolean removed;
+
+        private Node(int levelId) {
+            this(levelId, null);
+        }
+
+        private Node(int levelId, String level) {
+            this.levelId = levelId;
+            this.level = level;
+        }
+
+        private Node<T> child(int id) {
+            AtomicReferenceArray<Node<T>> table = this.children;
+            int mask = table.length() - 1;
+            int index = spread(id) & mask;
+            for (; ; ) {
+                Node<T> node = table.get(index);
+                if (node == null || node.levelId == id) {
+                    return node;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private Node<T> get(String level, TopicLevelDictionary dictionary) {
+            if (ONE_SYMBOL.equals(level)) {
+                return one;
+            }
+            if (MORE_SYMBOL.equals(level)) {
+                return more;
+            }
+            int id = dictionary.lookup(level, 0, level.length());
+            return id == TopicLevelDictionary.ABSENT ? null : child(id);
+        }
+
+        /**
+         * @return 当前节点已被删除时返回 null
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized Node<T> getOrCreate(String level, TopicLevelDictionary dictionary) {
+            if (removed) {
+                return null;
+            }
+            if (ONE_SYMBOL.equals(level)) {
+                if (one == null) {
+                    one = new Node<>(TopicLevelDictionary.ABSENT);
+                }
+                return one;
+            }
+            if (MORE_SYMBOL.equals(level)) {
+                if (more == null) {
+                    more = new Node<>(TopicLevelDictionary.ABSENT);
+                }
+                return more;
+            }
+            int id = dictionary.lookup(level, 0, level.length());
+            Node<T> node = id == TopicLevelDictionary.ABSENT ? null : child(id);
+            if (node == null) {
+                node = new Node<>(dictionary.intern(level), level);
+                if ((++childSize + tombstones) << 1 > children.length()) {
+                    int capacity = children.length();
+                    while (childSize << 1 > capacity) {
+                        capacity <<= 1;
+                    }
+                    AtomicReferenceArray<Node<T>> resize = new AtomicReferenceArray<>(capacity);
+                    for (int i = 0; i < children.length(); i++) {
+                        Node<T> child = children.get(i);
+                        if (child != null && child != TOMBSTONE) {
+                            put(resize, child);
+                        }
+                    }
+                    put(resize, node);
+                    this.children = resize;
+                    this.tombstones = 0;
+                } else if (put(children, node)) {
+                    tombstones--;
+                }
+            }
+            return node;
+        }
+
+        /**
+         * 删除没有对象和子节点的子节点
+         *
+         * @param child 子节点
+         * @return 是否删除
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized boolean prune(Node<T> child) {
+            synchronized (child) {
+                if (child.removed || child.objects.length > 0 || child.childSize > 0 || child.one != null || child.more != null) {
+                    return false;
+                }
+                child.removed = true;
+                if (child == one) {
+                    one = null;
+                    return true;
+                }
+                if (child == more) {
+                    more = null;
+                    return true;
+                }
+                AtomicReferenceArray<Node<T>> table = this.children;
+                int mask = table.length() - 1;
+                int index = spread(child.levelId) & mask;
+                while (table.get(index) != child) {
+                    index = (index + 1) & mask;
+                }
+                table.set(index, TOMBSTONE);
+                childSize--;
+                tombstones++;
+                return true;
+            }
+        }
+
+        /**
+         * @return 当前节点已被删除时返回 null
+         */
+        private synchronized Boolean add(T t) {
+            if (removed) {
+                return null;
+            }
+            for (Object object : objects) {
+                if (object.equals(t)) {
+                    return false;
+                }
+            }
+            Object[] newObjects = Arrays.copyOf(objects, objects.length + 1);
+            newObjects[objects.length] = t;
+            this.objects = newObjects;
+            return true;
+        }
+
+        private synchronized boolean remove(T t) {
+            for (int i = 0; i < objects.length; i++) {
+                if (objects[i].equals(t)) {
+                    if (objects.length == 1) {
+                        this.objects = EMPTY;
+                    } else {
+                        Object[] newObjects = new Object[objects.length - 1];
+                        System.arraycopy(objects, 0, newObjects, 0, i);
+                        System.arraycopy(objects, i + 1, newObjects, i, objects.length - i - 1);
+                        this.objects = newObjects;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void visit(Consumer<Node<T>> consumer) {
+            consumer.accept(this);
+            AtomicReferenceArray<Node<T>> table = this.children;
+            for (int i = 0; i < table.length(); i++) {
+                Node<T> child = table.get(i);
+                if (child != null && child != TOMBSTONE) {
+                    child.visit(consumer);
+                }
+            }
+            if (one != null) {
+                one.visit(consumer);
+            }
+            if (more != null) {
+                more.visit(consumer);
+            }
+        }
+
+        /**
+         * @return 是否复用了墓碑位置
+         */
+        private static <T> boolean put(AtomicReferenceArray<Node<T>> table, Node<T> node) {
+            int mask = table.length() - 1;
+            int index = spread(node.levelId) & mask;
+            Node<T> current;
+            while ((current = table.get(index)) != null && current != TOMBSTONE) {
+                index = (index + 1) & mask;
+            }
+            table.set(index, node);
+            return current == TOMBSTONE;
+        }
+
+        private static int spread(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package io.github.quickmsg.common.topic;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 可复用的匹配结果收集器, 每个线程持有一个, 稳定状态下不分配内存
+ * <p>
+ * 同一对象通过多个重叠的 topicFilter 注册时会重复出现
+ *
+ * @author luxurong
+ */
+public class TopicCollector<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] elements = new Object[DEFAULT_CAPACITY];
+
+    private int size;
+
+    void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+    }
+
+    void addAll(Object[] objects) {
+        int length = objects.length;
+        if (length == 0) {
+            return;
+        }
+        if (size + length > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(elements.length << 1, size + length));
+        }
+        System.arraycopy(objects, 0, elements, size, length);
+        size += length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + size);
+        }
+        return (T) elements[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept((T) elements[i]);
+        }
+    }
+
+}
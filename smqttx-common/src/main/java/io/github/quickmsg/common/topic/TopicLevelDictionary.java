@@ -0,0 +1,174 @@
+package io.github.quickmsg.common.topic;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * topic level 字典, 将 level 字符串映射为 int id
+ * <p>
+ * 查询直接比较 topic 的字符区间, 不需要 split 出子字符串.
+ * 每个引用 level 的树节点持有一次引用计数, 计数归零时移除, id 不复用, 避免并发匹配拿到旧 id 走错节点
+ *
+ * @author luxurong
+ */
+public class TopicLevelDictionary {
+
+    public static final int ABSENT = -1;
+
+    private static final Entry TOMBSTONE = new Entry(null, ABSENT);
+
+    private volatile Table table = new Table(64);
+
+    private int size;
+
+    private int tombstones;
+
+    private int nextId;
+
+    /**
+     * 查询 topic[start, end) 对应的 level id
+     *
+     * @param topic topic
+     * @param start 开始下标
+     * @param end   结束下标(不包含)
+     * @return level id or {@link #ABSENT}
+     */
+    public int lookup(String topic, int start, int end) {
+        Table current = this.table;
+        int length = end - start;
+        int mask = current.entries.length() - 1;
+        int index = hash(topic, start, end) & mask;
+        for (; ; ) {
+            Entry entry = current.entries.get(index);
+            if (entry == null) {
+                return ABSENT;
+            }
+            if (entry != TOMBSTONE && entry.level.length() == length && entry.level.regionMatches(0, topic, start, length)) {
+                return entry.id;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 注册 level 并增加引用计数
+     *
+     * @param level level
+     * @return level id
+     */
+    public synchronized int intern(String level) {
+        Entry entry = find(level);
+        if (entry != null) {
+            entry.refs++;
+            return entry.id;
+        }
+        entry = new Entry(level, nextId++);
+        size++;
+        if ((size + tombstones) << 1 > table.entries.length()) {
+            int capacity = table.entries.length();
+            while (size << 1 > capacity) {
+                capacity <<= 1;
+            }
+            Table resize = new Table(capacity);
+            for (int i = 0; i < table.entries.length(); i++) {
+                Entry current = table.entries.get(i);
+                if (current != null && current != TOMBSTONE) {
+                    resize.put(current);
+                }
+            }
+            resize.put(entry);
+            this.table = resize;
+            this.tombstones = 0;
+        } else if (table.put(entry)) {
+            tombstones--;
+        }
+        return entry.id;
+    }
+
+    /**
+     * 减少引用计数, 归零时移除
+     *
+     * @param level level
+     */
+    public synchronized void release(String level) {
+        Entry entry = find(level);
+        if (entry == null || --entry.refs > 0) {
+            return;
+        }
+        AtomicReferenceArray<Entry> entries = table.entries;
+        int mask = entries.length() - 1;
+        int index = hash(level, 0, level.length()) & mask;
+        while (entries.get(index) != entry) {
+            index = (index + 1) & mask;
+        }
+        entries.set(index, TOMBSTONE);
+        size--;
+        tombstones++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private Entry find(String level) {
+        AtomicReferenceArray<Entry> entries = table.entries;
+        int mask = entries.length() - 1;
+        int index = hash(level, 0, level.length()) & mask;
+        for (; ; ) {
+            Entry entry = entries.get(index);
+            if (entry == null) {
+                return null;
+            }
+            if (entry != TOMBSTONE && entry.level.equals(level)) {
+                return entry;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static int hash(String topic, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + topic.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+
+    private static class Table {
+
+        private final AtomicReferenceArray<Entry> entries;
+
+        private Table(int capacity) {
+            this.entries = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * @return 是否复用了墓碑位置
+         */
+        private boolean put(Entry entry) {
+            int mask = entries.length() - 1;
+            int index = hash(entry.level, 0, entry.level.length()) & mask;
+            Entry current;
+            while ((current = entries.get(index)) != null && current != TOMBSTONE) {
+                index = (index + 1) & mask;
+            }
+            entries.set(index, entry);
+            return current == TOMBSTONE;
+        }
+    }
+
+    private static class Entry {
+
+        private final String level;
+
+        private final int id;
+
+        private int refs = 1;
+
+        private Entry(String level, int id) {
+            this.level = level;
+            this.id = id;
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package io.github.quickmsg.common.topic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按具体 topic 保存对象, 用 topicFilter 查找, 与 {@link InternTopicFilter} 方向相反, 用于保留消息
+ * <p>
+ * 读不加锁, 写串行并清理空节点. 通配符查询的结果按 topicFilter 缓存, 大量设备重连订阅同一个 topicFilter 时只遍历一次.
+ * 写入时增加路径上每个节点的版本, 缓存记录 topicFilter 第一个通配符之前的前缀节点及其版本,
+ * 只有写入落在该前缀下时失效
+ *
+ * @author luxurong
+ */
+public class TopicTrie<V> {
+
+    private static final String ONE_SYMBOL = "+";
+
+    private static final String MORE_SYMBOL = "#";
+
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final Node<V> root = new Node<>(null, null);
+
+    private final Map<String, Snapshot<V>> cache = new ConcurrentHashMap<>();
+
+    private final int cacheSize;
+
+    private volatile int size;
+
+    public TopicTrie() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize 缓存的 topicFilter 数量上限, 0 表示不缓存
+     */
+    public TopicTrie(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public synchronized V put(String topic, V value) {
+        Node<V> node = root;
+        for (String level : split(topic)) {
+            Node<V> parent = node;
+            node = parent.children.computeIfAbsent(level, key -> new Node<>(key, parent));
+        }
+        V previous = node.value;
+        node.value = value;
+        if (previous == null) {
+            size++;
+        }
+        touch(node);
+        return previous;
+    }
+
+    public synchronized V remove(String topic) {
+        Node<V> node = find(topic);
+        if (node == null || node.value == null) {
+            return null;
+        }
+        V previous = node.value;
+        node.value = null;
+        size--;
+        touch(node);
+        while (node.parent != null && node.value == null && node.children.isEmpty()) {
+            node.parent.children.remove(node.level, node);
+            node = node.parent;
+        }
+        return previous;
+    }
+
+    public V get(String topic) {
+        Node<V> node = find(topic);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * 查找与 topicFilter 匹配的对象, 首层 + 和 # 不匹配 $ 开头的 topic
+     *
+     * @param topicFilter 订阅的 topicFilter
+     * @return 不可修改的列表
+     */
+    public List<V> match(String topicFilter) {
+        if (!topicFilter.contains(ONE_SYMBOL) && !topicFilter.contains(MORE_SYMBOL)) {
+            V value = get(topicFilter);
+            return value == null ? Collections.emptyList() : Collections.singletonList(value);
+        }
+        String[] levels = split(topicFilter);
+        /* 第一个通配符之前的前缀节点 */
+        Node<V> prefix = root;
+        int index = 0;
+        while (!ONE_SYMBOL.equals(levels[index]) && !MORE_SYMBOL.equals(levels[index])) {
+            prefix = prefix.children.get(levels[index++]);
+            if (prefix == null) {
+                return Collections.emptyList();
+            }
+        }
+        long current = prefix.version;
+        Snapshot<V> snapshot = cache.get(topicFilter);
+        if (snapshot != null && snapshot.node == prefix && snapshot.version == current) {
+            return snapshot.values;
+        }
+        List<V> values = new ArrayList<>();
+        match(prefix, levels, index, values);
+        List<V> result = values.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(values);
+        if (cacheSize > 0) {
+            if (cache.size() >= cacheSize) {
+                cache.clear();
+            }
+            cache.put(topicFilter, new Snapshot<>(prefix, current, result));
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void match(Node<V> node, String[] levels, int index, List<V> values) {
+        if (index == levels.length) {
+            if (node.value != null) {
+                values.add(node.value);
+            }
+            return;
+        }
+        String level = levels[index];
+        if (MORE_SYMBOL.equals(level)) {
+            /* a/# 同时匹配 a */
+            if (node.value != null) {
+                values.add(node.value);
+            }
+            node.children.values().forEach(child -> {
+                if (node != root || !child.level.startsWith("$")) {
+                    collect(child, values);
+                }
+            });
+        } else if (ONE_SYMBOL.equals(level)) {
+            node.children.values().forEach(child -> {
+                if (node != root || !child.level.startsWith("$")) {
+                    match(child, levels, index + 1, values);
+                }
+            });
+        } else {
+            Node<V> child = node.children.get(level);
+            if (child != null) {
+                match(child, levels, index + 1, values);
+            }
+        }
+    }
+
+    private void collect(Node<V> node, List<V> values) {
+        if (node.value != null) {
+            values.add(node.value);
+        }
+        node.children.values().forEach(child -> collect(child, values));
+    }
+
+    /**
+     * 写入后增加到根节点路径上的版本, 需要持有锁
+     */
+    private void touch(Node<V> node) {
+        for (; node != null; node = node.parent) {
+            node.version++;
+        }
+    }
+
+    private Node<V> find(String topic) {
+        Node<V> node = root;
+        for (String level : split(topic)) {
+            node = node.children.get(level);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private static String[] split(String topic) {
+        return topic.split("/", -1);
+    }
+
+
+    private static class Node<V> {
+
+        private final String level;
+
+        private final Node<V> parent;
+
+        private final Map<String, Node<V>> children = new ConcurrentHashMap<>(4);
+
+        private volatile V value;
+
+        /**
+         * 子树写入次数
+         */
+        private volatile long version;
+
+        private Node(String level, Node<V> parent) {
+            this.level = level;
+            this.parent = parent;
+        }
+    }
+
+    private static class Snapshot<V> {
+
+        private final Node<V> node;
+
+        private final long version;
+
+        private final List<V> values;
+
+        private Snapshot(Node<V> node, long version, List<V> values) {
+            this.node = node;
+            this.version = version;
+            this.values = values;
+        }
+    }
+
+}
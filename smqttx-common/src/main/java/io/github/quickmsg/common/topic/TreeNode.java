@@ -29,6 +29,8 @@ public class TreeNode<T> {
 
     private final String MORE_SYMBOL = "#";
 
+    private final String SYSTEM_SYMBOL = "$";
+
     public boolean addObjectTopic(String topic,T t) {
         String[] topics = topic.split("/");
         return addIndex(topic,t, topics, 0);
@@ -42,7 +44,7 @@ public class TreeNode<T> {
 
     private boolean addIndex(String topic,T t, String[] topics, Integer index) {
         String lastTopic = topics[index];
-        TreeNode<T> treeNode = childNodes.computeIfAbsent(topic, tp -> new TreeNode<T>(lastTopic));
+        TreeNode<T> treeNode = childNodes.computeIfAbsent(lastTopic, tp -> new TreeNode<T>(lastTopic));
         if (index == topics.length - 1) {
             return treeNode.addTreeObject(t);
         } else {
@@ -65,7 +67,9 @@ public class TreeNode<T> {
 
     private void loadTreeObjects(TreeNode<T> treeNode, LinkedList<T> objectLists, String[] topics, Integer index) {
         String lastTopic = topics[index];
-        TreeNode<T> moreTreeNode = treeNode.getChildNodes().get(MORE_SYMBOL);
+        /* topics start with $ are not matched by wildcard on the first level */
+        boolean wildcard = index > 0 || !lastTopic.startsWith(SYSTEM_SYMBOL);
+        TreeNode<T> moreTreeNode = wildcard ? treeNode.getChildNodes().get(MORE_SYMBOL) : null;
         if (moreTreeNode != null) {
             objectLists.addAll(moreTreeNode.getObjects());
         }
@@ -76,17 +80,20 @@ public class TreeNode<T> {
                 if (lists != null && lists.size() > 0) {
                     objectLists.addAll(lists);
                 }
+                /* a/# also matches a */
+                loadMoreObjects(localTreeNode, objectLists);
             }
-            localTreeNode = treeNode.getChildNodes().get(ONE_SYMBOL);
+            localTreeNode = wildcard ? treeNode.getChildNodes().get(ONE_SYMBOL) : null;
             if (localTreeNode != null) {
                 Set<T> lists = localTreeNode.getObjects();
                 if (lists != null && lists.size() > 0) {
                     objectLists.addAll(lists);
                 }
+                loadMoreObjects(localTreeNode, objectLists);
             }
 
         } else {
-            TreeNode<T> oneTreeNode = treeNode.getChildNodes().get(ONE_SYMBOL);
+            TreeNode<T> oneTreeNode = wildcard ? treeNode.getChildNodes().get(ONE_SYMBOL) : null;
             if (oneTreeNode != null) {
                 loadTreeObjects(oneTreeNode, objectLists, topics, index + 1);
             }
@@ -98,6 +105,13 @@ public class TreeNode<T> {
 
     }
 
+    private void loadMoreObjects(TreeNode<T> treeNode, LinkedList<T> objectLists) {
+        TreeNode<T> moreTreeNode = treeNode.getChildNodes().get(MORE_SYMBOL);
+        if (moreTreeNode != null) {
+            objectLists.addAll(moreTreeNode.getObjects());
+        }
+    }
+
     public boolean removeObjectTopic(String topicFilter,T t) {
         TreeNode<T> node = this;
         String[] topics = topicFilter.split("/");
@@ -28,6 +28,6 @@ public class TreeTopicFilter<T> implements TopicFilter<T> {
 
     @Override
     public Set<T> getAllObjectsTopic() {
-        return rootTreeNode.getObjects();
+        return rootTreeNode.getAllObjectsTopic();
     }
 }
@@ -2,7 +2,9 @@ package io.github.quickmsg.common.utils;
 
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
+import java.net.SocketAddress;
 import java.util.Enumeration;
 
 /**
@@ -39,4 +41,18 @@ public class IPUtils {
             return "";
         }
     }
+
+    /**
+     * 获取远程地址的 ip, 不包含端口
+     *
+     * @param socketAddress {@link SocketAddress}
+     * @return {@link String}
+     */
+    public static String getHost(SocketAddress socketAddress) {
+        if (socketAddress instanceof InetSocketAddress) {
+            InetSocketAddress inetSocketAddress = (InetSocketAddress) socketAddress;
+            return inetSocketAddress.getAddress() == null ? inetSocketAddress.getHostString() : inetSocketAddress.getAddress().getHostAddress();
+        }
+        return String.valueOf(socketAddress);
+    }
 }
@@ -11,6 +11,16 @@ import java.util.List;
  */
 public class MqttMessageUtils {
 
+    /**
+     * MQTT5 原因码: Packet Identifier not found
+     */
+    public static final byte PACKET_ID_NOT_FOUND = (byte) 0x92;
+
+    /**
+     * MQTT5 原因码: Receive Maximum exceeded
+     */
+    public static final byte RECEIVE_MAXIMUM_EXCEEDED = (byte) 0x93;
+
 
     public static MqttPublishMessage buildPub(boolean isDup, MqttQoS qoS, int messageId, String topic, ByteBuf message) {
         MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, isDup, qoS, false, 0);
@@ -35,18 +45,45 @@ public class MqttMessageUtils {
         return ackMessage(MqttMessageType.PUBREC, messageId, false);
     }
 
+    /**
+     * 带原因码的 PUBREC, 只在 MQTT5 连接上编码原因码
+     */
+    public static MqttPubAckMessage buildPublishRec(int messageId, byte reasonCode) {
+        return replyMessage(MqttMessageType.PUBREC, messageId, reasonCode);
+    }
+
     public static MqttPubAckMessage buildPublishRel(int messageId) {
         MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(MqttMessageType.PUBREL, false, MqttQoS.AT_LEAST_ONCE, false, 0x02);
         MqttMessageIdVariableHeader from = MqttMessageIdVariableHeader.from(messageId);
         return new MqttPubAckMessage(mqttFixedHeader, from);
     }
 
+    /**
+     * 带原因码的 PUBREL, 只在 MQTT5 连接上编码原因码
+     */
+    public static MqttPubAckMessage buildPublishRel(int messageId, byte reasonCode) {
+        MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(MqttMessageType.PUBREL, false, MqttQoS.AT_LEAST_ONCE, false, 0x02);
+        return new MqttPubAckMessage(mqttFixedHeader, new MqttPubReplyMessageVariableHeader(messageId, reasonCode, MqttProperties.NO_PROPERTIES));
+    }
+
 
     public static MqttPubAckMessage buildPublishComp(int messageId) {
         return ackMessage(MqttMessageType.PUBCOMP, messageId, false);
 
     }
 
+    /**
+     * 带原因码的 PUBCOMP, 只在 MQTT5 连接上编码原因码
+     */
+    public static MqttPubAckMessage buildPublishComp(int messageId, byte reasonCode) {
+        return replyMessage(MqttMessageType.PUBCOMP, messageId, reasonCode);
+    }
+
+    private static MqttPubAckMessage replyMessage(MqttMessageType mqttMessageType, int messageId, byte reasonCode) {
+        MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(mqttMessageType, false, MqttQoS.AT_MOST_ONCE, false, 0x02);
+        return new MqttPubAckMessage(mqttFixedHeader, new MqttPubReplyMessageVariableHeader(messageId, reasonCode, MqttProperties.NO_PROPERTIES));
+    }
+
     private static MqttPubAckMessage ackMessage(MqttMessageType mqttMessageType, int messageId, boolean isRetain) {
         MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(mqttMessageType, false, MqttQoS.AT_MOST_ONCE, isRetain, 0x02);
         MqttMessageIdVariableHeader from = MqttMessageIdVariableHeader.from(messageId);
@@ -69,7 +106,11 @@ public class MqttMessageUtils {
     }
 
     public static MqttConnAckMessage buildConnectAck(MqttConnectReturnCode connectReturnCode) {
-        MqttConnAckVariableHeader mqttConnAckVariableHeader = new MqttConnAckVariableHeader(connectReturnCode, false);
+        return buildConnectAck(connectReturnCode, false);
+    }
+
+    public static MqttConnAckMessage buildConnectAck(MqttConnectReturnCode connectReturnCode, boolean sessionPresent) {
+        MqttConnAckVariableHeader mqttConnAckVariableHeader = new MqttConnAckVariableHeader(connectReturnCode, sessionPresent);
         MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(
                 MqttMessageType.CONNACK, false, MqttQoS.AT_MOST_ONCE, false, 0X02);
         return new MqttConnAckMessage(mqttFixedHeader, mqttConnAckVariableHeader);
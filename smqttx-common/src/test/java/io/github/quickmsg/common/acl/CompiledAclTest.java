@@ -0,0 +1,102 @@
+package io.github.quickmsg.common.acl;
+
+import io.github.quickmsg.common.acl.filter.AclFunction;
+import io.github.quickmsg.common.channel.MqttChannel;
+import org.casbin.jcasbin.main.Enforcer;
+import org.casbin.jcasbin.model.Model;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 编译后的 ACL 与 jcasbin 结果对比, 以及连接缓存失效测试
+ *
+ * @author luxurong
+ */
+public class CompiledAclTest {
+
+    private static final List<List<String>> POLICIES = Arrays.asList(
+            Arrays.asList("all", "*", "PUBLISH", "allow"),
+            Arrays.asList("all", "*", "SUBSCRIBE", "allow"),
+            Arrays.asList("device-1", "sys/*", "PUBLISH", "deny"),
+            Arrays.asList("ip{10.1.0.0/16}", "admin/*", "SUBSCRIBE", "deny"),
+            Arrays.asList("ip{10.2.3.4/32}", "secret", "PUBLISH", "deny"),
+            Arrays.asList("device-2", "sys/device-2/*", "PUBLISH", "allow"),
+            Arrays.asList("all", "sys/*", "PUBLISH", "deny"),
+            Arrays.asList("all", "ALL", "ALL", "allow")
+    );
+
+    @Test
+    public void sameDecisionsAsEnforcer() {
+        Enforcer enforcer = enforcer();
+        CompiledAcl compiledAcl = CompiledAcl.compile(1, POLICIES);
+        String[] clientIds = {"device-1", "device-2", "device-3"};
+        String[] ips = {"10.1.2.3", "10.2.3.4", "192.168.1.1"};
+        String[] topics = {"a/b", "sys", "sys/", "sys/device-2/x", "secret", "secret/x", "admin/1", "admin", ""};
+        for (String clientId : clientIds) {
+            for (String ip : ips) {
+                for (String topic : topics) {
+                    for (AclAction action : new AclAction[]{AclAction.PUBLISH, AclAction.SUBSCRIBE}) {
+                        boolean expected = enforcer.enforce(clientId + ":" + ip, topic, action.name());
+                        Assert.assertEquals(clientId + " " + ip + " " + topic + " " + action, expected,
+                                compiledAcl.check(clientId, CompiledAcl.parseIp(ip), topic, action));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void memoInvalidatedByVersion() {
+        MqttChannel mqttChannel = new MqttChannel();
+        mqttChannel.setClientId("device-1");
+        mqttChannel.setAddress("10.1.2.3:50000");
+        CompiledAcl allow = CompiledAcl.compile(1, POLICIES.subList(0, 2));
+        Assert.assertTrue(allow.check(mqttChannel, "sys/a", AclAction.PUBLISH));
+        AclMemo memo = mqttChannel.getAclMemo();
+        Assert.assertTrue(allow.check(mqttChannel, "sys/a", AclAction.PUBLISH));
+        Assert.assertSame(memo, mqttChannel.getAclMemo());
+
+        CompiledAcl deny = CompiledAcl.compile(2, POLICIES);
+        Assert.assertFalse(deny.check(mqttChannel, "sys/a", AclAction.PUBLISH));
+        Assert.assertFalse(deny.check(mqttChannel, "admin/1", AclAction.SUBSCRIBE));
+        Assert.assertTrue(deny.check(mqttChannel, "a/b", AclAction.SUBSCRIBE));
+        Assert.assertNotSame(memo, mqttChannel.getAclMemo());
+    }
+
+    @Test
+    public void plainIpMatchesSingleAddress() {
+        /* jcasbin 的 ipMatch 对不带前缀的地址不相等时抛异常, 这里按 /32 处理 */
+        CompiledAcl compiledAcl = CompiledAcl.compile(1, Arrays.asList(
+                Arrays.asList("all", "*", "PUBLISH", "allow"),
+                Arrays.asList("ip{10.2.3.4}", "secret", "PUBLISH", "deny")));
+        Assert.assertFalse(compiledAcl.check("device-1", CompiledAcl.parseIp("10.2.3.4"), "secret", AclAction.PUBLISH));
+        Assert.assertTrue(compiledAcl.check("device-1", CompiledAcl.parseIp("10.2.3.5"), "secret", AclAction.PUBLISH));
+    }
+
+    @Test
+    public void parseIp() {
+        Assert.assertEquals(0x0A010203L, CompiledAcl.parseIp("10.1.2.3"));
+        Assert.assertEquals(0xFFFFFFFFL, CompiledAcl.parseIp("255.255.255.255"));
+        Assert.assertEquals(-1, CompiledAcl.parseIp("256.1.1.1"));
+        Assert.assertEquals(-1, CompiledAcl.parseIp("1.2.3"));
+        Assert.assertEquals(-1, CompiledAcl.parseIp("1.2.3.4.5"));
+        Assert.assertEquals(-1, CompiledAcl.parseIp("::1"));
+    }
+
+    private static Enforcer enforcer() {
+        Model model = new Model();
+        model.addDef("r", "r", "sub, obj, act");
+        model.addDef("p", "p", " sub, obj, act, eft");
+        model.addDef("g", "g", "_, _");
+        model.addDef("e", "e", "some(where (p.eft == allow)) && !some(where (p.eft == deny))");
+        model.addDef("m", "m", "r.act == p.act && keyMatch(r.obj,p.obj)  && filter(r.sub, p.sub)");
+        Enforcer enforcer = new Enforcer(model);
+        enforcer.addFunction("filter", new AclFunction());
+        POLICIES.forEach(policy -> enforcer.addNamedPolicy("p", policy));
+        return enforcer;
+    }
+
+}
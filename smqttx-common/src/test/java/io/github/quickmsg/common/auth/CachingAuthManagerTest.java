@@ -0,0 +1,105 @@
+package io.github.quickmsg.common.auth;
+
+import org.junit.Assert;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 认证结果缓存, 有效期与并发合并测试
+ *
+ * @author luxurong
+ */
+public class CachingAuthManagerTest {
+
+    private static final byte[] PASSWORD = "secret".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void cachesAllowAndDenyWithSeparateTtl() {
+        CachingAuthManager authManager = new CachingAuthManager((userName, password, clientId) -> {
+            calls.incrementAndGet();
+            return Mono.just(new String(password, StandardCharsets.UTF_8).equals("secret"));
+        }, 100, 60, 5, now::get);
+
+        Assert.assertTrue(authManager.auth("user", PASSWORD, "device-1").block());
+        Assert.assertTrue(authManager.auth("user", PASSWORD, "device-1").block());
+        Assert.assertFalse(authManager.auth("user", "wrong".getBytes(StandardCharsets.UTF_8), "device-1").block());
+        Assert.assertFalse(authManager.auth("user", "wrong".getBytes(StandardCharsets.UTF_8), "device-1").block());
+        Assert.assertEquals(2, calls.get());
+
+        /* 拒绝先过期 */
+        now.set(TimeUnit.SECONDS.toNanos(10));
+        Assert.assertFalse(authManager.auth("user", "wrong".getBytes(StandardCharsets.UTF_8), "device-1").block());
+        Assert.assertTrue(authManager.auth("user", PASSWORD, "device-1").block());
+        Assert.assertEquals(3, calls.get());
+
+        now.set(TimeUnit.SECONDS.toNanos(61));
+        Assert.assertTrue(authManager.auth("user", PASSWORD, "device-1").block());
+        Assert.assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void coalescesConcurrentLookups() {
+        Sinks.One<Boolean> result = Sinks.one();
+        CachingAuthManager authManager = new CachingAuthManager((userName, password, clientId) -> {
+            calls.incrementAndGet();
+            return result.asMono();
+        }, 100, 60, 5, now::get);
+
+        AtomicInteger allowed = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            authManager.auth("user", PASSWORD, "device-1").subscribe(ok -> {
+                if (ok) {
+                    allowed.incrementAndGet();
+                }
+            });
+        }
+        Assert.assertEquals(1, calls.get());
+        result.tryEmitValue(true);
+        Assert.assertEquals(10, allowed.get());
+        Assert.assertTrue(authManager.auth("user", PASSWORD, "device-1").block());
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void errorIsDeniedButNotCached() {
+        CachingAuthManager authManager = new CachingAuthManager((userName, password, clientId) -> {
+            if (calls.incrementAndGet() == 1) {
+                return Mono.error(new IllegalStateException("backend down"));
+            }
+            return Mono.just(true);
+        }, 100, 60, 5, now::get);
+
+        Assert.assertFalse(authManager.auth("user", PASSWORD, "device-1").block());
+        Assert.assertTrue(authManager.auth("user", PASSWORD, "device-1").block());
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        CachingAuthManager authManager = new CachingAuthManager((userName, password, clientId) -> {
+            calls.incrementAndGet();
+            return Mono.just(true);
+        }, 2, 60, 5, now::get);
+
+        authManager.auth("user", PASSWORD, "device-1").block();
+        authManager.auth("user", PASSWORD, "device-2").block();
+        authManager.auth("user", PASSWORD, "device-1").block();
+        authManager.auth("user", PASSWORD, "device-3").block();
+        Assert.assertEquals(2, authManager.size());
+        authManager.auth("user", PASSWORD, "device-1").block();
+        Assert.assertEquals(3, calls.get());
+        authManager.auth("user", PASSWORD, "device-2").block();
+        Assert.assertEquals(4, calls.get());
+    }
+
+}
@@ -0,0 +1,142 @@
+package io.github.quickmsg.common.limit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CONNECT 准入控制测试, 时间由测试推进
+ *
+ * @author luxurong
+ */
+public class ConnectLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final Scheduler timer = Schedulers.newSingle("connect-limiter-test", true);
+
+    private final List<String> admitted = new ArrayList<>();
+
+    private final List<String> rejected = new ArrayList<>();
+
+    @After
+    public void dispose() {
+        timer.dispose();
+    }
+
+    @Test
+    public void queuesOverGlobalRateAndRejectsWhenFull() {
+        ConnectLimiter limiter = new ConnectLimiter(10, 2, 0, 0, 2, now::get, timer);
+        for (int i = 0; i < 5; i++) {
+            acquire(limiter, "10.0.0." + i, "c" + i);
+        }
+        /* 突发 2 个直接放行, 2 个排队, 1 个拒绝 */
+        Assert.assertEquals(list("c0", "c1"), admitted());
+        Assert.assertEquals(list("c4"), rejected);
+        Assert.assertEquals(2, limiter.getPending());
+
+        /* 100ms 补充 1 个令牌, 按排队顺序放行 */
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        limiter.drain();
+        Assert.assertEquals(list("c0", "c1", "c2"), admitted());
+        /* 已有排队时新连接排在后面 */
+        acquire(limiter, "10.0.0.9", "c5");
+        Assert.assertEquals(2, limiter.getPending());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        limiter.drain();
+        Assert.assertEquals(list("c0", "c1", "c2", "c3", "c5"), admitted());
+        Assert.assertEquals(0, limiter.getPending());
+        Assert.assertEquals(5, limiter.getAdmitted());
+        Assert.assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    public void skipsClosedAndRejectsAfterTimeout() {
+        ConnectLimiter limiter = new ConnectLimiter(10, 1, 0, 0, 10, now::get, timer);
+        acquire(limiter, "10.0.0.1", "c0");
+        AtomicBoolean active = new AtomicBoolean(true);
+        limiter.acquire("10.0.0.2", active::get, () -> admitted.add("c1"), () -> rejected.add("c1"));
+        acquire(limiter, "10.0.0.3", "c2");
+        Assert.assertEquals(2, limiter.getPending());
+
+        /* 排队期间断开的连接不占用令牌 */
+        active.set(false);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        limiter.drain();
+        Assert.assertEquals(list("c0", "c2"), admitted());
+        Assert.assertTrue(rejected.isEmpty());
+
+        /* 等待超过上限时拒绝, 即使已有令牌 */
+        acquire(limiter, "10.0.0.4", "c3");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(ConnectLimiter.PENDING_TIMEOUT));
+        limiter.drain();
+        Assert.assertEquals(list("c0", "c2"), admitted());
+        Assert.assertEquals(list("c3"), rejected);
+        Assert.assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    public void capsPendingSizeByTimeout() {
+        ConnectLimiter limiter = new ConnectLimiter(2, 1, 0, 0, 10000, now::get, timer);
+        for (int i = 0; i < 10; i++) {
+            acquire(limiter, "10.0.0." + i, "c" + i);
+        }
+        /* 1.5 秒内只能放行 3 个 */
+        Assert.assertEquals(list("c0"), admitted());
+        Assert.assertEquals(3, limiter.getPending());
+        Assert.assertEquals(6, rejected.size());
+    }
+
+    @Test
+    public void rejectsOverIpRate() {
+        ConnectLimiter limiter = new ConnectLimiter(0, 0, 1, 2, 0, now::get, timer);
+        acquire(limiter, "10.0.0.1", "a0");
+        acquire(limiter, "10.0.0.1", "a1");
+        acquire(limiter, "10.0.0.1", "a2");
+        acquire(limiter, "10.0.0.2", "b0");
+        Assert.assertEquals(list("a0", "a1", "b0"), admitted());
+        Assert.assertEquals(list("a2"), rejected);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        acquire(limiter, "10.0.0.1", "a3");
+        Assert.assertEquals(list("a0", "a1", "b0", "a3"), admitted());
+    }
+
+    @Test
+    public void disabledWithoutRates() {
+        Assert.assertFalse(new ConnectLimiter(0, 0, 0, 0, 0, now::get, timer).isEnabled());
+        Assert.assertTrue(new ConnectLimiter(0, 0, 5, 5, 0, now::get, timer).isEnabled());
+    }
+
+    private void acquire(ConnectLimiter limiter, String ip, String clientId) {
+        limiter.acquire(ip, () -> {
+            synchronized (admitted) {
+                admitted.add(clientId);
+            }
+        }, () -> rejected.add(clientId));
+    }
+
+    private List<String> admitted() {
+        synchronized (admitted) {
+            return new ArrayList<>(admitted);
+        }
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.github.quickmsg.common.log;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 事件日志测试
+ *
+ * @author luxurong
+ */
+public class LogManagerTest {
+
+    @Test
+    public void serializesOnDrainThreadAndSkipsDropped() throws Exception {
+        LogManager logManager = new LogManager("127.0.0.1", 4, null);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<String, Boolean> threads = new ConcurrentHashMap<>();
+        AtomicInteger serialized = new AtomicInteger();
+        /* 第一条阻塞输出线程, 后续记录堆积在队列里 */
+        logManager.printInfo(null, LogEvent.SYSTEM, LogStatus.SUCCESS, (Supplier<String>) () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            serialized.incrementAndGet();
+            return "blocked";
+        });
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        int offered = 32;
+        for (int i = 0; i < offered; i++) {
+            logManager.printInfo(null, LogEvent.SYSTEM, LogStatus.SUCCESS, (Supplier<String>) () -> {
+                threads.put(Thread.currentThread().getName(), Boolean.TRUE);
+                serialized.incrementAndGet();
+                return "record";
+            });
+        }
+        Assert.assertEquals(0, serialized.get());
+        long dropped = logManager.getDropCount();
+        Assert.assertTrue(dropped > 0);
+
+        release.countDown();
+        long expected = 1 + offered - dropped;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (serialized.get() < expected) {
+            Assert.assertTrue("timeout", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        /* 丢弃的记录没有序列化 */
+        Assert.assertEquals(expected, serialized.get());
+        Assert.assertFalse(threads.containsKey(Thread.currentThread().getName()));
+        Assert.assertTrue(threads.keySet().stream().allMatch(name -> name.startsWith("event-log")));
+    }
+
+}
@@ -0,0 +1,98 @@
+package io.github.quickmsg.common.message.mqtt;
+
+import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.util.AttributeKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 预编码报文与 {@link MqttEncoder} 编码结果一致性测试
+ *
+ * @author luxurong
+ */
+public class PublishFrameTest {
+
+    private static final AttributeKey<MqttVersion> MQTT_VERSION_KEY = AttributeKey.valueOf("NETTY_CODEC_MQTT_VERSION");
+
+    private static final String TOPIC = "site/1/status";
+
+    private static byte[] encode(MqttQoS qoS, int messageId, boolean retain, byte[] body, MqttVersion version) {
+        EmbeddedChannel channel = new EmbeddedChannel(MqttEncoder.INSTANCE);
+        channel.attr(MQTT_VERSION_KEY).set(version);
+        channel.writeOutbound(MqttMessageUtils.buildPub(false, qoS, retain, messageId, TOPIC,
+                PooledByteBufAllocator.DEFAULT.buffer().writeBytes(body)));
+        ByteBuf buf = channel.readOutbound();
+        byte[] bytes = ByteBufUtil.getBytes(buf);
+        buf.release();
+        channel.finishAndReleaseAll();
+        return bytes;
+    }
+
+    private static PublishMessage message(byte[] body, boolean retain) {
+        PublishMessage publishMessage = new PublishMessage();
+        publishMessage.setTopic(TOPIC);
+        publishMessage.setQos(MqttQoS.EXACTLY_ONCE.value());
+        publishMessage.setRetain(retain);
+        publishMessage.setPayload(PooledByteBufAllocator.DEFAULT.buffer().writeBytes(body));
+        return publishMessage;
+    }
+
+    private static void assertFrame(byte[] body, boolean retain) {
+        PublishMessage publishMessage = message(body, retain);
+        PublishFrame publishFrame = new PublishFrame(publishMessage);
+        for (MqttVersion version : new MqttVersion[]{MqttVersion.MQTT_3_1_1, MqttVersion.MQTT_5}) {
+            for (MqttQoS qoS : new MqttQoS[]{MqttQoS.AT_MOST_ONCE, MqttQoS.AT_LEAST_ONCE, MqttQoS.EXACTLY_ONCE}) {
+                for (int messageId : new int[]{1, 258, 65535}) {
+                    int packetId = qoS == MqttQoS.AT_MOST_ONCE ? 0 : messageId;
+                    ByteBuf frame = publishFrame.encode(qoS, packetId, version);
+                    Assert.assertArrayEquals(version + " " + qoS + " " + messageId,
+                            encode(qoS, packetId, retain, body, version), ByteBufUtil.getBytes(frame));
+                    frame.release();
+                }
+            }
+        }
+        publishFrame.release();
+        Assert.assertEquals(1, publishMessage.getPayload().refCnt());
+        publishMessage.release();
+    }
+
+    @Test
+    public void matchesEncoder() {
+        assertFrame("{\"temperature\":21.5}".getBytes(StandardCharsets.UTF_8), false);
+        assertFrame(new byte[0], true);
+    }
+
+    @Test
+    public void matchesEncoderForMultiByteRemainingLength() {
+        assertFrame(new byte[20000], false);
+    }
+
+    @Test
+    public void qos0SubscribersShareOneFrame() {
+        PublishMessage publishMessage = message("shared".getBytes(StandardCharsets.UTF_8), false);
+        ByteBuf payload = publishMessage.getPayload();
+        PublishFrame publishFrame = new PublishFrame(publishMessage);
+        ByteBuf first = publishFrame.encode(MqttQoS.AT_MOST_ONCE, 0, MqttVersion.MQTT_3_1_1);
+        ByteBuf second = publishFrame.encode(MqttQoS.AT_MOST_ONCE, 0, MqttVersion.MQTT_3_1_1);
+        /* 两次获取的都是缓存报文的 duplicate, 共享同一个引用计数 */
+        Assert.assertEquals(3, first.refCnt());
+        Assert.assertEquals(3, second.refCnt());
+        publishFrame.release();
+        /* 已经交给写出流程的报文在释放前保持可读 */
+        Assert.assertArrayEquals(ByteBufUtil.getBytes(first), ByteBufUtil.getBytes(second));
+        first.release();
+        second.release();
+        publishMessage.release();
+        Assert.assertEquals(0, payload.refCnt());
+    }
+
+}
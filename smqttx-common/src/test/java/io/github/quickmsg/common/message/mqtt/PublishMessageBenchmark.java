@@ -0,0 +1,150 @@
+package io.github.quickmsg.common.message.mqtt;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.utils.MessageUtils;
+import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站 PUBLISH 构建 {@link PublishMessage} 与 {@link ClusterMessage} 的分配对比, 使用 -prof gc 查看 gc.alloc.rate.norm
+ * <p>
+ * legacy 为之前的实现: 立即格式化时间, 拷贝 clientId, 拷贝消息体.
+ * 每个用例都构建一条入站消息和一条转发用的集群消息, 两者都交给 {@link Blackhole}
+ *
+ * @author luxurong
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dio.netty.leakDetection.level=disabled")
+public class PublishMessageBenchmark {
+
+    private MqttPublishMessage mqttPublishMessage;
+
+    private MqttChannel mqttChannel;
+
+    @Setup
+    public void setup() {
+        mqttChannel = new MqttChannel();
+        mqttChannel.setClientId("device-0001");
+        mqttPublishMessage = MqttMessageUtils.buildPub(false, MqttQoS.AT_LEAST_ONCE, false, 1, "site/1/device/1/status",
+                PooledByteBufAllocator.DEFAULT.buffer().writeBytes("{\"temperature\":21.5,\"humidity\":40}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        mqttPublishMessage.release();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        LegacyPublishMessage message = new LegacyPublishMessage(mqttPublishMessage, mqttChannel);
+        blackhole.consume(message);
+        blackhole.consume(new LegacyClusterMessage(message));
+    }
+
+    @Benchmark
+    public void slim(Blackhole blackhole) {
+        PublishMessage message = new PublishMessage(mqttPublishMessage, mqttChannel);
+        blackhole.consume(message);
+        blackhole.consume(new ClusterMessage(message));
+    }
+
+    @Benchmark
+    public void slimZeroCopy(Blackhole blackhole) {
+        PublishMessage message = new PublishMessage(mqttPublishMessage, mqttChannel, true);
+        blackhole.consume(message);
+        blackhole.consume(new ClusterMessage(message));
+        message.release();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PublishMessageBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+
+
+    static class LegacyPublishMessage {
+
+        private final int messageId;
+
+        private final String event = "publish";
+
+        private final String topic;
+
+        private final int qos;
+
+        private final boolean retain;
+
+        private final byte[] body;
+
+        private final String time;
+
+        private final String clientId;
+
+        private final MqttChannel mqttChannel;
+
+        LegacyPublishMessage(MqttPublishMessage mqttPublishMessage, MqttChannel mqttChannel) {
+            this.mqttChannel = mqttChannel;
+            this.messageId = mqttPublishMessage.variableHeader().packetId();
+            this.topic = mqttPublishMessage.variableHeader().topicName();
+            this.qos = mqttPublishMessage.fixedHeader().qosLevel().value();
+            this.retain = mqttPublishMessage.fixedHeader().isRetain();
+            this.body = MessageUtils.readByteBuf(mqttPublishMessage.payload());
+            this.time = DateUtil.format(new Date(), DatePattern.NORM_DATETIME_FORMAT);
+            this.clientId = Optional.ofNullable(mqttChannel)
+                    .map(MqttChannel::getClientId).orElse(null);
+        }
+    }
+
+    static class LegacyClusterMessage {
+
+        private final int qos;
+
+        private final boolean retain;
+
+        private final byte[] body;
+
+        private final String connectTime;
+
+        private final String clientId;
+
+        private final String topic;
+
+        private final String originTopic;
+
+        private final int channelId;
+
+        LegacyClusterMessage(LegacyPublishMessage message) {
+            this.topic = message.topic;
+            this.originTopic = message.topic;
+            this.qos = message.qos;
+            this.retain = message.retain;
+            this.body = message.body;
+            this.connectTime = message.time;
+            this.channelId = Optional.ofNullable(message.mqttChannel).map(MqttChannel::getId).orElse(0);
+            this.clientId = message.clientId;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package io.github.quickmsg.common.message.mqtt;
+
+import io.github.quickmsg.common.log.LogManager;
+import io.github.quickmsg.common.utils.JacksonUtil;
+import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * zero copy 下发在 paranoid 泄漏检测下的引用计数测试
+ *
+ * @author luxurong
+ */
+public class PublishMessageLeakTest {
+
+    private static final Queue<String> LEAKS = new ConcurrentLinkedQueue<>();
+
+    static {
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        ResourceLeakDetectorFactory.setResourceLeakDetectorFactory(new ResourceLeakDetectorFactory() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public <T> ResourceLeakDetector<T> newResourceLeakDetector(Class<T> resource, int samplingInterval, long maxActive) {
+                return new ResourceLeakDetector<T>(resource, samplingInterval, maxActive) {
+                    @Override
+                    protected void reportTracedLeak(String resourceType, String records) {
+                        LEAKS.add(resourceType + records);
+                    }
+
+                    @Override
+                    protected void reportUntracedLeak(String resourceType) {
+                        LEAKS.add(resourceType);
+                    }
+                };
+            }
+        });
+    }
+
+    private static final byte[] BODY = "{\"temperature\":21.5}".getBytes(StandardCharsets.UTF_8);
+
+    private static final int SUBSCRIBERS = 1000;
+
+
+    @After
+    public void checkLeaks() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+            /* leak detector only reports while tracking new buffers */
+            PooledByteBufAllocator.DEFAULT.buffer(1).release();
+        }
+        Assert.assertTrue(String.join("\n", LEAKS), LEAKS.isEmpty());
+    }
+
+    @Test
+    public void fanOutSharesInboundPayload() {
+        ByteBuf payload = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(BODY);
+        MqttPublishMessage inbound = MqttMessageUtils.buildPub(false, MqttQoS.AT_MOST_ONCE, false, 0, "site/1/status", payload);
+        PublishMessage publishMessage = new PublishMessage(inbound, null, true);
+        /* reactor netty releases the inbound message after onNext */
+        inbound.release();
+        Assert.assertEquals(1, payload.refCnt());
+
+        PublishMessage delivery = new ClusterMessage(publishMessage).toPublishMessage();
+        List<MqttPublishMessage> frames = new ArrayList<>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            frames.add(delivery.buildMqttMessage(MqttQoS.AT_MOST_ONCE, 0));
+        }
+        Assert.assertEquals(SUBSCRIBERS + 1, payload.refCnt());
+        for (MqttPublishMessage frame : frames) {
+            Assert.assertArrayEquals(BODY, ByteBufUtil.getBytes(frame.payload()));
+            /* the encoder releases every frame after writing */
+            frame.release();
+        }
+        Assert.assertEquals(1, payload.refCnt());
+
+        publishMessage.release();
+        publishMessage.release();
+        Assert.assertEquals(0, payload.refCnt());
+    }
+
+    @Test
+    public void detachCopiesBodyAndReleasesPayload() {
+        ByteBuf payload = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(BODY);
+        MqttPublishMessage inbound = MqttMessageUtils.buildPub(false, MqttQoS.EXACTLY_ONCE, false, 1, "site/1/status", payload);
+        PublishMessage publishMessage = new PublishMessage(inbound, null, true);
+        inbound.release();
+
+        publishMessage.detach();
+        Assert.assertEquals(0, payload.refCnt());
+        Assert.assertArrayEquals(BODY, publishMessage.getBody());
+
+        MqttPublishMessage frame = publishMessage.buildMqttMessage(MqttQoS.AT_LEAST_ONCE, 1);
+        Assert.assertArrayEquals(BODY, ByteBufUtil.getBytes(frame.payload()));
+        frame.release();
+    }
+
+    @Test
+    public void logSnapshotKeepsPayloadShared() throws Exception {
+        ByteBuf payload = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(BODY);
+        MqttPublishMessage inbound = MqttMessageUtils.buildPub(false, MqttQoS.AT_MOST_ONCE, false, 0, "site/1/status", payload);
+        PublishMessage publishMessage = new PublishMessage(inbound, null, true);
+        inbound.release();
+
+        String json = JacksonUtil.bean2Json(publishMessage.toLog(false));
+        Assert.assertTrue(json, json.contains("\"bodySize\":" + BODY.length));
+        Assert.assertFalse(json, json.contains("\"body\""));
+        String clusterJson = LogManager.json(new ClusterMessage(publishMessage)).get();
+        Assert.assertTrue(clusterJson, clusterJson.contains("\"topic\":\"site/1/status\""));
+        Field body = PublishMessage.class.getDeclaredField("body");
+        body.setAccessible(true);
+        Assert.assertNull(body.get(publishMessage));
+
+        Assert.assertTrue(JacksonUtil.bean2Json(publishMessage.toLog(true)).contains("\"body\""));
+        publishMessage.release();
+        Assert.assertEquals(0, payload.refCnt());
+    }
+
+    @Test
+    public void clusterMessageMaterializesBodyForRemoteNodes() {
+        ByteBuf payload = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(BODY);
+        MqttPublishMessage inbound = MqttMessageUtils.buildPub(false, MqttQoS.AT_MOST_ONCE, false, 0, "site/1/status", payload);
+        PublishMessage publishMessage = new PublishMessage(inbound, null, true);
+        inbound.release();
+
+        ClusterMessage clusterMessage = new ClusterMessage(publishMessage);
+        Assert.assertArrayEquals(BODY, clusterMessage.getBody());
+        Assert.assertEquals(1, payload.refCnt());
+
+        publishMessage.release();
+        Assert.assertEquals(0, payload.refCnt());
+    }
+
+}
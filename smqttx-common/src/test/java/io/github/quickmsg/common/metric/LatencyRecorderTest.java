@@ -0,0 +1,82 @@
+package io.github.quickmsg.common.metric;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 延迟直方图与阶段记录测试
+ *
+ * @author luxurong
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void totalCountSurvivesWindows() {
+        LatencyHistogram histogram = new LatencyHistogram(100, 0);
+        for (int i = 0; i < 10; i++) {
+            histogram.record(i * 1000L);
+        }
+        /* 超出范围的值按边界记录 */
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(12, histogram.snapshot(0).getCount());
+        Assert.assertEquals(12, histogram.snapshot(200).getCount());
+        histogram.record(1);
+        Assert.assertEquals(1, histogram.snapshot(400).getCount());
+        Assert.assertEquals(13, histogram.getTotalCount());
+    }
+
+    @Test
+    public void percentilesFromRecordedStages() {
+        AtomicLong now = new AtomicLong(1);
+        LatencyRecorder recorder = new LatencyRecorder(true, TimeUnit.MINUTES.toNanos(1), now::get);
+        for (int i = 1; i <= 1000; i++) {
+            long start = now.get();
+            now.addAndGet(TimeUnit.MICROSECONDS.toNanos(i));
+            Assert.assertEquals(now.get(), recorder.record(LatencyStage.ACL, start));
+        }
+        /* 开始时间为 0 表示上一阶段没有记录 */
+        recorder.record(LatencyStage.ACL, 0);
+
+        LatencyHistogram.Snapshot snapshot = recorder.snapshot(LatencyStage.ACL);
+        Assert.assertEquals(1000, snapshot.getCount());
+        assertNear(TimeUnit.MICROSECONDS.toNanos(500), snapshot.getValueAtPercentile(50));
+        assertNear(TimeUnit.MICROSECONDS.toNanos(990), snapshot.getValueAtPercentile(99));
+        assertNear(TimeUnit.MICROSECONDS.toNanos(1000), snapshot.getMax());
+        Assert.assertEquals(0, recorder.snapshot(LatencyStage.DECODE).getCount());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> acl = (Map<String, Object>) recorder.getLatencyMetric().get("acl");
+        Assert.assertEquals(1000L, acl.get("count"));
+    }
+
+    @Test
+    public void windowDropsOldRecords() {
+        AtomicLong now = new AtomicLong(1);
+        long window = TimeUnit.MINUTES.toNanos(1);
+        LatencyRecorder recorder = new LatencyRecorder(true, window, now::get);
+        recorder.record(LatencyStage.DECODE, now.get() - 100);
+        now.addAndGet(window);
+        Assert.assertEquals(1, recorder.snapshot(LatencyStage.DECODE).getCount());
+        recorder.record(LatencyStage.DECODE, now.get() - 100);
+        now.addAndGet(window);
+        /* 只保留最近一个窗口 */
+        Assert.assertEquals(1, recorder.snapshot(LatencyStage.DECODE).getCount());
+    }
+
+    @Test
+    public void disabledDoesNothing() {
+        Assert.assertEquals(0, LatencyRecorder.DISABLED.record(LatencyStage.DECODE, 1));
+        Assert.assertEquals(0, LatencyRecorder.DISABLED.now());
+        Assert.assertTrue(LatencyRecorder.DISABLED.getLatencyMetric().isEmpty());
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assert.assertTrue(expected + " ~ " + actual, Math.abs(actual - expected) <= expected / 64);
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.github.quickmsg.common.metric;
+
+import io.github.quickmsg.common.metric.local.LocalMetricManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 计数器与指标读取测试
+ *
+ * @author luxurong
+ */
+public class MetricCounterTest {
+
+    @Test
+    public void meterReadsCounterAtScrape() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MetricManager metricManager = new TestMetricManager(meterRegistry);
+        MetricRegistry registry = metricManager.getMetricRegistry();
+        for (int i = 0; i < 5; i++) {
+            registry.getMetricCounter(CounterType.PUBLISH_EVENT).increment();
+        }
+        registry.getMetricCounter(CounterType.CONNECT).increment();
+        registry.getMetricCounter(CounterType.CONNECT).increment();
+        registry.getMetricCounter(CounterType.CONNECT).decrement();
+
+        Assert.assertEquals(5, registry.getMetricCounter(CounterType.PUBLISH_EVENT).getCounter());
+        Assert.assertEquals(5.0, meterRegistry.get(CounterType.PUBLISH_EVENT.getDesc()).functionCounter().count(), 0);
+        Assert.assertEquals(1.0, meterRegistry.get(CounterType.CONNECT.getDesc()).gauge().value(), 0);
+        Assert.assertEquals(0, registry.getMetricCounter(CounterType.CLOSE_EVENT).getCounter());
+    }
+
+    @Test
+    public void localCountsWithoutMeter() {
+        LocalMetricManager metricManager = new LocalMetricManager();
+        Assert.assertSame(metricManager.getMetricRegistry(), metricManager.getMetricRegistry());
+        metricManager.getMetricRegistry().getMetricCounter(CounterType.SUBSCRIBE_EVENT).increment();
+        Assert.assertEquals(1, metricManager.getMetricRegistry().getMetricCounter(CounterType.SUBSCRIBE_EVENT).getCounter());
+    }
+
+    private static class TestMetricManager implements MetricManager {
+
+        private final MetricBean metricBean;
+
+        private final MetricRegistry metricRegistry;
+
+        private TestMetricManager(MeterRegistry meterRegistry) {
+            this.metricBean = new MetricBean() {
+                @Override
+                public MetricBean Close() {
+                    return this;
+                }
+
+                @Override
+                public MeterRegistry getMeterRegistry() {
+                    return meterRegistry;
+                }
+            };
+            this.metricRegistry = new AbstractMetricRegistry(createMetricRegistry(metricBean)) {
+            };
+        }
+
+        @Override
+        public MetricRegistry getMetricRegistry() {
+            return metricRegistry;
+        }
+
+        @Override
+        public MetricBean getMetricBean() {
+            return metricBean;
+        }
+
+        @Override
+        public io.github.quickmsg.common.config.BootstrapConfig.MeterConfig getMeterConfig() {
+            return null;
+        }
+    }
+
+}
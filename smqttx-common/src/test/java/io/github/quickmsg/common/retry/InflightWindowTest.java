@@ -0,0 +1,171 @@
+package io.github.quickmsg.common.retry;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * {@link InflightWindow} 测试
+ *
+ * @author luxurong
+ */
+public class InflightWindowTest {
+
+    private static ByteBuf payload() {
+        return Unpooled.directBuffer().writeBytes(new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void matchesHashSet() {
+        InflightWindow window = new InflightWindow(null, 65535);
+        Set<Integer> expected = new HashSet<>();
+        ByteBuf payload = payload();
+        Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            int messageId = random.nextInt(2000) + 1;
+            if (random.nextBoolean()) {
+                Assert.assertEquals(expected.add(messageId), window.put(messageId, MqttQoS.AT_LEAST_ONCE, false, "t", payload, 0));
+            } else {
+                Assert.assertEquals(expected.remove(messageId), window.remove(messageId));
+            }
+            Assert.assertEquals(expected.size(), window.size());
+        }
+        Assert.assertEquals(1 + expected.size(), payload.refCnt());
+        window.clear();
+        Assert.assertEquals(0, window.size());
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        InflightWindow window = new InflightWindow(null, 2);
+        ByteBuf payload = payload();
+        Assert.assertTrue(window.put(1, MqttQoS.AT_LEAST_ONCE, false, "t", payload, 0));
+        Assert.assertTrue(window.put(2, MqttQoS.AT_LEAST_ONCE, false, "t", payload, 0));
+        Assert.assertFalse(window.put(3, MqttQoS.AT_LEAST_ONCE, false, "t", payload, 0));
+        window.remove(1);
+        /* 仍在等待确认的 messageId 拒绝登记, 不释放旧消息 */
+        Assert.assertFalse(window.put(2, MqttQoS.EXACTLY_ONCE, false, "t", payload, 0));
+        Assert.assertEquals(2, payload.refCnt());
+        Assert.assertTrue(window.put(3, MqttQoS.AT_LEAST_ONCE, false, "t", payload, 0));
+        window.clear();
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+    @Test
+    public void sweepRetriesThenExpires() {
+        InflightWindow window = new InflightWindow(null, 16);
+        ByteBuf payload = payload();
+        window.put(1, MqttQoS.AT_LEAST_ONCE, true, "a/b", payload, 10);
+        window.put(2, MqttQoS.EXACTLY_ONCE, false, "a/c", payload, 12);
+        window.scheduled = true;
+        List<MqttMessage> resends = new ArrayList<>();
+
+        Assert.assertEquals(12, window.sweep(10, 5, 2, resends));
+        Assert.assertEquals(1, resends.size());
+        MqttPublishMessage resend = (MqttPublishMessage) resends.get(0);
+        Assert.assertTrue(resend.fixedHeader().isDup());
+        Assert.assertTrue(resend.fixedHeader().isRetain());
+        Assert.assertEquals(MqttQoS.AT_LEAST_ONCE, resend.fixedHeader().qosLevel());
+        Assert.assertEquals(1, resend.variableHeader().packetId());
+        Assert.assertEquals("a/b", resend.variableHeader().topicName());
+        Assert.assertEquals(payload, resend.payload());
+        resends.forEach(ReferenceCountUtil::release);
+        resends.clear();
+
+        Assert.assertEquals(15, window.sweep(12, 5, 2, resends));
+        Assert.assertEquals(MqttQoS.EXACTLY_ONCE, resends.get(0).fixedHeader().qosLevel());
+        resends.forEach(ReferenceCountUtil::release);
+        resends.clear();
+
+        /* 第二次重试后到期移除 */
+        window.sweep(15, 5, 2, resends);
+        window.sweep(17, 5, 2, resends);
+        resends.forEach(ReferenceCountUtil::release);
+        resends.clear();
+        Assert.assertEquals(22, window.sweep(22, 5, 2, resends));
+        Assert.assertTrue(resends.isEmpty());
+        Assert.assertEquals(0, window.size());
+        Assert.assertFalse(window.scheduled);
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+    @Test
+    public void unacknowledgedInDeliveryOrder() {
+        InflightWindow window = new InflightWindow(null, 16);
+        ByteBuf payload = payload();
+        window.put(9, MqttQoS.AT_LEAST_ONCE, false, "a", payload, 10);
+        window.put(2, MqttQoS.AT_LEAST_ONCE, false, "b", payload, 12);
+        window.put(5, MqttQoS.EXACTLY_ONCE, false, "c", payload, 14);
+        window.scheduled = true;
+        List<MqttMessage> resends = new ArrayList<>();
+        /* 重试后 a 的到期 tick 晚于 b、c, 顺序不变 */
+        window.sweep(10, 5, 3, resends);
+        resends.forEach(ReferenceCountUtil::release);
+        List<String> topics = new ArrayList<>();
+        window.unacknowledged().forEach(message -> topics.add(message.getTopic()));
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), topics);
+        window.clear();
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+    @Test
+    public void sweepHandlesEachDueEntryOnce() {
+        Random random = new Random(11);
+        ByteBuf payload = payload();
+        List<MqttMessage> resends = new ArrayList<>();
+        for (int round = 0; round < 2000; round++) {
+            InflightWindow window = new InflightWindow(null, 64);
+            Set<Integer> retried = new HashSet<>();
+            Set<Integer> kept = new HashSet<>();
+            for (int i = 0; i < 20; i++) {
+                int messageId = random.nextInt(64) + 1;
+                if (retried.contains(messageId) || kept.contains(messageId) || window.contains(messageId)) {
+                    continue;
+                }
+                int choice = random.nextInt(3);
+                if (choice == 0) {
+                    /* 接收方向到期直接移除, 触发后移删除 */
+                    window.await(messageId, 10);
+                } else if (choice == 1) {
+                    window.put(messageId, MqttQoS.AT_LEAST_ONCE, false, "t", payload, 10);
+                    retried.add(messageId);
+                } else {
+                    window.put(messageId, MqttQoS.AT_LEAST_ONCE, false, "t", payload, 20);
+                    kept.add(messageId);
+                }
+            }
+            window.scheduled = true;
+            int next = window.sweep(10, 5, 3, resends);
+            Set<Integer> resent = new HashSet<>();
+            for (MqttMessage resend : resends) {
+                Assert.assertTrue(resent.add(((MqttPublishMessage) resend).variableHeader().packetId()));
+                ReferenceCountUtil.release(resend);
+            }
+            resends.clear();
+            Assert.assertEquals(retried, resent);
+            Assert.assertEquals(retried.size() + kept.size(), window.size());
+            Assert.assertEquals(retried.isEmpty() ? kept.isEmpty() ? 10 : 20 : 15, next);
+            window.clear();
+        }
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+}
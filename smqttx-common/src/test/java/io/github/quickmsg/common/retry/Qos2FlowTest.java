@@ -0,0 +1,199 @@
+package io.github.quickmsg.common.retry;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 丢包情况下 qos2 双向流程测试, 客户端按协议实现, 每个方向的报文随机丢弃
+ *
+ * @author luxurong
+ */
+public class Qos2FlowTest {
+
+    private static final int MESSAGES = 200;
+
+    private static final double LOSS = 0.3;
+
+    private static final int TICKS_PER_PERIOD = 10;
+
+    private final Random random = new Random(11);
+
+    private final TimeAckManager retryManager = new TimeAckManager(100, TimeUnit.MILLISECONDS, 64, 1000, 1,
+            MESSAGES, 0, 300, MESSAGES, false);
+
+    /**
+     * 服务端发往客户端
+     */
+    private final Queue<MqttMessage> toClient = new ArrayDeque<>();
+
+    /**
+     * 客户端发往服务端
+     */
+    private final Queue<MqttMessage> toBroker = new ArrayDeque<>();
+
+    private final MqttChannel mqttChannel = new MqttChannel() {
+        @Override
+        public void write(MqttMessage mqttMessage) {
+            send(toClient, mqttMessage);
+        }
+    };
+
+    private void send(Queue<MqttMessage> link, MqttMessage mqttMessage) {
+        if (random.nextDouble() < LOSS) {
+            ReferenceCountUtil.release(mqttMessage);
+        } else {
+            link.offer(mqttMessage);
+        }
+    }
+
+    private static MqttMessage reply(MqttMessageType type, int messageId) {
+        switch (type) {
+            case PUBREC:
+                return MqttMessageUtils.buildPublishRec(messageId);
+            case PUBREL:
+                return MqttMessageUtils.buildPublishRel(messageId);
+            default:
+                return MqttMessageUtils.buildPublishComp(messageId);
+        }
+    }
+
+    private static int messageId(MqttMessage mqttMessage) {
+        if (mqttMessage instanceof MqttPublishMessage) {
+            return ((MqttPublishMessage) mqttMessage).variableHeader().packetId();
+        }
+        return ((MqttMessageIdVariableHeader) mqttMessage.variableHeader()).messageId();
+    }
+
+    @Test
+    public void exactlyOnceUnderPacketLoss() {
+        ByteBuf payload = Unpooled.directBuffer().writeBytes(new byte[]{1, 2, 3});
+
+        /* 服务端下发 */
+        for (int messageId = 1; messageId <= MESSAGES; messageId++) {
+            Assert.assertEquals(messageId, retryManager.doRetry(mqttChannel, MqttQoS.EXACTLY_ONCE, false, "down", payload));
+            mqttChannel.write(MqttMessageUtils.buildPub(false, MqttQoS.EXACTLY_ONCE, false, messageId, "down", payload.retainedDuplicate()));
+        }
+        /* 客户端上报, 客户端状态: messageId -> 等待的报文类型 */
+        Map<Integer, MqttMessageType> clientInflight = new HashMap<>();
+        for (int messageId = 1; messageId <= MESSAGES; messageId++) {
+            clientInflight.put(messageId, MqttMessageType.PUBREC);
+        }
+
+        Map<Integer, Integer> clientDelivered = new HashMap<>();
+        Set<Integer> clientAwaitingRel = new HashSet<>();
+        Map<Integer, Integer> brokerDelivered = new HashMap<>();
+
+        for (int round = 0; round < 100 && (!clientInflight.isEmpty() || mqttChannel.getInflightWindow().size() > 0); round++) {
+            clientInflight.forEach((messageId, awaiting) -> send(toBroker, awaiting == MqttMessageType.PUBREC
+                    ? MqttMessageUtils.buildPub(true, MqttQoS.EXACTLY_ONCE, false, messageId, "up", Unpooled.EMPTY_BUFFER)
+                    : MqttMessageUtils.buildPublishRel(messageId)));
+            while (!toBroker.isEmpty() || !toClient.isEmpty()) {
+                MqttMessage mqttMessage;
+                while ((mqttMessage = toBroker.poll()) != null) {
+                    int messageId = messageId(mqttMessage);
+                    switch (mqttMessage.fixedHeader().messageType()) {
+                        case PUBLISH:
+                            /* 与 PublishProtocol 一致 */
+                            if (!retryManager.isAwaitingRel(mqttChannel, messageId)) {
+                                Assert.assertTrue(retryManager.awaitRel(mqttChannel, messageId));
+                                brokerDelivered.merge(messageId, 1, Integer::sum);
+                            }
+                            send(toClient, reply(MqttMessageType.PUBREC, messageId));
+                            break;
+                        case PUBREL:
+                            retryManager.completeRel(mqttChannel, messageId);
+                            send(toClient, reply(MqttMessageType.PUBCOMP, messageId));
+                            break;
+                        case PUBREC:
+                            retryManager.relRetry(mqttChannel, messageId);
+                            send(toClient, reply(MqttMessageType.PUBREL, messageId));
+                            break;
+                        case PUBCOMP:
+                            retryManager.cancelRetry(mqttChannel, messageId);
+                            break;
+                        default:
+                            Assert.fail();
+                    }
+                    ReferenceCountUtil.release(mqttMessage);
+                }
+                while ((mqttMessage = toClient.poll()) != null) {
+                    int messageId = messageId(mqttMessage);
+                    switch (mqttMessage.fixedHeader().messageType()) {
+                        case PUBLISH:
+                            if (clientAwaitingRel.add(messageId)) {
+                                clientDelivered.merge(messageId, 1, Integer::sum);
+                            }
+                            send(toBroker, reply(MqttMessageType.PUBREC, messageId));
+                            break;
+                        case PUBREL:
+                            clientAwaitingRel.remove(messageId);
+                            send(toBroker, reply(MqttMessageType.PUBCOMP, messageId));
+                            break;
+                        case PUBREC:
+                            clientInflight.computeIfPresent(messageId, (id, awaiting) -> MqttMessageType.PUBCOMP);
+                            break;
+                        case PUBCOMP:
+                            clientInflight.remove(messageId);
+                            break;
+                        default:
+                            Assert.fail();
+                    }
+                    ReferenceCountUtil.release(mqttMessage);
+                }
+            }
+            for (int i = 0; i < TICKS_PER_PERIOD; i++) {
+                retryManager.advance();
+            }
+        }
+
+        Assert.assertTrue(clientInflight.isEmpty());
+        Assert.assertEquals(0, mqttChannel.getInflightWindow().size());
+        Assert.assertEquals(0, mqttChannel.getAwaitingRel().size());
+        Assert.assertTrue(clientAwaitingRel.isEmpty());
+        for (int messageId = 1; messageId <= MESSAGES; messageId++) {
+            Assert.assertEquals(Integer.valueOf(1), clientDelivered.get(messageId));
+            Assert.assertEquals(Integer.valueOf(1), brokerDelivered.get(messageId));
+        }
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+    @Test
+    public void awaitingRelIsBoundedAndExpires() {
+        TimeAckManager manager = new TimeAckManager(100, TimeUnit.MILLISECONDS, 64, 5, 1, 10, 0, 2, 2, false);
+        Assert.assertTrue(manager.awaitRel(mqttChannel, 1));
+        Assert.assertTrue(manager.awaitRel(mqttChannel, 2));
+        Assert.assertFalse(manager.awaitRel(mqttChannel, 3));
+        /* 重发的 PUBLISH 不占用新的位置 */
+        Assert.assertTrue(manager.awaitRel(mqttChannel, 2));
+        Assert.assertTrue(manager.isAwaitingRel(mqttChannel, 1));
+        for (int i = 0; i < 2 * TICKS_PER_PERIOD; i++) {
+            manager.advance();
+        }
+        Assert.assertFalse(manager.isAwaitingRel(mqttChannel, 1));
+        Assert.assertTrue(manager.awaitRel(mqttChannel, 3));
+        Assert.assertFalse(manager.completeRel(mqttChannel, 1));
+        Assert.assertTrue(manager.completeRel(mqttChannel, 3));
+        Assert.assertTrue(toClient.isEmpty());
+    }
+
+}
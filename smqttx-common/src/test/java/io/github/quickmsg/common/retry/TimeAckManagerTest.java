@@ -0,0 +1,102 @@
+package io.github.quickmsg.common.retry;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TimeAckManager} 待确认窗口已满时排队测试
+ *
+ * @author luxurong
+ */
+public class TimeAckManagerTest {
+
+    private final TimeAckManager retryManager = new TimeAckManager(100, TimeUnit.MILLISECONDS, 64, 5, 1, 2, 3, 300, 10, false);
+
+    private final List<MqttPublishMessage> written = new ArrayList<>();
+
+    private final MqttChannel mqttChannel = new MqttChannel() {
+        @Override
+        public void write(MqttMessage mqttMessage) {
+            written.add((MqttPublishMessage) mqttMessage);
+        }
+    };
+
+    private int doRetry(ByteBuf payload) {
+        return retryManager.doRetry(mqttChannel, MqttQoS.AT_LEAST_ONCE, false, "t", payload);
+    }
+
+    private static List<String> bodies(List<PublishMessage> messages) {
+        List<String> bodies = new ArrayList<>();
+        messages.forEach(message -> bodies.add(new String(message.getBody(), StandardCharsets.UTF_8)));
+        return bodies;
+    }
+
+    @Test
+    public void windowFullParksUntilAck() {
+        List<ByteBuf> payloads = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            payloads.add(Unpooled.copiedBuffer("m" + i, StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(1, doRetry(payloads.get(0)));
+        Assert.assertEquals(2, doRetry(payloads.get(1)));
+        /* 窗口已满, 排队不下发 */
+        Assert.assertEquals(0, doRetry(payloads.get(2)));
+        Assert.assertEquals(0, doRetry(payloads.get(3)));
+        Assert.assertEquals(Arrays.asList("m0", "m1", "m2", "m3"), bodies(retryManager.unacknowledged(mqttChannel)));
+
+        /* 收到 PUBACK 后按顺序下发排队的消息 */
+        retryManager.cancelRetry(mqttChannel, 1);
+        Assert.assertEquals(1, written.size());
+        Assert.assertEquals(3, written.get(0).variableHeader().packetId());
+        Assert.assertEquals("m2", written.get(0).payload().toString(StandardCharsets.UTF_8));
+
+        /* 仍有排队的消息时新消息排在后面, 超出上限丢弃最早的 */
+        Assert.assertEquals(0, doRetry(payloads.get(4)));
+        Assert.assertEquals(0, doRetry(payloads.get(5)));
+        Assert.assertEquals(0, doRetry(payloads.get(6)));
+        Assert.assertEquals(1, payloads.get(3).refCnt());
+        Assert.assertEquals(Arrays.asList("m1", "m2", "m4", "m5", "m6"), bodies(retryManager.unacknowledged(mqttChannel)));
+
+        retryManager.cancelRetry(mqttChannel, 2);
+        retryManager.cancelRetry(mqttChannel, 3);
+        Assert.assertEquals(3, written.size());
+        Assert.assertEquals("m4", written.get(1).payload().toString(StandardCharsets.UTF_8));
+        Assert.assertEquals("m5", written.get(2).payload().toString(StandardCharsets.UTF_8));
+
+        written.forEach(ReferenceCountUtil::release);
+        retryManager.clearRetry(mqttChannel);
+        for (ByteBuf payload : payloads) {
+            Assert.assertEquals(1, payload.refCnt());
+            payload.release();
+        }
+    }
+
+    @Test
+    public void skipsMessageIdStillInflight() {
+        ByteBuf payload = Unpooled.copiedBuffer("m", StandardCharsets.UTF_8);
+        Assert.assertEquals(1, doRetry(payload));
+        mqttChannel.getAtomicInteger().set(65534);
+        Assert.assertEquals(65535, doRetry(payload));
+        retryManager.cancelRetry(mqttChannel, 65535);
+        /* 回绕后 1 仍在等待确认 */
+        Assert.assertEquals(2, doRetry(payload));
+        retryManager.clearRetry(mqttChannel);
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+}
@@ -0,0 +1,238 @@
+package io.github.quickmsg.common.session;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.integrate.Integrate;
+import io.github.quickmsg.common.integrate.SubscribeTopic;
+import io.github.quickmsg.common.integrate.cache.ConnectCache;
+import io.github.quickmsg.common.integrate.topic.IntegrateTopics;
+import io.github.quickmsg.common.message.SessionMessage;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.retry.TimeAckManager;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.Assert;
+import org.junit.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线会话保存、接管与分批补发测试
+ *
+ * @author luxurong
+ */
+public class SessionManagerTest {
+
+    private static final String CLIENT_ID = "device-1";
+
+    private final MemorySessionStore sessionStore = new MemorySessionStore();
+
+    private final List<SubscribeTopic> removed = new ArrayList<>();
+
+    private final TimeAckManager retryManager = new TimeAckManager(100, TimeUnit.MILLISECONDS, 64, 5, 5, 100, 100, 300, 100);
+
+    private SessionManager sessionManager(int queueSize) {
+        return new SessionManager(sessionStore, new TestTopics(), retryManager, queueSize, 0, 3600, 2, Schedulers.immediate());
+    }
+
+    @Test
+    public void drainsInOrderAfterReconnect() {
+        SessionManager sessionManager = sessionManager(100);
+        TestChannel first = new TestChannel(false);
+        Assert.assertFalse(sessionManager.online(first));
+        sessionManager.resume(first);
+        Assert.assertFalse(first.isQueued());
+        first.getTopics().add(new SubscribeTopic("device/+", MqttQoS.EXACTLY_ONCE, first));
+        ByteBuf payload = Unpooled.copiedBuffer("m0", StandardCharsets.UTF_8);
+        Assert.assertEquals(1, retryManager.doRetry(first, MqttQoS.AT_LEAST_ONCE, false, "device/a", payload));
+        payload.release();
+
+        /* 断开: 未确认的消息放回队头, 之后的消息写入队列 */
+        first.active = false;
+        sessionManager.close(first);
+        retryManager.clearRetry(first);
+        Assert.assertTrue(first.isQueued());
+        for (int i = 1; i <= 4; i++) {
+            sessionManager.enqueue(first, MqttQoS.AT_LEAST_ONCE, message("m" + i));
+        }
+        Assert.assertEquals(5, sessionStore.size(CLIENT_ID));
+        Assert.assertEquals(Collections.singletonMap("device/+", 2), sessionStore.getTopics(CLIENT_ID));
+
+        /* 重连时不可写, 接管订阅但不补发 */
+        TestChannel second = new TestChannel(false);
+        second.writable = false;
+        Assert.assertTrue(sessionManager.online(second));
+        Assert.assertTrue(second.isQueued());
+        sessionManager.resume(second);
+        Assert.assertTrue(first.getTopics().isEmpty());
+        Assert.assertEquals(1, second.getTopics().size());
+        Assert.assertSame(second, second.getTopics().iterator().next().getMqttChannel());
+        Assert.assertTrue(removed.isEmpty());
+        Assert.assertTrue(second.delivered.isEmpty());
+
+        /* 补发期间的新消息排在队列后面 */
+        sessionManager.enqueue(second, MqttQoS.AT_LEAST_ONCE, message("m5"));
+        second.writable = true;
+        sessionManager.drain(second);
+        Assert.assertEquals(Arrays.asList("m0", "m1", "m2", "m3", "m4", "m5"), second.delivered);
+        Assert.assertEquals(0, sessionStore.size(CLIENT_ID));
+        Assert.assertFalse(second.isQueued());
+    }
+
+    @Test
+    public void dropsOldestAndExpired() {
+        SessionManager sessionManager = sessionManager(3);
+        TestChannel first = new TestChannel(false);
+        sessionManager.resume(first);
+        first.active = false;
+        sessionManager.close(first);
+        for (int i = 0; i < 5; i++) {
+            sessionManager.enqueue(first, MqttQoS.AT_LEAST_ONCE, message("m" + i));
+        }
+        Assert.assertEquals(3, sessionStore.size(CLIENT_ID));
+        sessionStore.offer(CLIENT_ID, SessionMessage.builder().clientId(CLIENT_ID).topic("device/a").qos(1)
+                .body(new byte[0]).expireTime(1).build(), 4);
+
+        TestChannel second = new TestChannel(false);
+        Assert.assertTrue(sessionManager.online(second));
+        sessionManager.resume(second);
+        Assert.assertEquals(Arrays.asList("m2", "m3", "m4"), second.delivered);
+    }
+
+    @Test
+    public void cleanSessionDiscardsSession() {
+        SessionManager sessionManager = sessionManager(100);
+        TestChannel first = new TestChannel(false);
+        sessionManager.resume(first);
+        SubscribeTopic subscribeTopic = new SubscribeTopic("device/+", MqttQoS.AT_LEAST_ONCE, first);
+        first.getTopics().add(subscribeTopic);
+        first.active = false;
+        sessionManager.close(first);
+        sessionManager.enqueue(first, MqttQoS.AT_LEAST_ONCE, message("m0"));
+
+        TestChannel second = new TestChannel(true);
+        Assert.assertFalse(sessionManager.online(second));
+        sessionManager.resume(second);
+        Assert.assertEquals(Collections.singletonList(subscribeTopic), removed);
+        Assert.assertEquals(0, sessionStore.size(CLIENT_ID));
+        Assert.assertNull(sessionStore.getTopics(CLIENT_ID));
+        Assert.assertFalse(second.isQueued());
+        Assert.assertTrue(second.delivered.isEmpty());
+    }
+
+    private static PublishMessage message(String body) {
+        PublishMessage publishMessage = new PublishMessage();
+        publishMessage.setTopic("device/a");
+        publishMessage.setQos(1);
+        publishMessage.setBody(body.getBytes(StandardCharsets.UTF_8));
+        return publishMessage;
+    }
+
+    private static class TestChannel extends MqttChannel {
+
+        private volatile boolean active = true;
+
+        private volatile boolean writable = true;
+
+        private final List<String> delivered = new ArrayList<>();
+
+        private TestChannel(boolean cleanSession) {
+            ConnectCache connectCache = new ConnectCache();
+            connectCache.setClientId(CLIENT_ID);
+            connectCache.setCleanSession(cleanSession);
+            setClientId(CLIENT_ID);
+            setConnectCache(connectCache);
+            setTopics(new CopyOnWriteArraySet<>());
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return active && writable;
+        }
+
+        @Override
+        public void deliver(MqttQoS mqttQoS, PublishMessage message) {
+            delivered.add(new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private class TestTopics implements IntegrateTopics<SubscribeTopic> {
+
+        @Override
+        public void registryTopic(MqttChannel mqttChannel, List<SubscribeTopic> subscribeTopics) {
+            subscribeTopics.forEach(subscribeTopic -> registryTopic(mqttChannel, subscribeTopic));
+        }
+
+        @Override
+        public void registryTopic(MqttChannel mqttChannel, SubscribeTopic subscribeTopic) {
+            mqttChannel.getTopics().add(subscribeTopic);
+        }
+
+        @Override
+        public void removeTopic(MqttChannel mqttChannel, SubscribeTopic subscribeTopic) {
+            removed.add(subscribeTopic);
+            mqttChannel.getTopics().remove(subscribeTopic);
+        }
+
+        @Override
+        public void removeTopic(MqttChannel mqttChannel, List<SubscribeTopic> subscribeTopics) {
+            subscribeTopics.forEach(subscribeTopic -> removeTopic(mqttChannel, subscribeTopic));
+        }
+
+        @Override
+        public Set<SubscribeTopic> getMqttChannelsByTopic(String topic) {
+            return null;
+        }
+
+        @Override
+        public Long counts() {
+            return null;
+        }
+
+        @Override
+        public boolean isWildcard(String topic) {
+            return false;
+        }
+
+        @Override
+        public Set<String> getWildcardTopics(String topic) {
+            return null;
+        }
+
+        @Override
+        public Set<UUID> getRouteNodes(String topic) {
+            return null;
+        }
+
+        @Override
+        public Map<String, Set<UUID>> getRouteTable() {
+            return null;
+        }
+
+        @Override
+        public Map<String, Set<SubscribeTopic>> getTopicSubscribers() {
+            return null;
+        }
+
+        @Override
+        public Integrate getIntegrate() {
+            return null;
+        }
+    }
+
+}
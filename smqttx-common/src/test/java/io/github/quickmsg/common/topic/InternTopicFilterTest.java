@@ -0,0 +1,146 @@
+package io.github.quickmsg.common.topic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 订阅 topicFilter 匹配测试
+ *
+ * @author luxurong
+ */
+public class InternTopicFilterTest {
+
+    @Test
+    public void matchSingleLevelWildcard() {
+        InternTopicFilter<String> filter = filter("a/+/c", "+/b/c", "+", "a/+");
+        Assert.assertEquals(set("a/+/c", "+/b/c"), filter.getObjectByTopic("a/b/c"));
+        Assert.assertEquals(set("a/+"), filter.getObjectByTopic("a/b"));
+        Assert.assertEquals(set("+"), filter.getObjectByTopic("a"));
+        Assert.assertEquals(set(), filter.getObjectByTopic("a/b/c/d"));
+        /* + 匹配空 level */
+        Assert.assertEquals(set("a/+"), filter.getObjectByTopic("a/"));
+    }
+
+    @Test
+    public void matchMultiLevelWildcard() {
+        InternTopicFilter<String> filter = filter("#", "a/#", "a/b/#", "x/+/#");
+        Assert.assertEquals(set("#", "a/#", "a/b/#"), filter.getObjectByTopic("a/b/c/d"));
+        Assert.assertEquals(set("#", "a/#", "a/b/#"), filter.getObjectByTopic("a/b"));
+        /* a/# 同时匹配父级 a */
+        Assert.assertEquals(set("#", "a/#"), filter.getObjectByTopic("a"));
+        Assert.assertEquals(set("#", "x/+/#"), filter.getObjectByTopic("x/1"));
+        Assert.assertEquals(set("#"), filter.getObjectByTopic("x"));
+    }
+
+    @Test
+    public void systemTopicsExcludedFromFirstLevelWildcards() {
+        InternTopicFilter<String> filter = filter("#", "+/broker", "$SYS/#", "$SYS/+", "a/$b");
+        Assert.assertEquals(set("$SYS/#", "$SYS/+"), filter.getObjectByTopic("$SYS/broker"));
+        Assert.assertEquals(set("#", "+/broker"), filter.getObjectByTopic("SYS/broker"));
+        /* 非首层的 $ 没有特殊含义 */
+        Assert.assertEquals(set("#", "a/$b"), filter.getObjectByTopic("a/$b"));
+    }
+
+    @Test
+    public void matchEmptyLevels() {
+        InternTopicFilter<String> filter = filter("a//b", "/a", "a/+/b", "/+");
+        Assert.assertEquals(set("a//b", "a/+/b"), filter.getObjectByTopic("a//b"));
+        Assert.assertEquals(set("/a", "/+"), filter.getObjectByTopic("/a"));
+        Assert.assertEquals(set("/+"), filter.getObjectByTopic("/"));
+        Assert.assertEquals(set(), filter.getObjectByTopic("a/b"));
+    }
+
+    @Test
+    public void collectorRepeatsObjectsOfOverlappingFilters() {
+        InternTopicFilter<String> filter = new InternTopicFilter<>();
+        filter.addObjectTopic("a/#", "client");
+        filter.addObjectTopic("a/+", "client");
+        Assert.assertEquals(2, filter.collectObjectByTopic("a/b").size());
+        Assert.assertEquals(Collections.singleton("client"), filter.getObjectByTopic("a/b"));
+    }
+
+    @Test
+    public void removeReleasesLevels() {
+        InternTopicFilter<String> filter = filter("a/b/c", "a/b/d", "a/+/#");
+        Assert.assertEquals(4, filter.levelSize());
+        Assert.assertFalse(filter.removeObjectTopic("a/b/x", "a/b/x"));
+        Assert.assertFalse(filter.removeObjectTopic("a/b/c", "other"));
+
+        Assert.assertTrue(filter.removeObjectTopic("a/b/c", "a/b/c"));
+        Assert.assertEquals(set("a/+/#"), filter.getObjectByTopic("a/b/c"));
+        Assert.assertEquals(set("a/b/d", "a/+/#"), filter.getObjectByTopic("a/b/d"));
+        Assert.assertEquals(3, filter.levelSize());
+
+        Assert.assertTrue(filter.removeObjectTopic("a/+/#", "a/+/#"));
+        Assert.assertTrue(filter.removeObjectTopic("a/b/d", "a/b/d"));
+        Assert.assertEquals(0, filter.levelSize());
+        Assert.assertEquals(set(), filter.getAllObjectsTopic());
+
+        /* 删除后可以重新订阅 */
+        filter.addObjectTopic("a/b/c", "a/b/c");
+        Assert.assertEquals(set("a/b/c"), filter.getObjectByTopic("a/b/c"));
+    }
+
+    @Test
+    public void randomLevelsDoNotGrowDictionary() {
+        InternTopicFilter<String> filter = filter("fixed/+");
+        for (int i = 0; i < 10000; i++) {
+            String topic = "device/" + i + "/up";
+            filter.addObjectTopic(topic, topic);
+            Assert.assertEquals(set(topic), filter.getObjectByTopic(topic));
+            filter.removeObjectTopic(topic, topic);
+        }
+        Assert.assertEquals(1, filter.levelSize());
+        Assert.assertEquals(set("fixed/+"), filter.getObjectByTopic("fixed/1"));
+    }
+
+    @Test
+    public void concurrentAddAndRemove() throws Exception {
+        InternTopicFilter<String> filter = new InternTopicFilter<>();
+        filter.addObjectTopic("a/b/c", "keep");
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            String object = "c" + t;
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20000; i++) {
+                        String topic = "a/b/" + (i % 3 == 0 ? "c" : String.valueOf(i % 7));
+                        Assert.assertTrue(filter.addObjectTopic(topic, object));
+                        Assert.assertTrue(filter.getObjectByTopic(topic).contains(object));
+                        Assert.assertTrue(filter.getObjectByTopic("a/b/c").contains("keep"));
+                        Assert.assertTrue(filter.removeObjectTopic(topic, object));
+                    }
+                } catch (Throwable throwable) {
+                    error.compareAndSet(null, throwable);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertNull(error.get());
+        Assert.assertEquals(set("keep"), filter.getAllObjectsTopic());
+        Assert.assertEquals(3, filter.levelSize());
+    }
+
+    private static InternTopicFilter<String> filter(String... topicFilters) {
+        InternTopicFilter<String> filter = new InternTopicFilter<>();
+        for (String topicFilter : topicFilters) {
+            filter.addObjectTopic(topicFilter, topicFilter);
+        }
+        return filter;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+}
@@ -0,0 +1,78 @@
+package io.github.quickmsg.common.topic;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TreeNode} 与 {@link InternTopicFilter} 匹配性能对比, 建议加上 -prof gc 查看分配
+ *
+ * @author luxurong
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopicFilterBenchmark {
+
+    @Param({"1000", "100000"})
+    private int filters;
+
+    private TreeNode<String> treeNode;
+
+    private InternTopicFilter<String> internTopicFilter;
+
+    private String[] topics;
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        treeNode = new TreeNode<>("root");
+        internTopicFilter = new InternTopicFilter<>();
+        for (int i = 0; i < filters; i++) {
+            String[] topicFilters = {
+                    "site/" + i + "/device/+/status",
+                    "site/" + i + "/#",
+                    "site/+/device/" + i + "/config"
+            };
+            for (String topicFilter : topicFilters) {
+                treeNode.addObjectTopic(topicFilter, topicFilter);
+                internTopicFilter.addObjectTopic(topicFilter, topicFilter);
+            }
+        }
+        topics = new String[1024];
+        for (int i = 0; i < topics.length; i++) {
+            topics[i] = "site/" + (i * 31 % filters) + "/device/" + (i * 17 % filters) + "/status";
+        }
+    }
+
+    private String nextTopic() {
+        return topics[index++ & (topics.length - 1)];
+    }
+
+    @Benchmark
+    public void treeNode(Blackhole blackhole) {
+        blackhole.consume(treeNode.getObjectsByTopic(nextTopic()));
+    }
+
+    @Benchmark
+    public void internTopicFilter(Blackhole blackhole) {
+        blackhole.consume(internTopicFilter.collectObjectByTopic(nextTopic()).size());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TopicFilterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
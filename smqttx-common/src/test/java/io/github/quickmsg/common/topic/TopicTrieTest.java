@@ -0,0 +1,93 @@
+package io.github.quickmsg.common.topic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 保留消息 topic 索引的通配符查询测试
+ *
+ * @author luxurong
+ */
+public class TopicTrieTest {
+
+    @Test
+    public void matchWildcards() {
+        TopicTrie<String> trie = trie("site/1/config", "site/2/config", "site/2/state", "site", "$SYS/broker", "a//b");
+        Assert.assertEquals(set("site/1/config", "site/2/config"), set(trie.match("site/+/config")));
+        Assert.assertEquals(set("site", "site/1/config", "site/2/config", "site/2/state"), set(trie.match("site/#")));
+        Assert.assertEquals(set("site/2/config", "site/2/state"), set(trie.match("site/2/+")));
+        Assert.assertEquals(set("a//b"), set(trie.match("a/+/b")));
+        Assert.assertEquals(Collections.singletonList("site/2/state"), trie.match("site/2/state"));
+        Assert.assertTrue(trie.match("site/3/config").isEmpty());
+        /* 首层通配符不匹配 $ 开头的 topic */
+        Assert.assertFalse(trie.match("#").contains("$SYS/broker"));
+        Assert.assertFalse(trie.match("+/broker").contains("$SYS/broker"));
+        Assert.assertEquals(set("$SYS/broker"), set(trie.match("$SYS/#")));
+    }
+
+    @Test
+    public void cachedResultInvalidatedByWrite() {
+        TopicTrie<String> trie = trie("site/1/config");
+        List<String> first = trie.match("site/+/config");
+        Assert.assertSame(first, trie.match("site/+/config"));
+        trie.put("site/2/config", "site/2/config");
+        Assert.assertEquals(set("site/1/config", "site/2/config"), set(trie.match("site/+/config")));
+        trie.remove("site/1/config");
+        Assert.assertEquals(Collections.singletonList("site/2/config"), trie.match("site/+/config"));
+    }
+
+    @Test
+    public void cachedResultKeptForWritesOutsidePrefix() {
+        TopicTrie<String> trie = trie("site/1/config", "other/1");
+        List<String> first = trie.match("site/+/config");
+        trie.put("other/2", "other/2");
+        trie.remove("other/1");
+        Assert.assertSame(first, trie.match("site/+/config"));
+        /* 覆盖保留消息同样失效 */
+        trie.put("site/1/config", "v2");
+        Assert.assertEquals(Collections.singletonList("v2"), trie.match("site/+/config"));
+        /* 前缀节点删除后重新创建 */
+        trie.remove("site/1/config");
+        Assert.assertTrue(trie.match("site/+/config").isEmpty());
+        trie.put("site/3/config", "v3");
+        Assert.assertEquals(Collections.singletonList("v3"), trie.match("site/+/config"));
+    }
+
+    @Test
+    public void removePrunesEmptyNodes() {
+        TopicTrie<String> trie = trie("site/1/config", "site/1");
+        Assert.assertEquals(2, trie.size());
+        Assert.assertEquals("site/1/config", trie.remove("site/1/config"));
+        Assert.assertNull(trie.remove("site/1/config"));
+        Assert.assertEquals("site/1", trie.get("site/1"));
+        trie.remove("site/1");
+        Assert.assertEquals(0, trie.size());
+        Assert.assertTrue(trie.match("#").isEmpty());
+        Assert.assertNull(trie.put("site/1", "v2"));
+        Assert.assertEquals("v2", trie.put("site/1", "v3"));
+        Assert.assertEquals(1, trie.size());
+    }
+
+    private static TopicTrie<String> trie(String... topics) {
+        TopicTrie<String> trie = new TopicTrie<>();
+        for (String topic : topics) {
+            trie.put(topic, topic);
+        }
+        return trie;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static Set<String> set(List<String> values) {
+        return new HashSet<>(values);
+    }
+
+}
@@ -82,6 +82,22 @@ public class Bootstrap {
         Optional.ofNullable(tcpConfig.getSsl()).ifPresent(mqttConfiguration::setSslContext);
         Optional.ofNullable(tcpConfig.getSsl()).ifPresent(mqttConfiguration::setSslContext);
         Optional.ofNullable(tcpConfig.getMessageMaxSize()).ifPresent(mqttConfiguration::setMessageMaxSize);
+        Optional.ofNullable(tcpConfig.getZeroCopy()).ifPresent(mqttConfiguration::setZeroCopy);
+        Optional.ofNullable(tcpConfig.getInlineProtocol()).ifPresent(mqttConfiguration::setInlineProtocol);
+        Optional.ofNullable(tcpConfig.getMaxInflight()).ifPresent(mqttConfiguration::setMaxInflight);
+        Optional.ofNullable(tcpConfig.getMaxInflightQueue()).ifPresent(mqttConfiguration::setMaxInflightQueue);
+        Optional.ofNullable(tcpConfig.getMaxAwaitingRel()).ifPresent(mqttConfiguration::setMaxAwaitingRel);
+        Optional.ofNullable(tcpConfig.getSessionQueueSize()).ifPresent(mqttConfiguration::setSessionQueueSize);
+        Optional.ofNullable(tcpConfig.getSessionMessageTtl()).ifPresent(mqttConfiguration::setSessionMessageTtl);
+        Optional.ofNullable(tcpConfig.getSessionExpiry()).ifPresent(mqttConfiguration::setSessionExpiry);
+        Optional.ofNullable(tcpConfig.getSessionDrainBatch()).ifPresent(mqttConfiguration::setSessionDrainBatch);
+        Optional.ofNullable(tcpConfig.getConnectRate()).ifPresent(mqttConfiguration::setConnectRate);
+        Optional.ofNullable(tcpConfig.getConnectBurst()).ifPresent(mqttConfiguration::setConnectBurst);
+        Optional.ofNullable(tcpConfig.getConnectIpRate()).ifPresent(mqttConfiguration::setConnectIpRate);
+        Optional.ofNullable(tcpConfig.getConnectIpBurst()).ifPresent(mqttConfiguration::setConnectIpBurst);
+        Optional.ofNullable(tcpConfig.getConnectPendingSize()).ifPresent(mqttConfiguration::setConnectPendingSize);
+        Optional.ofNullable(tcpConfig.getLogQueueSize()).ifPresent(mqttConfiguration::setLogQueueSize);
+        Optional.ofNullable(tcpConfig.getLogSample()).ifPresent(mqttConfiguration::setLogSample);
         Optional.ofNullable(clusterConfig).ifPresent(mqttConfiguration::setClusterConfig);
         Optional.ofNullable(meterConfig).ifPresent(mqttConfiguration::setMeterConfig);
         Optional.ofNullable(authConfig).ifPresent(mqttConfiguration::setAuthConfig);
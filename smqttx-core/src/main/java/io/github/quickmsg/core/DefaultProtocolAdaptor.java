@@ -4,16 +4,12 @@ import io.github.quickmsg.common.context.ContextHolder;
 import io.github.quickmsg.common.context.ReceiveContext;
 import io.github.quickmsg.common.message.Message;
 import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.metric.MetricManager;
 import io.github.quickmsg.common.protocol.Protocol;
 import io.github.quickmsg.common.protocol.ProtocolAdaptor;
-import io.github.quickmsg.common.spi.loader.DynamicLoader;
-import io.github.quickmsg.common.utils.RetryFailureHandler;
 import io.github.quickmsg.core.mqtt.AbstractReceiveContext;
 import io.github.quickmsg.dsl.RuleDslExecutor;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
-import reactor.core.scheduler.Schedulers;
 
 /**
  * @author luxurong
@@ -21,38 +17,75 @@ import reactor.core.scheduler.Schedulers;
 @Slf4j
 public class DefaultProtocolAdaptor implements ProtocolAdaptor {
 
-    private final Sinks.Many<Message> acceptor;
-
-    @SuppressWarnings("unchecked")
-    public DefaultProtocolAdaptor(Integer businessQueueSize, Integer threadSize) {
-        this.acceptor = Sinks.many().multicast().onBackpressureBuffer(businessQueueSize);
-        DynamicLoader.findAll(Protocol.class).forEach(protocol ->
-                    acceptor.asFlux()
-                                .doOnError(throwable -> log.error("DefaultProtocolAdaptor consumer", throwable))
-                                .onErrorResume(throwable -> Mono.empty())
-                                .ofType(protocol.getClassType())
-                                .publishOn(Schedulers.newParallel("message-acceptor", threadSize))
-                                .subscribe(msg -> {
-                                    Message message = (Message) msg;
-                                    Protocol<Message> messageProtocol = (Protocol<Message>) protocol;
-                                    ReceiveContext<?> receiveContext = ContextHolder.getReceiveContext();
-                                    messageProtocol.doParseProtocol(message, message.getMqttChannel())
-                                                .contextWrite(context -> context.putNonNull(ReceiveContext.class, ContextHolder.getReceiveContext()))
-                                                .onErrorContinue((throwable, obj) -> {
-                                                    log.error("DefaultProtocolAdaptor", throwable);
-                                                })
-                                                .subscribe();
-                                    RuleDslExecutor executor = ((AbstractReceiveContext<?>) receiveContext).getRuleDslExecutor();
-                                    executor.executeRule( message);
-                                }));
+    private final ProtocolDispatcher dispatcher;
+
+    /**
+     * 非阻塞协议直接在调用线程(IO 线程)处理, 只有规则引擎交给分片线程
+     */
+    private final boolean inlineProtocol;
+
+    public DefaultProtocolAdaptor(Integer businessQueueSize, Integer threadSize, boolean inlineProtocol, MetricManager metricManager) {
+        this.inlineProtocol = inlineProtocol;
+        this.dispatcher = new ProtocolDispatcher(threadSize, businessQueueSize, this::doProtocol);
+        this.dispatcher.bindMetric(metricManager);
+    }
+
+    private boolean isInline(Protocol<Message> protocol) {
+        return inlineProtocol && !protocol.isBlocking();
+    }
+
+    private void doProtocol(Protocol<Message> protocol, Message message) {
+        try {
+            if (!isInline(protocol)) {
+                parseProtocol(protocol, message);
+            }
+            getRuleDslExecutor().executeRule(message);
+        } finally {
+            release(message);
+        }
+    }
+
+    private void parseProtocol(Protocol<Message> protocol, Message message) {
+        ReceiveContext<?> receiveContext = ContextHolder.getReceiveContext();
+        protocol.doParseProtocol(message, message.getMqttChannel())
+                    .contextWrite(context -> context.putNonNull(ReceiveContext.class, receiveContext))
+                    .onErrorContinue((throwable, obj) -> {
+                        log.error("DefaultProtocolAdaptor", throwable);
+                    })
+                    .subscribe();
+    }
+
+    private RuleDslExecutor getRuleDslExecutor() {
+        return ((AbstractReceiveContext<?>) ContextHolder.getReceiveContext()).getRuleDslExecutor();
     }
 
     @Override
     public void chooseProtocol(Message message) {
         try {
-            acceptor.emitNext(message, RetryFailureHandler.RETRY_NON_SERIALIZED);
+            Protocol<Message> protocol = dispatcher.route(message);
+            if (protocol == null) {
+                release(message);
+                return;
+            }
+            if (isInline(protocol)) {
+                parseProtocol(protocol, message);
+                if (!getRuleDslExecutor().isExecute(message)) {
+                    release(message);
+                    return;
+                }
+            }
+            if (!dispatcher.dispatch(protocol, message)) {
+                release(message);
+            }
         } catch (Exception e) {
-            log.error("protocol emitNext error", e);
+            release(message);
+            log.error("protocol dispatch error", e);
+        }
+    }
+
+    private void release(Message message) {
+        if (message instanceof PublishMessage) {
+            ((PublishMessage) message).release();
         }
     }
 }
@@ -0,0 +1,264 @@
+package io.github.quickmsg.core;
+
+import io.github.quickmsg.common.channel.MqttChannel;
+import io.github.quickmsg.common.message.Message;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.metric.MetricBean;
+import io.github.quickmsg.common.metric.MetricManager;
+import io.github.quickmsg.common.protocol.Protocol;
+import io.github.quickmsg.common.spi.loader.DynamicLoader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.internal.PlatformDependent;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * 按消息类型直接路由到 {@link Protocol}, 按 channel id 分片到多个队列
+ * <p>
+ * 同一连接的消息总是进入同一个分片, 每个分片只有一个消费线程, 保证单连接内的顺序.
+ * 队列为有界的无锁多生产者单消费者队列, 上限为三倍容量. 排队的 PUBLISH 超过容量时丢弃 qos0,
+ * 超过两倍容量时丢弃 qos1/2 并计数, 剩余空间留给 CONNECT, SUBSCRIBE, PUBACK 等控制消息;
+ * 队列满时控制消息同样丢弃并关闭所属连接, 避免控制报文洪泛耗尽内存
+ *
+ * @author luxurong
+ */
+@Slf4j
+public class ProtocolDispatcher {
+
+    private static final String QUEUE_DEPTH = "smqtt.dispatch.queue.depth";
+
+    private static final String DROP_COUNT = "smqtt.dispatch.drop.count";
+
+    private static final String LATENCY = "smqtt.dispatch.latency";
+
+    private final List<Protocol<Message>> protocols;
+
+    private final Map<Class<?>, Optional<Protocol<Message>>> routes = new ConcurrentHashMap<>();
+
+    private final Shard[] shards;
+
+    private final Scheduler scheduler;
+
+    private final BiConsumer<Protocol<Message>, Message> handler;
+
+    @SuppressWarnings("unchecked")
+    public ProtocolDispatcher(int shardSize, int queueSize, BiConsumer<Protocol<Message>, Message> handler) {
+        this.handler = handler;
+        this.protocols = DynamicLoader.findAll(Protocol.class)
+                .map(protocol -> (Protocol<Message>) protocol)
+                .collect(Collectors.toList());
+        this.scheduler = Schedulers.newParallel("message-acceptor", shardSize);
+        int capacity = Math.max(queueSize / shardSize, 1024);
+        this.shards = new Shard[shardSize];
+        for (int i = 0; i < shardSize; i++) {
+            shards[i] = new Shard(capacity);
+        }
+    }
+
+    /**
+     * 注册队列深度, 丢弃数量与分片延迟指标
+     *
+     * @param metricManager {@link MetricManager}
+     */
+    public void bindMetric(MetricManager metricManager) {
+        MetricBean metricBean = metricManager.getMetricBean();
+        MeterRegistry meterRegistry = metricBean.getMeterRegistry();
+        if (meterRegistry == null) {
+            return;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            Tags tags = metricBean.getTags().and("shard", String.valueOf(i));
+            Gauge.builder(QUEUE_DEPTH, shard.queue, Queue::size).tags(tags).register(meterRegistry);
+            shard.dropCounter = Counter.builder(DROP_COUNT).tags(tags).register(meterRegistry);
+            shard.latency = Timer.builder(LATENCY).tags(tags).register(meterRegistry);
+        }
+    }
+
+    /**
+     * 分发消息
+     *
+     * @param message {@link Message}
+     * @return 是否进入队列, 没有对应协议、PUBLISH 超过限制或队列已满时返回 false, 由调用方释放消息
+     */
+    public boolean dispatch(Message message) {
+        Protocol<Message> protocol = route(message);
+        if (protocol == null) {
+            return false;
+        }
+        return dispatch(protocol, message);
+    }
+
+    /**
+     * 分发到已经确定的协议
+     *
+     * @param protocol {@link Protocol}
+     * @param message  {@link Message}
+     * @return 是否进入队列
+     */
+    public boolean dispatch(Protocol<Message> protocol, Message message) {
+        return shards[shardIndex(message.getMqttChannel())].offer(new Task(protocol, message));
+    }
+
+    /**
+     * 查找消息对应的协议
+     *
+     * @param message {@link Message}
+     * @return {@link Protocol} or null
+     */
+    public Protocol<Message> route(Message message) {
+        return routes.computeIfAbsent(message.getClass(), this::findProtocol).orElse(null);
+    }
+
+    /**
+     * 丢弃的消息总数
+     *
+     * @return 丢弃数量
+     */
+    public long getDropCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.drops.sum();
+        }
+        return count;
+    }
+
+    private Optional<Protocol<Message>> findProtocol(Class<?> messageType) {
+        return protocols.stream()
+                .filter(protocol -> protocol.getClassType().isAssignableFrom(messageType))
+                .findFirst();
+    }
+
+    private int shardIndex(MqttChannel mqttChannel) {
+        Integer id = mqttChannel == null ? null : mqttChannel.getId();
+        int hash = id == null ? ThreadLocalRandom.current().nextInt() : id;
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+
+    private static class Task {
+
+        private final Protocol<Message> protocol;
+
+        private final Message message;
+
+        /**
+         * PUBLISH 的 qos, 控制消息为 -1
+         */
+        private final int qos;
+
+        private final long enqueueTime = System.nanoTime();
+
+        private Task(Protocol<Message> protocol, Message message) {
+            this.protocol = protocol;
+            this.message = message;
+            this.qos = message instanceof PublishMessage ? ((PublishMessage) message).getQos() : -1;
+        }
+    }
+
+
+    private class Shard implements Runnable {
+
+        private final Queue<Task> queue;
+
+        private final int capacity;
+
+        /**
+         * 排队中的 PUBLISH 数量
+         */
+        private final AtomicInteger publishes = new AtomicInteger();
+
+        private final Scheduler.Worker worker;
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private final LongAdder drops = new LongAdder();
+
+        private volatile Counter dropCounter;
+
+        private volatile Timer latency;
+
+        private Shard(int capacity) {
+            this.queue = PlatformDependent.newMpscQueue(capacity * 3);
+            this.capacity = capacity;
+            this.worker = scheduler.createWorker();
+        }
+
+        private boolean offer(Task task) {
+            if (task.qos >= 0) {
+                int limit = task.qos == 0 ? capacity : capacity << 1;
+                if (publishes.incrementAndGet() > limit) {
+                    publishes.decrementAndGet();
+                    this.drop();
+                    return false;
+                }
+            }
+            if (!queue.offer(task)) {
+                if (task.qos >= 0) {
+                    publishes.decrementAndGet();
+                }
+                this.drop();
+                MqttChannel mqttChannel = task.message.getMqttChannel();
+                if (mqttChannel != null) {
+                    log.warn("dispatch queue full, close {}", mqttChannel.getAddress());
+                    mqttChannel.close();
+                }
+                return false;
+            }
+            if (wip.getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+            return true;
+        }
+
+        private void drop() {
+            drops.increment();
+            if (dropCounter != null) {
+                dropCounter.increment();
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            for (; ; ) {
+                Task task;
+                while ((task = queue.poll()) != null) {
+                    if (task.qos >= 0) {
+                        publishes.decrementAndGet();
+                    }
+                    try {
+                        handler.accept(task.protocol, task.message);
+                    } catch (Throwable throwable) {
+                        log.error("ProtocolDispatcher", throwable);
+                    }
+                    if (latency != null) {
+                        latency.record(System.nanoTime() - task.enqueueTime, TimeUnit.NANOSECONDS);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import io.github.quickmsg.common.acl.AclAction;
 import io.github.quickmsg.common.acl.AclManager;
 import io.github.quickmsg.common.acl.AclPolicy;
 import io.github.quickmsg.common.acl.AclType;
+import io.github.quickmsg.common.acl.CompiledAcl;
 import io.github.quickmsg.common.acl.filter.AclFunction;
 import io.github.quickmsg.common.acl.model.PolicyModel;
 import io.github.quickmsg.common.channel.MqttChannel;
@@ -19,6 +20,7 @@ import org.casbin.jcasbin.util.BuiltInFunctions;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author luxurong
@@ -28,8 +30,12 @@ public class JCasBinAclManager implements AclManager {
 
     private Enforcer enforcer;
 
+    /**
+     * check 使用的编译结果, 策略变更时重建
+     */
+    private volatile CompiledAcl compiledAcl = CompiledAcl.ALLOW_ALL;
 
-    private final String REQUEST_SUBJECT_TEMPLATE = "%s:%s";
+    private final AtomicInteger version = new AtomicInteger();
 
 
     public JCasBinAclManager(IntegrateCache<String, Object> cache) {
@@ -42,6 +48,13 @@ public class JCasBinAclManager implements AclManager {
         enforcer = new Enforcer(model, new IgniteAdaptor(cache));
         enforcer.addFunction("filter", new AclFunction());
         this.loadAclCache();
+        this.compile();
+    }
+
+    private void compile() {
+        this.compiledAcl = Optional.ofNullable(enforcer)
+                    .map(ef -> CompiledAcl.compile(version.incrementAndGet(), ef.getNamedPolicy("p")))
+                    .orElse(CompiledAcl.ALLOW_ALL);
     }
 
 
@@ -53,11 +66,7 @@ public class JCasBinAclManager implements AclManager {
     @Override
     public boolean check(MqttChannel mqttChannel, String source, AclAction action) {
         try {
-            String subject = String.format(REQUEST_SUBJECT_TEMPLATE, mqttChannel.getClientId()
-                        , mqttChannel.getAddress().split(":")[0]);
-            return Optional.ofNullable(enforcer)
-                        .map(ef -> ef.enforce(subject, source, action.name()))
-                        .orElse(true);
+            return compiledAcl.check(mqttChannel, source, action);
         } catch (Exception e) {
             log.error("acl check error", e);
         }
@@ -65,17 +74,25 @@ public class JCasBinAclManager implements AclManager {
     }
 
     @Override
-    public boolean add(String sub, String source, AclAction action, AclType type) {
-        return Optional.ofNullable(enforcer)
+    public synchronized boolean add(String sub, String source, AclAction action, AclType type) {
+        boolean added = Optional.ofNullable(enforcer)
                     .map(ef -> enforcer.addNamedPolicy("p", sub, source, action.name(), type.getDesc()))
                     .orElse(true);
+        if (added) {
+            this.compile();
+        }
+        return added;
     }
 
     @Override
-    public boolean delete(String sub, String source, AclAction action, AclType type) {
-        return  Optional.ofNullable(enforcer)
+    public synchronized boolean delete(String sub, String source, AclAction action, AclType type) {
+        boolean deleted = Optional.ofNullable(enforcer)
                     .map(ef -> enforcer.removeNamedPolicy("p", sub, source, action.name(), type.getDesc()))
                     .orElse(true);
+        if (deleted) {
+            this.compile();
+        }
+        return deleted;
     }
 
     @Override
@@ -1,7 +1,9 @@
 package io.github.quickmsg.core.auth;
 
 import io.github.quickmsg.common.auth.AuthManager;
+import io.github.quickmsg.common.auth.CachingAuthManager;
 import io.github.quickmsg.common.config.AuthConfig;
+import io.github.quickmsg.common.metric.MetricManager;
 
 /**
  * @author luxurong
@@ -14,6 +16,27 @@ public class AuthManagerFactory {
         this.authConfig = authConfig;
     }
 
+    /**
+     * 认证结果缓存开启时对远程认证(http, sql)返回 {@link CachingAuthManager}
+     *
+     * @param metricManager {@link MetricManager}
+     * @return {@link AuthManager}
+     */
+    public AuthManager getAuthManager(MetricManager metricManager) {
+        AuthManager authManager = getAuthManager();
+        if (!(authManager instanceof HttpAuthManager || authManager instanceof SqlAuthManager)) {
+            return authManager;
+        }
+        AuthConfig.AuthCacheConfig cacheConfig = authConfig.getCache() == null ? new AuthConfig.AuthCacheConfig() : authConfig.getCache();
+        if (!cacheConfig.isEnable()) {
+            return authManager;
+        }
+        CachingAuthManager cachingAuthManager = new CachingAuthManager(authManager, cacheConfig.getSize(),
+                cacheConfig.getAllowTtl(), cacheConfig.getDenyTtl());
+        cachingAuthManager.bindMetric(metricManager);
+        return cachingAuthManager;
+    }
+
     public AuthManager getAuthManager() {
         if (authConfig == null) {
             return new NoneAuthManager();
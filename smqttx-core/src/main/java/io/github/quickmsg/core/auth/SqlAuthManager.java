@@ -7,6 +7,7 @@ import io.github.quickmsg.common.config.AuthConfig;
 import io.github.quickmsg.core.db.HikariCPConnectionProvider;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
@@ -40,7 +41,14 @@ public class SqlAuthManager implements AuthManager {
         this.hikariDataSource = new HikariDataSource(config);
     }
 
+    @Override
     public Mono<Boolean> auth(String userName, byte[] passwordInBytes, String clientIdentifier) {
+        /* jdbc 阻塞, 不占用 io 线程 */
+        return Mono.fromCallable(() -> this.query(userName, passwordInBytes, clientIdentifier))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private boolean query(String userName, byte[] passwordInBytes, String clientIdentifier) {
         Connection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -53,7 +61,7 @@ public class SqlAuthManager implements AuthManager {
 
             rs = ps.executeQuery();
             if (rs.next()) {
-                return Mono.just(true);
+                return true;
             }
         } catch (SQLException e) {
             log.error("auth error clientIdentifier={}", clientIdentifier, e);
@@ -73,5 +81,6 @@ public class SqlAuthManager implements AuthManager {
             }
         }
 
-        return Mono.just(false);    }
+        return false;
+    }
 }
@@ -0,0 +1,60 @@
+package io.github.quickmsg.core.http.actors.system;
+
+import io.github.quickmsg.common.auth.AuthManager;
+import io.github.quickmsg.common.auth.CachingAuthManager;
+import io.github.quickmsg.common.config.Configuration;
+import io.github.quickmsg.common.context.ContextHolder;
+import io.github.quickmsg.common.http.annotation.AllowCors;
+import io.github.quickmsg.common.http.annotation.Header;
+import io.github.quickmsg.common.http.annotation.Router;
+import io.github.quickmsg.common.http.enums.HttpType;
+import io.github.quickmsg.common.integrate.job.JobCaller;
+import io.github.quickmsg.core.http.AbstractHttpActor;
+import io.github.quickmsg.core.mqtt.AbstractReceiveContext;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * 清空集群所有节点的认证结果缓存, sql/http 中用户或密码变更后调用
+ *
+ * @author luxurong
+ */
+@Router(value = "/smqtt/auth/cache/invalidate", type = HttpType.POST)
+@Slf4j
+@Header(key = "Content-Type", value = "application/json")
+@AllowCors
+public class AuthCacheInvalidateActor extends AbstractHttpActor {
+
+    @Override
+    public Publisher<Void> doRequest(HttpServerRequest request, HttpServerResponse response, Configuration httpConfiguration) {
+        return request
+                .receive()
+                .then(Mono.fromRunnable(this::invalidate))
+                .then(response.sendString(Mono.just("success")).then());
+    }
+
+    private void invalidate() {
+        ContextHolder.getReceiveContext()
+                .getIntegrate().getJobExecutor()
+                .callBroadcast(new JobCaller<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        AuthManager authManager = ((AbstractReceiveContext<?>) ContextHolder.getReceiveContext()).getAuthManager();
+                        if (authManager instanceof CachingAuthManager) {
+                            ((CachingAuthManager) authManager).invalidateAll();
+                            return true;
+                        }
+                        return false;
+                    }
+
+                    @Override
+                    public String getJobName() {
+                        return "auth-cache-invalidate";
+                    }
+                });
+    }
+
+}
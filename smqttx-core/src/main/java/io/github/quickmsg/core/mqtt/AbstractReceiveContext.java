@@ -10,6 +10,7 @@ import io.github.quickmsg.common.handler.TrafficHandlerLoader;
 import io.github.quickmsg.common.integrate.IgniteCacheRegion;
 import io.github.quickmsg.common.integrate.Integrate;
 import io.github.quickmsg.common.integrate.IntegrateBuilder;
+import io.github.quickmsg.common.limit.ConnectLimiter;
 import io.github.quickmsg.common.log.LogManager;
 import io.github.quickmsg.common.metric.MetricFactory;
 import io.github.quickmsg.common.metric.MetricManager;
@@ -18,6 +19,7 @@ import io.github.quickmsg.common.metric.local.LocalMetricManager;
 import io.github.quickmsg.common.protocol.ProtocolAdaptor;
 import io.github.quickmsg.common.retry.RetryManager;
 import io.github.quickmsg.common.retry.TimeAckManager;
+import io.github.quickmsg.common.session.SessionManager;
 import io.github.quickmsg.common.transport.Transport;
 import io.github.quickmsg.common.utils.ServerUtils;
 import io.github.quickmsg.core.DefaultProtocolAdaptor;
@@ -34,11 +36,14 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.ignite.configuration.*;
+import org.apache.ignite.events.EventType;
 import org.apache.ignite.logger.slf4j.Slf4jLogger;
 import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
 import org.apache.ignite.spi.discovery.tcp.ipfinder.multicast.TcpDiscoveryMulticastIpFinder;
 import reactor.netty.resources.LoopResources;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
@@ -73,24 +78,39 @@ public abstract class AbstractReceiveContext<T extends Configuration> implements
 
     private final LogManager logManager;
 
+    private final SessionManager sessionManager;
+
+    private final ConnectLimiter connectLimiter;
+
     private final RuleDslExecutor ruleDslExecutor;
 
 
     public AbstractReceiveContext(T configuration, Transport<T> transport) {
-        this.logManager = new LogManager(ServerUtils.serverIp);
         AbstractConfiguration abstractConfiguration = castConfiguration(configuration);
         this.configuration = configuration;
         this.transport = transport;
-        this.protocolAdaptor = protocolAdaptor(abstractConfiguration.getBusinessQueueSize(), abstractConfiguration.getBusinessThreadSize());
+        this.metricManager = metricManager(abstractConfiguration.getMeterConfig());
+        this.logManager = new LogManager(ServerUtils.serverIp, abstractConfiguration.getLogQueueSize(), abstractConfiguration.getLogSample());
+        this.logManager.bindMetric(metricManager);
+        this.protocolAdaptor = protocolAdaptor(abstractConfiguration.getBusinessQueueSize(), abstractConfiguration.getBusinessThreadSize(),
+                Boolean.TRUE.equals(abstractConfiguration.getInlineProtocol()));
         this.loopResources = LoopResources.create("smqttx-cluster-io", configuration.getBossThreadSize(), configuration.getWorkThreadSize(), true);
         this.trafficHandlerLoader = trafficHandlerLoader();
-        this.integrate = integrateBuilder().newIntegrate(initConfig(abstractConfiguration.getClusterConfig()));
+        this.integrate = integrateBuilder(abstractConfiguration.getClusterConfig()).newIntegrate(initConfig(abstractConfiguration.getClusterConfig()));
         RuleDslParser ruleDslParser = new RuleDslParser(abstractConfiguration.getRuleChainDefinitions());
         this.ruleDslExecutor = ruleDslParser.executor();
-        this.metricManager = metricManager(abstractConfiguration.getMeterConfig());
-        this.retryManager = new TimeAckManager(100, TimeUnit.MILLISECONDS, 512, 5, 5);
+        this.retryManager = new TimeAckManager(100, TimeUnit.MILLISECONDS, 512, 5, 5,
+                abstractConfiguration.getMaxInflight(), abstractConfiguration.getMaxInflightQueue(), 300, abstractConfiguration.getMaxAwaitingRel());
+        this.sessionManager = new SessionManager(integrate.getMessages().getSessionStore(), integrate.getTopics(), retryManager,
+                abstractConfiguration.getSessionQueueSize(), abstractConfiguration.getSessionMessageTtl(),
+                abstractConfiguration.getSessionExpiry(), abstractConfiguration.getSessionDrainBatch());
+        this.connectLimiter = new ConnectLimiter(abstractConfiguration.getConnectRate(), abstractConfiguration.getConnectBurst(),
+                abstractConfiguration.getConnectIpRate(), abstractConfiguration.getConnectIpBurst(), abstractConfiguration.getConnectPendingSize());
+        this.connectLimiter.bindMetric(metricManager);
+        this.metricManager.getLatencyRecorder().bindMetric(metricManager);
         this.aclManager = new JCasBinAclManager(integrate.getCache(IgniteCacheRegion.CONFIG));
-        this.authManager = authManagerFactory().provider(abstractConfiguration.getAuthConfig()).getAuthManager();
+        this.authManager = authManagerFactory().provider(abstractConfiguration.getAuthConfig()).getAuthManager(metricManager);
+        SourceManager.bindMetric(metricManager);
         Optional.ofNullable(abstractConfiguration.getSourceDefinitions())
                 .ifPresent(sourceDefinitions -> sourceDefinitions.forEach(SourceManager::loadSource));
 
@@ -123,9 +143,9 @@ public abstract class AbstractReceiveContext<T extends Configuration> implements
     }
 
 
-    private ProtocolAdaptor protocolAdaptor(Integer businessQueueSize, Integer threadSize) {
+    private ProtocolAdaptor protocolAdaptor(Integer businessQueueSize, Integer threadSize, boolean inlineProtocol) {
         return Optional.ofNullable(ProtocolAdaptor.INSTANCE)
-                .orElseGet(() -> new DefaultProtocolAdaptor(businessQueueSize, threadSize)).proxy();
+                .orElseGet(() -> new DefaultProtocolAdaptor(businessQueueSize, threadSize, inlineProtocol, metricManager)).proxy();
     }
 
     private MetricManager metricManager(BootstrapConfig.MeterConfig meterConfig) {
@@ -140,13 +160,14 @@ public abstract class AbstractReceiveContext<T extends Configuration> implements
         return (AbstractConfiguration) configuration;
     }
 
-    private IntegrateBuilder integrateBuilder() {
-        return configuration -> new IgniteIntegrate(configuration, protocolAdaptor);
+    private IntegrateBuilder integrateBuilder(BootstrapConfig.ClusterConfig clusterConfig) {
+        return configuration -> new IgniteIntegrate(configuration, protocolAdaptor, clusterConfig);
     }
 
     private IgniteConfiguration initConfig(BootstrapConfig.ClusterConfig clusterConfig) {
         DataStorageConfiguration dataStorageConfiguration = new DataStorageConfiguration();
-        dataStorageConfiguration.setDataRegionConfigurations(getDataRegionConfigurations(IgniteCacheRegion.values()));
+        dataStorageConfiguration.setDataRegionConfigurations(getDataRegionConfigurations(IgniteCacheRegion.values(),
+                !Boolean.FALSE.equals(clusterConfig.getSessionPersistence())));
         IgniteConfiguration igniteConfiguration = new IgniteConfiguration();
         igniteConfiguration.setDataStorageConfiguration(dataStorageConfiguration);
         String localAddress= Optional.ofNullable(clusterConfig.getLocalAddress()).orElse(ServerUtils.serverIp);
@@ -157,6 +178,8 @@ public abstract class AbstractReceiveContext<T extends Configuration> implements
             igniteConfiguration.setWorkDirectory(clusterConfig.getWorkDirectory());
         }
         igniteConfiguration.setClientMode(false);
+        // 节点离开时清理路由表, 离线消息过期时更新会话队列
+        igniteConfiguration.setIncludeEventTypes(EventType.EVT_NODE_LEFT, EventType.EVT_NODE_FAILED, EventType.EVT_CACHE_OBJECT_EXPIRED);
         TcpDiscoveryMulticastIpFinder ipFinder = new TcpDiscoveryMulticastIpFinder();
         if(clusterConfig.getAddresses()!=null){
             // ip集群
@@ -181,14 +204,18 @@ public abstract class AbstractReceiveContext<T extends Configuration> implements
 
     }
 
-    private DataRegionConfiguration[] getDataRegionConfigurations(IgniteCacheRegion[] values) {
-        DataRegionConfiguration[] regionConfigurations = new DataRegionConfiguration[values.length];
-        for (int i = 0; i < values.length; i++) {
-            regionConfigurations[i] = new DataRegionConfiguration()
-                    .setName(values[i].getRegionName())
-                    .setPersistenceEnabled(values[i].persistence());
+    /**
+     * @param persistence 关闭时持久化数据区也只保存在内存中
+     */
+    private DataRegionConfiguration[] getDataRegionConfigurations(IgniteCacheRegion[] values, boolean persistence) {
+        /* 多个 cache 可以共用一个数据区 */
+        Map<String, DataRegionConfiguration> regionConfigurations = new LinkedHashMap<>();
+        for (IgniteCacheRegion value : values) {
+            regionConfigurations.computeIfAbsent(value.getRegionName(), regionName -> new DataRegionConfiguration()
+                    .setName(regionName)
+                    .setPersistenceEnabled(persistence && value.persistence()));
         }
-        return regionConfigurations;
+        return regionConfigurations.values().toArray(new DataRegionConfiguration[0]);
     }
 
 
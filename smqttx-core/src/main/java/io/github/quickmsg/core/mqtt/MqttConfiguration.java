@@ -1,6 +1,7 @@
 package io.github.quickmsg.core.mqtt;
 
 import io.github.quickmsg.common.config.*;
+import io.github.quickmsg.common.log.LogEvent;
 import io.github.quickmsg.common.rule.RuleChainDefinition;
 import io.github.quickmsg.common.rule.source.SourceDefinition;
 import io.github.quickmsg.core.ssl.AbstractSslHandler;
@@ -61,4 +62,36 @@ public class MqttConfiguration extends AbstractSslHandler implements AbstractCon
 
     private Integer messageMaxSize = 4194304;
 
+    private Boolean zeroCopy = false;
+
+    private Boolean inlineProtocol = true;
+
+    private Integer maxInflight = 65535;
+
+    private Integer maxInflightQueue = 1000;
+
+    private Integer maxAwaitingRel = 1000;
+
+    private Integer sessionQueueSize = 1000;
+
+    private Integer sessionMessageTtl = 86400;
+
+    private Integer sessionExpiry = 7200;
+
+    private Integer sessionDrainBatch = 100;
+
+    private Integer connectRate = 2000;
+
+    private Integer connectBurst = 5000;
+
+    private Integer connectIpRate = 0;
+
+    private Integer connectIpBurst = 20;
+
+    private Integer connectPendingSize = 10000;
+
+    private Integer logQueueSize = 65536;
+
+    private Map<LogEvent, Integer> logSample;
+
 }
@@ -3,10 +3,18 @@ package io.github.quickmsg.core.mqtt;
 import io.github.quickmsg.common.channel.MqttChannel;
 import io.github.quickmsg.common.message.Message;
 import io.github.quickmsg.common.message.mqtt.*;
+import io.github.quickmsg.common.metric.LatencyRecorder;
+import io.github.quickmsg.common.metric.LatencyStage;
 import io.github.quickmsg.common.transport.Transport;
+import io.github.quickmsg.common.utils.IPUtils;
+import io.github.quickmsg.common.utils.MqttMessageUtils;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.handler.codec.mqtt.MqttConnectMessage;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
 import io.netty.handler.codec.mqtt.MqttFixedHeader;
 import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttVersion;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -49,7 +57,7 @@ public class MqttReceiveContext extends AbstractReceiveContext<MqttConfiguration
                 case PUBCOMP:
                     return new PublishCompMessage(mqttMessage, mqttChannel);
                 case PUBLISH:
-                    return new PublishMessage(mqttMessage, mqttChannel);
+                    return this.stamp(new PublishMessage(mqttMessage, mqttChannel, this.getConfiguration().getZeroCopy()), mqttChannel);
                 case SUBSCRIBE:
                     return new SubscribeMessage(mqttMessage, mqttChannel);
                 case DISCONNECT:
@@ -64,10 +72,48 @@ public class MqttReceiveContext extends AbstractReceiveContext<MqttConfiguration
         }
     }
 
+    /**
+     * 开启延迟统计时记录解码阶段, 并在消息上带上时间戳
+     */
+    private PublishMessage stamp(PublishMessage message, MqttChannel mqttChannel) {
+        LatencyRecorder latencyRecorder = this.getMetricManager().getLatencyRecorder();
+        if (latencyRecorder.isEnabled()) {
+            long readNanos = ReadTimestampHandler.readNanos(mqttChannel.getConnection().channel());
+            message.setStageNanos(latencyRecorder.record(LatencyStage.DECODE, readNanos));
+        }
+        return message;
+    }
+
     @Override
     public void accept(Message message) {
+        if (message instanceof ConnectMessage && this.getConnectLimiter().isEnabled()) {
+            this.admit((ConnectMessage) message);
+            return;
+        }
         this.getProtocolAdaptor().chooseProtocol(message);
     }
 
+    /**
+     * CONNECT 经过准入控制后再交给 ConnectProtocol, 排队放行时回到连接的 io 线程
+     */
+    private void admit(ConnectMessage message) {
+        MqttChannel mqttChannel = message.getMqttChannel();
+        Channel channel = mqttChannel.getConnection().channel();
+        this.getConnectLimiter().acquire(IPUtils.getHost(channel.remoteAddress()), channel::isActive,
+                () -> {
+                    if (channel.eventLoop().inEventLoop()) {
+                        this.getProtocolAdaptor().chooseProtocol(message);
+                    } else if (channel.isActive()) {
+                        channel.eventLoop().execute(() -> this.getProtocolAdaptor().chooseProtocol(message));
+                    }
+                },
+                () -> {
+                    MqttConnectReturnCode code = message.getVersion() == MqttVersion.MQTT_5
+                            ? MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE_5
+                            : MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE;
+                    channel.writeAndFlush(MqttMessageUtils.buildConnectAck(code)).addListener(ChannelFutureListener.CLOSE);
+                });
+    }
+
 
 }
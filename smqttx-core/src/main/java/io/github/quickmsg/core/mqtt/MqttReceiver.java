@@ -41,8 +41,11 @@ public class MqttReceiver extends AbstractSslHandler implements Receiver {
                 .metrics(true)
                 .runOn(receiveContext.getLoopResources())
                 .doOnConnection(connection -> {
+                    connection.addHandler(MqttEncoder.INSTANCE);
+                    if (receiveContext.getMetricManager().getLatencyRecorder().isEnabled()) {
+                        connection.addHandler(new ReadTimestampHandler());
+                    }
                     connection
-                            .addHandler(MqttEncoder.INSTANCE)
                             .addHandler(new MqttDecoder(mqttConfiguration.getMessageMaxSize()))
                             .addHandler(receiveContext.getTrafficHandlerLoader().get());
                     receiveContext.apply(MqttChannel.init(connection));
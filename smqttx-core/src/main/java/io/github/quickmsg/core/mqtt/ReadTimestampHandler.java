@@ -0,0 +1,34 @@
+package io.github.quickmsg.core.mqtt;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * 放在 MqttDecoder 之前, 记录最近一次读到数据的单调时间戳, 用于统计解码阶段延迟
+ * <p>
+ * 每个连接一个实例, 读写都在连接的 io 线程上, 时间戳用 long 字段保存避免装箱
+ *
+ * @author luxurong
+ */
+public class ReadTimestampHandler extends ChannelInboundHandlerAdapter {
+
+    private long readNanos;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readNanos = System.nanoTime();
+        super.channelRead(ctx, msg);
+    }
+
+    /**
+     * 连接最近一次读到数据的时间戳
+     *
+     * @param channel {@link Channel}
+     * @return 未添加 {@link ReadTimestampHandler} 时返回 0
+     */
+    public static long readNanos(Channel channel) {
+        ReadTimestampHandler handler = channel.pipeline().get(ReadTimestampHandler.class);
+        return handler == null ? 0 : handler.readNanos;
+    }
+}
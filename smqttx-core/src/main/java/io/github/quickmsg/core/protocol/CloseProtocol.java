@@ -8,7 +8,6 @@ import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.CloseMessage;
 import io.github.quickmsg.common.metric.CounterType;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import reactor.util.context.ContextView;
 
 
@@ -23,7 +22,7 @@ public class CloseProtocol implements Protocol<CloseMessage> {
         LogManager logManager = receiveContext.getLogManager();
         receiveContext.getMetricManager().getMetricRegistry().getMetricCounter(CounterType.CONNECT).decrement();
         receiveContext.getMetricManager().getMetricRegistry().getMetricCounter(CounterType.CLOSE_EVENT).increment();
-        logManager.printInfo(mqttChannel, LogEvent.CLOSE, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
+        logManager.printInfo(mqttChannel, LogEvent.CLOSE, LogStatus.SUCCESS, message);
 
     }
 
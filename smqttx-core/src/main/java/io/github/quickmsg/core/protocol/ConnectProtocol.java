@@ -1,6 +1,5 @@
 package io.github.quickmsg.core.protocol;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.Optional;
 
@@ -20,9 +19,11 @@ import io.github.quickmsg.common.message.mqtt.ConnectMessage;
 import io.github.quickmsg.common.message.mqtt.DisConnectMessage;
 import io.github.quickmsg.common.metric.CounterType;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
+import io.github.quickmsg.common.session.SessionManager;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
 import io.github.quickmsg.core.mqtt.MqttReceiveContext;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.netty.handler.codec.mqtt.MqttVersion;
@@ -37,6 +38,8 @@ public class ConnectProtocol implements Protocol<ConnectMessage> {
 
     private static final int MILLI_SECOND_PERIOD = 1_000;
 
+    private static final String SESSION_DRAIN_HANDLER = "sessionDrain";
+
 
     @Override
     public void parseProtocol(ConnectMessage connectMessage, MqttChannel mqttChannel, ContextView contextView) {
@@ -60,7 +63,7 @@ public class ConnectProtocol implements Protocol<ConnectMessage> {
             /*check clientIdentifier exist*/
                 mqttChannel.setConnectCache(connectMessage.getCache(receiveContext.getIntegrate().getCluster().getLocalNode()));
                 mqttChannel.getConnectCache().setWill(connectMessage.getWill());
-                logManager.printInfo(mqttChannel, LogEvent.CONNECT, LogStatus.SUCCESS, JacksonUtil.bean2Json(connectMessage.getCache(receiveContext.getIntegrate().getCluster().getLocalNode())));
+                logManager.printInfo(mqttChannel, LogEvent.CONNECT, LogStatus.SUCCESS, connectMessage.getCache(receiveContext.getIntegrate().getCluster().getLocalNode()));
 
                 mqttChannel.setAuthTime(DateFormatUtils.format(new Date(), "yyyy-mm-dd hh:mm:ss"));
 
@@ -73,13 +76,22 @@ public class ConnectProtocol implements Protocol<ConnectMessage> {
                 /* registry close mqtt channel event*/
                 mqttChannel.registryClose(channel -> this.close(mqttChannel, mqttReceiveContext));
 
-                mqttChannel.write(MqttMessageUtils.buildConnectAck(MqttConnectReturnCode.CONNECTION_ACCEPTED));
+                SessionManager sessionManager = receiveContext.getSessionManager();
+                boolean sessionPresent = sessionManager.online(mqttChannel);
+                if (!connectMessage.isCleanSession()) {
+                    mqttChannel.getConnection().addHandlerLast(SESSION_DRAIN_HANDLER, new SessionDrainHandler(sessionManager, mqttChannel));
+                }
+
+                mqttChannel.write(MqttMessageUtils.buildConnectAck(MqttConnectReturnCode.CONNECTION_ACCEPTED, sessionPresent));
+
+                /* CONNACK 之后再恢复订阅与补发离线消息 */
+                sessionManager.resume(mqttChannel);
 
                 receiveContext.getMetricManager().getMetricRegistry().getMetricCounter(CounterType.CONNECT).increment();
                 receiveContext.getMetricManager().getMetricRegistry().getMetricCounter(CounterType.CONNECT_EVENT).increment();
 
             } else {
-                logManager.printInfo(mqttChannel, LogEvent.CONNECT, LogStatus.FAILED, JacksonUtil.bean2Json(connectMessage.getCache(receiveContext.getIntegrate().getCluster().getLocalNode())));
+                logManager.printInfo(mqttChannel, LogEvent.CONNECT, LogStatus.FAILED, connectMessage.getCache(receiveContext.getIntegrate().getCluster().getLocalNode()));
                 mqttChannel.write(MqttMessageUtils.buildConnectAck(MqttConnectReturnCode.CONNECTION_REFUSED_BAD_USER_NAME_OR_PASSWORD));
             }
         });
@@ -89,10 +101,33 @@ public class ConnectProtocol implements Protocol<ConnectMessage> {
 
     private void logHeartClose(LogManager logManager, MqttChannel mqttChannel) {
         mqttChannel.close();
-        logManager.printInfo(mqttChannel, LogEvent.HEART_TIMEOUT, LogStatus.SUCCESS, JacksonUtil.bean2Json(mqttChannel.getConnectCache()));
+        logManager.printInfo(mqttChannel, LogEvent.HEART_TIMEOUT, LogStatus.SUCCESS, mqttChannel.getConnectCache());
     }
 
 
+    /**
+     * 连接恢复可写时继续补发离线消息
+     */
+    private static class SessionDrainHandler extends ChannelInboundHandlerAdapter {
+
+        private final SessionManager sessionManager;
+
+        private final MqttChannel mqttChannel;
+
+        private SessionDrainHandler(SessionManager sessionManager, MqttChannel mqttChannel) {
+            this.sessionManager = sessionManager;
+            this.mqttChannel = mqttChannel;
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            if (ctx.channel().isWritable()) {
+                sessionManager.drain(mqttChannel);
+            }
+            ctx.fireChannelWritabilityChanged();
+        }
+    }
+
     @Override
     public Class<ConnectMessage> getClassType() {
         return ConnectMessage.class;
@@ -103,7 +138,8 @@ public class ConnectProtocol implements Protocol<ConnectMessage> {
         final MqttChannel.Will willMessage = mqttChannel.getConnectCache().getWill();
         mqttReceiveContext.getIntegrate().getChannels().remove(mqttChannel);
         IntegrateTopics<SubscribeTopic> topics = mqttReceiveContext.getIntegrate().getTopics();
-        topics.removeTopic(mqttChannel, new ArrayList<>(mqttChannel.getTopics()));
+        /* cleanSession=false 时保留订阅与未确认消息 */
+        mqttReceiveContext.getSessionManager().close(mqttChannel);
         mqttReceiveContext.getRetryManager().clearRetry(mqttChannel);
         DisConnectMessage disConnectMessage = new DisConnectMessage(mqttChannel);
         mqttReceiveContext.getIntegrate().getProtocolAdaptor().chooseProtocol(disConnectMessage);
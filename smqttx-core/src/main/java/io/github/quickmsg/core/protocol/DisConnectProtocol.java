@@ -8,7 +8,6 @@ import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.DisConnectMessage;
 import io.github.quickmsg.common.metric.CounterType;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import reactor.netty.Connection;
 import reactor.util.context.ContextView;
 
@@ -22,7 +21,7 @@ public class DisConnectProtocol implements Protocol<DisConnectMessage> {
     public void parseProtocol(DisConnectMessage message, MqttChannel mqttChannel, ContextView contextView) {
         ReceiveContext<?> receiveContext =  contextView.get(ReceiveContext.class);
         LogManager logManager = receiveContext.getLogManager();
-        logManager.printInfo(mqttChannel, LogEvent.DISCONNECT, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
+        logManager.printInfo(mqttChannel, LogEvent.DISCONNECT, LogStatus.SUCCESS, message);
         receiveContext.getMetricManager().getMetricRegistry().getMetricCounter(CounterType.DIS_CONNECT_EVENT).increment();
         Connection connection;
         if (!(connection = mqttChannel.getConnection()).isDisposed()) {
@@ -7,7 +7,6 @@ import io.github.quickmsg.common.log.LogManager;
 import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.PingMessage;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
 import lombok.extern.slf4j.Slf4j;
 import reactor.util.context.ContextView;
@@ -22,7 +21,7 @@ public class PingProtocol implements Protocol<PingMessage> {
     public void parseProtocol(PingMessage message, MqttChannel mqttChannel, ContextView contextView) {
         ReceiveContext<?> receiveContext =  contextView.get(ReceiveContext.class);
         LogManager logManager = receiveContext.getLogManager();
-        logManager.printInfo(mqttChannel, LogEvent.PING, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
+        logManager.printInfo(mqttChannel, LogEvent.PING, LogStatus.SUCCESS, message);
         mqttChannel.write(MqttMessageUtils.buildPongMessage());
     }
 
@@ -30,4 +29,9 @@ public class PingProtocol implements Protocol<PingMessage> {
     public Class<PingMessage> getClassType() {
         return PingMessage.class;
     }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
 }
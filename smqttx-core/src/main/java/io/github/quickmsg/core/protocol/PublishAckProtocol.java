@@ -7,7 +7,6 @@ import io.github.quickmsg.common.log.LogManager;
 import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.PublishAckMessage;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import reactor.util.context.ContextView;
 
 /**
@@ -19,7 +18,7 @@ public class PublishAckProtocol implements Protocol<PublishAckMessage> {
     public void parseProtocol(PublishAckMessage message, MqttChannel mqttChannel, ContextView contextView) {
         ReceiveContext<?> receiveContext =  contextView.get(ReceiveContext.class);
         LogManager logManager = receiveContext.getLogManager();
-        logManager.printInfo(mqttChannel, LogEvent.PUBLISH_ACK, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
+        logManager.printInfo(mqttChannel, LogEvent.PUBLISH_ACK, LogStatus.SUCCESS, message);
         contextView.get(ReceiveContext.class)
                 .getRetryManager().cancelRetry(mqttChannel, message.getMessageId());
     }
@@ -29,5 +28,10 @@ public class PublishAckProtocol implements Protocol<PublishAckMessage> {
         return PublishAckMessage.class;
     }
 
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
 
 }
@@ -7,7 +7,6 @@ import io.github.quickmsg.common.log.LogManager;
 import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.PublishCompMessage;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import reactor.util.context.ContextView;
 
 /**
@@ -19,11 +18,17 @@ public class PublishCompProtocol implements Protocol<PublishCompMessage> {
     public void parseProtocol(PublishCompMessage message, MqttChannel mqttChannel, ContextView contextView) {
         ReceiveContext<?> receiveContext =  contextView.get(ReceiveContext.class);
         LogManager logManager = receiveContext.getLogManager();
-        logManager.printWarn(mqttChannel, LogEvent.PUBLISH_COMP, LogStatus.SUCCESS,JacksonUtil.bean2Json(message));
+        logManager.printWarn(mqttChannel, LogEvent.PUBLISH_COMP, LogStatus.SUCCESS, message);
+        receiveContext.getRetryManager().cancelRetry(mqttChannel, message.getMessageId());
     }
 
     @Override
     public Class<PublishCompMessage> getClassType() {
         return PublishCompMessage.class;
     }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
 }
@@ -16,15 +16,17 @@ import io.github.quickmsg.common.message.RetainMessage;
 import io.github.quickmsg.common.message.mqtt.ClusterMessage;
 import io.github.quickmsg.common.message.mqtt.PublishMessage;
 import io.github.quickmsg.common.metric.CounterType;
+import io.github.quickmsg.common.metric.LatencyRecorder;
+import io.github.quickmsg.common.metric.LatencyStage;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
+import io.github.quickmsg.common.retry.RetryManager;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 import reactor.util.context.ContextView;
 
-import java.util.Set;
 
 /**
  * @author luxurong
@@ -41,39 +43,67 @@ public class PublishProtocol implements Protocol<PublishMessage> {
         IntegrateCluster integrateCluster = receiveContext.getIntegrate().getCluster();
         IntegrateMessages messages = receiveContext.getIntegrate().getMessages();
         AclManager aclManager = receiveContext.getAclManager();
+        LatencyRecorder latencyRecorder = receiveContext.getMetricManager().getLatencyRecorder();
+        message.setStageNanos(latencyRecorder.record(LatencyStage.DISPATCH, message.getStageNanos()));
         if (mqttChannel!=null && !aclManager.check(mqttChannel, message.getTopic(), AclAction.PUBLISH)) {
-            logManager.printWarn(mqttChannel, LogEvent.PUBLISH, LogStatus.FAILED," acl not authorized "+ JacksonUtil.bean2Json(message));
+            logManager.printWarn(mqttChannel, LogEvent.PUBLISH, LogStatus.FAILED," acl not authorized " + message.getTopic());
             return;
         }
-        if (message.isRetain()) {
-            messages.saveRetainMessage(RetainMessage.of(message));
-        }
+        message.setStageNanos(latencyRecorder.record(LatencyStage.ACL, message.getStageNanos()));
         if(mqttChannel!=null){
             switch (MqttQoS.valueOf(message.getQos())){
                 case AT_LEAST_ONCE:
                     mqttChannel.write(MqttMessageUtils.buildPublishAck(message.getMessageId()));
                     break;
                 case EXACTLY_ONCE:
-                    mqttChannel.saveQos2Cache(message.getMessageId(), message);
-                    mqttChannel.write(MqttMessageUtils.buildPublishRec(message.getMessageId()));
-                    return ;
+                    if (!this.receiveExactlyOnce(message, mqttChannel, receiveContext)) {
+                        return;
+                    }
+                    break;
                 default:
                     break;
             }
         }
+        if (message.isRetain()) {
+            messages.saveRetainMessage(RetainMessage.of(message));
+        }
         receiveContext.getMetricManager().getMetricRegistry()
                 .getMetricCounter(CounterType.PUBLISH_EVENT).increment();
-        logManager.printInfo(mqttChannel, LogEvent.PUBLISH, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
+        logManager.printInfo(mqttChannel, LogEvent.PUBLISH, LogStatus.SUCCESS, message);
         ClusterMessage clusterMessage = new ClusterMessage(message);
         integrateCluster.sendCluster(clusterMessage.getTopic(), clusterMessage);
-        Set<String> wildcardTopics = topics.getWildcardTopics(clusterMessage.getTopic());
-        if (wildcardTopics != null && !wildcardTopics.isEmpty()) {
-            wildcardTopics.forEach(tp -> {
-                clusterMessage.setTopic(tp);
-                integrateCluster.sendCluster(tp, clusterMessage);
-            });
-        }
+        topics.forEachWildcardTopic(clusterMessage.getTopic(), tp -> {
+            clusterMessage.setTopic(tp);
+            integrateCluster.sendCluster(tp, clusterMessage);
+        });
+
+    }
 
+    /**
+     * qos2 消息在 PUBLISH 时下发, 只记录 messageId 直到收到 PUBREL, 期间重发的 PUBLISH 只回复 PUBREC
+     *
+     * @return 是否需要下发
+     */
+    private boolean receiveExactlyOnce(PublishMessage message, MqttChannel mqttChannel, ReceiveContext<?> receiveContext) {
+        RetryManager retryManager = receiveContext.getRetryManager();
+        int messageId = message.getMessageId();
+        if (retryManager.isAwaitingRel(mqttChannel, messageId)) {
+            mqttChannel.write(MqttMessageUtils.buildPublishRec(messageId));
+            return false;
+        }
+        if (!retryManager.awaitRel(mqttChannel, messageId)) {
+            if (mqttChannel.getConnectCache() != null && mqttChannel.getConnectCache().getVersion() == MqttVersion.MQTT_5) {
+                receiveContext.getLogManager().printWarn(mqttChannel, LogEvent.PUBLISH, LogStatus.FAILED, "awaiting rel window full " + message.getTopic());
+                mqttChannel.write(MqttMessageUtils.buildPublishRec(messageId, MqttMessageUtils.RECEIVE_MAXIMUM_EXCEEDED));
+            } else {
+                /* MQTT3 没有拒绝 qos2 的原因码, 不回复 PUBREC 客户端会一直重发, 断开连接 */
+                receiveContext.getLogManager().printWarn(mqttChannel, LogEvent.PUBLISH, LogStatus.FAILED, "awaiting rel window full, disconnect " + message.getTopic());
+                mqttChannel.close();
+            }
+            return false;
+        }
+        mqttChannel.write(MqttMessageUtils.buildPublishRec(messageId));
+        return true;
     }
 
     @Override
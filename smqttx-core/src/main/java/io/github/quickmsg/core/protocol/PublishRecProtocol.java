@@ -8,7 +8,6 @@ import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.PublishRecMessage;
 import io.github.quickmsg.common.metric.CounterType;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
 import reactor.util.context.ContextView;
 
@@ -21,14 +20,23 @@ public class PublishRecProtocol implements Protocol<PublishRecMessage> {
     public void parseProtocol(PublishRecMessage message, MqttChannel mqttChannel, ContextView contextView) {
         ReceiveContext<?> receiveContext =  contextView.get(ReceiveContext.class);
         LogManager logManager = receiveContext.getLogManager();
-        logManager.printWarn(mqttChannel, LogEvent.PUBLISH_REC, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
-        contextView.get(ReceiveContext.class).getRetryManager().cancelRetry(mqttChannel, message.getMessageId());
+        logManager.printWarn(mqttChannel, LogEvent.PUBLISH_REC, LogStatus.SUCCESS, message);
         receiveContext.getMetricManager().getMetricRegistry().getMetricCounter(CounterType.PUBLISH_EVENT).increment();
-        mqttChannel.write(MqttMessageUtils.buildPublishRel(message.getMessageId()));
+        /* 改为重发 PUBREL 直到收到 PUBCOMP */
+        if (receiveContext.getRetryManager().relRetry(mqttChannel, message.getMessageId())) {
+            mqttChannel.write(MqttMessageUtils.buildPublishRel(message.getMessageId()));
+        } else {
+            mqttChannel.write(MqttMessageUtils.buildPublishRel(message.getMessageId(), MqttMessageUtils.PACKET_ID_NOT_FOUND));
+        }
     }
 
     @Override
     public Class<PublishRecMessage> getClassType() {
         return PublishRecMessage.class;
     }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
 }
@@ -16,7 +16,6 @@ import io.github.quickmsg.common.message.mqtt.SubscribeMessage;
 import io.github.quickmsg.common.metric.CounterType;
 import io.github.quickmsg.common.metric.MetricManagerHolder;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import reactor.util.context.ContextView;
@@ -44,9 +43,9 @@ public class SubscribeProtocol implements Protocol<SubscribeMessage> {
         List<SubscribeTopic> subscribeTopics = message.getSubscribeTopics()
                     .stream()
                     .filter(subscribeTopic -> aclManager.check(mqttChannel, subscribeTopic.getTopicFilter(), AclAction.SUBSCRIBE))
-                    .peek(subscribeTopic -> this.loadRetainMessage(messages, subscribeTopic)).collect(Collectors.toList());
+                    .collect(Collectors.toList());
         topics.registryTopic(mqttChannel, subscribeTopics);
-        logManager.printInfo(mqttChannel, LogEvent.SUBSCRIBE, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
+        logManager.printInfo(mqttChannel, LogEvent.SUBSCRIBE, LogStatus.SUCCESS, message);
         mqttChannel.write(
                     MqttMessageUtils.buildSubAck(
                                 message.getMessageId(),
@@ -54,6 +53,8 @@ public class SubscribeProtocol implements Protocol<SubscribeMessage> {
                                             .stream()
                                             .map(subscribeTopic -> subscribeTopic.getQoS().value())
                                             .collect(Collectors.toList())));
+        /* 保留消息在 SUBACK 之后下发 */
+        subscribeTopics.forEach(subscribeTopic -> this.loadRetainMessage(messages, subscribeTopic));
     }
 
     @Override
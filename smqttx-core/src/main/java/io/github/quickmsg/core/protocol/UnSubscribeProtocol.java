@@ -8,7 +8,6 @@ import io.github.quickmsg.common.log.LogManager;
 import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.UnSubscribeMessage;
 import io.github.quickmsg.common.protocol.Protocol;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.common.utils.MqttMessageUtils;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import reactor.util.context.ContextView;
@@ -30,7 +29,7 @@ public class UnSubscribeProtocol implements Protocol<UnSubscribeMessage> {
                                 .getTopics()
                                 .removeTopic(mqttChannel,new SubscribeTopic(topic, MqttQoS.AT_MOST_ONCE, mqttChannel)));
 
-        logManager.printInfo(mqttChannel, LogEvent.SUBSCRIBE, LogStatus.SUCCESS, JacksonUtil.bean2Json(message));
+        logManager.printInfo(mqttChannel, LogEvent.SUBSCRIBE, LogStatus.SUCCESS, message);
 
         mqttChannel.write(MqttMessageUtils.buildUnsubAck(message.getMessageId()));
     }
@@ -4,6 +4,7 @@ import io.github.quickmsg.common.Receiver;
 import io.github.quickmsg.common.channel.MqttChannel;
 import io.github.quickmsg.core.mqtt.MqttConfiguration;
 import io.github.quickmsg.core.mqtt.MqttReceiveContext;
+import io.github.quickmsg.core.mqtt.ReadTimestampHandler;
 import io.github.quickmsg.core.ssl.AbstractSslHandler;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelOption;
@@ -50,8 +51,11 @@ public class WebSocketMqttReceiver extends AbstractSslHandler implements Receive
                             .addHandlerLast(new HttpObjectAggregator(65536))
                             .addHandlerLast(new WebSocketServerProtocolHandler(mqttConfiguration.getWebSocketPath(), "mqtt, mqttv3.1, mqttv3.1.1"))
                             .addHandlerLast(new WebSocketFrameToByteBufDecoder())
-                            .addHandlerLast(new ByteBufToWebSocketFrameEncoder())
-                            .addHandlerLast(new MqttDecoder(mqttConfiguration.getMessageMaxSize()))
+                            .addHandlerLast(new ByteBufToWebSocketFrameEncoder());
+                    if (receiveContext.getMetricManager().getLatencyRecorder().isEnabled()) {
+                        connection.addHandlerLast(new ReadTimestampHandler());
+                    }
+                    connection.addHandlerLast(new MqttDecoder(mqttConfiguration.getMessageMaxSize()))
                             .addHandlerLast(MqttEncoder.INSTANCE);
                     receiveContext.apply(MqttChannel.init(connection));
                 });
@@ -0,0 +1,38 @@
+package io.github.quickmsg.interate;
+
+import io.github.quickmsg.common.message.mqtt.ClusterMessage;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 发往同一节点的一批集群消息
+ * <p>
+ * 同一条消息匹配多个 topicFilter 时只序列化一次, topics 与 messages 按下标一一对应
+ *
+ * @author luxurong
+ */
+@Getter
+public class ClusterBatch implements Serializable {
+
+    private final List<String> topics;
+
+    private final List<ClusterMessage> messages;
+
+    public ClusterBatch(int capacity) {
+        this.topics = new ArrayList<>(capacity);
+        this.messages = new ArrayList<>(capacity);
+    }
+
+    public void add(String topic, ClusterMessage clusterMessage) {
+        topics.add(topic);
+        messages.add(clusterMessage);
+    }
+
+    public int size() {
+        return topics.size();
+    }
+
+}
@@ -0,0 +1,187 @@
+package io.github.quickmsg.interate;
+
+import io.github.quickmsg.common.context.ContextHolder;
+import io.github.quickmsg.common.message.mqtt.ClusterMessage;
+import io.github.quickmsg.common.metric.LatencyRecorder;
+import io.github.quickmsg.common.metric.LatencyStage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ignite.IgniteCluster;
+import org.apache.ignite.IgniteMessaging;
+import org.apache.ignite.cluster.ClusterTopologyException;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 集群消息转发, 按目标节点合并成批次发送
+ * <p>
+ * 批次达到 batchBytes 时立即发送, 否则最多等待 batchDelay 微秒, 每个节点每批只发送一个 Ignite 消息.
+ * 锁内只取出批次, 编码与发送在发送线程完成, 每个节点同时只有一个发送任务, 保证批次顺序, 慢节点不阻塞发布线程
+ *
+ * @author luxurong
+ */
+@Slf4j
+public class ClusterForwarder {
+
+    public static final String BATCH_TOPIC = "$cluster_batch";
+
+    /**
+     * topic 等字段的估算开销
+     */
+    private static final int MESSAGE_OVERHEAD = 64;
+
+    private final IgniteCluster igniteCluster;
+
+    private final long batchDelay;
+
+    private final int batchBytes;
+
+    private final Map<UUID, NodeBatch> batches = new ConcurrentHashMap<>();
+
+    private final Scheduler scheduler = Schedulers.newSingle("cluster-forwarder", true);
+
+    private final Scheduler sender = Schedulers.boundedElastic();
+
+    public ClusterForwarder(IgniteCluster igniteCluster, long batchDelay, int batchBytes) {
+        this.igniteCluster = igniteCluster;
+        this.batchDelay = batchDelay;
+        this.batchBytes = batchBytes;
+    }
+
+    /**
+     * 转发到指定节点
+     *
+     * @param nodeId         节点id
+     * @param topic          匹配的 topic 或 topicFilter
+     * @param clusterMessage {@link ClusterMessage}
+     */
+    public void forward(UUID nodeId, String topic, ClusterMessage clusterMessage) {
+        byte[] body = clusterMessage.getBody();
+        int size = MESSAGE_OVERHEAD + topic.length() + (body == null ? 0 : body.length);
+        batches.computeIfAbsent(nodeId, NodeBatch::new).add(topic, clusterMessage, size);
+    }
+
+    public void close() {
+        batches.values().forEach(NodeBatch::flush);
+        scheduler.dispose();
+    }
+
+
+    private static void recordLatency(ClusterBatch batch) {
+        LatencyRecorder latencyRecorder = Optional.ofNullable(ContextHolder.getReceiveContext())
+                .map(receiveContext -> receiveContext.getMetricManager().getLatencyRecorder())
+                .orElse(LatencyRecorder.DISABLED);
+        if (latencyRecorder.isEnabled()) {
+            for (ClusterMessage clusterMessage : batch.getMessages()) {
+                latencyRecorder.record(LatencyStage.CLUSTER_SEND, clusterMessage.getStageNanos());
+            }
+        }
+    }
+
+
+    private class NodeBatch {
+
+        private final UUID nodeId;
+
+        private final IgniteMessaging messaging;
+
+        /**
+         * 已取出等待发送的批次
+         */
+        private final Queue<ClusterBatch> ready = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private ClusterBatch clusterBatch;
+
+        private int bytes;
+
+        private boolean scheduled;
+
+        private NodeBatch(UUID nodeId) {
+            this.nodeId = nodeId;
+            this.messaging = igniteCluster.ignite().message(igniteCluster.forNodeId(nodeId));
+        }
+
+        private void add(String topic, ClusterMessage clusterMessage, int size) {
+            boolean full;
+            synchronized (this) {
+                if (clusterBatch == null) {
+                    clusterBatch = new ClusterBatch(16);
+                }
+                clusterBatch.add(topic, clusterMessage);
+                bytes += size;
+                full = bytes >= batchBytes || batchDelay <= 0;
+                if (full) {
+                    this.swap();
+                } else if (!scheduled) {
+                    scheduled = true;
+                    scheduler.schedule(this::flush, batchDelay, TimeUnit.MICROSECONDS);
+                }
+            }
+            if (full) {
+                this.send();
+            }
+        }
+
+        private void flush() {
+            synchronized (this) {
+                scheduled = false;
+                this.swap();
+            }
+            this.send();
+        }
+
+        /**
+         * 取出当前批次放入发送队列, 需要持有锁
+         */
+        private void swap() {
+            if (clusterBatch != null) {
+                ready.offer(clusterBatch);
+                clusterBatch = null;
+                bytes = 0;
+            }
+        }
+
+        private void send() {
+            if (wip.getAndIncrement() == 0) {
+                sender.schedule(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            for (; ; ) {
+                ClusterBatch batch;
+                while ((batch = ready.poll()) != null) {
+                    this.send(batch);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void send(ClusterBatch batch) {
+            try {
+                messaging.send(BATCH_TOPIC, ClusterMessageCodec.encode(batch));
+                recordLatency(batch);
+            } catch (ClusterTopologyException e) {
+                log.warn("cluster node {} left, drop {} messages", nodeId, batch.size());
+                batches.remove(nodeId, this);
+            } catch (Exception e) {
+                log.error("cluster forward to {} error", nodeId, e);
+            }
+        }
+    }
+
+}
@@ -2,16 +2,16 @@ package io.github.quickmsg.interate;
 
 import cn.hutool.core.collection.CollectionUtil;
 import io.github.quickmsg.common.context.ContextHolder;
-import io.github.quickmsg.common.context.ReceiveContext;
 import io.github.quickmsg.common.integrate.SubscribeTopic;
 import io.github.quickmsg.common.log.LogEvent;
 import io.github.quickmsg.common.log.LogManager;
 import io.github.quickmsg.common.log.LogStatus;
 import io.github.quickmsg.common.message.mqtt.ClusterMessage;
-import io.github.quickmsg.common.utils.JacksonUtil;
+import io.github.quickmsg.common.message.mqtt.PublishFrame;
+import io.github.quickmsg.common.metric.LatencyRecorder;
+import io.github.quickmsg.common.metric.LatencyStage;
 import io.netty.handler.codec.mqtt.MqttQoS;
 
-import javax.naming.Context;
 import java.io.Serializable;
 import java.util.Set;
 import java.util.UUID;
@@ -23,18 +23,47 @@ public class ClusterHandler implements Serializable {
 
 
     public boolean doRemote(UUID uuid, Object o) {
+        if (o instanceof byte[]) {
+            LatencyRecorder latencyRecorder = ContextHolder.getReceiveContext().getMetricManager().getLatencyRecorder();
+            long received = latencyRecorder.now();
+            ClusterBatch clusterBatch = ClusterMessageCodec.decode((byte[]) o);
+            for (int i = 0; i < clusterBatch.size(); i++) {
+                latencyRecorder.record(LatencyStage.REMOTE_RECEIVE, received);
+                doRemote(clusterBatch.getTopics().get(i), clusterBatch.getMessages().get(i));
+            }
+            return true;
+        }
         ClusterMessage clusterMessage = (ClusterMessage) o;
+        return doRemote(clusterMessage.getTopic(), clusterMessage);
+    }
+
+    /**
+     * 投递给本节点订阅了 topic 的连接
+     *
+     * @param topic          topic 或 topicFilter
+     * @param clusterMessage {@link ClusterMessage}
+     * @return true
+     */
+    public boolean doRemote(String topic, ClusterMessage clusterMessage) {
         Set<SubscribeTopic> channels = ContextHolder.getReceiveContext().getIntegrate().getTopics()
-                    .getMqttChannelsByTopic(clusterMessage.getTopic());
+                    .getMqttChannelsByTopic(topic);
         LogManager logManager = ContextHolder.getReceiveContext().getLogManager();
 
         if(CollectionUtil.isNotEmpty(channels)){
-            String msg = JacksonUtil.bean2Json(clusterMessage);
-            for(SubscribeTopic subscribeTopic:channels){
-                logManager.printInfo(subscribeTopic.getMqttChannel(), LogEvent.WRITE, LogStatus.SUCCESS,msg);
-                subscribeTopic.getMqttChannel().sendPublish(
-                        MqttQoS.valueOf(clusterMessage.getQos()), clusterMessage.toPublishMessage());
+            /* 同一 qos 的订阅者共享预编码报文 */
+            LatencyRecorder latencyRecorder = ContextHolder.getReceiveContext().getMetricManager().getLatencyRecorder();
+            long start = latencyRecorder.now();
+            PublishFrame publishFrame = new PublishFrame(clusterMessage.toPublishMessage());
+            try {
+                for(SubscribeTopic subscribeTopic:channels){
+                    logManager.printInfo(subscribeTopic.getMqttChannel(), LogEvent.WRITE, LogStatus.SUCCESS, clusterMessage);
+                    subscribeTopic.getMqttChannel().sendPublish(
+                            subscribeTopic.minQos(MqttQoS.valueOf(clusterMessage.getQos())), publishFrame);
+                }
+            } finally {
+                publishFrame.release();
             }
+            latencyRecorder.record(LatencyStage.SUBSCRIBER_WRITE, start);
         }
         return true;
     }
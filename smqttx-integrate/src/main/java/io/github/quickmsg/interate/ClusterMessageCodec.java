@@ -0,0 +1,193 @@
+package io.github.quickmsg.interate;
+
+import io.github.quickmsg.common.message.mqtt.ClusterMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ClusterBatch} 二进制编解码, 替代 Ignite 默认序列化
+ * <pre>
+ * byte    version
+ * varint  字符串个数, 每个字符串: varint 长度 + utf8
+ * varint  消息个数, 每条消息:
+ *         byte   flags: bit0-1 qos, bit2 retain, bit3 clientId, bit4 connectTime, bit5 body
+ *         varint originTopic 字符串下标
+ *         varint channelId
+ *         [varint clientId 字符串下标] [varint connectTime 字符串下标] [varint 长度 + body]
+ * varint  条目个数, 每个条目: varint topic 字符串下标 + varint 消息下标
+ * </pre>
+ * topic 等字符串在批次内只写一次, 同一条消息匹配多个 topicFilter 时也只写一次
+ *
+ * @author luxurong
+ */
+public class ClusterMessageCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int QOS_MASK = 0x03;
+
+    private static final int RETAIN = 1 << 2;
+
+    private static final int CLIENT_ID = 1 << 3;
+
+    private static final int CONNECT_TIME = 1 << 4;
+
+    private static final int BODY = 1 << 5;
+
+    private ClusterMessageCodec() {
+    }
+
+    /**
+     * 编码
+     *
+     * @param clusterBatch {@link ClusterBatch}
+     * @return 字节数组
+     */
+    public static byte[] encode(ClusterBatch clusterBatch) {
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> stringTable = new ArrayList<>();
+        Map<ClusterMessage, Integer> messages = new IdentityHashMap<>();
+        List<ClusterMessage> messageTable = new ArrayList<>();
+        int bodyBytes = 0;
+        for (int i = 0; i < clusterBatch.size(); i++) {
+            alias(clusterBatch.getTopics().get(i), strings, stringTable);
+            ClusterMessage clusterMessage = clusterBatch.getMessages().get(i);
+            if (!messages.containsKey(clusterMessage)) {
+                messages.put(clusterMessage, messageTable.size());
+                messageTable.add(clusterMessage);
+                alias(clusterMessage.getOriginTopic(), strings, stringTable);
+                alias(clusterMessage.getClientId(), strings, stringTable);
+                alias(clusterMessage.getConnectTime(), strings, stringTable);
+                byte[] body = clusterMessage.getBody();
+                bodyBytes += body == null ? 0 : body.length;
+            }
+        }
+
+        ByteBuf buf = Unpooled.buffer(64 + bodyBytes + stringTable.size() * 32);
+        buf.writeByte(VERSION);
+        writeVarInt(buf, stringTable.size());
+        for (String string : stringTable) {
+            writeVarInt(buf, ByteBufUtil.utf8Bytes(string));
+            ByteBufUtil.writeUtf8(buf, string);
+        }
+        writeVarInt(buf, messageTable.size());
+        for (ClusterMessage clusterMessage : messageTable) {
+            byte[] body = clusterMessage.getBody();
+            int flags = clusterMessage.getQos() & QOS_MASK;
+            if (clusterMessage.isRetain()) {
+                flags |= RETAIN;
+            }
+            if (clusterMessage.getClientId() != null) {
+                flags |= CLIENT_ID;
+            }
+            if (clusterMessage.getConnectTime() != null) {
+                flags |= CONNECT_TIME;
+            }
+            if (body != null) {
+                flags |= BODY;
+            }
+            buf.writeByte(flags);
+            writeVarInt(buf, strings.get(clusterMessage.getOriginTopic()));
+            writeVarInt(buf, clusterMessage.getChannelId());
+            if (clusterMessage.getClientId() != null) {
+                writeVarInt(buf, strings.get(clusterMessage.getClientId()));
+            }
+            if (clusterMessage.getConnectTime() != null) {
+                writeVarInt(buf, strings.get(clusterMessage.getConnectTime()));
+            }
+            if (body != null) {
+                writeVarInt(buf, body.length);
+                buf.writeBytes(body);
+            }
+        }
+        writeVarInt(buf, clusterBatch.size());
+        for (int i = 0; i < clusterBatch.size(); i++) {
+            writeVarInt(buf, strings.get(clusterBatch.getTopics().get(i)));
+            writeVarInt(buf, messages.get(clusterBatch.getMessages().get(i)));
+        }
+        return ByteBufUtil.getBytes(buf, buf.readerIndex(), buf.readableBytes(), false);
+    }
+
+    /**
+     * 解码
+     *
+     * @param bytes 字节数组
+     * @return {@link ClusterBatch}
+     */
+    public static ClusterBatch decode(byte[] bytes) {
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        byte version = buf.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported cluster message version " + version);
+        }
+        String[] strings = new String[readVarInt(buf)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = buf.readCharSequence(readVarInt(buf), StandardCharsets.UTF_8).toString();
+        }
+        ClusterMessage[] messages = new ClusterMessage[readVarInt(buf)];
+        for (int i = 0; i < messages.length; i++) {
+            int flags = buf.readUnsignedByte();
+            ClusterMessage clusterMessage = new ClusterMessage();
+            clusterMessage.setQos(flags & QOS_MASK);
+            clusterMessage.setRetain((flags & RETAIN) != 0);
+            clusterMessage.setOriginTopic(strings[readVarInt(buf)]);
+            clusterMessage.setTopic(clusterMessage.getOriginTopic());
+            clusterMessage.setChannelId(readVarInt(buf));
+            if ((flags & CLIENT_ID) != 0) {
+                clusterMessage.setClientId(strings[readVarInt(buf)]);
+            }
+            if ((flags & CONNECT_TIME) != 0) {
+                clusterMessage.setConnectTime(strings[readVarInt(buf)]);
+            }
+            if ((flags & BODY) != 0) {
+                byte[] body = new byte[readVarInt(buf)];
+                buf.readBytes(body);
+                clusterMessage.setBody(body);
+            }
+            messages[i] = clusterMessage;
+        }
+        int size = readVarInt(buf);
+        ClusterBatch clusterBatch = new ClusterBatch(size);
+        for (int i = 0; i < size; i++) {
+            String topic = strings[readVarInt(buf)];
+            clusterBatch.add(topic, messages[readVarInt(buf)]);
+        }
+        return clusterBatch;
+    }
+
+    private static void alias(String string, Map<String, Integer> strings, List<String> stringTable) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, stringTable.size());
+            stringTable.add(string);
+        }
+    }
+
+    private static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+}
@@ -48,7 +48,7 @@ public class IgniteChannels implements IntegrateChannels {
 
     @Override
     public void add(String clientIdentifier, MqttChannel mqttChannel) {
-        integrate.getJobExecutor().execute(new CloseJob(clientIdentifier));
+        integrate.getJobExecutor().execute(new CloseJob(clientIdentifier, integrate.getIgnite().cluster().localNode().id()));
         localChannelCache.put(clientIdentifier, mqttChannel);
         this.shareChannelCache.put(mqttChannel.getId(), mqttChannel.getConnectCache());
     }
@@ -1,5 +1,6 @@
 package io.github.quickmsg.interate;
 
+import io.github.quickmsg.common.config.BootstrapConfig;
 import io.github.quickmsg.common.integrate.IgniteCacheRegion;
 import io.github.quickmsg.common.integrate.Integrate;
 import io.github.quickmsg.common.integrate.SubscribeTopic;
@@ -45,7 +46,7 @@ public class IgniteIntegrate implements Integrate {
 
     private final IgniteExecutor igniteExecutor;
 
-    public IgniteIntegrate(IgniteConfiguration configuration, ProtocolAdaptor protocolAdaptor) {
+    public IgniteIntegrate(IgniteConfiguration configuration, ProtocolAdaptor protocolAdaptor, BootstrapConfig.ClusterConfig clusterConfig) {
         this.ignite = Ignition.start(configuration);
         if (!this.ignite.cluster().state().active()) {
             this.ignite.cluster().state(ClusterState.ACTIVE);
@@ -54,7 +55,7 @@ public class IgniteIntegrate implements Integrate {
         this.ignite.cluster().baselineAutoAdjustTimeout(3);
         this.protocolAdaptor = protocolAdaptor;
         this.igniteChannels = new IgniteChannels(this, new ConcurrentHashMap<>());
-        this.cluster = new IgniteIntegrateCluster(this);
+        this.cluster = new IgniteIntegrateCluster(this, clusterConfig);
         this.integrateTopics = new IgniteIntegrateTopics(this);
         this.igniteMessages = new IgniteMessages(new FixedTopicFilter<>(), new TreeTopicFilter<>(), this);
         this.igniteExecutor = new IgniteExecutor(ignite.compute(ignite.cluster()));
@@ -1,14 +1,13 @@
 package io.github.quickmsg.interate;
 
+import io.github.quickmsg.common.config.BootstrapConfig;
 import io.github.quickmsg.common.integrate.Integrate;
 import io.github.quickmsg.common.integrate.cluster.IntegrateCluster;
 import io.github.quickmsg.common.message.mqtt.ClusterMessage;
 import io.github.quickmsg.common.utils.ServerUtils;
 import org.apache.ignite.IgniteMessaging;
-import org.apache.ignite.lang.IgniteBiPredicate;
 
 import java.io.Serializable;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -26,16 +25,25 @@ public class IgniteIntegrateCluster implements IntegrateCluster, Serializable {
 
     private final org.apache.ignite.IgniteCluster igniteCluster;
 
-    private final Map<String, IgniteBiPredicate<UUID, ?>> fixedListener = new ConcurrentHashMap<>();
+    /**
+     * 本节点有订阅者的 topic, 集群节点间的路由见 {@link io.github.quickmsg.common.integrate.topic.IntegrateTopics#getRouteTable()}
+     */
+    private final Set<String> listenTopics = ConcurrentHashMap.newKeySet();
 
 
     private final ClusterHandler clusterHandler;
 
-    public IgniteIntegrateCluster(IgniteIntegrate igniteIntegrate) {
+    private final ClusterForwarder clusterForwarder;
+
+    public IgniteIntegrateCluster(IgniteIntegrate igniteIntegrate, BootstrapConfig.ClusterConfig clusterConfig) {
         this.igniteIntegrate = igniteIntegrate;
         this.message = igniteIntegrate.getIgnite().message();
         this.igniteCluster = igniteIntegrate.getIgnite().cluster();
         this.clusterHandler = new ClusterHandler();
+        this.clusterForwarder = new ClusterForwarder(igniteCluster,
+                Optional.ofNullable(clusterConfig).map(BootstrapConfig.ClusterConfig::getBatchDelay).orElse(1000),
+                Optional.ofNullable(clusterConfig).map(BootstrapConfig.ClusterConfig::getBatchBytes).orElse(64 * 1024));
+        this.message.localListen(ClusterForwarder.BATCH_TOPIC, clusterHandler::doRemote);
     }
 
 
@@ -66,23 +74,26 @@ public class IgniteIntegrateCluster implements IntegrateCluster, Serializable {
 
     @Override
     public void listenTopic(String topic) {
-        fixedListener.computeIfAbsent(topic, tp -> {
-                    IgniteBiPredicate<UUID, ?> p = clusterHandler::doRemote;
-                    message.localListen(tp, p);
-                    return p;
-                }
-        );
+        listenTopics.add(topic);
     }
 
     @Override
     public void stopListenTopic(String topic) {
-        Optional.ofNullable(fixedListener.remove(topic))
-                .ifPresent(o -> message.stopLocalListen(topic, o));
+        listenTopics.remove(topic);
     }
 
     @Override
     public void sendCluster(String topic, ClusterMessage clusterMessage) {
-        message.send(topic, clusterMessage);
+        /* local subscribers share the payload directly, only remote nodes need serialization */
+        if (listenTopics.contains(topic)) {
+            clusterHandler.doRemote(topic, clusterMessage);
+        }
+        UUID localNodeId = igniteCluster.localNode().id();
+        for (UUID nodeId : igniteIntegrate.getTopics().getRouteNodes(topic)) {
+            if (!localNodeId.equals(nodeId)) {
+                clusterForwarder.forward(nodeId, topic, clusterMessage);
+            }
+        }
     }
 
 
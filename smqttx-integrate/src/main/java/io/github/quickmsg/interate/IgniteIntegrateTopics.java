@@ -6,18 +6,30 @@ import io.github.quickmsg.common.integrate.Integrate;
 import io.github.quickmsg.common.integrate.SubscribeTopic;
 import io.github.quickmsg.common.integrate.topic.IntegrateTopics;
 import io.github.quickmsg.common.metric.CounterType;
-import io.github.quickmsg.common.utils.TopicRegexUtils;
+import io.github.quickmsg.common.topic.TopicCollector;
+import io.github.quickmsg.common.topic.InternTopicFilter;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.ignite.IgniteSet;
+import org.apache.ignite.IgniteCache;
 import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheEntryProcessor;
 import org.apache.ignite.cache.CacheMode;
-import org.apache.ignite.configuration.CollectionConfiguration;
+import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.events.DiscoveryEvent;
+import reactor.core.scheduler.Schedulers;
 
+import javax.cache.Cache;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.EventType;
+import javax.cache.processor.MutableEntry;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * @author luxurong
@@ -27,7 +39,24 @@ public class IgniteIntegrateTopics implements IntegrateTopics<SubscribeTopic> {
 
     private final IgniteIntegrate integrate;
 
-    private final IgniteSet<String> shareCache;
+    /**
+     * cluster routing table: topic filter -> ids of the nodes holding subscriptions
+     */
+    private final IgniteCache<String, HashSet<UUID>> routeCache;
+
+    /**
+     * node local replica of {@link #routeCache}, kept in sync by continuous query events
+     */
+    private final Map<String, Set<UUID>> routeTable;
+
+    /**
+     * wildcard filters of {@link #routeTable}
+     */
+    private final InternTopicFilter<String> wildcardTopicFilter;
+
+    private final QueryCursor<Cache.Entry<String, HashSet<UUID>>> routeCursor;
+
+    private final UUID localNodeId;
 
     @Getter
     private final Map<String, Set<SubscribeTopic>> topicSubscribers;
@@ -43,11 +72,66 @@ public class IgniteIntegrateTopics implements IntegrateTopics<SubscribeTopic> {
 
     public IgniteIntegrateTopics(IgniteIntegrate integrate) {
         this.integrate = integrate;
-        this.shareCache = integrate.getIgnite().set("wildcard",
-                    new CollectionConfiguration().setCacheMode(CacheMode.PARTITIONED)
-                                .setAtomicityMode(CacheAtomicityMode.ATOMIC)
-                                .setCollocated(true));
+        this.routeCache = integrate.getIgnite().getOrCreateCache(
+                new CacheConfiguration<String, HashSet<UUID>>()
+                        .setName("topic_route")
+                        .setCacheMode(CacheMode.REPLICATED)
+                        .setAtomicityMode(CacheAtomicityMode.ATOMIC));
+        this.localNodeId = integrate.getIgnite().cluster().localNode().id();
         this.topicSubscribers = new ConcurrentHashMap<>();
+        this.routeTable = new ConcurrentHashMap<>();
+        this.wildcardTopicFilter = new InternTopicFilter<>();
+        this.routeCursor = listenRoute();
+        integrate.getIgnite().events().localListen(event -> {
+            UUID nodeId = ((DiscoveryEvent) event).eventNode().id();
+            Schedulers.boundedElastic().schedule(() -> purgeNode(nodeId));
+            return true;
+        }, org.apache.ignite.events.EventType.EVT_NODE_LEFT, org.apache.ignite.events.EventType.EVT_NODE_FAILED);
+    }
+
+    private QueryCursor<Cache.Entry<String, HashSet<UUID>>> listenRoute() {
+        ContinuousQuery<String, HashSet<UUID>> query = new ContinuousQuery<>();
+        query.setInitialQuery(new ScanQuery<>());
+        query.setLocalListener(events -> {
+            for (CacheEntryEvent<? extends String, ? extends HashSet<UUID>> event : events) {
+                if (event.getEventType() == EventType.REMOVED || event.getEventType() == EventType.EXPIRED) {
+                    removeRoute(event.getKey());
+                } else {
+                    putRoute(event.getKey(), event.getValue());
+                }
+            }
+        });
+        QueryCursor<Cache.Entry<String, HashSet<UUID>>> cursor = routeCache.query(query);
+        cursor.forEach(entry -> putRoute(entry.getKey(), entry.getValue()));
+        return cursor;
+    }
+
+    private void putRoute(String topic, Set<UUID> nodes) {
+        if (routeTable.put(topic, Collections.unmodifiableSet(nodes)) == null && isWildcard(topic)) {
+            wildcardTopicFilter.addObjectTopic(topic, topic);
+        }
+    }
+
+    private void removeRoute(String topic) {
+        if (routeTable.remove(topic) != null && isWildcard(topic)) {
+            wildcardTopicFilter.removeObjectTopic(topic, topic);
+        }
+    }
+
+    /**
+     * 最老的节点负责清理离开节点的路由
+     *
+     * @param nodeId 离开的节点
+     */
+    private void purgeNode(UUID nodeId) {
+        ClusterNode oldest = integrate.getIgnite().cluster().forServers().forOldest().node();
+        if (oldest != null && oldest.isLocal()) {
+            routeTable.forEach((topic, nodes) -> {
+                if (nodes.contains(nodeId)) {
+                    routeCache.invoke(topic, new RemoveRouteProcessor(), nodeId);
+                }
+            });
+        }
     }
 
     @Override
@@ -55,19 +139,26 @@ public class IgniteIntegrateTopics implements IntegrateTopics<SubscribeTopic> {
         subscribeTopics.forEach(subscribeTopic -> this.registryTopic(mqttChannel, subscribeTopic));
     }
 
+    /**
+     * 本节点第一个订阅者出现时总是写入路由, 不依据可能滞后的本地副本 {@link #routeTable} 判断
+     */
     @Override
     public void registryTopic(MqttChannel mqttChannel, SubscribeTopic subscribeTopic) {
-        Set<SubscribeTopic> subscribeTopicSet = topicSubscribers.computeIfAbsent(subscribeTopic.getTopicFilter(), topic -> new CopyOnWriteArraySet<>());
-        String topic = subscribeTopic.getTopicFilter();
-        if (subscribeTopicSet.add(subscribeTopic)) {
-            ContextHolder.getReceiveContext().getMetricManager().getMetricRegistry().getMetricCounter(CounterType.SUBSCRIBE).increment();
-            ContextHolder.getReceiveContext().getMetricManager().getMetricRegistry().getMetricCounter(CounterType.SUBSCRIBE_EVENT).increment();
-            integrate.getCluster().listenTopic(topic);
-            mqttChannel.getTopics().add(subscribeTopic);
-            if (isWildcard(topic)) {
-                shareCache.add(topic);
+        topicSubscribers.compute(subscribeTopic.getTopicFilter(), (topic, subscribeTopicSet) -> {
+            if (subscribeTopicSet == null) {
+                subscribeTopicSet = new CopyOnWriteArraySet<>();
             }
-        }
+            if (subscribeTopicSet.add(subscribeTopic)) {
+                ContextHolder.getReceiveContext().getMetricManager().getMetricRegistry().getMetricCounter(CounterType.SUBSCRIBE).increment();
+                ContextHolder.getReceiveContext().getMetricManager().getMetricRegistry().getMetricCounter(CounterType.SUBSCRIBE_EVENT).increment();
+                integrate.getCluster().listenTopic(topic);
+                mqttChannel.getTopics().add(subscribeTopic);
+                if (subscribeTopicSet.size() == 1) {
+                    routeCache.invoke(topic, new AddRouteProcessor(), localNodeId);
+                }
+            }
+            return subscribeTopicSet;
+        });
     }
 
 
@@ -93,9 +184,7 @@ public class IgniteIntegrateTopics implements IntegrateTopics<SubscribeTopic> {
 
     private void clearCache(String topic) {
         integrate.getCluster().stopListenTopic(topic);
-        if (isWildcard(topic)) {
-            shareCache.remove(topic);
-        }
+        routeCache.invoke(topic, new RemoveRouteProcessor(), localNodeId);
     }
 
     @Override
@@ -122,11 +211,65 @@ public class IgniteIntegrateTopics implements IntegrateTopics<SubscribeTopic> {
 
     @Override
     public Set<String> getWildcardTopics(String topic) {
-        return shareCache.stream().filter(tp->topic.matches(TopicRegexUtils.regexTopic(tp))).collect(Collectors.toSet());
+        return wildcardTopicFilter.getObjectByTopic(topic);
+    }
+
+    /**
+     * 每个通配符只以自身注册一次, 收集结果不会重复
+     */
+    @Override
+    public void forEachWildcardTopic(String topic, Consumer<String> consumer) {
+        TopicCollector<String> collector = wildcardTopicFilter.collectObjectByTopic(topic);
+        for (int i = 0; i < collector.size(); i++) {
+            consumer.accept(collector.get(i));
+        }
+    }
+
+    @Override
+    public Set<UUID> getRouteNodes(String topic) {
+        return routeTable.getOrDefault(topic, Collections.emptySet());
+    }
+
+    @Override
+    public Map<String, Set<UUID>> getRouteTable() {
+        return Collections.unmodifiableMap(routeTable);
     }
 
     @Override
     public Integrate getIntegrate() {
         return this.integrate;
     }
+
+
+    private static class AddRouteProcessor implements CacheEntryProcessor<String, HashSet<UUID>, Void> {
+
+        @Override
+        public Void process(MutableEntry<String, HashSet<UUID>> entry, Object... arguments) {
+            UUID nodeId = (UUID) arguments[0];
+            HashSet<UUID> nodes = entry.exists() ? new HashSet<>(entry.getValue()) : new HashSet<>();
+            if (nodes.add(nodeId)) {
+                entry.setValue(nodes);
+            }
+            return null;
+        }
+    }
+
+    private static class RemoveRouteProcessor implements CacheEntryProcessor<String, HashSet<UUID>, Void> {
+
+        @Override
+        public Void process(MutableEntry<String, HashSet<UUID>> entry, Object... arguments) {
+            UUID nodeId = (UUID) arguments[0];
+            if (entry.exists()) {
+                HashSet<UUID> nodes = new HashSet<>(entry.getValue());
+                if (nodes.remove(nodeId)) {
+                    if (nodes.isEmpty()) {
+                        entry.remove();
+                    } else {
+                        entry.setValue(nodes);
+                    }
+                }
+            }
+            return null;
+        }
+    }
 }
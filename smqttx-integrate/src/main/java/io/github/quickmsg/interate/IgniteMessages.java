@@ -7,17 +7,23 @@ import io.github.quickmsg.common.integrate.msg.IntegrateMessages;
 import io.github.quickmsg.common.message.RetainMessage;
 import io.github.quickmsg.common.message.SessionMessage;
 import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.session.SessionStore;
 import io.github.quickmsg.common.topic.AbstractTopicAggregate;
 import io.github.quickmsg.common.topic.TopicFilter;
+import io.github.quickmsg.common.topic.TopicTrie;
 import org.apache.ignite.IgniteAtomicLong;
-import org.apache.ignite.IgniteSet;
-import org.apache.ignite.configuration.CollectionConfiguration;
+import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
 
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import javax.cache.Cache;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.EventType;
+import java.util.List;
 
 /**
+ * 保留消息以分区 cache 持久, 每个节点通过持续查询维护一份 {@link TopicTrie} 副本, 订阅时只查本地
+ *
  * @author luxurong
  */
 public class IgniteMessages extends AbstractTopicAggregate<PublishMessage> implements IntegrateMessages {
@@ -26,8 +32,14 @@ public class IgniteMessages extends AbstractTopicAggregate<PublishMessage> imple
 
     private final IntegrateCache<String, RetainMessage> retainCache;
 
+    private final TopicTrie<RetainMessage> retainTrie = new TopicTrie<>();
+
+    private final QueryCursor<Cache.Entry<String, RetainMessage>> retainCursor;
+
     private final IgniteAtomicLong sessionCounter;
 
+    private final IgniteSessionStore sessionStore;
+
     private final IgniteAtomicLong retainCounter;
 
     private final IgniteAtomicLong number;
@@ -52,7 +64,28 @@ public class IgniteMessages extends AbstractTopicAggregate<PublishMessage> imple
                 0,            // Initial value.
                 true         // Create if it does not exist.
         );
+        IntegrateCache<String, SessionQueue> queueCache = integrate.getCache(IgniteCacheRegion.SESSION);
+        IntegrateCache<SessionKey, SessionMessage> messageCache = integrate.getCache(IgniteCacheRegion.SESSION_MESSAGE);
+        this.sessionStore = new IgniteSessionStore(integrate.getIgnite(), queueCache.getOriginCache(),
+                messageCache.getOriginCache(), sessionCounter);
+        this.retainCursor = listenRetain();
+    }
 
+    private QueryCursor<Cache.Entry<String, RetainMessage>> listenRetain() {
+        ContinuousQuery<String, RetainMessage> query = new ContinuousQuery<>();
+        query.setInitialQuery(new ScanQuery<>());
+        query.setLocalListener(events -> {
+            for (CacheEntryEvent<? extends String, ? extends RetainMessage> event : events) {
+                if (event.getEventType() == EventType.REMOVED || event.getEventType() == EventType.EXPIRED) {
+                    retainTrie.remove(event.getKey());
+                } else {
+                    retainTrie.put(event.getKey(), event.getValue());
+                }
+            }
+        });
+        QueryCursor<Cache.Entry<String, RetainMessage>> cursor = retainCache.getOriginCache().query(query);
+        cursor.forEach(entry -> retainTrie.put(entry.getKey(), entry.getValue()));
+        return cursor;
     }
 
 
@@ -63,22 +96,35 @@ public class IgniteMessages extends AbstractTopicAggregate<PublishMessage> imple
 
     @Override
     public void saveRetainMessage(RetainMessage of) {
-        retainCache.put(of.getTopic(), of);
-        retainCounter.incrementAndGet();
+        if (of.getBody() == null || of.getBody().length == 0) {
+            /* 空消息体清除该 topic 的保留消息 */
+            this.deleteRetainMessage(of.getTopic());
+            return;
+        }
+        /* 先写本地, 本节点的订阅者立即可见, 持续查询的事件随后覆盖为同一条 */
+        retainTrie.put(of.getTopic(), of);
+        if (retainCache.getAndPut(of.getTopic(), of) == null) {
+            retainCounter.incrementAndGet();
+        }
     }
 
     @Override
-    public void deleteRetainMessage(String clientIdentifier) {
-        if (retainCache.remove(clientIdentifier)) {
+    public void deleteRetainMessage(String topic) {
+        retainTrie.remove(topic);
+        if (retainCache.remove(topic)) {
             retainCounter.decrementAndGet();
         }
     }
 
 
     @Override
-    public Set<RetainMessage> getRetainMessage(String topicName) {
-         retainCache.get(topicName);
-         return  new HashSet<>();
+    public List<RetainMessage> getRetainMessage(String topicFilter) {
+        return retainTrie.match(topicFilter);
+    }
+
+    @Override
+    public SessionStore getSessionStore() {
+        return this.sessionStore;
     }
 
 
@@ -0,0 +1,453 @@
+package io.github.quickmsg.interate;
+
+import io.github.quickmsg.common.message.SessionMessage;
+import io.github.quickmsg.common.session.SessionStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.events.CacheEvent;
+import org.apache.ignite.events.EventType;
+import org.apache.ignite.transactions.Transaction;
+import org.apache.ignite.transactions.TransactionConcurrency;
+import org.apache.ignite.transactions.TransactionIsolation;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 Ignite 的离线会话存储
+ * <p>
+ * 每个会话在 {@link #queueCache} 中记录队列的 [head, tail) 与订阅, 消息按序号单独保存在 {@link #messageCache},
+ * 写入一条消息只序列化这一条. 两个 cache 在同一数据区, 按 clientId 同分区, 每次操作在一个悲观事务内完成.
+ * 消息按自身的过期时间由 Ignite 清理, 取出时跳过已经清理的序号, 队头的消息过期后移动 head 并减少计数.
+ * <p>
+ * {@link #offer} 不在调用线程开启事务, 先放入 clientId 对应的 {@link Writer}, 由单独线程把积压的消息合并到一个事务写入;
+ * 其他操作先写入该客户端积压的消息, 保证顺序. 写入失败的批次留在队头按退避时间重试, 积压超出上限时 offer 丢弃最早的消息,
+ * 积压写完后移除 {@link Writer}
+ *
+ * @author luxurong
+ */
+@Slf4j
+public class IgniteSessionStore implements SessionStore {
+
+    /**
+     * 单个事务最多写入的消息数
+     */
+    private static final int MAX_BATCH = 1024;
+
+    private static final long MIN_BACKOFF = 100;
+
+    private static final long MAX_BACKOFF = 10_000;
+
+    private final Ignite ignite;
+
+    private final IgniteCache<String, SessionQueue> queueCache;
+
+    private final IgniteCache<SessionKey, SessionMessage> messageCache;
+
+    /**
+     * 集群中离线消息总数
+     */
+    private final IgniteAtomicLong sessionCounter;
+
+    private final Scheduler scheduler = Schedulers.boundedElastic();
+
+    private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+
+    public IgniteSessionStore(Ignite ignite, IgniteCache<String, SessionQueue> queueCache,
+                              IgniteCache<SessionKey, SessionMessage> messageCache, IgniteAtomicLong sessionCounter) {
+        this.ignite = ignite;
+        this.queueCache = queueCache;
+        this.messageCache = messageCache;
+        this.sessionCounter = sessionCounter;
+        /* 每个副本过期都会产生事件, 只处理主分区的 */
+        ignite.events().localListen(event -> {
+            CacheEvent cacheEvent = (CacheEvent) event;
+            if (messageCache.getName().equals(cacheEvent.cacheName())
+                    && ignite.affinity(messageCache.getName()).isPrimary(ignite.cluster().localNode(), cacheEvent.key())) {
+                Optional.ofNullable(clientId(cacheEvent.key())).ifPresent(clientId -> writer(clientId).expire());
+            }
+            return true;
+        }, EventType.EVT_CACHE_OBJECT_EXPIRED);
+    }
+
+    /**
+     * 异步写入, 返回积压超出上限时丢弃的消息数; 写入时与已保存的消息合计超出上限的由写入线程丢弃并记录日志
+     */
+    @Override
+    public int offer(String clientId, SessionMessage message, int limit) {
+        for (; ; ) {
+            Writer writer = writer(clientId);
+            int dropped = writer.offer(message, limit);
+            if (dropped >= 0) {
+                return dropped;
+            }
+            /* 积压已写完, 写入线程正在移除 */
+            writers.remove(clientId, writer);
+        }
+    }
+
+    @Override
+    public int offerFirst(String clientId, List<SessionMessage> messages, int limit) {
+        flush(clientId);
+        int dropped;
+        try (Transaction tx = txStart()) {
+            SessionQueue queue = getQueue(clientId);
+            long head = queue.getHead() - messages.size();
+            for (int i = 0; i < messages.size(); i++) {
+                put(new SessionKey(clientId, head + i), messages.get(i));
+            }
+            queue.setHead(head);
+            dropped = trim(clientId, queue, limit);
+            queueCache.put(clientId, queue);
+            tx.commit();
+        }
+        sessionCounter.addAndGet(messages.size() - dropped);
+        return dropped;
+    }
+
+    @Override
+    public List<SessionMessage> poll(String clientId, int max) {
+        flush(clientId);
+        List<SessionMessage> messages;
+        int polled;
+        try (Transaction tx = txStart()) {
+            SessionQueue queue = queueCache.get(clientId);
+            if (queue == null || queue.size() == 0) {
+                return Collections.emptyList();
+            }
+            polled = Math.min(queue.size(), max);
+            Set<SessionKey> keys = keys(clientId, queue.getHead(), queue.getHead() + polled);
+            Map<SessionKey, SessionMessage> found = messageCache.getAll(keys);
+            messageCache.removeAll(keys);
+            messages = new ArrayList<>(found.size());
+            for (SessionKey key : keys) {
+                SessionMessage message = found.get(key);
+                if (message != null) {
+                    messages.add(message);
+                }
+            }
+            queue.setHead(queue.getHead() + polled);
+            queueCache.put(clientId, queue);
+            tx.commit();
+        }
+        sessionCounter.addAndGet(-polled);
+        return messages;
+    }
+
+    @Override
+    public int size(String clientId) {
+        flush(clientId);
+        SessionQueue queue = queueCache.get(clientId);
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public void saveTopics(String clientId, Map<String, Integer> topics) {
+        try (Transaction tx = txStart()) {
+            SessionQueue queue = getQueue(clientId);
+            queue.setTopics(new HashMap<>(topics));
+            queueCache.put(clientId, queue);
+            tx.commit();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getTopics(String clientId) {
+        SessionQueue queue = queueCache.get(clientId);
+        return queue == null ? null : queue.getTopics();
+    }
+
+    @Override
+    public void remove(String clientId) {
+        Writer writer = writers.remove(clientId);
+        if (writer != null) {
+            writer.discard();
+        }
+        int removed;
+        try (Transaction tx = txStart()) {
+            SessionQueue queue = queueCache.get(clientId);
+            if (queue == null) {
+                return;
+            }
+            removed = queue.size();
+            messageCache.removeAll(keys(clientId, queue.getHead(), queue.getTail()));
+            queueCache.remove(clientId);
+            tx.commit();
+        }
+        if (removed > 0) {
+            sessionCounter.addAndGet(-removed);
+        }
+    }
+
+    /**
+     * 事件中的 key 是二进制格式
+     */
+    private static String clientId(Object key) {
+        if (key instanceof SessionKey) {
+            return ((SessionKey) key).getClientId();
+        }
+        return key instanceof BinaryObject ? ((BinaryObject) key).field("clientId") : null;
+    }
+
+    private Writer writer(String clientId) {
+        return writers.computeIfAbsent(clientId, Writer::new);
+    }
+
+    /**
+     * 在当前线程写入积压的消息, 写入失败时抛出异常
+     */
+    private void flush(String clientId) {
+        Writer writer = writers.get(clientId);
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private Transaction txStart() {
+        return ignite.transactions().txStart(TransactionConcurrency.PESSIMISTIC, TransactionIsolation.REPEATABLE_READ);
+    }
+
+    private SessionQueue getQueue(String clientId) {
+        SessionQueue queue = queueCache.get(clientId);
+        return queue == null ? new SessionQueue() : queue;
+    }
+
+    private void put(SessionKey key, SessionMessage message) {
+        if (message.getExpireTime() > 0) {
+            long ttl = Math.max(message.getExpireTime() - System.currentTimeMillis(), 1);
+            messageCache.withExpiryPolicy(new CreatedExpiryPolicy(new Duration(TimeUnit.MILLISECONDS, ttl)))
+                    .put(key, message);
+        } else {
+            messageCache.put(key, message);
+        }
+    }
+
+    /**
+     * 超出上限时从队头丢弃
+     *
+     * @return 丢弃的消息数
+     */
+    private int trim(String clientId, SessionQueue queue, int limit) {
+        int dropped = queue.size() - limit;
+        if (dropped <= 0) {
+            return 0;
+        }
+        messageCache.removeAll(keys(clientId, queue.getHead(), queue.getHead() + dropped));
+        queue.setHead(queue.getHead() + dropped);
+        return dropped;
+    }
+
+    /**
+     * 跳过队头已经过期的消息, 过期事件可能先于清理到达, 按消息的过期时间判断
+     *
+     * @return 移动的消息数
+     */
+    private int skipExpired(String clientId, SessionQueue queue) {
+        long now = System.currentTimeMillis();
+        long head = queue.getHead();
+        for (; head < queue.getTail(); head++) {
+            SessionMessage message = messageCache.get(new SessionKey(clientId, head));
+            if (message != null && !message.isExpired(now)) {
+                break;
+            }
+        }
+        int skipped = (int) (head - queue.getHead());
+        if (skipped > 0) {
+            messageCache.removeAll(keys(clientId, queue.getHead(), head));
+            queue.setHead(head);
+        }
+        return skipped;
+    }
+
+    private static Set<SessionKey> keys(String clientId, long from, long to) {
+        Set<SessionKey> keys = new LinkedHashSet<>();
+        for (long sequence = from; sequence < to; sequence++) {
+            keys.add(new SessionKey(clientId, sequence));
+        }
+        return keys;
+    }
+
+
+    private static class Pending {
+
+        private final SessionMessage message;
+
+        private final int limit;
+
+        private Pending(SessionMessage message, int limit) {
+            this.message = message;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * 单个客户端的写入队列, 同一时间只有一个线程写入
+     */
+    private class Writer {
+
+        private final String clientId;
+
+        private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 没有写入的消息数, 包括写入失败等待重试的, -1 表示已经移除
+         */
+        private final AtomicInteger backlog = new AtomicInteger();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean expired;
+
+        /**
+         * 写入失败的批次, 下次先写入
+         */
+        private List<Pending> failed = Collections.emptyList();
+
+        private boolean failedSkip;
+
+        private long backoff;
+
+        private Writer(String clientId) {
+            this.clientId = clientId;
+        }
+
+        /**
+         * @return 丢弃的消息数, 已经移除时返回 -1
+         */
+        private int offer(SessionMessage message, int limit) {
+            int count;
+            do {
+                count = backlog.get();
+                if (count < 0) {
+                    return -1;
+                }
+            } while (!backlog.compareAndSet(count, count + 1));
+            pending.offer(new Pending(message, limit));
+            int dropped = 0;
+            if (count + 1 > limit && pending.poll() != null) {
+                backlog.decrementAndGet();
+                dropped = 1;
+            }
+            schedule();
+            return dropped;
+        }
+
+        private void expire() {
+            expired = true;
+            schedule();
+        }
+
+        private void discard() {
+            synchronized (this) {
+                backlog.set(-1);
+                pending.clear();
+                failed = Collections.emptyList();
+                expired = false;
+            }
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                scheduler.schedule(() -> this.drain(1));
+            }
+        }
+
+        private void drain(int missed) {
+            for (; ; ) {
+                try {
+                    this.flush();
+                    backoff = 0;
+                } catch (Throwable throwable) {
+                    backoff = Math.min(Math.max(backoff << 1, MIN_BACKOFF), MAX_BACKOFF);
+                    log.error("write session {} error, retry in {}ms", clientId, backoff, throwable);
+                    /* 不减少 wip, 重试前新的 offer 不会重复调度 */
+                    scheduler.schedule(() -> this.drain(wip.get()), backoff, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    if (backlog.compareAndSet(0, -1)) {
+                        writers.remove(clientId, this);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private synchronized void flush() {
+            while (!failed.isEmpty() || expired || !pending.isEmpty()) {
+                List<Pending> batch = failed;
+                boolean skip = failedSkip || expired;
+                failed = Collections.emptyList();
+                failedSkip = false;
+                expired = false;
+                if (batch.isEmpty()) {
+                    batch = new ArrayList<>();
+                    Pending next;
+                    while (batch.size() < MAX_BATCH && (next = pending.poll()) != null) {
+                        batch.add(next);
+                    }
+                }
+                try {
+                    this.write(batch, skip);
+                } catch (RuntimeException e) {
+                    failed = batch;
+                    failedSkip = skip;
+                    throw e;
+                }
+            }
+        }
+
+        private void write(List<Pending> batch, boolean skip) {
+            int skipped = 0;
+            int dropped = 0;
+            try (Transaction tx = txStart()) {
+                SessionQueue queue = queueCache.get(clientId);
+                if (queue == null) {
+                    if (batch.isEmpty()) {
+                        /* 会话已删除, 只是收到了过期事件 */
+                        return;
+                    }
+                    queue = new SessionQueue();
+                }
+                if (skip) {
+                    skipped = skipExpired(clientId, queue);
+                }
+                for (Pending item : batch) {
+                    put(new SessionKey(clientId, queue.getTail()), item.message);
+                    queue.setTail(queue.getTail() + 1);
+                    dropped += trim(clientId, queue, item.limit);
+                }
+                queueCache.put(clientId, queue);
+                tx.commit();
+            }
+            backlog.addAndGet(-batch.size());
+            long delta = batch.size() - dropped - skipped;
+            if (delta != 0) {
+                sessionCounter.addAndGet(delta);
+            }
+            if (dropped > 0) {
+                log.warn("session queue full, drop {} messages of {}", dropped, clientId);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package io.github.quickmsg.interate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.apache.ignite.cache.affinity.AffinityKeyMapped;
+
+/**
+ * 离线消息的 key, 与会话按 clientId 分布在同一分区
+ *
+ * @author luxurong
+ */
+@Data
+@AllArgsConstructor
+public class SessionKey {
+
+    @AffinityKeyMapped
+    private String clientId;
+
+    private long sequence;
+
+}
@@ -0,0 +1,28 @@
+package io.github.quickmsg.interate;
+
+import lombok.Data;
+
+import java.util.HashMap;
+
+/**
+ * 离线会话, 消息序号在 [head, tail) 之间
+ *
+ * @author luxurong
+ */
+@Data
+public class SessionQueue {
+
+    private long head;
+
+    private long tail;
+
+    /**
+     * topicFilter -> qos
+     */
+    private HashMap<String, Integer> topics;
+
+    public int size() {
+        return (int) (tail - head);
+    }
+
+}
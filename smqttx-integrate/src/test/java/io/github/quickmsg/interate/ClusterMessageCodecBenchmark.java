@@ -0,0 +1,129 @@
+package io.github.quickmsg.interate;
+
+import io.github.quickmsg.common.message.mqtt.ClusterMessage;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.marshaller.Marshaller;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ClusterMessageCodec} 与 Ignite 默认序列化的编解码耗时对比, 编码大小以 {@link EncodedSize} 辅助指标输出
+ *
+ * @author luxurong
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClusterMessageCodecBenchmark {
+
+    /**
+     * 每批消息数, 每条消息同时匹配 topic 和一个 topicFilter
+     */
+    @Param({"1", "64"})
+    private int messages;
+
+    private Ignite ignite;
+
+    private Marshaller marshaller;
+
+    private ClusterBatch clusterBatch;
+
+    private byte[] codecBytes;
+
+    private byte[] igniteBytes;
+
+    @Setup
+    public void setup() throws IgniteCheckedException {
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder();
+        ipFinder.setAddresses(Collections.singletonList("127.0.0.1:47500"));
+        ignite = Ignition.start(new IgniteConfiguration()
+                .setIgniteInstanceName("codec-benchmark")
+                .setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(ipFinder).setLocalPort(47500).setLocalPortRange(0)));
+        marshaller = ((IgniteEx) ignite).context().config().getMarshaller();
+
+        clusterBatch = new ClusterBatch(messages * 2);
+        for (int i = 0; i < messages; i++) {
+            ClusterMessage clusterMessage = new ClusterMessage();
+            clusterMessage.setTopic("site/" + (i % 8) + "/device/" + i + "/status");
+            clusterMessage.setOriginTopic(clusterMessage.getTopic());
+            clusterMessage.setQos(1);
+            clusterMessage.setClientId("device-" + i);
+            clusterMessage.setConnectTime("2023-05-01 12:00:00");
+            clusterMessage.setChannelId(i);
+            clusterMessage.setBody(("{\"temperature\":" + i + ".5,\"humidity\":40}").getBytes(StandardCharsets.UTF_8));
+            clusterBatch.add(clusterMessage.getTopic(), clusterMessage);
+            clusterBatch.add("site/+/device/+/status", clusterMessage);
+        }
+        codecBytes = ClusterMessageCodec.encode(clusterBatch);
+        igniteBytes = marshaller.marshal(clusterBatch);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ignite.close();
+    }
+
+    @Benchmark
+    public byte[] codecEncode(EncodedSize encodedSize) {
+        byte[] bytes = ClusterMessageCodec.encode(clusterBatch);
+        encodedSize.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public ClusterBatch codecDecode() {
+        return ClusterMessageCodec.decode(codecBytes);
+    }
+
+    @Benchmark
+    public byte[] igniteEncode(EncodedSize encodedSize) throws IgniteCheckedException {
+        byte[] bytes = marshaller.marshal(clusterBatch);
+        encodedSize.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public ClusterBatch igniteDecode() throws IgniteCheckedException {
+        return marshaller.unmarshal(igniteBytes, ClusterBatch.class.getClassLoader());
+    }
+
+    /**
+     * 编码后的字节数, 在 encode 结果中以 bytes 列输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ClusterMessageCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
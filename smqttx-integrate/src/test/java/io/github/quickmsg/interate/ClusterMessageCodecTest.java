@@ -0,0 +1,68 @@
+package io.github.quickmsg.interate;
+
+import io.github.quickmsg.common.message.mqtt.ClusterMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ClusterMessageCodec} 编解码测试
+ *
+ * @author luxurong
+ */
+public class ClusterMessageCodecTest {
+
+    private static ClusterMessage message(String topic, int qos, String clientId, byte[] body) {
+        ClusterMessage clusterMessage = new ClusterMessage();
+        clusterMessage.setTopic(topic);
+        clusterMessage.setOriginTopic(topic);
+        clusterMessage.setQos(qos);
+        clusterMessage.setRetain(qos == 1);
+        clusterMessage.setClientId(clientId);
+        clusterMessage.setConnectTime("2023-05-01 12:00:00");
+        clusterMessage.setChannelId(qos * 100000);
+        clusterMessage.setBody(body);
+        return clusterMessage;
+    }
+
+    @Test
+    public void roundTrip() {
+        ClusterMessage first = message("site/1/status", 1, "device-1", "{\"temperature\":21.5}".getBytes(StandardCharsets.UTF_8));
+        ClusterMessage second = message("站点/2/状态", 2, null, new byte[300]);
+        ClusterMessage third = message("site/3/status", 0, "device-3", null);
+        third.setConnectTime(null);
+        ClusterBatch clusterBatch = new ClusterBatch(4);
+        clusterBatch.add("site/1/status", first);
+        clusterBatch.add("site/+/status", first);
+        clusterBatch.add("站点/2/状态", second);
+        clusterBatch.add("site/3/status", third);
+
+        ClusterBatch decoded = ClusterMessageCodec.decode(ClusterMessageCodec.encode(clusterBatch));
+        Assert.assertEquals(clusterBatch.getTopics(), decoded.getTopics());
+        Assert.assertEquals(clusterBatch.getMessages(), decoded.getMessages());
+        /* 匹配多个 topicFilter 的消息只解码一次 */
+        Assert.assertSame(decoded.getMessages().get(0), decoded.getMessages().get(1));
+    }
+
+    @Test
+    public void sharedMessageEncodedOnce() {
+        ClusterMessage clusterMessage = message("site/1/status", 1, "device-1", new byte[1024]);
+        ClusterBatch single = new ClusterBatch(1);
+        single.add("site/1/status", clusterMessage);
+        ClusterBatch shared = new ClusterBatch(2);
+        shared.add("site/1/status", clusterMessage);
+        shared.add("site/+/status", clusterMessage);
+        int singleSize = ClusterMessageCodec.encode(single).length;
+        /* 第二个 topicFilter 只增加 topic 与引用, 不重复写消息体 */
+        Assert.assertTrue(ClusterMessageCodec.encode(shared).length - singleSize < 64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() {
+        byte[] bytes = ClusterMessageCodec.encode(new ClusterBatch(0));
+        bytes[0] = ClusterMessageCodec.VERSION + 1;
+        ClusterMessageCodec.decode(bytes);
+    }
+
+}
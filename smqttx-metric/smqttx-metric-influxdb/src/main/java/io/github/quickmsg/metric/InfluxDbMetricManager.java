@@ -14,10 +14,13 @@ public class InfluxDbMetricManager implements MetricManager {
 
     private final MetricRegistry metricRegistry;
 
+    private final LatencyRecorder latencyRecorder;
+
     public InfluxDbMetricManager(BootstrapConfig.MeterConfig config) {
         this.config = config;
         this.metricBean = new InfluxDbMetricBean(this.config);
         this.metricRegistry = new InfluxDbMetricRegistry(createMetricRegistry(metricBean));
+        this.latencyRecorder = new LatencyRecorder(Boolean.TRUE.equals(config.getLatency()));
 
     }
 
@@ -38,5 +41,10 @@ public class InfluxDbMetricManager implements MetricManager {
         return this.config;
     }
 
+    @Override
+    public LatencyRecorder getLatencyRecorder() {
+        return this.latencyRecorder;
+    }
+
 
 }
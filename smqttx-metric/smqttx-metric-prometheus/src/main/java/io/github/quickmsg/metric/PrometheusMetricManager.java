@@ -1,6 +1,7 @@
 package io.github.quickmsg.metric;
 
 import io.github.quickmsg.common.config.BootstrapConfig;
+import io.github.quickmsg.common.metric.LatencyRecorder;
 import io.github.quickmsg.common.metric.MetricBean;
 import io.github.quickmsg.common.metric.MetricManager;
 import io.github.quickmsg.common.metric.MetricRegistry;
@@ -16,10 +17,13 @@ public class PrometheusMetricManager implements MetricManager {
 
     private final MetricRegistry metricRegistry;
 
+    private final LatencyRecorder latencyRecorder;
+
     public PrometheusMetricManager(BootstrapConfig.MeterConfig config) {
         this.config = config;
         this.metricBean = new PrometheusMetricBean();
         this.metricRegistry = new PrometheusMetricRegistry(createMetricRegistry(metricBean));
+        this.latencyRecorder = new LatencyRecorder(Boolean.TRUE.equals(config.getLatency()));
     }
 
 
@@ -37,4 +41,9 @@ public class PrometheusMetricManager implements MetricManager {
     public BootstrapConfig.MeterConfig getMeterConfig() {
         return this.config;
     }
+
+    @Override
+    public LatencyRecorder getLatencyRecorder() {
+        return this.latencyRecorder;
+    }
 }
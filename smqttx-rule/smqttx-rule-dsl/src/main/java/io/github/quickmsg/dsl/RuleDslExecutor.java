@@ -1,20 +1,19 @@
 package io.github.quickmsg.dsl;
 
-import io.github.quickmsg.common.channel.MqttChannel;
 import io.github.quickmsg.common.context.ContextHolder;
 import io.github.quickmsg.common.context.ReceiveContext;
 import io.github.quickmsg.common.message.Message;
-import io.github.quickmsg.common.message.mqtt.CloseMessage;
 import io.github.quickmsg.common.message.mqtt.PublishMessage;
 import io.github.quickmsg.common.rule.DslExecutor;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.rule.RuleChain;
-import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import io.github.quickmsg.rule.RuleMessage;
+import reactor.util.context.Context;
 
 import java.util.Map;
 
 /**
+ * 在调用线程(协议分片线程)执行规则, 没有规则订阅的事件或 topic 直接返回
+ *
  * @author luxurong
  */
 
@@ -28,23 +27,26 @@ public class RuleDslExecutor implements DslExecutor {
 
     @Override
     public void executeRule(Message message) {
-        final Map<String, Object> map = JacksonUtil.bean2Map(message);
-        if(message instanceof  PublishMessage){
-            map.put("body",JacksonUtil.dynamic(new String(((PublishMessage)message).getBody())));
+        String event = message.getEvent();
+        if (!ruleChain.isSubscribed(event)) {
+            return;
         }
-        Mono.deferContextual(ruleChain::executeRule)
-                .contextWrite(context -> context
-                        .put(Map.class,  map)
-                        .put(ReceiveContext.class, ContextHolder.getReceiveContext()))
-                .subscribeOn(Schedulers.parallel())
-                .subscribe();
+        ruleChain.execute(event, topic(message), () -> Context.of(Map.class, RuleMessage.of(message))
+                .putNonNull(ReceiveContext.class, ContextHolder.getReceiveContext()));
     }
 
 
-
-
     @Override
     public Boolean isExecute() {
-        return !ruleChain.getRuleNodeList().isEmpty();
+        return !ruleChain.isEmpty();
+    }
+
+    @Override
+    public Boolean isExecute(Message message) {
+        return ruleChain.isSubscribed(message.getEvent(), topic(message));
+    }
+
+    private static String topic(Message message) {
+        return message instanceof PublishMessage ? ((PublishMessage) message).getTopic() : null;
     }
 }
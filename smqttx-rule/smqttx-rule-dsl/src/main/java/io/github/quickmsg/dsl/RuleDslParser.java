@@ -19,7 +19,7 @@ public class RuleDslParser {
 
     public RuleDslExecutor executor() {
         if (ruleChainDefinitions != null && ruleChainDefinitions.size() > 0) {
-            ruleChainDefinitions.stream().map(RuleChainDefinition::getChain).forEach(ruleChain::addRules);
+            ruleChainDefinitions.forEach(definition -> ruleChain.addRules(definition.getChain(), definition.getEvents(), definition.getTopics()));
         }
         return new RuleDslExecutor(ruleChain);
     }
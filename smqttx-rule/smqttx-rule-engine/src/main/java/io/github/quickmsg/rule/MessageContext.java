@@ -0,0 +1,50 @@
+package io.github.quickmsg.rule;
+
+import org.apache.commons.jexl3.JexlContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 规则脚本的上下文, 直接读取消息字段, 不拷贝消息
+ * <p>
+ * {@code $} 为整个消息, 其他变量按字段名读取; 脚本内赋值的变量单独保存, 不修改消息
+ *
+ * @author luxurong
+ */
+public class MessageContext implements JexlContext {
+
+    private static final String ROOT = "$";
+
+    private final Map<String, Object> message;
+
+    private Map<String, Object> variables;
+
+    public MessageContext(Map<String, Object> message) {
+        this.message = message;
+    }
+
+    @Override
+    public Object get(String name) {
+        if (variables != null && variables.containsKey(name)) {
+            return variables.get(name);
+        }
+        if (ROOT.equals(name)) {
+            return message;
+        }
+        return message.get(name);
+    }
+
+    @Override
+    public void set(String name, Object value) {
+        if (variables == null) {
+            variables = new HashMap<>(4);
+        }
+        variables.put(name, value);
+    }
+
+    @Override
+    public boolean has(String name) {
+        return (variables != null && variables.containsKey(name)) || ROOT.equals(name) || message.containsKey(name);
+    }
+}
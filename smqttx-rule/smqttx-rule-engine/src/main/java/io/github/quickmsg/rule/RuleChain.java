@@ -1,19 +1,22 @@
 package io.github.quickmsg.rule;
 
+import io.github.quickmsg.common.enums.RuleType;
 import io.github.quickmsg.common.rule.RuleDefinition;
 import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.topic.InternTopicFilter;
+import io.github.quickmsg.common.topic.TopicCollector;
 import io.github.quickmsg.rule.node.*;
-import lombok.Getter;
-import reactor.core.publisher.Mono;
+import lombok.extern.slf4j.Slf4j;
 import reactor.util.context.ContextView;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 /**
  * @author luxurong
  */
-@Getter
+@Slf4j
 public class RuleChain {
 
     private RuleChain() {
@@ -21,9 +24,48 @@ public class RuleChain {
 
     public final static RuleChain INSTANCE = new RuleChain();
 
-    private LinkedList<RuleNode> ruleNodeList = new LinkedList<>();
+    private static final Chain[] EMPTY = new Chain[0];
+
+    private final List<Chain> chains = new CopyOnWriteArrayList<>();
+
+    /**
+     * 限定了 topic 的规则链, 按 topicFilter 索引
+     */
+    private final InternTopicFilter<Chain> topicIndex = new InternTopicFilter<>();
+
+    /**
+     * 不限 topic 的规则链, 按订阅的事件分组, 包含订阅全部事件的规则链
+     */
+    private volatile Map<String, Chain[]> unscoped = Collections.emptyMap();
+
+    /**
+     * 不限 topic 且订阅全部事件的规则链
+     */
+    private volatile Chain[] unscopedAll = EMPTY;
+
+    private volatile boolean hasScoped;
+
+    /**
+     * 所有规则订阅的事件, 为 null 时订阅全部事件
+     */
+    private volatile Set<String> events = Collections.emptySet();
 
     public void addRules(List<RuleDefinition> definitions) {
+        this.addRules(definitions, null, null);
+    }
+
+    public void addRules(List<RuleDefinition> definitions, Collection<String> events) {
+        this.addRules(definitions, events, null);
+    }
+
+    /**
+     * 添加规则链
+     *
+     * @param definitions 规则节点
+     * @param events      订阅的事件, 为空时订阅全部事件
+     * @param topics      匹配的 topicFilter, 为空时不按 topic 过滤; 不为空时只处理带 topic 的消息(publish)
+     */
+    public synchronized void addRules(List<RuleDefinition> definitions, Collection<String> events, Collection<String> topics) {
         RuleNode rootNode = this.parseNode(definitions.get(0));
         RuleNode preNode = rootNode;
         for (int i = 1; i < definitions.size(); i++) {
@@ -31,7 +73,46 @@ public class RuleChain {
             preNode.setNextRuleNode(node);
             preNode = node;
         }
-        ruleNodeList.addLast(rootNode);
+        Set<String> chainEvents = events == null || events.isEmpty() ? null : new HashSet<>(events);
+        boolean scoped = topics != null && !topics.isEmpty();
+        Chain chain = new Chain(chains.size(), chainEvents, scoped, rootNode);
+        chains.add(chain);
+        if (scoped) {
+            topics.forEach(topic -> topicIndex.addObjectTopic(topic, chain));
+            this.hasScoped = true;
+        } else {
+            this.rebuildUnscoped();
+        }
+        if (chainEvents == null || this.events == null) {
+            this.events = null;
+        } else {
+            Set<String> union = new HashSet<>(this.events);
+            union.addAll(chainEvents);
+            this.events = union;
+        }
+    }
+
+    private void rebuildUnscoped() {
+        List<Chain> all = new ArrayList<>();
+        Map<String, List<Chain>> byEvent = new HashMap<>();
+        for (Chain chain : chains) {
+            if (chain.scoped) {
+                continue;
+            }
+            if (chain.events == null) {
+                all.add(chain);
+            } else {
+                chain.events.forEach(event -> byEvent.computeIfAbsent(event, key -> new ArrayList<>()).add(chain));
+            }
+        }
+        Map<String, Chain[]> unscoped = new HashMap<>(byEvent.size() * 2);
+        byEvent.forEach((event, eventChains) -> {
+            eventChains.addAll(all);
+            eventChains.sort(Comparator.comparingInt(chain -> chain.order));
+            unscoped.put(event, eventChains.toArray(EMPTY));
+        });
+        this.unscoped = unscoped;
+        this.unscopedAll = all.toArray(EMPTY);
     }
 
 
@@ -56,9 +137,127 @@ public class RuleChain {
         }
     }
 
+    public boolean isEmpty() {
+        return chains.isEmpty();
+    }
+
+    /**
+     * 是否有规则订阅该事件
+     *
+     * @param event 事件
+     * @return boolean
+     */
+    public boolean isSubscribed(String event) {
+        Set<String> subscribed = this.events;
+        return subscribed == null ? !chains.isEmpty() : event != null && subscribed.contains(event);
+    }
+
+    /**
+     * 是否有规则订阅该事件和 topic
+     *
+     * @param event 事件
+     * @param topic topic, 没有时为 null
+     * @return boolean
+     */
+    public boolean isSubscribed(String event, String topic) {
+        if (!isSubscribed(event)) {
+            return false;
+        }
+        if (unscopedFor(event).length > 0) {
+            return true;
+        }
+        if (topic == null || !hasScoped) {
+            return false;
+        }
+        TopicCollector<Chain> collector = topicIndex.collectObjectByTopic(topic);
+        for (int i = 0; i < collector.size(); i++) {
+            if (collector.get(i).accept(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在调用线程按定义顺序执行匹配的规则链, 没有匹配时不创建上下文
+     *
+     * @param event   事件
+     * @param topic   topic, 没有时为 null
+     * @param context 包含 {@link RuleMessage} 的上下文
+     */
+    public void execute(String event, String topic, Supplier<ContextView> context) {
+        Chain[] candidates = this.candidates(event, topic);
+        if (candidates.length == 0) {
+            return;
+        }
+        ContextView contextView = context.get();
+        for (Chain chain : candidates) {
+            try {
+                chain.rootNode.execute(contextView);
+            } catch (Exception e) {
+                log.error("rule execute error", e);
+            }
+        }
+    }
+
+    private Chain[] unscopedFor(String event) {
+        return event == null ? unscopedAll : unscoped.getOrDefault(event, unscopedAll);
+    }
 
-    public Mono<Void> executeRule(ContextView contextView) {
-        return Mono.fromRunnable(() -> ruleNodeList.forEach(ruleNode -> ruleNode.execute(contextView)));
+    /**
+     * 候选规则链, 拷贝出 topic 匹配结果后再执行, 避免规则内再次匹配时覆盖线程复用的收集器
+     */
+    private Chain[] candidates(String event, String topic) {
+        Chain[] base = unscopedFor(event);
+        if (topic == null || !hasScoped) {
+            return base;
+        }
+        TopicCollector<Chain> collector = topicIndex.collectObjectByTopic(topic);
+        if (collector.isEmpty()) {
+            return base;
+        }
+        List<Chain> matched = new ArrayList<>(base.length + collector.size());
+        Collections.addAll(matched, base);
+        for (int i = 0; i < collector.size(); i++) {
+            Chain chain = collector.get(i);
+            if (chain.accept(event)) {
+                matched.add(chain);
+            }
+        }
+        if (matched.size() == base.length) {
+            return base;
+        }
+        matched.sort(Comparator.comparingInt(chain -> chain.order));
+        List<Chain> distinct = new ArrayList<>(matched.size());
+        for (Chain chain : matched) {
+            if (distinct.isEmpty() || distinct.get(distinct.size() - 1) != chain) {
+                distinct.add(chain);
+            }
+        }
+        return distinct.toArray(EMPTY);
+    }
+
+
+    private static class Chain {
+
+        private final int order;
+
+        private final Set<String> events;
+
+        private final boolean scoped;
+
+        private final RuleNode rootNode;
+
+        private Chain(int order, Set<String> events, boolean scoped, RuleNode rootNode) {
+            this.order = order;
+            this.events = events;
+            this.scoped = scoped;
+            this.rootNode = rootNode;
+        }
+
+        private boolean accept(String event) {
+            return events == null || (event != null && events.contains(event));
+        }
     }
 
 }
@@ -3,7 +3,7 @@ package io.github.quickmsg.rule;
 import org.apache.commons.jexl3.*;
 import reactor.util.context.ContextView;
 
-import java.util.function.Consumer;
+import java.util.Map;
 
 /**
  * @author luxurong
@@ -12,44 +12,57 @@ public interface RuleExecute {
 
     JexlEngine J_EXL_ENGINE = new JexlBuilder().cache(10000).create();
 
-    JxltEngine T_J_EXL_ENGINE = new JexlBuilder().cache(10000).create().createJxltEngine();
+    JxltEngine T_J_EXL_ENGINE = J_EXL_ENGINE.createJxltEngine();
 
 
     /**
      * 执行
      *
      * @param context 上下文容器
-\     */
+     */
     void execute(ContextView context);
 
 
+    /**
+     * 编译脚本, 在规则定义时调用
+     *
+     * @param script 脚本
+     * @return {@link JexlExpression}
+     */
+    default JexlExpression compileScript(String script) {
+        return J_EXL_ENGINE.createExpression(script);
+    }
+
+    /**
+     * 编译模版, 在规则定义时调用
+     *
+     * @param script 模版
+     * @return {@link JxltEngine.Expression}
+     */
+    default JxltEngine.Expression compileTemplate(String script) {
+        return T_J_EXL_ENGINE.createExpression(script);
+    }
+
     /**
      * 执行脚本
      *
-     * @param script             脚本
-     * @param mapContextConsumer 设置参数
+     * @param expression 编译后的脚本
+     * @param message    消息
      * @return Object 返回值
      */
-    default Object triggerScript(String script, Consumer<MapContext> mapContextConsumer) {
-        JexlExpression e = J_EXL_ENGINE.createExpression(script);
-        MapContext context = new MapContext();
-        mapContextConsumer.accept(context);
-        return e.evaluate(context);
+    default Object triggerScript(JexlExpression expression, Map<String, Object> message) {
+        return expression.evaluate(new MessageContext(message));
     }
 
     /**
      * 执行模版
      *
-     * @param script             模版
-     * @param mapContextConsumer 设置参数
+     * @param expression 编译后的模版
+     * @param message    消息
      * @return Object 返回值
      */
-    default Object triggerTemplate(String script, Consumer<MapContext> mapContextConsumer) {
-        J_EXL_ENGINE.createJxltEngine();
-        JxltEngine.Expression expression = T_J_EXL_ENGINE.createExpression(script);
-        MapContext context = new MapContext();
-        mapContextConsumer.accept(context);
-        return expression.evaluate(context);
+    default Object triggerTemplate(JxltEngine.Expression expression, Map<String, Object> message) {
+        return expression.evaluate(new MessageContext(message));
     }
 
 }
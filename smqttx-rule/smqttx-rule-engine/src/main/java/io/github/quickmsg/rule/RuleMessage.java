@@ -0,0 +1,111 @@
+package io.github.quickmsg.rule;
+
+import io.github.quickmsg.common.message.Message;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.utils.JacksonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 规则引擎的消息视图, 只在有规则订阅该事件时创建
+ * <p>
+ * publish 消息直接取字段, 不经过 Jackson 转换; body 在第一次读取时才解析, 同一条消息的所有规则节点共用解析结果
+ *
+ * @author luxurong
+ */
+public class RuleMessage extends JsonMap<String, Object> {
+
+    private static final String BODY = "body";
+
+    private volatile byte[] rawBody;
+
+    private RuleMessage(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * 创建消息视图
+     *
+     * @param message {@link Message}
+     * @return {@link RuleMessage}
+     */
+    public static RuleMessage of(Message message) {
+        if (message instanceof PublishMessage) {
+            PublishMessage publishMessage = (PublishMessage) message;
+            RuleMessage ruleMessage = new RuleMessage(16);
+            ruleMessage.put("event", publishMessage.getEvent());
+            ruleMessage.put("messageId", publishMessage.getMessageId());
+            ruleMessage.put("topic", publishMessage.getTopic());
+            ruleMessage.put("qos", publishMessage.getQos());
+            ruleMessage.put("retain", publishMessage.isRetain());
+            ruleMessage.put("time", publishMessage.getTime());
+            ruleMessage.put("clientId", publishMessage.getClientId());
+            ruleMessage.put(BODY, null);
+            ruleMessage.rawBody = publishMessage.getBody();
+            return ruleMessage;
+        }
+        Map<String, Object> map = JacksonUtil.bean2Map(message);
+        RuleMessage ruleMessage = new RuleMessage(map.size() * 2);
+        ruleMessage.putAll(map);
+        return ruleMessage;
+    }
+
+    private void parseBody() {
+        if (rawBody != null) {
+            synchronized (this) {
+                byte[] body = rawBody;
+                if (body != null) {
+                    super.put(BODY, JacksonUtil.dynamic(new String(body, StandardCharsets.UTF_8)));
+                    rawBody = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (BODY.equals(key)) {
+            parseBody();
+        }
+        return super.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        if (BODY.equals(key)) {
+            parseBody();
+        }
+        return super.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (BODY.equals(key)) {
+            rawBody = null;
+        }
+        return super.put(key, value);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        parseBody();
+        return super.entrySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        parseBody();
+        return super.values();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        parseBody();
+        super.forEach(action);
+    }
+
+}
@@ -1,26 +1,24 @@
 package io.github.quickmsg.rule.node;
 
-import io.github.quickmsg.common.message.Message;
 import io.github.quickmsg.common.rule.source.Source;
 import io.github.quickmsg.rule.RuleNode;
 import io.github.quickmsg.rule.source.SourceManager;
+import org.apache.commons.jexl3.JxltEngine;
 import reactor.util.context.ContextView;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * @author luxurong
  */
 public class DatabaseRuleNode implements RuleNode {
 
-    private final String script;
+    private final JxltEngine.Expression template;
 
     private RuleNode ruleNode;
 
     public DatabaseRuleNode(String script) {
-        this.script = script;
+        this.template = script == null ? null : compileTemplate(script);
     }
 
     @Override
@@ -35,12 +33,11 @@ public class DatabaseRuleNode implements RuleNode {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void execute(ContextView contextView) {
         Map<String,Object> message = contextView.get(Map.class);
-        if (script != null) {
-            Optional.ofNullable(SourceManager.getSourceBean(Source.DATA_BASE))
-                    .ifPresent(sourceBean ->
-                            sourceBean.transmit(triggerTemplate(script, context -> message.forEach(context::set))));
+        if (template != null) {
+            SourceManager.transmit(Source.DATA_BASE, triggerTemplate(template, message));
         }
         executeNext(contextView);
     }
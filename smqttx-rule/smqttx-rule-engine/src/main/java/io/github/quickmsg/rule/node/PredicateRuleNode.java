@@ -1,7 +1,7 @@
 package io.github.quickmsg.rule.node;
 
-import io.github.quickmsg.common.message.Message;
 import io.github.quickmsg.rule.RuleNode;
+import org.apache.commons.jexl3.JexlExpression;
 import reactor.util.context.ContextView;
 
 import java.util.Map;
@@ -11,13 +11,13 @@ import java.util.Map;
  */
 public class PredicateRuleNode implements RuleNode {
 
-    private final String script;
+    private final JexlExpression expression;
 
     private RuleNode ruleNode;
 
 
     public PredicateRuleNode(String script) {
-        this.script = script;
+        this.expression = compileScript(script);
     }
 
     @Override
@@ -32,12 +32,9 @@ public class PredicateRuleNode implements RuleNode {
     }
 
     @Override
-
+    @SuppressWarnings("unchecked")
     public void execute(ContextView contextView) {
-        if ((Boolean) triggerScript(script, context -> {
-            Map<String,Object> message = contextView.get(Map.class);
-            context.set("$",message);
-        })) {
+        if (Boolean.TRUE.equals(triggerScript(expression, contextView.get(Map.class)))) {
             executeNext(contextView);
         }
     }
@@ -1,15 +1,15 @@
 package io.github.quickmsg.rule.node;
 
 import io.github.quickmsg.common.rule.source.Source;
-import io.github.quickmsg.common.utils.JacksonUtil;
 import io.github.quickmsg.rule.RuleNode;
 import io.github.quickmsg.rule.source.SourceManager;
+import org.apache.commons.jexl3.JexlExpression;
 import reactor.util.context.ContextView;
 
 import java.util.Map;
 
 /**
- * 转发节点
+ * 转发节点, 数据放入 source 的转发队列后继续执行下一个节点
  *
  * @author luxurong
  */
@@ -17,29 +17,22 @@ public class TransmitRuleNode implements RuleNode {
 
     private final Source source;
 
-    private final String script;
+    private final JexlExpression expression;
 
     private RuleNode ruleNode;
 
 
     public TransmitRuleNode(Source source, String script) {
         this.source = source;
-        this.script = script;
+        this.expression = script == null ? null : compileScript(script);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public void execute(ContextView contextView) {
-        Object param;
-        if (script != null) {
-            param = triggerScript(script, context -> {
-                Map<String, Object> message = contextView.get(Map.class);
-                message.forEach(context::set);
-            });
-        } else {
-            param = contextView.get(Map.class);
-        }
-        SourceManager.getSourceBean(source).transmit(param);
+        Map<String, Object> message = contextView.get(Map.class);
+        Object param = expression == null ? message : triggerScript(expression, message);
+        SourceManager.transmit(source, param);
         executeNext(contextView);
     }
 
@@ -0,0 +1,151 @@
+package io.github.quickmsg.rule.source;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * source 熔断器
+ * <p>
+ * 连续 failureThreshold 批失败或超过 slowTime 时打开, 打开期间直接丢弃数据;
+ * openTime 后半开, 只放行一批试探, 成功则关闭, 失败则重新打开
+ *
+ * @author luxurong
+ */
+public class SourceCircuitBreaker {
+
+    /**
+     * 不熔断
+     */
+    public static final SourceCircuitBreaker DISABLED = new SourceCircuitBreaker(0, 0, 0);
+
+    public enum State {
+        /**
+         * 正常转发
+         */
+        CLOSED,
+        /**
+         * 熔断
+         */
+        OPEN,
+        /**
+         * 试探
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long slowNanos;
+
+    private final long openNanos;
+
+    private final LongSupplier clock;
+
+    private final LongAdder opened = new LongAdder();
+
+    private volatile State state = State.CLOSED;
+
+    private int failures;
+
+    /**
+     * {@link #isOpen()} 不加锁读取, 先于 {@link #state} 写入
+     */
+    private volatile long openedAt;
+
+    private boolean probing;
+
+    /**
+     * @param failureThreshold 连续失败多少批后打开, 0 表示不熔断
+     * @param slowTime         单批耗时超过该值(毫秒)按失败计算, 0 表示不检查
+     * @param openTime         打开后多久(毫秒)进入半开
+     */
+    public SourceCircuitBreaker(int failureThreshold, long slowTime, long openTime) {
+        this(failureThreshold, TimeUnit.MILLISECONDS.toNanos(slowTime), TimeUnit.MILLISECONDS.toNanos(openTime), System::nanoTime);
+    }
+
+    SourceCircuitBreaker(int failureThreshold, long slowNanos, long openNanos, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.slowNanos = slowNanos;
+        this.openNanos = openNanos;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return failureThreshold > 0;
+    }
+
+    /**
+     * 提交数据时检查, 打开且未到半开时间时拒绝
+     *
+     * @return 是否拒绝
+     */
+    public boolean isOpen() {
+        return state == State.OPEN && clock.getAsLong() - openedAt < openNanos;
+    }
+
+    /**
+     * 转发一批前申请
+     *
+     * @return 是否允许转发
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    /**
+     * 转发成功
+     *
+     * @param elapsedNanos 耗时
+     */
+    public synchronized void onSuccess(long elapsedNanos) {
+        if (slowNanos > 0 && elapsedNanos >= slowNanos) {
+            this.onFailure();
+            return;
+        }
+        failures = 0;
+        probing = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * 转发失败
+     */
+    public synchronized void onFailure() {
+        if (!isEnabled()) {
+            return;
+        }
+        failures++;
+        probing = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            openedAt = clock.getAsLong();
+            state = State.OPEN;
+            opened.increment();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getOpened() {
+        return opened.sum();
+    }
+
+}
@@ -1,10 +1,12 @@
 package io.github.quickmsg.rule.source;
 
+import io.github.quickmsg.common.metric.MetricManager;
 import io.github.quickmsg.common.rule.source.Source;
 import io.github.quickmsg.common.rule.source.SourceDefinition;
 import io.github.quickmsg.common.rule.source.SourceBean;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -12,18 +14,83 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class SourceManager {
 
+   private static final int DEFAULT_QUEUE_SIZE = 10000;
+
+   private static final int DEFAULT_BATCH_SIZE = 100;
+
+   private static final int DEFAULT_BATCH_DELAY = 100;
+
+   private static final int DEFAULT_THREADS = 1;
+
+   private static final int DEFAULT_BREAKER_FAILURES = 5;
+
+   private static final int DEFAULT_BREAKER_SLOW_TIME = 5000;
+
+   private static final int DEFAULT_BREAKER_OPEN_TIME = 10000;
+
+   private static final long CLOSE_TIMEOUT = 3000;
+
    private static final Map<Source, SourceBean>  CACHE_BEANS = new ConcurrentHashMap<>();
 
+   private static final Map<Source, SourceTransmitter> TRANSMITTERS = new ConcurrentHashMap<>();
+
+   private static volatile MetricManager metricManager;
+
 
    public static SourceBean getSourceBean(Source source){
        return CACHE_BEANS.get(source);
    }
 
+   public static SourceTransmitter getTransmitter(Source source) {
+      return TRANSMITTERS.get(source);
+   }
+
+   /**
+    * 提交到 source 的转发队列
+    *
+    * @param source {@link Source}
+    * @param object 数据
+    * @return source 未加载或队列满时返回 false
+    */
+   public static boolean transmit(Source source, Object object) {
+      SourceTransmitter transmitter = TRANSMITTERS.get(source);
+      return transmitter != null && transmitter.transmit(object);
+   }
+
+   /**
+    * 注册转发指标, 之后加载的 source 也会注册
+    *
+    * @param metricManager {@link MetricManager}
+    */
+   public static void bindMetric(MetricManager metricManager) {
+      SourceManager.metricManager = metricManager;
+      TRANSMITTERS.values().forEach(transmitter -> transmitter.bindMetric(metricManager));
+   }
+
+   private static SourceCircuitBreaker circuitBreaker(SourceDefinition sourceDefinition) {
+      int failures = Optional.ofNullable(sourceDefinition.getBreakerFailures()).orElse(DEFAULT_BREAKER_FAILURES);
+      if (failures <= 0) {
+         return SourceCircuitBreaker.DISABLED;
+      }
+      return new SourceCircuitBreaker(failures,
+              Optional.ofNullable(sourceDefinition.getBreakerSlowTime()).orElse(DEFAULT_BREAKER_SLOW_TIME),
+              Optional.ofNullable(sourceDefinition.getBreakerOpenTime()).orElse(DEFAULT_BREAKER_OPEN_TIME));
+   }
+
    public static void loadSource(SourceDefinition sourceDefinition){
       SourceBean.SOURCE_BEAN_LIST.forEach(sourceBean -> {
          if (sourceBean.support(sourceDefinition.getSource())) {
             if (sourceBean.bootstrap(sourceDefinition.getSourceAttributes())) {
                CACHE_BEANS.put(sourceDefinition.getSource(), sourceBean);
+               SourceTransmitter transmitter = new SourceTransmitter(sourceDefinition.getSource(), sourceBean,
+                       Optional.ofNullable(sourceDefinition.getQueueSize()).orElse(DEFAULT_QUEUE_SIZE),
+                       Optional.ofNullable(sourceDefinition.getBatchSize()).orElse(DEFAULT_BATCH_SIZE),
+                       Optional.ofNullable(sourceDefinition.getBatchDelay()).orElse(DEFAULT_BATCH_DELAY),
+                       Optional.ofNullable(sourceDefinition.getThreads()).orElse(DEFAULT_THREADS),
+                       circuitBreaker(sourceDefinition));
+               Optional.ofNullable(metricManager).ifPresent(transmitter::bindMetric);
+               Optional.ofNullable(TRANSMITTERS.put(sourceDefinition.getSource(), transmitter))
+                       .ifPresent(previous -> previous.close(CLOSE_TIMEOUT));
             }
          }
       });
@@ -0,0 +1,296 @@
+package io.github.quickmsg.rule.source;
+
+import io.github.quickmsg.common.metric.MetricBean;
+import io.github.quickmsg.common.metric.MetricManager;
+import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.rule.source.SourceBatchException;
+import io.github.quickmsg.common.rule.source.SourceBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * source 批量转发
+ * <p>
+ * 规则线程只把数据放入有界队列, 队列满时丢弃并计数, 不阻塞 broker;
+ * 每个 source 独立的转发线程攒满 batchSize 条或第一条等待超过 batchDelay 后调用 {@link SourceBean#transmitBatch(List)},
+ * 下游异常或变慢时由 {@link SourceCircuitBreaker} 熔断, 只影响当前 source
+ *
+ * @author luxurong
+ */
+@Slf4j
+public class SourceTransmitter {
+
+    private static final String QUEUE_SIZE = "smqtt.rule.source.queue.size";
+
+    private static final String TRANSMIT_COUNT = "smqtt.rule.source.transmit.count";
+
+    private static final String DROP_COUNT = "smqtt.rule.source.drop.count";
+
+    private static final String ERROR_COUNT = "smqtt.rule.source.error.count";
+
+    private static final String BATCH_COUNT = "smqtt.rule.source.batch.count";
+
+    private static final String QUEUE_USAGE = "smqtt.rule.source.queue.usage";
+
+    private static final String ACTIVE_THREADS = "smqtt.rule.source.active.threads";
+
+    private static final String CIRCUIT_STATE = "smqtt.rule.source.circuit.state";
+
+    private static final String CIRCUIT_OPEN_COUNT = "smqtt.rule.source.circuit.open.count";
+
+    private static final long IDLE_POLL = 100;
+
+    private final Source source;
+
+    private final SourceBean sourceBean;
+
+    private final int batchSize;
+
+    private final long batchDelayNanos;
+
+    private final BlockingQueue<Object> queue;
+
+    private final int queueSize;
+
+    private final Thread[] workers;
+
+    private final SourceCircuitBreaker circuitBreaker;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final LongAdder transmitted = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private volatile boolean running = true;
+
+    /**
+     * @param source     {@link Source}
+     * @param sourceBean {@link SourceBean}
+     * @param queueSize  队列长度, 0 表示在调用线程直接转发
+     * @param batchSize  每批最大条数
+     * @param batchDelay 每批最长等待时间(毫秒)
+     */
+    public SourceTransmitter(Source source, SourceBean sourceBean, int queueSize, int batchSize, long batchDelay) {
+        this(source, sourceBean, queueSize, batchSize, batchDelay, 1, SourceCircuitBreaker.DISABLED);
+    }
+
+    /**
+     * @param source         {@link Source}
+     * @param sourceBean     {@link SourceBean}, 线程数大于 1 时需要线程安全
+     * @param queueSize      队列长度, 0 表示在调用线程直接转发
+     * @param batchSize      每批最大条数
+     * @param batchDelay     每批最长等待时间(毫秒)
+     * @param threads        转发线程数
+     * @param circuitBreaker {@link SourceCircuitBreaker}
+     */
+    public SourceTransmitter(Source source, SourceBean sourceBean, int queueSize, int batchSize, long batchDelay,
+                             int threads, SourceCircuitBreaker circuitBreaker) {
+        this.source = source;
+        this.sourceBean = sourceBean;
+        this.batchSize = Math.max(batchSize, 1);
+        this.batchDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(batchDelay, 0));
+        this.circuitBreaker = circuitBreaker;
+        this.queueSize = Math.max(queueSize, 0);
+        if (queueSize > 0) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.workers = new Thread[Math.max(threads, 1)];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Thread(this::run, "smqttx-source-" + source.name().toLowerCase() + "-" + i);
+                workers[i].setDaemon(true);
+                workers[i].start();
+            }
+        } else {
+            this.queue = null;
+            this.workers = new Thread[0];
+        }
+    }
+
+    /**
+     * 注册队列长度与使用率, 忙碌线程数, 熔断状态, 转发, 丢弃与失败数量指标
+     *
+     * @param metricManager {@link MetricManager}
+     */
+    public void bindMetric(MetricManager metricManager) {
+        MetricBean metricBean = metricManager.getMetricBean();
+        MeterRegistry meterRegistry = metricBean.getMeterRegistry();
+        if (meterRegistry == null) {
+            return;
+        }
+        Tags tags = metricBean.getTags().and("source", source.name());
+        if (queue != null) {
+            Gauge.builder(QUEUE_SIZE, queue, BlockingQueue::size).tags(tags).register(meterRegistry);
+            Gauge.builder(QUEUE_USAGE, queue, q -> (double) q.size() / queueSize).tags(tags).register(meterRegistry);
+        }
+        Gauge.builder(ACTIVE_THREADS, active, AtomicInteger::get).tags(tags).register(meterRegistry);
+        Gauge.builder(CIRCUIT_STATE, circuitBreaker, breaker -> breaker.getState().ordinal()).tags(tags).register(meterRegistry);
+        FunctionCounter.builder(CIRCUIT_OPEN_COUNT, circuitBreaker, SourceCircuitBreaker::getOpened).tags(tags).register(meterRegistry);
+        FunctionCounter.builder(TRANSMIT_COUNT, transmitted, LongAdder::sum).tags(tags).register(meterRegistry);
+        FunctionCounter.builder(DROP_COUNT, dropped, LongAdder::sum).tags(tags.and("reason", "full")).register(meterRegistry);
+        FunctionCounter.builder(DROP_COUNT, rejected, LongAdder::sum).tags(tags.and("reason", "circuit")).register(meterRegistry);
+        FunctionCounter.builder(ERROR_COUNT, failed, LongAdder::sum).tags(tags).register(meterRegistry);
+        FunctionCounter.builder(BATCH_COUNT, batches, LongAdder::sum).tags(tags).register(meterRegistry);
+    }
+
+    /**
+     * 提交转发数据
+     *
+     * @param object 数据
+     * @return 队列满, 熔断或已关闭时返回 false
+     */
+    public boolean transmit(Object object) {
+        if (circuitBreaker.isOpen()) {
+            rejected.increment();
+            return false;
+        }
+        if (queue == null) {
+            if (!circuitBreaker.tryAcquire()) {
+                rejected.increment();
+                return false;
+            }
+            long start = System.nanoTime();
+            try {
+                sourceBean.transmit(object);
+                transmitted.increment();
+                circuitBreaker.onSuccess(System.nanoTime() - start);
+            } catch (Exception e) {
+                failed.increment();
+                circuitBreaker.onFailure();
+                log.error("source {} transmit error", source, e);
+            }
+            return true;
+        }
+        if (!running || !queue.offer(object)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public long getTransmitted() {
+        return transmitted.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public SourceCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public int getQueued() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * 停止接收数据, 等待转发线程发送完队列中的数据
+     *
+     * @param timeout 等待时间(毫秒)
+     */
+    public void close(long timeout) {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(IDLE_POLL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + batchDelayNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    Object next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                this.flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Object> batch) {
+        if (!circuitBreaker.tryAcquire()) {
+            rejected.add(batch.size());
+            return;
+        }
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            sourceBean.transmitBatch(batch);
+            transmitted.add(batch.size());
+            batches.increment();
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+        } catch (SourceBatchException e) {
+            int failures = Math.min(e.getFailed(), batch.size());
+            transmitted.add(batch.size() - failures);
+            failed.add(failures);
+            batches.increment();
+            /* 部分数据失败说明下游可用, 不计入熔断 */
+            if (failures < batch.size()) {
+                circuitBreaker.onSuccess(System.nanoTime() - start);
+            } else {
+                circuitBreaker.onFailure();
+            }
+            log.error("source {} transmit {} of {} messages error", source, failures, batch.size(), e);
+        } catch (Throwable throwable) {
+            failed.add(batch.size());
+            circuitBreaker.onFailure();
+            log.error("source {} transmit {} messages error", source, batch.size(), throwable);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+}
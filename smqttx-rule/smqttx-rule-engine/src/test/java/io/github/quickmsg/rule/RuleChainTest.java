@@ -0,0 +1,67 @@
+package io.github.quickmsg.rule;
+
+import io.github.quickmsg.common.enums.RuleType;
+import io.github.quickmsg.common.rule.RuleDefinition;
+import org.junit.Assert;
+import org.junit.Test;
+import reactor.util.context.Context;
+
+import java.lang.reflect.Constructor;
+import java.util.*;
+
+/**
+ * 规则链按事件与 topic 分发测试
+ *
+ * @author luxurong
+ */
+public class RuleChainTest {
+
+    @Test
+    public void routesByTopicInDefinitionOrder() throws Exception {
+        RuleChain ruleChain = newRuleChain();
+        ruleChain.addRules(chain("device"), Collections.singletonList("publish"), Arrays.asList("device/#", "device/+/up"));
+        ruleChain.addRules(chain("all"), Collections.singletonList("publish"));
+        ruleChain.addRules(chain("alarm"), Collections.singletonList("publish"), Collections.singletonList("alarm/+"));
+
+        Assert.assertEquals(Arrays.asList("device", "all"), execute(ruleChain, "publish", "device/1/up"));
+        Assert.assertEquals(Arrays.asList("all", "alarm"), execute(ruleChain, "publish", "alarm/1"));
+        Assert.assertEquals(Collections.singletonList("all"), execute(ruleChain, "publish", "alarm/1/2"));
+        Assert.assertEquals(Collections.emptyList(), execute(ruleChain, "connect", "device/1"));
+
+        Assert.assertTrue(ruleChain.isSubscribed("publish", "other"));
+        Assert.assertFalse(ruleChain.isSubscribed("connect", null));
+    }
+
+    @Test
+    public void topicScopedChainsSkipMessagesWithoutTopic() throws Exception {
+        RuleChain ruleChain = newRuleChain();
+        ruleChain.addRules(chain("device"), null, Collections.singletonList("device/#"));
+        Assert.assertTrue(ruleChain.isSubscribed("publish", "device"));
+        Assert.assertFalse(ruleChain.isSubscribed("publish", "other"));
+        Assert.assertFalse(ruleChain.isSubscribed("connect", null));
+        Assert.assertEquals(Collections.singletonList("device"), execute(ruleChain, "publish", "device"));
+        Assert.assertEquals(Collections.emptyList(), execute(ruleChain, "connect", null));
+    }
+
+    private static List<String> execute(RuleChain ruleChain, String event, String topic) {
+        List<String> hits = new ArrayList<>();
+        Map<String, Object> message = new HashMap<>();
+        message.put("hits", hits);
+        ruleChain.execute(event, topic, () -> Context.of(Map.class, message));
+        return hits;
+    }
+
+    private static List<RuleDefinition> chain(String name) {
+        RuleDefinition definition = new RuleDefinition();
+        definition.setRuleType(RuleType.PREDICATE);
+        definition.setScript("$.hits.add('" + name + "') && false");
+        return Collections.singletonList(definition);
+    }
+
+    private static RuleChain newRuleChain() throws Exception {
+        Constructor<RuleChain> constructor = RuleChain.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.github.quickmsg.rule;
+
+import io.github.quickmsg.common.enums.RuleType;
+import io.github.quickmsg.common.message.mqtt.PublishMessage;
+import io.github.quickmsg.common.rule.RuleDefinition;
+import io.github.quickmsg.common.utils.JacksonUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 规则消息视图与事件订阅测试
+ *
+ * @author luxurong
+ */
+public class RuleMessageTest {
+
+    @Test
+    public void bodyParsedLazilyOnce() {
+        PublishMessage publishMessage = new PublishMessage();
+        publishMessage.setTopic("a/b");
+        publishMessage.setQos(1);
+        publishMessage.setBody("{\"temperature\":21.5}".getBytes(StandardCharsets.UTF_8));
+        RuleMessage ruleMessage = RuleMessage.of(publishMessage);
+        Assert.assertEquals("publish", ruleMessage.get("event"));
+        Assert.assertEquals("a/b", ruleMessage.get("topic"));
+
+        Object body = ruleMessage.get("body");
+        Assert.assertTrue(body instanceof Map);
+        Assert.assertEquals(21.5, ((Map<?, ?>) body).get("temperature"));
+        Assert.assertSame(body, ruleMessage.get("body"));
+        Assert.assertTrue(JacksonUtil.bean2Json(ruleMessage).contains("\"temperature\":21.5"));
+    }
+
+    @Test
+    public void bodyMaterializedBySerialization() {
+        PublishMessage publishMessage = new PublishMessage();
+        publishMessage.setTopic("a/b");
+        publishMessage.setBody("plain".getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(RuleMessage.of(publishMessage).toString().contains("\"body\":\"plain\""));
+    }
+
+    @Test
+    public void subscribesDeclaredEvents() throws Exception {
+        RuleChain ruleChain = newRuleChain();
+        Assert.assertFalse(ruleChain.isSubscribed("publish"));
+        ruleChain.addRules(Collections.singletonList(predicate("$.qos > 0")), Collections.singletonList("connect"));
+        Assert.assertTrue(ruleChain.isSubscribed("connect"));
+        Assert.assertFalse(ruleChain.isSubscribed("publish"));
+
+        /* 没有声明事件时订阅全部事件, 不从条件脚本推断 */
+        ruleChain.addRules(Collections.singletonList(predicate("!($.event == 'publish')")));
+        Assert.assertTrue(ruleChain.isSubscribed("publish"));
+        Assert.assertTrue(ruleChain.isSubscribed("pubAck"));
+    }
+
+    private static RuleDefinition predicate(String script) {
+        RuleDefinition definition = new RuleDefinition();
+        definition.setRuleType(RuleType.PREDICATE);
+        definition.setScript(script);
+        return definition;
+    }
+
+    private static RuleChain newRuleChain() throws Exception {
+        Constructor<RuleChain> constructor = RuleChain.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+}
@@ -0,0 +1,114 @@
+package io.github.quickmsg.rule;
+
+import io.github.quickmsg.rule.node.EmptyNode;
+import io.github.quickmsg.rule.node.PredicateRuleNode;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.JxltEngine;
+import org.apache.commons.jexl3.MapContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.util.context.Context;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则节点吞吐: legacy 为每条消息创建表达式并拷贝消息到 MapContext, compiled 为定义时编译并直接读取消息
+ *
+ * @author luxurong
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleNodeBenchmark {
+
+    private static final String PREDICATE = "$.event.equals('publish') && $.qos > 0";
+
+    private static final String TRANSMIT = "{'topic':topic,'body':body,'qos':qos}";
+
+    private static final String TEMPLATE = "insert into message(client_id, topic, qos) values('${clientId}', '${topic}', ${qos})";
+
+    private final RuleExecute execute = new EmptyNode();
+
+    private Map<String, Object> message;
+
+    private Context context;
+
+    private PredicateRuleNode predicateNode;
+
+    private JexlExpression transmitExpression;
+
+    private JxltEngine.Expression template;
+
+    @Setup
+    public void setup() {
+        message = new HashMap<>();
+        message.put("event", "publish");
+        message.put("clientId", "device-1");
+        message.put("topic", "site/1/device/1/status");
+        message.put("qos", 1);
+        message.put("retain", false);
+        message.put("time", "2023-05-01 12:00:00");
+        Map<String, Object> body = new HashMap<>();
+        body.put("temperature", 21.5);
+        body.put("humidity", 40);
+        message.put("body", body);
+        context = Context.of(Map.class, message);
+        predicateNode = new PredicateRuleNode(PREDICATE);
+        transmitExpression = execute.compileScript(TRANSMIT);
+        template = execute.compileTemplate(TEMPLATE);
+    }
+
+    @Benchmark
+    public Object predicateLegacy() {
+        MapContext mapContext = new MapContext();
+        mapContext.set("$", message);
+        return RuleExecute.J_EXL_ENGINE.createExpression(PREDICATE).evaluate(mapContext);
+    }
+
+    @Benchmark
+    public Context predicateCompiled() {
+        predicateNode.execute(context);
+        return context;
+    }
+
+    @Benchmark
+    public Object transmitLegacy() {
+        MapContext mapContext = new MapContext();
+        message.forEach(mapContext::set);
+        return RuleExecute.J_EXL_ENGINE.createExpression(TRANSMIT).evaluate(mapContext);
+    }
+
+    @Benchmark
+    public Object transmitCompiled() {
+        return execute.triggerScript(transmitExpression, message);
+    }
+
+    @Benchmark
+    public Object templateLegacy() {
+        RuleExecute.J_EXL_ENGINE.createJxltEngine();
+        MapContext mapContext = new MapContext();
+        message.forEach(mapContext::set);
+        return RuleExecute.T_J_EXL_ENGINE.createExpression(TEMPLATE).evaluate(mapContext);
+    }
+
+    @Benchmark
+    public Object templateCompiled() {
+        return execute.triggerTemplate(template, message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RuleNodeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
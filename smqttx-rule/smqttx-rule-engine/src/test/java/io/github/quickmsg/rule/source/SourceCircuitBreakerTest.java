@@ -0,0 +1,89 @@
+package io.github.quickmsg.rule.source;
+
+import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.rule.source.SourceBean;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * source 熔断测试, 时间由测试推进
+ *
+ * @author luxurong
+ */
+public class SourceCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final SourceCircuitBreaker breaker = new SourceCircuitBreaker(2, TimeUnit.SECONDS.toNanos(1),
+            TimeUnit.SECONDS.toNanos(10), now::get);
+
+    @Test
+    public void opensAfterConsecutiveFailuresAndProbes() {
+        Assert.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assert.assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(0);
+        breaker.onFailure();
+        Assert.assertEquals(SourceCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        Assert.assertEquals(SourceCircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertTrue(breaker.isOpen());
+        Assert.assertFalse(breaker.tryAcquire());
+
+        /* 到时间后只放行一批试探, 失败重新打开 */
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        Assert.assertFalse(breaker.isOpen());
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertFalse(breaker.tryAcquire());
+        breaker.onFailure();
+        Assert.assertTrue(breaker.isOpen());
+        Assert.assertEquals(2, breaker.getOpened());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        Assert.assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(0);
+        Assert.assertEquals(SourceCircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void slowBatchesCountAsFailures() {
+        breaker.onSuccess(TimeUnit.SECONDS.toNanos(2));
+        breaker.onSuccess(TimeUnit.SECONDS.toNanos(1));
+        Assert.assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void transmitterRejectsWhileOpen() {
+        SourceTransmitter transmitter = new SourceTransmitter(Source.HTTP, new SourceBean() {
+            @Override
+            public Boolean support(Source source) {
+                return true;
+            }
+
+            @Override
+            public Boolean bootstrap(Map<String, Object> sourceParam) {
+                return true;
+            }
+
+            @Override
+            public void transmit(Object object) {
+                throw new IllegalStateException("down");
+            }
+
+            @Override
+            public void close() {
+            }
+        }, 0, 1, 0, 1, breaker);
+        Assert.assertTrue(transmitter.transmit(1));
+        Assert.assertTrue(transmitter.transmit(2));
+        Assert.assertEquals(2, transmitter.getFailed());
+        Assert.assertFalse(transmitter.transmit(3));
+        Assert.assertEquals(1, transmitter.getRejected());
+    }
+
+}
@@ -0,0 +1,146 @@
+package io.github.quickmsg.rule.source;
+
+import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.rule.source.SourceBatchException;
+import io.github.quickmsg.common.rule.source.SourceBean;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * source 批量转发测试
+ *
+ * @author luxurong
+ */
+public class SourceTransmitterTest {
+
+    @Test
+    public void flushBySizeAndDelay() throws Exception {
+        RecordSourceBean sourceBean = new RecordSourceBean(null);
+        SourceTransmitter transmitter = new SourceTransmitter(Source.KAFKA, sourceBean, 100, 3, 50);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(transmitter.transmit(i));
+        }
+        waitFor(() -> transmitter.getTransmitted() == 4);
+        List<Integer> sizes = sourceBean.sizes();
+        /* 满 3 条先发一批, 剩下 1 条等待超时后发送 */
+        Assert.assertEquals(3, (int) sizes.get(0));
+        Assert.assertEquals(4, sizes.stream().mapToInt(Integer::intValue).sum());
+        transmitter.close(1000);
+    }
+
+    @Test
+    public void dropsWhenQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordSourceBean sourceBean = new RecordSourceBean(release);
+        SourceTransmitter transmitter = new SourceTransmitter(Source.KAFKA, sourceBean, 2, 1, 0);
+        Assert.assertTrue(transmitter.transmit(0));
+        /* 转发线程阻塞在第一批, 队列容量 2 */
+        waitFor(() -> transmitter.getQueued() == 0);
+        Assert.assertTrue(transmitter.transmit(1));
+        Assert.assertTrue(transmitter.transmit(2));
+        Assert.assertFalse(transmitter.transmit(3));
+        Assert.assertEquals(1, transmitter.getDropped());
+
+        release.countDown();
+        transmitter.close(1000);
+        Assert.assertEquals(3, transmitter.getTransmitted());
+        Assert.assertFalse(transmitter.transmit(4));
+    }
+
+    @Test
+    public void countsFailedBatches() throws Exception {
+        SourceTransmitter transmitter = new SourceTransmitter(Source.KAFKA, new RecordSourceBean(null) {
+            @Override
+            public void transmitBatch(List<Object> objects) {
+                throw new IllegalStateException("down");
+            }
+        }, 10, 5, 0);
+        transmitter.transmit(1);
+        transmitter.transmit(2);
+        waitFor(() -> transmitter.getFailed() == 2);
+        Assert.assertEquals(0, transmitter.getTransmitted());
+        transmitter.close(1000);
+    }
+
+    @Test
+    public void countsOnlyFailedRowsOfPartialBatch() throws Exception {
+        SourceTransmitter transmitter = new SourceTransmitter(Source.DATA_BASE, new RecordSourceBean(null) {
+            @Override
+            public void transmitBatch(List<Object> objects) {
+                throw new SourceBatchException(1, new IllegalStateException("bad row"));
+            }
+        }, 10, 3, 1000);
+        for (int i = 0; i < 3; i++) {
+            transmitter.transmit(i);
+        }
+        waitFor(() -> transmitter.getFailed() == 1);
+        Assert.assertEquals(2, transmitter.getTransmitted());
+        Assert.assertEquals(SourceCircuitBreaker.State.CLOSED, transmitter.getCircuitBreaker().getState());
+        transmitter.close(1000);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("timeout", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static class RecordSourceBean implements SourceBean {
+
+        private final CountDownLatch release;
+
+        private final List<Integer> sizes = new ArrayList<>();
+
+        private RecordSourceBean(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Boolean support(Source source) {
+            return true;
+        }
+
+        @Override
+        public Boolean bootstrap(Map<String, Object> sourceParam) {
+            return true;
+        }
+
+        @Override
+        public void transmit(Object object) {
+        }
+
+        @Override
+        public void transmitBatch(List<Object> objects) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (sizes) {
+                sizes.add(objects.size());
+            }
+        }
+
+        private List<Integer> sizes() {
+            synchronized (sizes) {
+                return new ArrayList<>(sizes);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
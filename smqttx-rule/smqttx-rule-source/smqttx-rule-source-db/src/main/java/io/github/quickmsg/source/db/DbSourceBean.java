@@ -3,13 +3,18 @@ package io.github.quickmsg.source.db;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.rule.source.SourceBatchException;
 import io.github.quickmsg.common.rule.source.SourceBean;
 import io.github.quickmsg.source.db.config.HikariCPConnectionProvider;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -69,6 +74,54 @@ public class DbSourceBean implements SourceBean {
         }
     }
 
+    /**
+     * 一个连接内按 jdbc batch 执行; 某条语句失败时回滚整批, 再逐条执行, 只有失败的语句计为失败
+     *
+     * @param objects sql 列表
+     */
+    @Override
+    public void transmitBatch(List<Object> objects) {
+        try (Connection connection = hikariDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (Object object : objects) {
+                    statement.addBatch(object.toString());
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (BatchUpdateException e) {
+                connection.rollback();
+                statement.clearBatch();
+                connection.setAutoCommit(true);
+                this.executeEach(statement, objects, e);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("execute sql batch error", e);
+        }
+    }
+
+    private void executeEach(Statement statement, List<Object> objects, BatchUpdateException cause) {
+        int failed = 0;
+        for (Object object : objects) {
+            try {
+                statement.execute(object.toString());
+            } catch (SQLException e) {
+                failed++;
+                log.error("execute sql error {}", object, e);
+            }
+        }
+        if (failed > 0) {
+            throw new SourceBatchException(failed, cause);
+        }
+    }
+
 
     @Override
     public void close() {
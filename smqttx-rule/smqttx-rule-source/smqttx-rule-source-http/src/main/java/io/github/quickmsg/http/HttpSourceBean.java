@@ -1,14 +1,18 @@
 package io.github.quickmsg.http;
 
 import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.rule.source.SourceBatchException;
 import io.github.quickmsg.common.rule.source.SourceBean;
 import io.github.quickmsg.common.utils.JacksonUtil;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.netty.http.client.HttpClient;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,6 +25,8 @@ public class HttpSourceBean implements SourceBean {
 
     private HttpClient httpClient;
 
+    private static final Duration BATCH_TIMEOUT = Duration.ofSeconds(30);
+
 
     @Override
     public Boolean support(Source source) {
@@ -53,6 +59,30 @@ public class HttpSourceBean implements SourceBean {
                 .subscribe();
     }
 
+    /**
+     * 并发发送一批并等待响应, 每条单独计算结果, 有非 2xx 或超时时抛出 {@link SourceBatchException}, 由转发线程计入熔断
+     *
+     * @param objects 数据列表
+     */
+    @Override
+    public void transmitBatch(List<Object> objects) {
+        List<Throwable> errors = Flux.fromIterable(objects)
+                .flatMap(object -> httpClient
+                        .post()
+                        .uri(httpParam.getUrl())
+                        .send(Mono.just(PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes(JacksonUtil.dynamicJson(object).getBytes())))
+                        .responseSingle((response, body) -> response.status().code() < 300 ? body.then() :
+                                body.then(Mono.<Void>error(new IllegalStateException("http status " + response.status().code()))))
+                        .timeout(BATCH_TIMEOUT)
+                        .then(Mono.<Throwable>empty())
+                        .onErrorResume(Mono::just))
+                .collectList()
+                .block();
+        if (errors != null && !errors.isEmpty()) {
+            throw new SourceBatchException(errors.size(), errors.get(0));
+        }
+    }
+
     @Override
     public void close() {
         httpClient.configuration().connectionProvider().dispose();
@@ -1,15 +1,21 @@
 package io.github.quickmsg.source.mqtt;
 
 import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.rule.source.SourceBatchException;
 import io.github.quickmsg.common.rule.source.SourceBean;
 import io.github.quickmsg.common.utils.JacksonUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * kafka source bean
@@ -19,6 +25,8 @@ import java.util.Properties;
 @Slf4j
 public class KafkaSourceBean implements SourceBean {
 
+    private static final long BATCH_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
     private KafkaProducer<String, Object> producer;
 
     private String topic;
@@ -66,6 +74,44 @@ public class KafkaSourceBean implements SourceBean {
         }
     }
 
+    /**
+     * 发送一批并等待 broker 确认, 有失败或超时时抛出异常, 由转发线程计入熔断
+     *
+     * @param objects 数据列表
+     */
+    @Override
+    public void transmitBatch(List<Object> objects) {
+        if (producer == null) {
+            return;
+        }
+        List<Future<RecordMetadata>> futures = new ArrayList<>(objects.size());
+        int failed = 0;
+        Throwable cause = null;
+        for (Object object : objects) {
+            try {
+                futures.add(producer.send(new ProducerRecord<>(topic, JacksonUtil.dynamicJson(object))));
+            } catch (Exception e) {
+                failed++;
+                cause = e;
+            }
+        }
+        long deadline = System.nanoTime() + BATCH_TIMEOUT;
+        for (Future<RecordMetadata> future : futures) {
+            try {
+                future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("kafka send interrupted", e);
+            } catch (Exception e) {
+                failed++;
+                cause = e;
+            }
+        }
+        if (failed > 0) {
+            throw new SourceBatchException(failed, cause);
+        }
+    }
+
 
     @Override
     public void close() {
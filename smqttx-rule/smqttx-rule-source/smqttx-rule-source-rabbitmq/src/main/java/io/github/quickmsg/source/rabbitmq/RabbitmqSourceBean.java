@@ -8,7 +8,10 @@ import io.github.quickmsg.common.rule.source.SourceBean;
 import io.github.quickmsg.common.utils.JacksonUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -76,32 +79,57 @@ public class RabbitmqSourceBean implements SourceBean {
         corePublish(queueName, JacksonUtil.dynamicJson(object));
     }
 
+    /**
+     * 批量转发, 复用同一个通道
+     *
+     * @param objects 数据列表
+     */
+    @Override
+    public synchronized void transmitBatch(List<Object> objects) {
+        try {
+            Channel channel = channel(queueName);
+            for (Object object : objects) {
+                channel.basicPublish("", queueName, null, JacksonUtil.dynamicJson(object).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("RabbitMq转发异常", e);
+        }
+    }
+
     /**
      * 核心执行内容
      *
      * @param queueName 队列名
      * @param json body
      */
-    public void corePublish(String queueName, String json) {
+    public synchronized void corePublish(String queueName, String json) {
         try {
-            Channel cacheChannel = channelHashMap.get(queueName);
-            Channel channel = null;
-            if (cacheChannel == null) {
-                //创建一个通道
-                channel = connection.createChannel();
-                channelHashMap.put(queueName, channel);
-            } else {
-                channel = cacheChannel;
-            }
-            // 声明一个队列
-            channel.queueDeclare(queueName, false, false, false, null);
             // 发送消息到队列中
-            channel.basicPublish("", queueName, null, json.getBytes("UTF-8"));
+            channel(queueName).basicPublish("", queueName, null, json.getBytes(StandardCharsets.UTF_8));
         }catch (Exception e){
             log.error("RabbitMq转发异常",e);
         }
     }
 
+    /**
+     * 每个队列缓存一个通道, 只在创建通道时声明队列
+     *
+     * @param queueName 队列名
+     * @return {@link Channel}
+     * @throws IOException 创建通道失败
+     */
+    private Channel channel(String queueName) throws IOException {
+        Channel channel = channelHashMap.get(queueName);
+        if (channel == null || !channel.isOpen()) {
+            //创建一个通道
+            channel = connection.createChannel();
+            // 声明一个队列
+            channel.queueDeclare(queueName, false, false, false, null);
+            channelHashMap.put(queueName, channel);
+        }
+        return channel;
+    }
+
 
     @Override
     public void close() {
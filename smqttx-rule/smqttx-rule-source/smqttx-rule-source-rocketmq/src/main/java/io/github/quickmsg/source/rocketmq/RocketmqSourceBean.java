@@ -1,15 +1,23 @@
 package io.github.quickmsg.source.rocketmq;
 
 import io.github.quickmsg.common.rule.source.Source;
+import io.github.quickmsg.common.rule.source.SourceBatchException;
 import io.github.quickmsg.common.rule.source.SourceBean;
 import io.github.quickmsg.common.utils.JacksonUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
 import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
 import org.apache.rocketmq.common.message.Message;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * rocketmq source
@@ -19,6 +27,8 @@ import java.util.Optional;
 @Slf4j
 public class RocketmqSourceBean implements SourceBean {
 
+    private static final long BATCH_TIMEOUT_SECONDS = 30;
+
     /**
      * 生产者
      */
@@ -28,6 +38,20 @@ public class RocketmqSourceBean implements SourceBean {
 
     private String tags;
 
+    private final SendCallback sendCallback = new SendCallback() {
+        @Override
+        public void onSuccess(SendResult sendResult) {
+            if (sendResult.getSendStatus() != SendStatus.SEND_OK) {
+                log.warn("rocketMq send status {}", sendResult.getSendStatus());
+            }
+        }
+
+        @Override
+        public void onException(Throwable throwable) {
+            log.error("rocketMq send error", throwable);
+        }
+    };
+
     @Override
     public Boolean support(Source source) {
         return source == Source.ROCKET_MQ;
@@ -60,7 +84,7 @@ public class RocketmqSourceBean implements SourceBean {
     }
 
     /**
-     * 转发数据
+     * 转发数据, 异步发送, 只记录失败
      *
      * @param object 对象
      */
@@ -68,13 +92,63 @@ public class RocketmqSourceBean implements SourceBean {
     public void transmit(Object object) {
         if (producer != null) {
             Message message = new Message(topic, tags, JacksonUtil.dynamicJson(object).getBytes());
-            //发送消息v
             try {
-                SendResult sendResult = producer.send(message);
-                log.info("rocketMq send status {}", sendResult.getSendStatus());
+                producer.send(message, sendCallback);
+            } catch (Exception e) {
+                log.error("rocketMq send error", e);
+            }
+        }
+    }
+
+    /**
+     * 异步发送一批并等待回调, 非 SEND_OK、异常或超时时抛出异常, 由转发线程计入熔断
+     *
+     * @param objects 数据列表
+     */
+    @Override
+    public void transmitBatch(List<Object> objects) {
+        if (producer == null) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(objects.size());
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<Throwable> cause = new AtomicReference<>();
+        SendCallback callback = new SendCallback() {
+            @Override
+            public void onSuccess(SendResult sendResult) {
+                if (sendResult.getSendStatus() != SendStatus.SEND_OK) {
+                    cause.set(new IllegalStateException("rocketMq send status " + sendResult.getSendStatus()));
+                    failed.incrementAndGet();
+                }
+                latch.countDown();
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                cause.set(throwable);
+                failed.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        for (Object object : objects) {
+            try {
+                producer.send(new Message(topic, tags, JacksonUtil.dynamicJson(object).getBytes()), callback);
             } catch (Exception e) {
-                e.printStackTrace();
+                callback.onException(e);
+            }
+        }
+        try {
+            if (!latch.await(BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                /* 没有回调的按失败计 */
+                cause.set(new IllegalStateException("rocketMq send timeout"));
+                failed.addAndGet((int) latch.getCount());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("rocketMq send interrupted", e);
+        }
+        if (failed.get() > 0) {
+            throw new SourceBatchException(failed.get(), cause.get());
         }
     }
 